@@ -61,8 +61,11 @@ android {
 }
 
 dependencies {
+    implementation(project(":gnss-core"))
+
     implementation(libs.androidx.appcompat)
     implementation(libs.androidx.constraintlayout)
+    implementation(libs.androidx.recyclerview)
     implementation(libs.google.material)
 
     androidTestImplementation(libs.androidx.test.ext.junit)
@@ -16,9 +16,12 @@ import android.os.IBinder;
 import android.util.Log;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+
 import java.util.ArrayList;
 import java.util.List;
 
+import pos.modetest.core.utils.LogRingBuffer;
 import pos.modetest.observers.BlueskyLogObserver;
 import pos.modetest.utils.HelperUtils;
 
@@ -29,16 +32,21 @@ public class BlueskyTrackService extends Service {
     private static final int MIN_UPDATE_INTERVAL = 1000; // ms
     private static final int MAX_LOG_BUFF_SIZE = 10000; // lines
 
-    private final List<String> mAllLogsBuffer = new ArrayList<>();
-    private final List<String> mEnvLogsBuffer = new ArrayList<>();
-    private final List<String> mBlueskyLogsBuffer = new ArrayList<>();
+    public static final int LOG_CATEGORY_LMS = 0;
+    public static final int LOG_CATEGORY_ENV_BEARING = 1;
+    public static final int LOG_CATEGORY_BLUESKY = 2;
+    private static final int LOG_CATEGORY_COUNT = 3;
 
-    private int mAllLogsCount;
-    private int mEnvLogsCount;
-    private int mBlueskyLogsCount;
+    // Written only from the BlueskyLogObserver listener thread
+    private final LogRingBuffer mLogsBuffer =
+            new LogRingBuffer(MAX_LOG_BUFF_SIZE, LOG_CATEGORY_COUNT);
 
     private boolean mIsRunning = false;
-    private int mNotificationLastUpdateCount = 0;
+    private long mNotificationLastUpdateSeq = 0;
+    // Buffer counts when the run started, the notification only counts this run
+    private long mRunStartCount;
+    private long mRunStartEnvCount;
+    private long mRunStartBlueskyCount;
 
     private Handler mHandler;
     private Runnable mNotifyUpdater;
@@ -51,24 +59,17 @@ public class BlueskyTrackService extends Service {
             = new BlueskyLogObserver.Listener() {
         @Override
         public void onLocationManagerServiceLogEvent(String logLine) {
-            addAndCirculateLogs(mAllLogsBuffer, MAX_LOG_BUFF_SIZE, logLine);
-            mAllLogsCount++;
+            mLogsBuffer.append(LOG_CATEGORY_LMS, logLine);
         }
 
         @Override
         public void onEnvBearingLogEvent(String logLine) {
-            addAndCirculateLogs(mAllLogsBuffer, MAX_LOG_BUFF_SIZE, logLine);
-            addAndCirculateLogs(mEnvLogsBuffer, MAX_LOG_BUFF_SIZE, logLine);
-            mAllLogsCount++;
-            mEnvLogsCount++;
+            mLogsBuffer.append(LOG_CATEGORY_ENV_BEARING, logLine);
         }
 
         @Override
         public void onBlueskyLogEvent(String logLine) {
-            addAndCirculateLogs(mAllLogsBuffer, MAX_LOG_BUFF_SIZE, logLine);
-            addAndCirculateLogs(mBlueskyLogsBuffer, MAX_LOG_BUFF_SIZE, logLine);
-            mAllLogsCount++;
-            mBlueskyLogsCount++;
+            mLogsBuffer.append(LOG_CATEGORY_BLUESKY, logLine);
         }
     };
 
@@ -110,9 +111,10 @@ public class BlueskyTrackService extends Service {
         Log.d(TAG, "doStart");
 
         mIsRunning = true;
-        mAllLogsCount = 0;
-        mEnvLogsCount = 0;
-        mBlueskyLogsCount = 0;
+        mRunStartCount = mLogsBuffer.getCount();
+        mRunStartEnvCount = mLogsBuffer.getCount(LOG_CATEGORY_ENV_BEARING);
+        mRunStartBlueskyCount = mLogsBuffer.getCount(LOG_CATEGORY_BLUESKY);
+        mNotificationLastUpdateSeq = mRunStartCount;
 
         NotificationManager nm = getSystemService(NotificationManager.class);
         if (nm.getNotificationChannel(CHANNEL_ID) == null) {
@@ -154,13 +156,6 @@ public class BlueskyTrackService extends Service {
         stopSelf();
     }
 
-    private void addAndCirculateLogs(List<String> buffer, int maxSize, String item) {
-        buffer.add(item);
-        if (buffer.size() > maxSize) {
-            buffer.subList(maxSize / 10, buffer.size());
-        }
-    }
-
     private Notification createNotification() {
         Intent stopIntent = new Intent(this, BlueskyTrackService.class);
         stopIntent.setAction(Intent.ACTION_DELETE);
@@ -170,9 +165,11 @@ public class BlueskyTrackService extends Service {
         return new Notification.Builder(this, CHANNEL_ID)
                 .setSmallIcon(R.drawable.ic_app_fg)
                 .setContentTitle("Bluesky Logs tracker")
-                .setSubText(String.valueOf(mAllLogsCount))
-                .setContentText("Env Bearing Logs : " + mEnvLogsCount
-                        + "\nBluesky Logs : " + mBlueskyLogsCount)
+                .setSubText(String.valueOf(mLogsBuffer.getCount() - mRunStartCount))
+                .setContentText("Env Bearing Logs : "
+                        + (mLogsBuffer.getCount(LOG_CATEGORY_ENV_BEARING) - mRunStartEnvCount)
+                        + "\nBluesky Logs : "
+                        + (mLogsBuffer.getCount(LOG_CATEGORY_BLUESKY) - mRunStartBlueskyCount))
                 .setDeleteIntent(stopPi)
                 .setCategory(Notification.CATEGORY_STATUS)
                 .build();
@@ -181,13 +178,15 @@ public class BlueskyTrackService extends Service {
     private void updateNotification() {
         NotificationManager nm =
                 getSystemService(NotificationManager.class);
-        if (mNotificationLastUpdateCount < mAllLogsBuffer.size()) {
+        long count = mLogsBuffer.getCount();
+        if (mNotificationLastUpdateSeq < count) {
             if (mListener != null) {
-                mListener.onLogsUpdate(mAllLogsBuffer
-                        .subList(mNotificationLastUpdateCount, mAllLogsBuffer.size()));
+                List<String> newLogs = new ArrayList<>();
+                count = mLogsBuffer.readSince(mNotificationLastUpdateSeq, newLogs);
+                mListener.onLogsUpdate(newLogs, count);
             }
             nm.notify(NOTIFICATION_ID, createNotification());
-            mNotificationLastUpdateCount = mAllLogsBuffer.size();
+            mNotificationLastUpdateSeq = count;
             Log.v(TAG, "Updating Notification");
         }
     }
@@ -200,15 +199,25 @@ public class BlueskyTrackService extends Service {
     public class LocalBinder extends Binder {
 
         List<String> getAllLogs() {
-            return mAllLogsBuffer;
+            return mLogsBuffer.snapshot();
         }
 
         List<String> getEnvLogs() {
-            return mEnvLogsBuffer;
+            return mLogsBuffer.snapshot(LOG_CATEGORY_ENV_BEARING);
         }
 
         List<String> getBlueskyLogs() {
-            return mBlueskyLogsBuffer;
+            return mLogsBuffer.snapshot(LOG_CATEGORY_BLUESKY);
+        }
+
+        /** @return sequence number to pass for the next call */
+        long getLogsSince(long sequence, @NonNull List<String> out) {
+            return mLogsBuffer.readSince(sequence, out);
+        }
+
+        /** @return sequence number to pass for the next call */
+        long getLogsSince(int category, long sequence, @NonNull List<String> out) {
+            return mLogsBuffer.readSince(category, sequence, out);
         }
 
         public void setUpdateListener(Listener listener) {
@@ -217,6 +226,6 @@ public class BlueskyTrackService extends Service {
     }
 
     public interface Listener {
-        void onLogsUpdate(List<String> newLogs);
+        void onLogsUpdate(@NonNull List<String> newLogs, long nextSequence);
     }
 }
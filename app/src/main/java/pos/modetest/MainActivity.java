@@ -18,10 +18,12 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.database.ContentObserver;
 import android.graphics.Color;
+import android.graphics.Typeface;
 import android.location.Address;
 import android.location.Geocoder;
 import android.location.GnssCapabilities;
 import android.location.GnssMeasurementsEvent;
+import android.location.GnssNavigationMessage;
 import android.location.GnssStatus;
 import android.location.Location;
 import android.location.LocationRequest;
@@ -45,6 +47,7 @@ import android.telephony.CellInfo;
 import android.telephony.SubscriptionInfo;
 import android.telephony.TelephonyDisplayInfo;
 import android.text.Spannable;
+import android.text.InputType;
 import android.text.SpannableStringBuilder;
 import android.text.style.ForegroundColorSpan;
 import android.util.Log;
@@ -54,7 +57,9 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowInsets;
 import android.view.WindowManager;
+import android.widget.EditText;
 import android.widget.FrameLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
@@ -66,6 +71,8 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.PermissionChecker;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -77,31 +84,66 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.GnssBand;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.MeasurementEpochStats;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.data.SatelliteStateStore;
+import pos.modetest.core.gnss.DopEngine;
+import pos.modetest.core.gnss.EphemerisCache;
+import pos.modetest.core.gnss.GnssTime;
+import pos.modetest.core.gnss.NavMessageDecoder;
+import pos.modetest.core.gnss.OrbitGrid;
+import pos.modetest.core.gnss.OrbitPropagator;
+import pos.modetest.core.gnss.PseudorangeEngine;
+import pos.modetest.core.gnss.PvtEngine;
+import pos.modetest.core.recorder.SessionFormat;
+import pos.modetest.core.recorder.SessionPlayer;
+import pos.modetest.core.series.SeriesPoints;
+import pos.modetest.core.series.SignalHistoryFormat;
+import pos.modetest.core.series.TimeSeriesStore;
+import pos.modetest.core.stats.FixKalmanFilter;
+import pos.modetest.core.stats.FixStatistics;
+import pos.modetest.core.stats.FixStatsFormat;
+import pos.modetest.core.utils.NetworkTypes;
 import pos.modetest.data.CellInfoHeaderHolder;
 import pos.modetest.data.CellInfoHolder;
 import pos.modetest.data.CellInfoHolderFactory;
-import pos.modetest.data.GnssSvStatusHeaderHolder;
-import pos.modetest.data.GnssSvStatusHolder;
+import pos.modetest.data.GnssDataAdapter;
 import pos.modetest.data.LocationHolder;
 import pos.modetest.databinding.ActivityPosModeTestBinding;
 import pos.modetest.databinding.LayoutCellInfoRowBinding;
 import pos.modetest.databinding.LayoutSnipTextBinding;
-import pos.modetest.databinding.LayoutSvStatusRowBinding;
 import pos.modetest.observers.DataObserver;
 import pos.modetest.observers.LocationObserver;
 import pos.modetest.observers.TelephonyObserver;
 import pos.modetest.observers.WifiObserver;
+import pos.modetest.recorder.LocationReplayAdapter;
+import pos.modetest.recorder.SessionRecorder;
+import pos.modetest.utils.ConfigSnapshot;
 import pos.modetest.utils.ConfigUtils;
 import pos.modetest.utils.Constants;
+import pos.modetest.utils.FrameTimeMonitor;
 import pos.modetest.utils.HelperUtils;
 import pos.modetest.utils.IntentUtils;
+import pos.modetest.widgets.PredictedSkyView;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = TAG_PREFIX + "Test";
 
     private static final int ALL_PERMISSIONS_REQUEST = 0;
+    private static final int TTFF_CAMPAIGN_ITERATIONS = 100;
+    private static final double PREDICTED_SKY_STEP_SECONDS = 60;
+    private static final int PREDICTED_SKY_STEPS = 61;
+    // About a day of 40 signals, the oldest 1 s buckets go first past it
+    private static final long SIGNAL_HISTORY_BUDGET_BYTES = 8L << 20;
+    private static final String DOP_NONE = "DOP: " + EMPTY_TEXT_2C;
+    private static final String FIX_FILTER_NONE = "Kalman: " + EMPTY_TEXT_2C;
     private static final Uri mAgnssUri = Settings.Global.getUriFor("assisted_gps_enabled");
 
     private ConnectivityManager cm;
@@ -110,6 +152,8 @@ public class MainActivity extends AppCompatActivity {
     private Handler mHandler;
     private Executor mExecutor;
     private Executor mBgExecutor;
+    // Per-epoch GNSS engines, only their results go back to mExecutor
+    private ExecutorService mGnssExecutor;
     private List<String> mDelAdItems;
 
     private TelephonyObserver telephonyObserver;
@@ -120,6 +164,46 @@ public class MainActivity extends AppCompatActivity {
     private int mCurrentTtffMillis = 0;
     private int mCurrentFixCount = 0;
     private Runnable mOnPermissionsRunnable;
+    private final FrameTimeMonitor mFrameTimeMonitor = new FrameTimeMonitor();
+    private final MeasurementEpochStats mEpochStats = new MeasurementEpochStats();
+    private final SatelliteData mSatellites = new SatelliteData();
+    private final SatelliteStateStore mSatStore = new SatelliteStateStore();
+    // Decoded ephemerides, kept in the files dir across app restarts
+    private final EphemerisCache mEphemerides = new EphemerisCache();
+    private volatile long mSavedEphemerisVersion;
+    // Fitted SV orbits for the Predicted Sky dialog, filled on mBgExecutor
+    private final OrbitPropagator mOrbits = new OrbitPropagator(mEphemerides);
+    // Accumulated over every run until reset from the Fix Statistics dialog
+    private final FixStatistics mFixStats = new FixStatistics();
+    private final FixData mFix = new FixData();
+    // Results of the GNSS engines, posted by mGnssExecutor
+    private String mDopText = DOP_NONE;
+    private String mEngineStatusText = "";
+    private String mFixFilterText = FIX_FILTER_NONE;
+    private double mEpochGpsSeconds = Double.NaN;
+    @Nullable
+    private double[] mPvtPosition;
+
+    // mGnssExecutor only, fed with their own copies of the observer events
+    private final SatelliteData mEngineSatellites = new SatelliteData();
+    private final MeasurementData mMeasurements = new MeasurementData();
+    private final NavMessageData mNavMessage = new NavMessageData();
+    private final FixData mEngineFix = new FixData();
+    // Geometry of the SVs used in fix, recomputed on every status
+    private final DopEngine mDop = new DopEngine();
+    private final PseudorangeEngine mPseudoranges = new PseudorangeEngine();
+    private final NavMessageDecoder mNavDecoder = new NavMessageDecoder(mEphemerides);
+    // Position from raw measurements, compared to the chipset fix
+    private final PvtEngine mPvt = new PvtEngine();
+    // Smoothed track of the delivered fixes, jumps flagged by the innovation gate
+    private final FixKalmanFilter mFixFilter = new FixKalmanFilter();
+    // Per-signal C/N0, elevation, azimuth, AGC and multipath since start or the last Clear
+    private final TimeSeriesStore mSignalHistory =
+            new TimeSeriesStore(SIGNAL_HISTORY_BUDGET_BYTES);
+    private final SeriesPoints mSignalHistoryPoints = new SeriesPoints();
+    private SessionRecorder mSessionRecorder;
+    @Nullable
+    private volatile SessionPlayer mSessionPlayer;
 
     private ActivityPosModeTestBinding mainBinding;
 
@@ -134,6 +218,7 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onSubscriptionChanged(int slot, @Nullable SubscriptionInfo subInfo) {
+            mSessionRecorder.onSubscriptionChanged(slot, subInfo);
             dataInfo = "";
             dataActivity = "";
             if (subInfo == null) {
@@ -164,6 +249,7 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onCellInfoChanged(@NonNull SubscriptionInfo subInfo,
                                       @NonNull List<CellInfo> cellInfo) {
+            mSessionRecorder.onCellInfoChanged(subInfo, cellInfo);
             Log.v(TAG, String.format("onCellInfoChanged(%d, %d)",
                     subInfo.getSimSlotIndex(),
                     cellInfo.size()
@@ -183,9 +269,10 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onDisplayInfoChanged(@NonNull SubscriptionInfo subInfo,
                                          @NonNull TelephonyDisplayInfo telephonyDisplayInfo) {
+            mSessionRecorder.onDisplayInfoChanged(subInfo, telephonyDisplayInfo);
             dataInfo = String.format(Locale.getDefault(), "SIM%d/%s",
                     subInfo.getSimSlotIndex() + 1,
-                    TelephonyObserver.getNetworkTypeString(
+                    NetworkTypes.getNetworkTypeString(
                             telephonyDisplayInfo.getNetworkType(),
                             telephonyDisplayInfo.getOverrideNetworkType()
                     ));
@@ -198,7 +285,8 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onDataActivity(@NonNull SubscriptionInfo subInfo, int direction) {
-            dataActivity = TelephonyObserver.getDataActivityString(direction);
+            mSessionRecorder.onDataActivity(subInfo, direction);
+            dataActivity = NetworkTypes.getDataActivityString(direction);
             Log.v(TAG, String.format("onDataActivity(%d) -> %s",
                     subInfo.getSimSlotIndex(),
                     dataActivity
@@ -211,6 +299,7 @@ public class MainActivity extends AppCompatActivity {
         /** @noinspection deprecation*/
         @Override
         public void onDataNetworksChanged(@NonNull Map<Network, SubscriptionInfo> dataInfoMap) {
+            mSessionRecorder.onDataNetworksChanged(dataInfoMap);
             Log.v(TAG, String.format("onDataNetworksChanged(%s) -> %s",
                     Arrays.toString(dataInfoMap.keySet().stream()
                             .map(Network::toString).toArray()),
@@ -256,6 +345,7 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onWifiNetworksChanged(@NonNull Map<Network, WifiInfo> wifiInfoMap) {
+            mSessionRecorder.onWifiNetworksChanged(wifiInfoMap);
             Log.v(TAG, String.format("onWifiNetworksChanged(%s) -> %s",
                     Arrays.toString(wifiInfoMap.keySet().stream()
                             .map(Network::toString).toArray()),
@@ -280,8 +370,28 @@ public class MainActivity extends AppCompatActivity {
             = new LocationObserver.DefaultListener() {
         private GnssStatus svStatus = null;
 
+        @Override
+        public void onLocationModeChanged(boolean enabled) {
+            super.onLocationModeChanged(enabled);
+            mSessionRecorder.onLocationModeChanged(enabled);
+        }
+
+        @Override
+        public void onProvidersChanged(@NonNull List<String> enabledProviders) {
+            super.onProvidersChanged(enabledProviders);
+            mSessionRecorder.onProvidersChanged(enabledProviders);
+        }
+
+        @Override
+        public void onGnssCapabilitiesChanged(@NonNull GnssCapabilities caps,
+                                              String hwModel, int yearOfHw) {
+            super.onGnssCapabilitiesChanged(caps, hwModel, yearOfHw);
+            mSessionRecorder.onGnssCapabilitiesChanged(caps, hwModel, yearOfHw);
+        }
+
         @Override
         public void onLocationChanged(@Nullable Location location) {
+            mSessionRecorder.onLocationChanged(location);
             Log.i(TAG, String.format("onLocationChanged(%s)",
                     location != null ? location.toString() : ""));
             mainBinding.layoutLocInfo.setLoc(new LocationHolder(location));
@@ -293,13 +403,21 @@ public class MainActivity extends AppCompatActivity {
             mainBinding.fixTimer.stop();
             mCurrentFixCount += 1;
             mainBinding.setFixCount(mCurrentFixCount);
+            if (location != null) {
+                GnssDataAdapter.fromLocation(location, mFix);
+                mFixStats.addFix(mFix);
+                updateFixStats();
+                mGnssExecutor.execute(() -> computeFix(location));
+            }
             soundBEEP();
         }
 
         @Override
         public void onGnssStarted() {
             super.onGnssStarted();
+            mSessionRecorder.onGnssEvent(SessionFormat.GNSS_STARTED, 0);
             svStatus = null;
+            mSatStore.clear();
             updateGnssStatus(getString(R.string.gnss_status_started), svStatus);
             updateGnssStatusTable(svStatus);
         }
@@ -307,14 +425,22 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onFirstFix(int ttffMillis) {
             super.onFirstFix(ttffMillis);
+            mSessionRecorder.onGnssEvent(SessionFormat.GNSS_FIRST_FIX, ttffMillis);
             mCurrentTtffMillis = ttffMillis;
+            mFixStats.addTtff(ttffMillis);
+            updateFixStats();
             updateGnssStatus(null, svStatus);
         }
 
         @Override
         public void onSatelliteStatusChanged(@NonNull GnssStatus status) {
             super.onSatelliteStatusChanged(status);
+            mSessionRecorder.onSatelliteStatusChanged(status);
             svStatus = status;
+            GnssDataAdapter.fromStatus(status, mSatellites);
+            long elapsedNanos = SystemClock.elapsedRealtimeNanos();
+            mSatStore.update(mSatellites, elapsedNanos);
+            mGnssExecutor.execute(() -> computeStatusEpoch(status, elapsedNanos));
             updateGnssStatus(null, svStatus);
             updateGnssStatusTable(svStatus);
         }
@@ -322,13 +448,36 @@ public class MainActivity extends AppCompatActivity {
         @Override
         public void onGnssMeasurementsReceived(@NonNull GnssMeasurementsEvent eventArgs) {
             super.onGnssMeasurementsReceived(eventArgs);
+            mSessionRecorder.onGnssMeasurementsReceived(eventArgs);
+            var clock = eventArgs.getClock();
+            long elapsedMillis = (clock.hasElapsedRealtimeNanos()
+                    ? clock.getElapsedRealtimeNanos() : SystemClock.elapsedRealtimeNanos())
+                    / 1_000_000;
+            mGnssExecutor.execute(() -> computeMeasurementEpoch(eventArgs, elapsedMillis));
             updateGnssStatus(null, svStatus);
             updateGnssMiscStatus(eventArgs);
         }
 
+        @Override
+        public void onGnssNavigationMessageReceived(@NonNull GnssNavigationMessage message) {
+            super.onGnssNavigationMessageReceived(message);
+            mSessionRecorder.onGnssNavigationMessageReceived(message);
+            mGnssExecutor.execute(() -> {
+                GnssDataAdapter.fromNavigationMessage(message, mNavMessage);
+                mNavDecoder.decode(mNavMessage);
+            });
+        }
+
+        @Override
+        public void onGnssFullTrackingChanged(boolean enabled) {
+            super.onGnssFullTrackingChanged(enabled);
+            mSessionRecorder.onGnssEvent(SessionFormat.GNSS_FULL_TRACKING, enabled ? 1 : 0);
+        }
+
         @Override
         public void onGnssStopped() {
             super.onGnssStopped();
+            mSessionRecorder.onGnssEvent(SessionFormat.GNSS_STOPPED, 0);
             // Keep last svStatus till next session
             // svStatus = null;
             updateGnssStatus(getString(R.string.gnss_status_stopped), svStatus);
@@ -363,13 +512,28 @@ public class MainActivity extends AppCompatActivity {
         mHandler = new Handler(Looper.getMainLooper());
         mExecutor = getMainExecutor();
         mBgExecutor = Executors.newSingleThreadExecutor();
+        mGnssExecutor = Executors.newSingleThreadExecutor();
+        mBgExecutor.execute(this::doLoadEphemerides);
         cm = getSystemService(ConnectivityManager.class);
         mDelAdItems = new ArrayList<>(Arrays.asList(AIDING_DATA_PRESET_COLD));
 
+        mSessionRecorder = new SessionRecorder(this);
+        mFixFilter.addListener((raw, filtered, status) -> {
+            if (status == FixKalmanFilter.STATUS_OUTLIER
+                    || status == FixKalmanFilter.STATUS_RESET) {
+                Log.w(TAG, String.format(Locale.ROOT, "Fix %s: d2 %.1f, accuracy %.1f m",
+                        status == FixKalmanFilter.STATUS_RESET ? "jump" : "outlier",
+                        mFixFilter.getLastMahalanobis(), raw.getAccuracy()));
+            }
+        });
+        mDop.addListener(mSessionRecorder::onDop);
         telephonyObserver = new TelephonyObserver(this, telephonyObserverListener, mExecutor);
         dataObserver = new DataObserver(this, dataObserverListener, mExecutor);
         wifiObserver = new WifiObserver(this, wifiObserverListener, mExecutor);
         locationObserver = new LocationObserver(this, locationObserverListener, mExecutor);
+        // One main thread message per measurement epoch while tracking, fixes are not delayed;
+        // a status after its epoch's measurements lags by up to one epoch (2 s at most)
+        locationObserver.setBatchInterval(LocationObserver.BATCH_PER_EPOCH);
         agnssStatusObserver = new ContentObserver(mHandler) {
             @Override
             public void onChange(boolean selfChange) {
@@ -444,6 +608,31 @@ public class MainActivity extends AppCompatActivity {
         locationObserver.startObserving();
     }
 
+    private void startSessionReplay() {
+        var file = mSessionRecorder.getLatestSession();
+        if (file == null || mSessionRecorder.isRecording()) {
+            shortUserMessage(file == null ? "No recorded session" : "Stop recording first");
+            return;
+        }
+        var player = new SessionPlayer(file.toPath(),
+                new LocationReplayAdapter(locationObserverListener, mExecutor));
+        mSessionPlayer = player;
+        shortUserMessage("Replaying " + file.getName());
+        new Thread(() -> {
+            try {
+                long count = player.play();
+                Log.i(TAG, String.format(Locale.getDefault(), "Replayed %d records of %s",
+                        count, file.getName()));
+            } catch (IOException e) {
+                Log.e(TAG, "Replay Error : " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Replay interrupted");
+            }
+            mSessionPlayer = null;
+            shortUserMessage("Replay finished");
+        }, "SessionPlayer").start();
+    }
+
     private void shortUserMessage(String message) {
         Log.d(TAG, String.format("shortUserMessage(%s)", message));
         runOnUiThread(() -> Toast.makeText(this, message, Toast.LENGTH_SHORT).show());
@@ -451,8 +640,8 @@ public class MainActivity extends AppCompatActivity {
 
     private void doUpdateConfigData() {
         Log.d(TAG, "doUpdateConfigData()");
-        mainBinding.conf.setText(ConfigUtils.readConfigsByType(getApplicationContext(),
-                ConfigUtils.DEFAULT_CONFIG_TYPES));
+        ConfigSnapshot.getInstance(this).read(ConfigUtils.DEFAULT_CONFIG_TYPES, mExecutor,
+                content -> mainBinding.conf.setText(content));
     }
 
     private void doConfigDeleteAidingData() {
@@ -583,6 +772,8 @@ public class MainActivity extends AppCompatActivity {
 
         // UI/UX updates
         doResetText();
+        mainBinding.svTable.resetStats();
+        mFrameTimeMonitor.start(getWindow(), mHandler);
         mainBinding.runTimer.start();
         mainBinding.fixTimer.start();
         if (!mainBinding.buttonRun.isChecked())
@@ -592,6 +783,9 @@ public class MainActivity extends AppCompatActivity {
     private void doStopLocating() {
         Log.i(TAG, "doStopLocating()");
         locationObserver.stopLocating();
+        mFrameTimeMonitor.stop();
+        Log.i(TAG, "Frame metrics: " + mFrameTimeMonitor.getSummary());
+        Log.i(TAG, "SV table: " + mainBinding.svTable.getStatsSummary());
         mainBinding.fixTimer.stop();
         mainBinding.runTimer.stop();
         if (mainBinding.buttonRun.isChecked())
@@ -630,9 +824,25 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         doPause();
+        long version = mEphemerides.getVersion();
+        if (version != mSavedEphemerisVersion) {
+            mSavedEphemerisVersion = version;
+            mBgExecutor.execute(this::doSaveEphemerides);
+        }
         super.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        mSessionRecorder.release();
+        var player = mSessionPlayer;
+        if (player != null) {
+            player.cancel();
+        }
+        mGnssExecutor.shutdown();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_pos_mode_test, menu);
@@ -649,6 +859,8 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.menu_record_session).setChecked(mSessionRecorder.isRecording());
+        menu.findItem(R.id.menu_replay_session).setChecked(mSessionPlayer != null);
         try {
             var pkg = ConfigUtils.getNfwLocationPackage(this);
             var pInfo = getPackageManager().getPackageInfo(pkg, PackageManager.GET_PERMISSIONS);
@@ -732,6 +944,31 @@ public class MainActivity extends AppCompatActivity {
             startIntent(IntentUtils.createGmsPlaystoreIntent());
         } else if (itemId == R.id.menu_read_config) {
             startIntent(new Intent(this, ReadConfigActivity.class));
+        } else if (itemId == R.id.menu_record_session) {
+            if (mSessionRecorder.isRecording()) {
+                mSessionRecorder.stop();
+                var file = mSessionRecorder.getFile();
+                shortUserMessage("Session saved: " + (file != null ? file.getName() : EMPTY_TEXT_3C));
+            } else {
+                mSessionRecorder.start();
+            }
+            item.setChecked(mSessionRecorder.isRecording());
+        } else if (itemId == R.id.menu_replay_session) {
+            var player = mSessionPlayer;
+            if (player != null) {
+                player.cancel();
+            } else {
+                startSessionReplay();
+            }
+            item.setChecked(mSessionPlayer != null);
+        } else if (itemId == R.id.menu_fix_stats) {
+            showFixStatsDialog();
+        } else if (itemId == R.id.menu_ttff_campaign) {
+            showTtffCampaignDialog();
+        } else if (itemId == R.id.menu_predicted_sky) {
+            showPredictedSkyDialog();
+        } else if (itemId == R.id.menu_signal_history) {
+            showSignalHistoryDialog();
         } else if (itemId == R.id.menu_bluesky_check) {
             AlertDialog ald = (new AlertDialog.Builder(this))
                     .setTitle("Bluesky Check")
@@ -945,9 +1182,32 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private Path getEphemerisFile() {
+        return getFilesDir().toPath().resolve(EphemerisCache.FILE_NAME);
+    }
+
+    private void doLoadEphemerides() {
+        try {
+            int count = mEphemerides.load(getEphemerisFile());
+            mSavedEphemerisVersion = mEphemerides.getVersion();
+            Log.i(TAG, String.format(Locale.ROOT, "Loaded %d ephemerides", count));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load ephemerides", e);
+        }
+    }
+
+    private void doSaveEphemerides() {
+        try {
+            mEphemerides.save(getEphemerisFile());
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save ephemerides", e);
+        }
+    }
+
     private void doResetText() {
         mainBinding.layoutLocInfo.setLoc(new LocationHolder(null));
-        mainBinding.svTable.removeAllViews();
+        mainBinding.svTable.clear();
+        mainBinding.layoutGnssInfo.svChart.clear();
         switchConfAndTable(true);
         mainBinding.runTimer.setBase(SystemClock.elapsedRealtime());
         mainBinding.fixTimer.setBase(SystemClock.elapsedRealtime());
@@ -955,7 +1215,10 @@ public class MainActivity extends AppCompatActivity {
         mCurrentFixCount = 0;
         mainBinding.setFixCount(mCurrentFixCount);
         updateGnssStatus(null, null);
+        mDopText = DOP_NONE;
+        mGnssExecutor.execute(this::clearEngines);
         updateGnssMiscStatus(null);
+        updateFixStats();
     }
 
     private void switchConfAndTable(boolean showConf) {
@@ -967,16 +1230,10 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void updateGnssStatus(String status, GnssStatus svStatus) {
-        int total = svStatus != null ? svStatus.getSatelliteCount() : 0;
-        int used = 0;
-        int inView = 0;
-
-        for (int i = 0; i < total; i++) {
-            if (Float.compare(svStatus.getCn0DbHz(i), 0.0f) != 0)
-                inView++;
-            if (svStatus.usedInFix(i))
-                used++;
-        }
+        // Counted by mSatStore as each status arrives
+        int total = svStatus != null ? mSatStore.getTotalCount() : 0;
+        int used = svStatus != null ? mSatStore.getUsedCount() : 0;
+        int inView = svStatus != null ? mSatStore.getInViewCount() : 0;
 
         if (status == null) {
             if (mCurrentTtffMillis > 0 && used > 0)
@@ -995,44 +1252,330 @@ public class MainActivity extends AppCompatActivity {
                 mCurrentTtffMillis != 0 ? mCurrentTtffMillis+"ms" : "No Fix yet"));
 
         mainBinding.layoutGnssInfo.gnssSvStatus.setText(String.format(
-                "Used: %s    InView: %s    Total: %s",
+                "Used: %s (L5: %s)    InView: %s    Total: %s",
                 svStatus != null ? used : Constants.EMPTY_TEXT_2C,
+                svStatus != null ? mSatStore.getUsedCount(GnssBand.Group.L5)
+                        : Constants.EMPTY_TEXT_2C,
                 svStatus != null ? inView : Constants.EMPTY_TEXT_2C,
                 svStatus != null ? total : Constants.EMPTY_TEXT_2C
         ));
+        mainBinding.layoutGnssInfo.gnssDop.setText(svStatus != null ? mDopText : DOP_NONE);
+    }
+
+    /** mGnssExecutor: engines fed by a status, results are posted to the main thread */
+    private void computeStatusEpoch(GnssStatus status, long elapsedRealtimeNanos) {
+        GnssDataAdapter.fromStatus(status, mEngineSatellites);
+        mDop.update(mEngineSatellites, elapsedRealtimeNanos);
+        mSignalHistory.addStatus(mEngineSatellites, elapsedRealtimeNanos / 1_000_000);
+        String dop = formatDop();
+        mExecutor.execute(() -> {
+            mDopText = dop;
+            mainBinding.layoutGnssInfo.gnssDop.setText(dop);
+        });
+    }
+
+    /** mGnssExecutor: signal history, pseudoranges and WLS position of a measurement epoch */
+    private void computeMeasurementEpoch(GnssMeasurementsEvent event,
+                                         long elapsedRealtimeMillis) {
+        GnssDataAdapter.fromMeasurements(event, mMeasurements);
+        mSignalHistory.addMeasurements(mMeasurements, elapsedRealtimeMillis);
+        mPseudoranges.compute(mMeasurements);
+        mPvt.solve(mMeasurements, mPseudoranges, mEphemerides);
+        postEngineStatus();
+    }
+
+    /** mGnssExecutor: Kalman filter stage of a delivered fix */
+    private void computeFix(Location location) {
+        GnssDataAdapter.fromLocation(location, mEngineFix);
+        mFixFilter.update(mEngineFix);
+        postFixFilter();
+    }
+
+    /** mGnssExecutor: forgets the last epoch, the fix filter stays */
+    private void clearEngines() {
+        mPseudoranges.clear();
+        mPvt.clear();
+        mDop.clear();
+        postEngineStatus();
+    }
+
+    /** mGnssExecutor */
+    private void postEngineStatus() {
+        double gpsSeconds = getEpochGpsSeconds();
+        double[] position = mPvt.hasSolution() ? new double[]{mPvt.getLatitudeDegrees(),
+                mPvt.getLongitudeDegrees(), mPvt.getAltitudeMeters()} : null;
+        StringJoiner text = new StringJoiner("\n");
+        int prCount = mPseudoranges.getCount();
+        text.add(String.format("Pseudoranges: %s", prCount == 0 ? EMPTY_TEXT_2C
+                : mPseudoranges.getValidCount() + "/" + prCount));
+        int ephCount = mEphemerides.getValidCount(Double.isNaN(gpsSeconds)
+                ? getSystemGpsSeconds() : gpsSeconds);
+        text.add(String.format("Ephemeris SVs: %s", ephCount == 0 ? EMPTY_TEXT_2C : ephCount));
+        text.add(String.format("WLS PVT: %s", formatPvt()));
+        String engineStatus = text.toString();
+        mExecutor.execute(() -> {
+            mEpochGpsSeconds = gpsSeconds;
+            mPvtPosition = position;
+            mEngineStatusText = engineStatus;
+            showGnssMiscStatus();
+        });
+    }
+
+    /** mGnssExecutor */
+    private void postFixFilter() {
+        String text = formatFixFilter();
+        mExecutor.execute(() -> {
+            mFixFilterText = text;
+            mainBinding.layoutFixStats.fixFilter.setText(text);
+        });
     }
 
     private void updateGnssMiscStatus(@Nullable GnssMeasurementsEvent eventArgs) {
-        boolean fullTracking = LocationObserver.getFullTracking(eventArgs);
-        long mpCount = LocationObserver.getMultipathSvCount(eventArgs);
-        double agcAvg = LocationObserver.getAgcAverage(eventArgs);
+        LocationObserver.updateEpochStats(eventArgs, mEpochStats);
+        showGnssMiscStatus();
+    }
+
+    private void showGnssMiscStatus() {
+        boolean fullTracking = mEpochStats.isFullTracking();
+        int mpCount = mEpochStats.getMultipathCount();
+        double agcAvg = mEpochStats.getAgcMean();
         StringJoiner misc = new StringJoiner("\n");
         misc.add(String.format("Full tracking: %s", fullTracking));
         misc.add(String.format("Multipath SVs: %s", mpCount == 0 ? EMPTY_TEXT_2C : mpCount));
         misc.add(String.format("AGC Average: %s", Double.isNaN(agcAvg) ? EMPTY_TEXT_2C
-                : String.format(Locale.getDefault(), "%.02f", agcAvg)));
+                : String.format(Locale.getDefault(), "%.02f (%.02f ~ %.02f)", agcAvg,
+                        mEpochStats.getAgcMin(), mEpochStats.getAgcMax())));
+        if (!mEngineStatusText.isEmpty()) misc.add(mEngineStatusText);
         mainBinding.layoutGnssInfo.gnssMiscStatus.setText(misc.toString());
     }
 
-    private void updateGnssStatusTable(GnssStatus status) {
-        mainBinding.svTable.removeAllViews();
-        switchConfAndTable(false);
+    /** mGnssExecutor */
+    private String formatDop() {
+        if (!mDop.hasDop(DopEngine.SUBSET_ALL)) {
+            return DOP_NONE;
+        }
+        int all = DopEngine.SUBSET_ALL;
+        return String.format(Locale.getDefault(),
+                "DOP: P %.1f  H %.1f  V %.1f  G %.1f    PDOP GPS: %s  GPS+GAL: %s",
+                mDop.getPdop(all), mDop.getHdop(all), mDop.getVdop(all), mDop.getGdop(all),
+                formatPdop(DopEngine.SUBSET_GPS), formatPdop(DopEngine.SUBSET_GPS_GALILEO));
+    }
 
-        // Don't draw table if no status. To differentiate between empty and no status
-        if (status == null) return;
+    private String formatPdop(int subset) {
+        return mDop.hasDop(subset)
+                ? String.format(Locale.getDefault(), "%.1f", mDop.getPdop(subset))
+                : EMPTY_TEXT_2C;
+    }
 
-        // Header Row
-        var svStatusRowBinding = LayoutSvStatusRowBinding.inflate(getLayoutInflater(),
-                mainBinding.svTable, true);
-        GnssSvStatusHolder holder = new GnssSvStatusHeaderHolder(getApplicationContext());
-        svStatusRowBinding.setSv(holder);
-
-        // Individual status Rows
-        for (int i = 0; i < status.getSatelliteCount(); i++) {
-            svStatusRowBinding = LayoutSvStatusRowBinding.inflate(getLayoutInflater(),
-                    mainBinding.svTable, true);
-            svStatusRowBinding.setSv(new GnssSvStatusHolder(getApplicationContext(), status, i));
+    /** mGnssExecutor */
+    private String formatPvt() {
+        if (!mPvt.hasSolution()) return EMPTY_TEXT_2C;
+        String text = String.format(Locale.getDefault(), "%d signals", mPvt.getUsedCount());
+        if (mPvt.getExcludedCount() > 0) {
+            text += String.format(Locale.getDefault(), ", %d excluded", mPvt.getExcludedCount());
+        }
+        if (mEngineFix.getTimeMillis() != 0) {
+            text += String.format(Locale.getDefault(), ", %.1f m from fix",
+                    mPvt.getHorizontalDistanceMeters(mEngineFix.getLatitude(),
+                            mEngineFix.getLongitude()));
         }
+        return text;
+    }
+
+    /** GPS time of the last measurement epoch, the system clock before the first one */
+    private double getGpsSeconds() {
+        return Double.isNaN(mEpochGpsSeconds) ? getSystemGpsSeconds() : mEpochGpsSeconds;
+    }
+
+    /** mGnssExecutor: GPS time of the last measurement epoch, NaN before the first one */
+    private double getEpochGpsSeconds() {
+        int week = mPseudoranges.getGpsWeek();
+        if (week < 0) return Double.NaN;
+        return week * GnssTime.WEEK_SECONDS + mPseudoranges.getReceiveTimeOfWeekNanos() * 1e-9;
+    }
+
+    private static double getSystemGpsSeconds() {
+        return GnssTime.fromUnixMillis(System.currentTimeMillis(),
+                PseudorangeEngine.DEFAULT_LEAP_SECONDS);
+    }
+
+    private void updateFixStats() {
+        mainBinding.layoutFixStats.fixStats.setText(FixStatsFormat.formatSummary(mFixStats));
+        mainBinding.layoutFixStats.fixFilter.setText(mFixFilterText);
+    }
+
+    /** mGnssExecutor */
+    private String formatFixFilter() {
+        if (mFixFilter.getUpdateCount() == 0) {
+            return FIX_FILTER_NONE;
+        }
+        return String.format(Locale.getDefault(),
+                "Kalman: %d outliers, %d jumps, NIS %.1f, innovation 95%% %.1f m",
+                mFixFilter.getOutlierCount(), mFixFilter.getResetCount(),
+                mFixFilter.getMeanNis(), mFixFilter.getInnovation95Meters());
+    }
+
+    private void showFixStatsDialog() {
+        var builder = new AlertDialog.Builder(this)
+                .setTitle(R.string.menu_fix_stats)
+                .setMessage(FixStatsFormat.formatReport(mFixStats))
+                .setPositiveButton("OK", null)
+                .setNegativeButton("Reset", (dialog, which) -> {
+                    mFixStats.clear();
+                    updateFixStats();
+                    mGnssExecutor.execute(() -> {
+                        mFixFilter.clear();
+                        postFixFilter();
+                    });
+                });
+        if (mFixStats.hasReference()) {
+            builder.setNeutralButton("Use Mean", (dialog, which) -> {
+                mFixStats.clearReference();
+                updateFixStats();
+            });
+        } else if (mFixStats.getFixCount() > 0) {
+            // Pins the mean so far, later fixes are measured against a fixed point
+            builder.setNeutralButton("Pin Mean", (dialog, which) -> {
+                mFixStats.setReference(mFixStats.getMeanLatitude(),
+                        mFixStats.getMeanLongitude(), mFixStats.getMeanAltitude());
+                updateFixStats();
+            });
+        }
+        var dlg = builder.show();
+        TextView message = dlg.findViewById(android.R.id.message);
+        if (message != null) {
+            message.setTypeface(Typeface.MONOSPACE);
+        }
+    }
+
+    private void showSignalHistoryDialog() {
+        mGnssExecutor.execute(() -> {
+            // Same elapsed realtime clock the history is fed with
+            String report = SignalHistoryFormat.formatReport(mSignalHistory,
+                    SystemClock.elapsedRealtime(), mSignalHistoryPoints);
+            String memory = String.format(Locale.getDefault(), "\nMemory: %d / %d KiB",
+                    mSignalHistory.getMemoryBytes() / 1024,
+                    mSignalHistory.getBudgetBytes() / 1024);
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                var dlg = new AlertDialog.Builder(this)
+                        .setTitle(R.string.menu_signal_history)
+                        .setMessage(report + memory)
+                        .setPositiveButton("OK", null)
+                        .setNegativeButton("Clear", (dialog, which) ->
+                                mGnssExecutor.execute(mSignalHistory::clear))
+                        .show();
+                TextView message = dlg.findViewById(android.R.id.message);
+                if (message != null) {
+                    message.setTypeface(Typeface.MONOSPACE);
+                }
+            });
+        });
+    }
+
+    private void showTtffCampaignDialog() {
+        final String[] presets = {TtffCampaignService.PRESET_COLD,
+                TtffCampaignService.PRESET_WARM, TtffCampaignService.PRESET_HOT};
+        final int[] sel = {0};
+        var iterations = new EditText(this);
+        iterations.setInputType(InputType.TYPE_CLASS_NUMBER);
+        iterations.setHint("Iterations");
+        iterations.setText(String.valueOf(TTFF_CAMPAIGN_ITERATIONS));
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.menu_ttff_campaign)
+                .setSingleChoiceItems(new String[]{"Cold", "Warm", "Hot"}, sel[0],
+                        (dialog, which) -> sel[0] = which)
+                .setView(iterations)
+                .setPositiveButton("Start", (dialog, which) -> {
+                    int count;
+                    try {
+                        count = Integer.parseInt(iterations.getText().toString());
+                    } catch (NumberFormatException e) {
+                        count = TTFF_CAMPAIGN_ITERATIONS;
+                    }
+                    doStartTtffCampaign(presets[sel[0]], count);
+                })
+                .setNeutralButton("Stop", (dialog, which) -> {
+                    Intent i = new Intent(this, TtffCampaignService.class);
+                    i.setAction(Intent.ACTION_DELETE);
+                    startService(i);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showPredictedSkyDialog() {
+        double lat;
+        double lon;
+        double alt;
+        double[] pvt = mPvtPosition;
+        if (pvt != null) {
+            lat = pvt[0];
+            lon = pvt[1];
+            alt = pvt[2];
+        } else if (mFix.getTimeMillis() != 0) {
+            lat = mFix.getLatitude();
+            lon = mFix.getLongitude();
+            alt = Double.isNaN(mFix.getAltitude()) ? 0 : mFix.getAltitude();
+        } else {
+            shortUserMessage("No position yet");
+            return;
+        }
+        double start = getGpsSeconds();
+        mBgExecutor.execute(() -> {
+            // Own grid per dialog, the view keeps reading it on the main thread
+            var grid = new OrbitGrid();
+            grid.setReceiver(Math.toRadians(lat), Math.toRadians(lon), alt);
+            mOrbits.propagate(start, PREDICTED_SKY_STEP_SECONDS, PREDICTED_SKY_STEPS, grid);
+            int visible = grid.getVisibleCount(0, 0);
+            Log.d(TAG, String.format(Locale.ROOT, "Predicted sky: %d SVs, %d visible",
+                    grid.getSvCount(), visible));
+            if (grid.getSvCount() == 0) {
+                shortUserMessage("No ephemeris or almanac yet");
+                return;
+            }
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                var view = new PredictedSkyView(this);
+                view.setGrid(grid);
+                new AlertDialog.Builder(this)
+                        .setTitle(R.string.menu_predicted_sky)
+                        .setMessage(String.format(Locale.getDefault(),
+                                "%d SVs now, tracks for the next hour", visible))
+                        .setView(view)
+                        .setPositiveButton("OK", null)
+                        .show();
+            });
+        });
+    }
+
+    private void doStartTtffCampaign(String preset, int iterations) {
+        // The service can't enter the foreground as a location service without them
+        if (!HelperUtils.checkPermissions(this, LocationObserver.permissions)) {
+            shortUserMessage("Please grant permissions");
+            return;
+        }
+        // Mode and quality from the spinners, the campaign always uses the GPS provider
+        doUpdateLocationOptions();
+        boolean single = locationObserver.getMode() == LocationObserver.LocationMode.SINGLE;
+        int quality = locationObserver.getQuality();
+        // The campaign owns the engine until it is done
+        doStopLocating();
+        Intent i = new Intent(this, TtffCampaignService.class)
+                .putExtra(TtffCampaignService.EXTRA_PRESET, preset)
+                .putExtra(TtffCampaignService.EXTRA_ITERATIONS, Math.max(1, iterations))
+                .putExtra(TtffCampaignService.EXTRA_SINGLE, single)
+                .putExtra(TtffCampaignService.EXTRA_QUALITY, quality);
+        Log.i(TAG, String.format("doStartTtffCampaign(%s, %d, single: %s)", preset,
+                iterations, single));
+        var c = startForegroundService(i);
+        Log.d(TAG, "Started " + c);
+    }
+
+    private void updateGnssStatusTable(GnssStatus status) {
+        switchConfAndTable(false);
+        mainBinding.svTable.setStatus(status, status != null ? mSatellites : null);
+        mainBinding.layoutGnssInfo.svChart.setStatus(status != null ? mSatellites : null);
     }
 
 }
@@ -2,6 +2,8 @@ package pos.modetest;
 
 import static pos.modetest.utils.Constants.TAG_PREFIX;
 
+import android.content.ClipData;
+import android.content.ClipboardManager;
 import android.content.pm.ActivityInfo;
 import android.graphics.Color;
 import android.os.Bundle;
@@ -13,27 +15,46 @@ import android.view.WindowInsets;
 import android.view.WindowManager;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.activity.SystemBarStyle;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.recyclerview.widget.LinearLayoutManager;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.Executor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
+import pos.modetest.core.config.ConfigDiff;
+import pos.modetest.core.config.DumpDocument;
+import pos.modetest.core.config.DumpsysParser;
 import pos.modetest.databinding.ActivityReadConfigBinding;
+import pos.modetest.utils.ConfigSnapshot;
 import pos.modetest.utils.ConfigUtils;
+import pos.modetest.widgets.DumpAdapter;
 
 public class ReadConfigActivity extends AppCompatActivity {
     private static final String TAG = TAG_PREFIX + "Config";
 
-    private final Executor mExecutor = Executors.newSingleThreadExecutor();
     private ActivityReadConfigBinding binding;
+    private final ExecutorService mParseExecutor = Executors.newSingleThreadExecutor();
+    private DumpAdapter mAdapter;
+    // Also read by the dumpsys drain thread
+    private volatile int mRequestId;
+    private String mQuery = "";
+    private int[] mMatches = new int[0];
+    private int mMatchIndex;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -51,9 +72,14 @@ public class ReadConfigActivity extends AppCompatActivity {
         // Setup action bar
         setSupportActionBar(binding.toolbar);
 
-        binding.sectionContent.setOnApplyWindowInsetsListener((v, windowInsets) -> {
+        mAdapter = new DumpAdapter(this);
+        mAdapter.setOnLineLongClickListener(this::copySection);
+        binding.sectionList.setAdapter(mAdapter);
+        int bottomPadding = binding.sectionList.getPaddingBottom();
+        binding.sectionList.setOnApplyWindowInsetsListener((v, windowInsets) -> {
             var insets = windowInsets.getInsets(WindowInsets.Type.navigationBars());
-            v.setPadding(0, 0, 0, insets.bottom);
+            v.setPadding(v.getPaddingLeft(), v.getPaddingTop(), v.getPaddingRight(),
+                    bottomPadding + insets.bottom);
             return windowInsets;
         });
 
@@ -95,14 +121,41 @@ public class ReadConfigActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.menu_read_config, menu);
+        var searchView = (SearchView) menu.findItem(R.id.menu_search_config).getActionView();
+        if (searchView != null) {
+            searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+                @Override
+                public boolean onQueryTextSubmit(String query) {
+                    showMatch(mMatchIndex + 1);
+                    return true;
+                }
+
+                @Override
+                public boolean onQueryTextChange(String newText) {
+                    doSearch(newText);
+                    return true;
+                }
+            });
+        }
         return true;
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mRequestId++; // Stops a running stream
+        mParseExecutor.shutdownNow();
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         int itemId = item.getItemId();
         if (itemId == R.id.menu_refresh_config) {
-            doUpdateData();
+            doUpdateData(true);
+        } else if (itemId == R.id.menu_save_snapshot) {
+            doSaveSnapshot();
+        } else if (itemId == R.id.menu_compare_devices) {
+            doCompareDevices();
         } else {
             Log.e(TAG, "Unexpected menu selected : " + getResources().getResourceEntryName(itemId));
             return super.onOptionsItemSelected(item);
@@ -111,8 +164,12 @@ public class ReadConfigActivity extends AppCompatActivity {
     }
 
     public void doUpdateData() {
+        doUpdateData(false);
+    }
+
+    private void doUpdateData(boolean refresh) {
         String value = (String) binding.configSpinner.getSelectedItem();
-        Log.d(TAG, String.format("doUpdateData(%s)", value));
+        Log.d(TAG, String.format("doUpdateData(%s, %b)", value, refresh));
         if (value == null) {
             return;
         }
@@ -121,15 +178,180 @@ public class ReadConfigActivity extends AppCompatActivity {
                 .findFirst()
                 .map(Map.Entry::getKey)
                 .orElse(null);
-        mExecutor.execute(() -> {
-            CharSequence content;
-            if (updateItem != null) {
-                content = ConfigUtils.readConfigByType(getApplicationContext(), updateItem);
+        var types = updateItem != null ? List.of(updateItem) : ConfigUtils.DEFAULT_CONFIG_TYPES;
+        var snapshot = ConfigSnapshot.getInstance(this);
+        if (refresh) {
+            types.forEach(snapshot::invalidate);
+        }
+        int requestId = ++mRequestId;
+        if (updateItem != null && streamDump(updateItem, requestId)) {
+            return;
+        }
+        // Sections show up as they complete, results of an older selection are dropped
+        snapshot.read(types, mParseExecutor, content -> {
+            var document = DumpsysParser.parse(content);
+            runOnUiThread(() -> {
+                if (requestId == mRequestId) {
+                    setDocument(document);
+                }
+            });
+        });
+    }
+
+    /** Stores the current config and shows what changed since the previous snapshot */
+    private void doSaveSnapshot() {
+        var snapshot = ConfigSnapshot.getInstance(this);
+        showText(snapshot.getStore().thenCombine(snapshot.readDeviceConfig(), (store, config) -> {
+            var previous = store.getLatest(config.getDevice());
+            try {
+                store.put(config);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            var buf = new StringBuilder(String.format(Locale.getDefault(),
+                    "# Saved %s (%d snapshots)\n", config.getId(), store.size()));
+            if (previous == null) {
+                buf.append("First snapshot of ").append(config.getDevice()).append('\n');
             } else {
-                content = ConfigUtils.readConfigsByType(getApplicationContext(), ConfigUtils.DEFAULT_CONFIG_TYPES);
+                var diff = ConfigDiff.compare(previous, config);
+                buf.append("# Changes since ").append(previous.getId()).append('\n');
+                buf.append(diff.isEmpty() ? "No changes\n" : diff.format());
             }
-            runOnUiThread(() -> binding.sectionContent.setText(content));
-        });
+            return buf.toString();
+        }));
+    }
+
+    /** Shows the keys whose value differs between this device and the stored snapshots */
+    private void doCompareDevices() {
+        var snapshot = ConfigSnapshot.getInstance(this);
+        showText(snapshot.getStore().thenCombine(snapshot.readDeviceConfig(), (store, config) -> {
+            String diff = ConfigUtils.formatDeviceDifferences(store, config);
+            return String.format(Locale.getDefault(), "# %s (%s) vs %d snapshots\n",
+                    config.getDevice(), config.getBuild(), store.size())
+                    + (diff.isEmpty() ? "No differences\n" : diff);
+        }));
+    }
+
+    private void showText(CompletableFuture<String> text) {
+        int requestId = ++mRequestId;
+        text.exceptionally(e -> {
+            Log.e(TAG, "showText", e);
+            return "Error: " + e.getMessage();
+        }).thenAcceptAsync(content -> {
+            var document = DumpsysParser.parse(content);
+            runOnUiThread(() -> {
+                if (requestId == mRequestId) {
+                    setDocument(document);
+                }
+            });
+        }, mParseExecutor);
     }
 
+    /**
+     * Shows an uncached dump while dumpsys is still writing it, lines are parsed on the
+     * drain thread and the list catches up at most once per frame.
+     *
+     * @return false if the dump has to go through {@link ConfigSnapshot}
+     */
+    private boolean streamDump(ConfigUtils.ConfigTypes type, int requestId) {
+        var args = ConfigUtils.getDumpsysArgs(type);
+        var snapshot = ConfigSnapshot.getInstance(this);
+        if (args == null || snapshot.getCached(type) != null
+                || ConfigUtils.getDumpPermissionsMessage(this) != null) {
+            return false;
+        }
+        var parser = new DumpsysParser(new DumpDocument());
+        var refreshPending = new AtomicBoolean();
+        Runnable refresh = () -> {
+            refreshPending.set(false);
+            if (requestId == mRequestId) {
+                mAdapter.refresh();
+                refreshMatches();
+            }
+        };
+        setDocument(parser.getDocument());
+        long start = System.currentTimeMillis();
+        ConfigUtils.readDumpsysAsync(args, (chunk, length) -> {
+            if (requestId != mRequestId) return;
+            parser.onChunk(chunk, length);
+            if (refreshPending.compareAndSet(false, true)) {
+                binding.sectionList.postOnAnimation(refresh);
+            }
+        }).thenAcceptAsync(content -> {
+            if (content.startsWith(ConfigUtils.ERROR_PREFIX)) {
+                // Show the error instead of a partial dump
+                var document = DumpsysParser.parse(content);
+                runOnUiThread(() -> {
+                    if (requestId == mRequestId) {
+                        setDocument(document);
+                    }
+                });
+                return;
+            }
+            parser.finish();
+            snapshot.put(type, content);
+            Log.d(TAG, String.format("streamDump(%s) -> %d lines, %d ms", type,
+                    parser.getDocument().getLineCount(), System.currentTimeMillis() - start));
+            runOnUiThread(refresh);
+        }, mParseExecutor);
+        return true;
+    }
+
+    private void setDocument(DumpDocument document) {
+        mAdapter.setDocument(document);
+        mMatches = mQuery.isBlank() ? new int[0] : document.search(mQuery);
+        mMatchIndex = 0;
+        mAdapter.setMatches(mMatches);
+        updateSubtitle();
+    }
+
+    private void doSearch(String query) {
+        mQuery = query;
+        mMatches = query.isBlank() ? new int[0] : mAdapter.getDocument().search(query);
+        mAdapter.setMatches(mMatches);
+        showMatch(0);
+    }
+
+    /** Adds matches in lines streamed in since the search, keeps the current match */
+    private void refreshMatches() {
+        if (mQuery.isBlank()) return;
+        int[] matches = mAdapter.getDocument().search(mQuery);
+        if (matches.length == mMatches.length) return;
+        boolean first = mMatches.length == 0;
+        mMatches = matches;
+        mAdapter.addMatches(matches);
+        if (first) {
+            showMatch(0);
+        } else {
+            updateSubtitle();
+        }
+    }
+
+    private void showMatch(int index) {
+        if (mMatches.length > 0) {
+            mMatchIndex = index % mMatches.length;
+            int position = mAdapter.reveal(mMatches[mMatchIndex]);
+            var layoutManager = (LinearLayoutManager) binding.sectionList.getLayoutManager();
+            if (layoutManager != null) {
+                layoutManager.scrollToPositionWithOffset(position,
+                        binding.sectionList.getHeight() / 3);
+            }
+        }
+        updateSubtitle();
+    }
+
+    private void updateSubtitle() {
+        var actionBar = getSupportActionBar();
+        if (actionBar == null) return;
+        actionBar.setSubtitle(mMatches.length == 0 ? null : String.format(Locale.getDefault(),
+                "%d/%d", mMatchIndex + 1, mMatches.length));
+    }
+
+    private void copySection(DumpDocument document, int line) {
+        var clipboard = getSystemService(ClipboardManager.class);
+        clipboard.setPrimaryClip(ClipData.newPlainText(document.getLine(line).strip(),
+                document.getSectionText(line)));
+        Toast.makeText(this, "Copied " + (document.getSubtreeEnd(line) - line + 1) + " lines",
+                Toast.LENGTH_SHORT).show();
+    }
 }
@@ -0,0 +1,352 @@
+package pos.modetest;
+
+import static pos.modetest.utils.Constants.TAG_PREFIX;
+
+import android.annotation.SuppressLint;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.location.LocationManager;
+import android.location.LocationRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import pos.modetest.core.campaign.TtffCampaign;
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.FixFormat;
+import pos.modetest.data.GnssDataAdapter;
+import pos.modetest.observers.LocationObserver;
+import pos.modetest.utils.HelperUtils;
+
+/**
+ * Runs a {@link TtffCampaign} unattended, with its own {@link LocationObserver}.
+ * <p>
+ * Every iteration is appended to a CSV file under externalFilesDir/campaigns as soon as it
+ * completes, so an interrupted night still leaves its results. A partial wake lock keeps the
+ * timers running with the screen off.
+ */
+public class TtffCampaignService extends Service {
+    private static final String TAG = TAG_PREFIX + "TtffCampaign";
+    private static final String CHANNEL_ID = "service";
+    private static final int NOTIFICATION_ID = TAG.hashCode();
+    private static final String CAMPAIGNS_DIR = "campaigns";
+
+    public static final String EXTRA_ITERATIONS = "iterations";
+    /** One of {@link #PRESET_COLD}, {@link #PRESET_WARM}, {@link #PRESET_HOT} */
+    public static final String EXTRA_PRESET = "preset";
+    public static final String EXTRA_SINGLE = "single";
+    public static final String EXTRA_TIMEOUT_S = "timeout_s";
+    public static final String EXTRA_COOL_DOWN_S = "cool_down_s";
+    /** LocationRequest quality, high accuracy by default */
+    public static final String EXTRA_QUALITY = "quality";
+
+    public static final String PRESET_COLD = "cold";
+    public static final String PRESET_WARM = "warm";
+    public static final String PRESET_HOT = "hot";
+
+    private static final int DEFAULT_ITERATIONS = 100;
+
+    private Handler mHandler;
+    private LocationObserver mLocationObserver;
+    private TtffCampaign mCampaign;
+    private PowerManager.WakeLock mWakeLock;
+    @Nullable
+    private BufferedWriter mCsv;
+    @Nullable
+    private File mCsvFile;
+    private String mPreset = PRESET_COLD;
+    private int mQuality = LocationRequest.QUALITY_HIGH_ACCURACY;
+    private final FixData mFix = new FixData();
+    private final Runnable mTimer = () -> mCampaign.onTimer();
+
+    private final TtffCampaign.Host mHost = new TtffCampaign.Host() {
+        @Override
+        public void deleteAidingData(@NonNull String[] items) {
+            setLocationOptions(mCampaign.isSingle());
+            try {
+                mLocationObserver.deleteAidingData(items);
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "deleteAidingData", e);
+                mHandler.post(() -> mCampaign.cancel());
+            }
+        }
+
+        @SuppressLint("MissingPermission") // Checked in doStart()
+        @Override
+        public void startLocating(boolean single) {
+            setLocationOptions(single);
+            try {
+                mLocationObserver.startLocating();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "startLocating", e);
+                mHandler.post(() -> mCampaign.cancel());
+            }
+        }
+
+        @Override
+        public void stopLocating() {
+            mLocationObserver.stopLocating();
+        }
+
+        @Override
+        public void scheduleTimer(long delayMillis) {
+            mHandler.removeCallbacks(mTimer);
+            mHandler.postDelayed(mTimer, delayMillis);
+        }
+
+        @Override
+        public void cancelTimer() {
+            mHandler.removeCallbacks(mTimer);
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    private final TtffCampaign.Listener mCampaignListener = new TtffCampaign.Listener() {
+        @Override
+        public void onStateChanged(@NonNull TtffCampaign.State state) {
+            Log.d(TAG, "onStateChanged(" + state + ") " + mCampaign.getIteration());
+            if (!mCampaign.isRunning()) {
+                // Out of the campaign call stack
+                mHandler.post(TtffCampaignService.this::doStop);
+            }
+        }
+
+        @Override
+        public void onIterationDone(@NonNull TtffCampaign.Result result) {
+            Log.i(TAG, "onIterationDone(" + result.toCsvLine() + ")");
+            writeCsv(result.toCsvLine());
+            getSystemService(NotificationManager.class).notify(NOTIFICATION_ID,
+                    createNotification());
+        }
+    };
+
+    private final LocationObserver.DefaultListener mLocationListener =
+            new LocationObserver.DefaultListener() {
+                @Override
+                public void onLocationChanged(@Nullable Location location) {
+                    if (location == null) return;
+                    GnssDataAdapter.fromLocation(location, mFix);
+                    mCampaign.onLocation(mFix);
+                }
+
+                @Override
+                public void onFirstFix(int ttffMillis) {
+                    super.onFirstFix(ttffMillis);
+                    mCampaign.onFirstFix(ttffMillis);
+                }
+            };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mHandler = new Handler(getMainLooper());
+        // Callbacks on the main thread, same as the timer
+        mLocationObserver = new LocationObserver(this, mLocationListener, getMainExecutor());
+        mCampaign = new TtffCampaign(mHost, mCampaignListener);
+        mWakeLock = getSystemService(PowerManager.class)
+                .newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String action = intent != null ? intent.getAction() : null;
+        Log.d(TAG, String.format("onStartCommand(%d) action: %s running: %s", startId, action,
+                mCampaign.isRunning()));
+        if (Intent.ACTION_DELETE.equals(action)) {
+            if (mCampaign.isRunning()) {
+                mCampaign.cancel();
+            } else {
+                stopSelf();
+            }
+        } else if (!mCampaign.isRunning() && intent != null) {
+            doStart(intent);
+        }
+        return START_NOT_STICKY;
+    }
+
+    private void doStart(@NonNull Intent intent) {
+        mPreset = intent.getStringExtra(EXTRA_PRESET);
+        if (mPreset == null) mPreset = PRESET_COLD;
+        mCampaign.setIterations(Math.max(1, intent.getIntExtra(EXTRA_ITERATIONS,
+                DEFAULT_ITERATIONS)));
+        mCampaign.setAidingData(getAidingData(mPreset));
+        mCampaign.setSingle(intent.getBooleanExtra(EXTRA_SINGLE, false));
+        mQuality = intent.getIntExtra(EXTRA_QUALITY, LocationRequest.QUALITY_HIGH_ACCURACY);
+        mCampaign.setSettleMillis(LocationObserver.DEL_AD_DELAY_MS);
+        mCampaign.setTimeoutMillis(intent.getIntExtra(EXTRA_TIMEOUT_S,
+                (int) (TtffCampaign.DEFAULT_TIMEOUT_MILLIS / 1000)) * 1000L);
+        mCampaign.setCoolDownMillis(intent.getIntExtra(EXTRA_COOL_DOWN_S,
+                (int) (TtffCampaign.DEFAULT_COOL_DOWN_MILLIS / 1000)) * 1000L);
+
+        NotificationManager nm = getSystemService(NotificationManager.class);
+        if (nm.getNotificationChannel(CHANNEL_ID) == null) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Services",
+                    NotificationManager.IMPORTANCE_HIGH);
+            nm.createNotificationChannel(channel);
+        }
+        // Required within seconds of startForegroundService(), even if we stop right after.
+        // Since API 34 the location type throws SecurityException without the permission.
+        boolean permitted = HelperUtils.checkPermissions(this, LocationObserver.permissions);
+        startForeground(NOTIFICATION_ID, createNotification(),
+                permitted || Build.VERSION.SDK_INT < Build.VERSION_CODES.UPSIDE_DOWN_CAKE
+                        ? ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION
+                        : ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+
+        if (!permitted || mLocationObserver.isProviderUnavailable(LocationManager.GPS_PROVIDER)) {
+            Toast.makeText(this, "GPS provider or location permission unavailable",
+                    Toast.LENGTH_SHORT).show();
+            doStop();
+            return;
+        }
+        openCsv();
+        mWakeLock.acquire();
+        Log.i(TAG, String.format(Locale.ROOT, "doStart(%s x %d, single: %s) -> %s", mPreset,
+                mCampaign.getIterations(), mCampaign.isSingle(), mCsvFile));
+        mCampaign.start();
+    }
+
+    private void doStop() {
+        Log.d(TAG, "doStop " + mCampaign.getState());
+        mHandler.removeCallbacks(mTimer);
+        closeCsv();
+        if (mWakeLock.isHeld()) {
+            mWakeLock.release();
+        }
+        // Leaves the final summary in the notification shade
+        stopForeground(STOP_FOREGROUND_DETACH);
+        getSystemService(NotificationManager.class).notify(NOTIFICATION_ID,
+                createNotification());
+        stopSelf();
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mCampaign.isRunning()) {
+            mCampaign.cancel();
+        }
+        mHandler.removeCallbacksAndMessages(null);
+        closeCsv();
+        if (mWakeLock.isHeld()) {
+            mWakeLock.release();
+        }
+        super.onDestroy();
+    }
+
+    @NonNull
+    public static String[] getAidingData(@NonNull String preset) {
+        return switch (preset) {
+            case PRESET_WARM -> LocationObserver.AIDING_DATA_PRESET_WARM;
+            case PRESET_HOT -> new String[0];
+            default -> LocationObserver.AIDING_DATA_PRESET_COLD;
+        };
+    }
+
+    private void setLocationOptions(boolean single) {
+        mLocationObserver.setLocationOptions(LocationManager.GPS_PROVIDER,
+                single ? LocationObserver.LocationMode.SINGLE : LocationObserver.LocationMode.TRACK,
+                mQuality);
+    }
+
+    private void openCsv() {
+        File dir = new File(getExternalFilesDir(null), CAMPAIGNS_DIR);
+        String name = String.format(Locale.ROOT, "ttff_%s_%s.csv", mPreset,
+                new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.ROOT).format(new Date()));
+        try {
+            Files.createDirectories(dir.toPath());
+            mCsvFile = new File(dir, name);
+            mCsv = Files.newBufferedWriter(mCsvFile.toPath(), StandardCharsets.UTF_8);
+            mCsv.write(TtffCampaign.CSV_HEADER);
+            mCsv.newLine();
+            mCsv.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "openCsv " + name, e);
+            closeCsv();
+        }
+    }
+
+    private void writeCsv(@NonNull String line) {
+        if (mCsv == null) return;
+        try {
+            mCsv.write(line);
+            mCsv.newLine();
+            mCsv.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "writeCsv", e);
+        }
+    }
+
+    private void closeCsv() {
+        if (mCsv == null) return;
+        try {
+            mCsv.close();
+        } catch (IOException e) {
+            Log.e(TAG, "closeCsv", e);
+        }
+        mCsv = null;
+    }
+
+    @NonNull
+    private String getSummary() {
+        var stats = mCampaign.getStatistics();
+        return String.format(Locale.getDefault(), "TTFF p50: %s s, p95: %s s, timeouts: %d",
+                format(stats.getTtff50Seconds()), format(stats.getTtff95Seconds()),
+                mCampaign.getTimeoutCount());
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? FixFormat.EMPTY_TEXT
+                : String.format(Locale.getDefault(), "%.1f", value);
+    }
+
+    private Notification createNotification() {
+        Intent stopIntent = new Intent(this, TtffCampaignService.class);
+        stopIntent.setAction(Intent.ACTION_DELETE);
+        PendingIntent stopPi = PendingIntent.getForegroundService(this, 0,
+                stopIntent, PendingIntent.FLAG_IMMUTABLE);
+
+        var builder = new Notification.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_app_fg)
+                .setContentTitle(String.format(Locale.getDefault(), "TTFF campaign (%s) %d/%d%s",
+                        mPreset, mCampaign.getIteration(), mCampaign.getIterations(),
+                        mCampaign.isRunning() ? "" : " " + mCampaign.getState()))
+                .setContentText(getSummary())
+                .setSubText(mCsvFile != null ? mCsvFile.getName() : null)
+                .setCategory(Notification.CATEGORY_STATUS)
+                .setOnlyAlertOnce(true);
+        if (mCampaign.isRunning()) {
+            builder.addAction(new Notification.Action.Builder(null, "Stop", stopPi).build());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
@@ -0,0 +1,165 @@
+package pos.modetest.data;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssMeasurementsEvent;
+import android.location.GnssNavigationMessage;
+import android.location.GnssStatus;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.observers.LocationObserver;
+
+/**
+ * Converts between framework location types and the :gnss-core value types.
+ * <p>
+ * The from* methods refill the given holder, so one holder can be reused per stream.
+ */
+public class GnssDataAdapter {
+    private GnssDataAdapter() {
+    }
+
+    public static void fromLocation(@NonNull Location location, @NonNull FixData fix) {
+        fix.clear();
+        fix.setProvider(location.getProvider());
+        fix.setTimeMillis(location.getTime());
+        fix.setElapsedRealtimeNanos(location.getElapsedRealtimeNanos());
+        fix.setLatitude(location.getLatitude());
+        fix.setLongitude(location.getLongitude());
+        if (location.hasAltitude()) fix.setAltitude(location.getAltitude());
+        if (location.hasSpeed()) fix.setSpeed(location.getSpeed());
+        if (location.hasBearing()) fix.setBearing(location.getBearing());
+        if (location.hasAccuracy()) fix.setAccuracy(location.getAccuracy());
+        if (location.hasVerticalAccuracy()) {
+            fix.setVerticalAccuracy(location.getVerticalAccuracyMeters());
+        }
+        if (location.hasSpeedAccuracy()) {
+            fix.setSpeedAccuracy(location.getSpeedAccuracyMetersPerSecond());
+        }
+        if (location.hasBearingAccuracy()) {
+            fix.setBearingAccuracy(location.getBearingAccuracyDegrees());
+        }
+    }
+
+    @NonNull
+    public static Location toLocation(@NonNull FixData fix) {
+        Location location = new Location(fix.getProvider());
+        location.setTime(fix.getTimeMillis());
+        location.setElapsedRealtimeNanos(fix.getElapsedRealtimeNanos());
+        location.setLatitude(fix.getLatitude());
+        location.setLongitude(fix.getLongitude());
+        if (!Double.isNaN(fix.getAltitude())) location.setAltitude(fix.getAltitude());
+        if (!Float.isNaN(fix.getSpeed())) location.setSpeed(fix.getSpeed());
+        if (!Float.isNaN(fix.getBearing())) location.setBearing(fix.getBearing());
+        if (!Float.isNaN(fix.getAccuracy())) location.setAccuracy(fix.getAccuracy());
+        if (!Float.isNaN(fix.getVerticalAccuracy())) {
+            location.setVerticalAccuracyMeters(fix.getVerticalAccuracy());
+        }
+        if (!Float.isNaN(fix.getSpeedAccuracy())) {
+            location.setSpeedAccuracyMetersPerSecond(fix.getSpeedAccuracy());
+        }
+        if (!Float.isNaN(fix.getBearingAccuracy())) {
+            location.setBearingAccuracyDegrees(fix.getBearingAccuracy());
+        }
+        return location;
+    }
+
+    public static void fromStatus(@NonNull GnssStatus status, @NonNull SatelliteData sats) {
+        sats.clear();
+        for (int i = 0; i < status.getSatelliteCount(); i++) {
+            int flags = (status.usedInFix(i) ? SatelliteData.FLAG_USED_IN_FIX : 0)
+                    | (status.hasEphemerisData(i) ? SatelliteData.FLAG_HAS_EPHEMERIS : 0)
+                    | (status.hasAlmanacData(i) ? SatelliteData.FLAG_HAS_ALMANAC : 0);
+            sats.add(status.getConstellationType(i), status.getSvid(i), flags,
+                    status.getCn0DbHz(i),
+                    status.getElevationDegrees(i),
+                    status.getAzimuthDegrees(i),
+                    status.hasCarrierFrequencyHz(i)
+                            ? status.getCarrierFrequencyHz(i) : Float.NaN,
+                    status.hasBasebandCn0DbHz(i)
+                            ? status.getBasebandCn0DbHz(i) : Float.NaN);
+        }
+    }
+
+    @NonNull
+    public static GnssStatus toStatus(@NonNull SatelliteData sats) {
+        var builder = new GnssStatus.Builder();
+        for (int i = 0; i < sats.getCount(); i++) {
+            int flags = sats.getFlags(i);
+            float carrier = sats.getCarrierFrequencyHz(i);
+            float baseband = sats.getBasebandCn0DbHz(i);
+            builder.addSatellite(sats.getConstellation(i), sats.getSvid(i),
+                    sats.getCn0DbHz(i), sats.getElevationDegrees(i), sats.getAzimuthDegrees(i),
+                    (flags & SatelliteData.FLAG_HAS_EPHEMERIS) != 0,
+                    (flags & SatelliteData.FLAG_HAS_ALMANAC) != 0,
+                    (flags & SatelliteData.FLAG_USED_IN_FIX) != 0,
+                    !Float.isNaN(carrier), Float.isNaN(carrier) ? 0 : carrier,
+                    !Float.isNaN(baseband), Float.isNaN(baseband) ? 0 : baseband);
+        }
+        return builder.build();
+    }
+
+    public static void fromMeasurements(@NonNull GnssMeasurementsEvent event,
+                                        @NonNull MeasurementData data) {
+        GnssClock clock = event.getClock();
+        data.clear();
+        data.setTimeNanos(clock.getTimeNanos());
+        if (clock.hasFullBiasNanos()) data.setFullBiasNanos(clock.getFullBiasNanos());
+        if (clock.hasBiasNanos()) data.setBiasNanos(clock.getBiasNanos());
+        if (clock.hasBiasUncertaintyNanos()) {
+            data.setBiasUncertaintyNanos(clock.getBiasUncertaintyNanos());
+        }
+        if (clock.hasDriftNanosPerSecond()) {
+            data.setDriftNanosPerSecond(clock.getDriftNanosPerSecond());
+        }
+        if (clock.hasDriftUncertaintyNanosPerSecond()) {
+            data.setDriftUncertaintyNanosPerSecond(clock.getDriftUncertaintyNanosPerSecond());
+        }
+        if (clock.hasLeapSecond()) data.setLeapSecond(clock.getLeapSecond());
+        data.setHardwareClockDiscontinuityCount(clock.getHardwareClockDiscontinuityCount());
+        if (clock.hasElapsedRealtimeNanos()) {
+            data.setElapsedRealtimeNanos(clock.getElapsedRealtimeNanos());
+        }
+        data.setFullTracking(LocationObserver.getFullTracking(event));
+        for (GnssMeasurement m : event.getMeasurements()) {
+            int i = data.add(m.getConstellationType(), m.getSvid());
+            data.setState(i, m.getState());
+            data.setTimeOffsetNanos(i, m.getTimeOffsetNanos());
+            data.setReceivedSvTimeNanos(i, m.getReceivedSvTimeNanos());
+            data.setReceivedSvTimeUncertaintyNanos(i, m.getReceivedSvTimeUncertaintyNanos());
+            data.setCn0DbHz(i, m.getCn0DbHz());
+            data.setPseudorangeRateMetersPerSecond(i, m.getPseudorangeRateMetersPerSecond());
+            data.setPseudorangeRateUncertaintyMetersPerSecond(i,
+                    m.getPseudorangeRateUncertaintyMetersPerSecond());
+            data.setAccumulatedDeltaRangeState(i, m.getAccumulatedDeltaRangeState());
+            data.setAccumulatedDeltaRangeMeters(i, m.getAccumulatedDeltaRangeMeters());
+            data.setAccumulatedDeltaRangeUncertaintyMeters(i,
+                    m.getAccumulatedDeltaRangeUncertaintyMeters());
+            data.setMultipathIndicator(i, m.getMultipathIndicator());
+            if (m.hasCarrierFrequencyHz()) {
+                data.setCarrierFrequencyHz(i, m.getCarrierFrequencyHz());
+            }
+            if (m.hasBasebandCn0DbHz()) {
+                data.setBasebandCn0DbHz(i, m.getBasebandCn0DbHz());
+            }
+            //noinspection deprecation
+            if (m.hasAutomaticGainControlLevelDb()) {
+                //noinspection deprecation
+                data.setAutomaticGainControlLevelDb(i, m.getAutomaticGainControlLevelDb());
+            }
+        }
+    }
+
+    public static void fromNavigationMessage(@NonNull GnssNavigationMessage message,
+                                             @NonNull NavMessageData msg) {
+        msg.set(message.getType(), message.getSvid(), message.getMessageId(),
+                message.getSubmessageId(), message.getStatus());
+        byte[] data = message.getData();
+        msg.setData(data, data.length);
+    }
+}
@@ -9,8 +9,9 @@ import androidx.annotation.NonNull;
 import java.util.Locale;
 
 import pos.modetest.R;
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.GnssBand;
 import pos.modetest.utils.Constants;
-import pos.modetest.utils.HelperUtils;
 
 public class GnssSvStatusHolder {
     @NonNull
@@ -18,10 +19,6 @@ public class GnssSvStatusHolder {
     private final int mSvId;
     private final Resources mResources;
 
-    private static final int PRN_OFFSET_QXDM_GLONASS = 64;
-    private static final int PRN_OFFSET_QXDM_BEIDOU = 200;
-    private static final int PRN_OFFSET_QXDM_GALILEO = 300;
-
     public GnssSvStatusHolder(@NonNull Context context, @NonNull GnssStatus svStatus, int svId) {
         mSvStatus = svStatus;
         mSvId = svId;
@@ -43,15 +40,8 @@ public class GnssSvStatusHolder {
     }
 
     public String getPrn() {
-        int prn = mSvStatus.getSvid(mSvId);
-        // noinspection SwitchIntDef
-        prn += switch (mSvStatus.getConstellationType(mSvId)) {
-            case GnssStatus.CONSTELLATION_BEIDOU -> PRN_OFFSET_QXDM_BEIDOU;
-            case GnssStatus.CONSTELLATION_GALILEO -> PRN_OFFSET_QXDM_GALILEO;
-            case GnssStatus.CONSTELLATION_GLONASS -> PRN_OFFSET_QXDM_GLONASS;
-            default -> 0;
-        };
-        return String.valueOf(prn);
+        return String.valueOf(Constellation.getQxdmPrn(mSvStatus.getConstellationType(mSvId),
+                mSvStatus.getSvid(mSvId)));
     }
 
     public String getCNRatio() {
@@ -62,98 +52,11 @@ public class GnssSvStatusHolder {
 
     public String getFrequency() {
         if (!mSvStatus.hasCarrierFrequencyHz(mSvId)) return Constants.EMPTY_TEXT_1C;
-        final double MHZ = 1_000_000d;
-        double freqMHz = mSvStatus.getCarrierFrequencyHz(mSvId) / MHZ;
-        int type = mSvStatus.getConstellationType(mSvId);
-        // noinspection SwitchIntDef
-        String sig = switch (type) {
-            case GnssStatus.CONSTELLATION_GPS -> {
-                if (HelperUtils.checkFreqBand(freqMHz, 1575.42, 1d)) {
-                    yield "L1";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1227.60, 1d)) {
-                    yield "L2";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1176.45, 1d)) {
-                    yield "L5";
-                } else {
-                    yield null;
-                }
-            }
-            case GnssStatus.CONSTELLATION_GLONASS -> {
-                if (HelperUtils.checkFreqBand(freqMHz, 1598.0625, 1607.0625, 0.1d)) {
-                    yield "L1";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1242.9375, 1249.9375, 0.1d)) {
-                    yield "L2";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1201.743, 1208.511, 0.1d)) {
-                    yield "L3";
-                } else {
-                    yield null;
-                }
-            }
-            case GnssStatus.CONSTELLATION_GALILEO -> {
-                if (HelperUtils.checkFreqBand(freqMHz, 1575.42, 1d)) {
-                    yield "E1";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1278.75, 1d)) {
-                    yield "E6";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1191.795, 1d)) {
-                    yield "E5";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1176.45, 1d)) {
-                    yield "E5a";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1207.14, 1d)) {
-                    yield "E5b";
-                } else {
-                    yield null;
-                }
-            }
-            case GnssStatus.CONSTELLATION_BEIDOU -> {
-                if (HelperUtils.checkFreqBand(freqMHz, 1561.098, 1d)) {
-                    yield "B1I";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1575.42, 1d)) {
-                    yield "B1C";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1176.45, 1d)) {
-                    yield "B2a";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1207.14, 1d)) {
-                    yield "B2b";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1268.52, 1d)) {
-                    yield "B3";
-                } else {
-                    yield null;
-                }
-            }
-            case GnssStatus.CONSTELLATION_QZSS -> {
-                if (HelperUtils.checkFreqBand(freqMHz, 1575.42, 1d)) {
-                    yield "L1";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1227.6, 1d)) {
-                    yield "L2";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1176.45, 1d)) {
-                    yield "L5";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1278.75, 1d)) {
-                    yield "L6";
-                } else {
-                    yield null;
-                }
-            }
-            case GnssStatus.CONSTELLATION_IRNSS -> {
-                if (HelperUtils.checkFreqBand(freqMHz, 1176.45, 1d)) {
-                    yield "L5";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 2492.028, 1d)) {
-                    yield "S";
-                } else {
-                    yield null;
-                }
-            }
-            case GnssStatus.CONSTELLATION_SBAS -> {
-                if (HelperUtils.checkFreqBand(freqMHz, 1575.42, 1d)) {
-                    yield "L1";
-                } else if (HelperUtils.checkFreqBand(freqMHz, 1176.45, 1d)) {
-                    yield "L5";
-                } else {
-                    yield null;
-                }
-            }
-            default -> null;
-        };
+        double freqHz = mSvStatus.getCarrierFrequencyHz(mSvId);
+        GnssBand band = GnssBand.classify(mSvStatus.getConstellationType(mSvId), freqHz);
+        String sig = band.getLabel();
         return sig != null ? sig
-                : String.format(Locale.getDefault(), "%.03f", freqMHz/1000);
+                : String.format(Locale.getDefault(), "%.03f", freqHz / 1_000_000_000d);
     }
 
     public String getFlags() {
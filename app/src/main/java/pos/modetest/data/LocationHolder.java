@@ -8,9 +8,9 @@ import android.os.SystemClock;
 
 import androidx.annotation.Nullable;
 
-import java.util.Locale;
-
-import pos.modetest.utils.FormatUtils;
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.FixFormat;
+import pos.modetest.core.utils.FormatUtils;
 
 public class LocationHolder {
 
@@ -18,6 +18,7 @@ public class LocationHolder {
     private Location mLocation;
     @Nullable
     private Long mSysElapsedRealTime;
+    private final FixData mFix = new FixData();
 
     public LocationHolder(Location location) {
         setLocation(location);
@@ -26,6 +27,9 @@ public class LocationHolder {
     public void setLocation(@Nullable Location location) {
         mLocation = location;
         mSysElapsedRealTime = location == null ? null : SystemClock.elapsedRealtimeNanos();
+        if (location != null) {
+            GnssDataAdapter.fromLocation(location, mFix);
+        }
     }
 
     public Location getLocation() {
@@ -34,27 +38,27 @@ public class LocationHolder {
 
     public String getLatitude() {
         if (mLocation == null) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.08f", mLocation.getLatitude());
+        return FixFormat.formatLatitude(mFix);
     }
 
     public String getLongitude() {
         if (mLocation == null) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.08f", mLocation.getLongitude());
+        return FixFormat.formatLongitude(mFix);
     }
 
     public String getAltitude() {
-        if (mLocation == null || !mLocation.hasAltitude()) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.02f", mLocation.getAltitude());
+        if (mLocation == null) return EMPTY_TEXT_3C;
+        return FixFormat.formatAltitude(mFix);
     }
 
     public String getAccuracy() {
-        if (mLocation == null || !mLocation.hasAccuracy()) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.04f", mLocation.getAccuracy());
+        if (mLocation == null) return EMPTY_TEXT_3C;
+        return FixFormat.formatAccuracy(mFix);
     }
 
     public String getVerticalAccuracy() {
-        if (mLocation == null || !mLocation.hasVerticalAccuracy()) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.04f", mLocation.getVerticalAccuracyMeters());
+        if (mLocation == null) return EMPTY_TEXT_3C;
+        return FixFormat.formatVerticalAccuracy(mFix);
     }
 
     public String getProvider() {
@@ -75,26 +79,23 @@ public class LocationHolder {
     }
 
     public String getSpeed() {
-        if (mLocation == null || !mLocation.hasSpeed()) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.04f",
-                mLocation.getSpeed());
+        if (mLocation == null) return EMPTY_TEXT_3C;
+        return FixFormat.formatSpeed(mFix);
     }
 
     public String getBearing() {
-        if (mLocation == null || !mLocation.hasBearing()) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.02f",
-                mLocation.getBearing());
+        if (mLocation == null) return EMPTY_TEXT_3C;
+        return FixFormat.formatBearing(mFix);
     }
 
     public String getBearingAccuracy() {
-        if (mLocation == null || !mLocation.hasBearingAccuracy()) return EMPTY_TEXT_3C;
-        return String.format(Locale.getDefault(), "%.02f",
-                mLocation.getBearingAccuracyDegrees());
+        if (mLocation == null) return EMPTY_TEXT_3C;
+        return FixFormat.formatBearingAccuracy(mFix);
     }
 
     public String getRealTime() {
         if (mLocation == null) return EMPTY_TEXT_3C;
-        return FormatUtils.formatTimeDurationNanos(mLocation.getElapsedRealtimeNanos());
+        return FixFormat.formatRealTime(mFix);
     }
 
     public String getSysRealTime() {
@@ -104,6 +105,6 @@ public class LocationHolder {
 
     public String getTime() {
         if (mLocation == null) return EMPTY_TEXT_3C;
-        return FormatUtils.formatDateTime(mLocation.getTime());
+        return FixFormat.formatTime(mFix);
     }
 }
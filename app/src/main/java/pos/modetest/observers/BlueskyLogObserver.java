@@ -12,6 +12,11 @@ public class BlueskyLogObserver extends LogObserver implements IObserver {
     private static final String RGX_ENV_BEARING = ".*hasEnvironmentBearing.*";
     private static final String RGX_BLUESKY = ".*(Bluesky(Manager|Registrant)|GCoreFlp):.*";
 
+    // Index in the filter list
+    private static final int CATEGORY_LMS = 0;
+    private static final int CATEGORY_ENV_BEARING = 1;
+    private static final int CATEGORY_BLUESKY = 2;
+
     public static final String[] permissions = LogObserver.permissions;
 
     private final Listener mListener;
@@ -37,13 +42,14 @@ public class BlueskyLogObserver extends LogObserver implements IObserver {
     }
 
     @Override
-    public void onLogEvent(String logLine) {
-        if (logLine.matches(RGX_LMS)) {
-            mExecutor.execute(() -> mListener.onLocationManagerServiceLogEvent(logLine));
-        } else if (logLine.matches(RGX_ENV_BEARING)) {
-            mExecutor.execute(() -> mListener.onEnvBearingLogEvent(logLine));
-        } else if (logLine.matches(RGX_BLUESKY)) {
-            mExecutor.execute(() -> mListener.onBlueskyLogEvent(logLine));
+    public void onLogEvent(int category, String logLine) {
+        switch (category) {
+            case CATEGORY_LMS ->
+                    mExecutor.execute(() -> mListener.onLocationManagerServiceLogEvent(logLine));
+            case CATEGORY_ENV_BEARING ->
+                    mExecutor.execute(() -> mListener.onEnvBearingLogEvent(logLine));
+            case CATEGORY_BLUESKY ->
+                    mExecutor.execute(() -> mListener.onBlueskyLogEvent(logLine));
         }
     }
 
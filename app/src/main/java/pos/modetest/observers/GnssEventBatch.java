@@ -0,0 +1,146 @@
+package pos.modetest.observers;
+
+import android.location.GnssMeasurementsEvent;
+import android.location.GnssNavigationMessage;
+import android.location.GnssStatus;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GNSS events gathered by {@link LocationObserver} between two batch deliveries.
+ * <p>
+ * Instances are reused, the batch is only valid inside
+ * {@link LocationObserver.Listener#onGnssBatch(GnssEventBatch)} and must not be kept.
+ * The arrival order of the events is kept for {@link #dispatch}.
+ */
+public class GnssEventBatch {
+    private static final byte KIND_SUPERSEDED = 0;
+    private static final byte KIND_LOCATION = 1;
+    private static final byte KIND_STATUS = 2;
+    private static final byte KIND_MEASUREMENTS = 3;
+    private static final byte KIND_NAVIGATION_MESSAGE = 4;
+
+    private final List<Location> mLocations = new ArrayList<>();
+    private final List<GnssMeasurementsEvent> mMeasurements = new ArrayList<>();
+    private final List<GnssNavigationMessage> mNavigationMessages = new ArrayList<>();
+    private final List<Location> mLocationsView = Collections.unmodifiableList(mLocations);
+    private final List<GnssMeasurementsEvent> mMeasurementsView =
+            Collections.unmodifiableList(mMeasurements);
+    private final List<GnssNavigationMessage> mNavigationMessagesView =
+            Collections.unmodifiableList(mNavigationMessages);
+
+    // Kind of each event in arrival order, grown once to the largest batch
+    private byte[] mOrder = new byte[64];
+    private int mOrderCount;
+    private int mStatusPosition = -1;
+
+    @Nullable
+    private GnssStatus mStatus;
+    private int mCoalescedStatusCount;
+
+    void addLocation(@NonNull Location location) {
+        mLocations.add(location);
+        append(KIND_LOCATION);
+    }
+
+    /** Replaces the previous status, only the latest snapshot is delivered, where it arrived */
+    void setStatus(@NonNull GnssStatus status) {
+        if (mStatus != null) {
+            mCoalescedStatusCount++;
+            mOrder[mStatusPosition] = KIND_SUPERSEDED;
+        }
+        mStatus = status;
+        mStatusPosition = mOrderCount;
+        append(KIND_STATUS);
+    }
+
+    void addMeasurements(@NonNull GnssMeasurementsEvent event) {
+        mMeasurements.add(event);
+        append(KIND_MEASUREMENTS);
+    }
+
+    void addNavigationMessage(@NonNull GnssNavigationMessage message) {
+        mNavigationMessages.add(message);
+        append(KIND_NAVIGATION_MESSAGE);
+    }
+
+    private void append(byte kind) {
+        if (mOrderCount == mOrder.length) {
+            mOrder = Arrays.copyOf(mOrder, mOrderCount * 2);
+        }
+        mOrder[mOrderCount++] = kind;
+    }
+
+    void clear() {
+        mLocations.clear();
+        mMeasurements.clear();
+        mNavigationMessages.clear();
+        mOrderCount = 0;
+        mStatusPosition = -1;
+        mStatus = null;
+        mCoalescedStatusCount = 0;
+    }
+
+    /**
+     * Calls the single event methods of the listener in arrival order. Superseded statuses are
+     * skipped, the latest one is delivered at the position it arrived.
+     */
+    public void dispatch(@NonNull LocationObserver.Listener listener) {
+        int location = 0;
+        int measurements = 0;
+        int message = 0;
+        for (int i = 0; i < mOrderCount; i++) {
+            switch (mOrder[i]) {
+                case KIND_LOCATION -> listener.onLocationChanged(mLocations.get(location++));
+                case KIND_STATUS -> listener.onSatelliteStatusChanged(mStatus);
+                case KIND_MEASUREMENTS ->
+                        listener.onGnssMeasurementsReceived(mMeasurements.get(measurements++));
+                case KIND_NAVIGATION_MESSAGE -> listener.onGnssNavigationMessageReceived(
+                        mNavigationMessages.get(message++));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return getEventCount() == 0;
+    }
+
+    /** Number of callbacks gathered, including superseded statuses */
+    public int getEventCount() {
+        return mLocations.size() + mMeasurements.size() + mNavigationMessages.size()
+                + (mStatus != null ? 1 + mCoalescedStatusCount : 0);
+    }
+
+    /** Latest status, null if none was reported */
+    @Nullable
+    public GnssStatus getStatus() {
+        return mStatus;
+    }
+
+    /** Number of statuses dropped in favor of a newer one */
+    public int getCoalescedStatusCount() {
+        return mCoalescedStatusCount;
+    }
+
+    @NonNull
+    public List<Location> getLocations() {
+        return mLocationsView;
+    }
+
+    @NonNull
+    public List<GnssMeasurementsEvent> getMeasurements() {
+        return mMeasurementsView;
+    }
+
+    @NonNull
+    public List<GnssNavigationMessage> getNavigationMessages() {
+        return mNavigationMessagesView;
+    }
+}
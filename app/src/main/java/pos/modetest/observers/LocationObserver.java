@@ -28,6 +28,7 @@ import androidx.annotation.RequiresApi;
 import androidx.annotation.RequiresPermission;
 import androidx.core.content.ContextCompat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -35,16 +36,27 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import pos.modetest.core.data.MeasurementEpochStats;
 
 public class LocationObserver implements IObserver {
     public static final String TAG = TAG_PREFIX + "LocObs";
     public static final int DEL_AD_DELAY_MS = 5000;
+    public static final long BATCH_DISABLED = -1;
+    public static final long BATCH_PER_EPOCH = 0;
+    // Per-epoch batches are flushed regardless once they get this old or this big
+    private static final long BATCH_MAX_AGE_MS = 2000;
+    private static final int BATCH_MAX_EVENTS = 256;
 
     private final Context mContext;
     private final LocationManager lm;
 
     private final Listener mListener;
-    private final Executor mObserverExecutor;
+    private final ScheduledExecutorService mObserverExecutor;
     private final Executor mExecutor;
 
     // Must match with R.array.pos_qualities
@@ -58,6 +70,21 @@ public class LocationObserver implements IObserver {
     private LocationMode mMode;
     private int mQuality;
     private boolean mForceFullTrack;
+    private long mBatchIntervalMs = BATCH_DISABLED;
+
+    // Batched delivery, batches are filled on the observer thread only
+    private volatile long mActiveBatchIntervalMs = BATCH_DISABLED;
+    private GnssEventBatch mFillingBatch = new GnssEventBatch();
+    private GnssEventBatch mDeliveredBatch = new GnssEventBatch();
+    private final AtomicBoolean mBatchInFlight = new AtomicBoolean(false);
+    private volatile boolean mBatchFlushPending;
+    @Nullable
+    private ScheduledFuture<?> mBatchFlushFuture;
+    private boolean mMeasurementsReceived;
+    // Unbatched callbacks held back until the batch queued before them is handed over
+    private final List<Runnable> mAfterBatch = new ArrayList<>();
+    private final Runnable mFlushBatch = this::flushBatch;
+    private final Runnable mDeliverBatch = this::deliverBatch;
 
     private static final String DELETE_AIDING_DATA_COMMAND = "delete_aiding_data";
     public static final String[] AIDING_DATA_OPTS = new String[]{
@@ -95,7 +122,13 @@ public class LocationObserver implements IObserver {
 
         @Override
         public void onLocationChanged(@Nullable Location location) {
-            mExecutor.execute(() -> mListener.onLocationChanged(location));
+            if (location != null && isBatching()) {
+                mFillingBatch.addLocation(location);
+                // Fixes close the epoch, one after the measurements would wait a whole epoch
+                onBatchEvent(true);
+                return;
+            }
+            dispatchAfterBatch(() -> mListener.onLocationChanged(location));
         }
 
         private void onProvidersChanged() {
@@ -104,7 +137,7 @@ public class LocationObserver implements IObserver {
                     mLastEnabledProviders.equals(new HashSet<>(providers)))) {
                 mLastEnabledProviders.clear();
                 mLastEnabledProviders.addAll(providers);
-                mExecutor.execute(() -> mListener.onProvidersChanged(providers));
+                dispatchAfterBatch(() -> mListener.onProvidersChanged(providers));
             }
         }
 
@@ -124,7 +157,7 @@ public class LocationObserver implements IObserver {
         @RequiresPermission(anyOf = {Manifest.permission.ACCESS_COARSE_LOCATION,
                 Manifest.permission.ACCESS_FINE_LOCATION})
         public void onStarted() {
-            mExecutor.execute(mListener::onGnssStarted);
+            dispatchAfterBatch(mListener::onGnssStarted);
           // Call after location request triggers engine start. SUPL wasn't triggered otherwise.
             GnssMeasurementRequest request = (new GnssMeasurementRequest.Builder())
                     .setFullTracking(mForceFullTrack)
@@ -135,16 +168,22 @@ public class LocationObserver implements IObserver {
 
         @Override
         public void onStopped() {
-            mExecutor.execute(mListener::onGnssStopped);
+            dispatchAfterBatch(mListener::onGnssStopped);
         }
 
         @Override
         public void onFirstFix(int ttffMillis) {
-            mExecutor.execute(() -> mListener.onFirstFix(ttffMillis));
+            dispatchAfterBatch(() -> mListener.onFirstFix(ttffMillis));
         }
 
         @Override
         public void onSatelliteStatusChanged(@NonNull GnssStatus status) {
+            if (isBatching()) {
+                mFillingBatch.setStatus(status);
+                // Without measurements the status closes the epoch, e.g. before the first fix
+                onBatchEvent(!mMeasurementsReceived);
+                return;
+            }
             mExecutor.execute(() -> mListener.onSatelliteStatusChanged(status));
         }
     };
@@ -158,7 +197,13 @@ public class LocationObserver implements IObserver {
             boolean isFullTracking = getFullTracking(eventArgs);
             if (isFullTracking != isFullTrackingLast) {
                 isFullTrackingLast = isFullTracking;
-                mExecutor.execute(() -> mListener.onGnssFullTrackingChanged(isFullTracking));
+                dispatchAfterBatch(() -> mListener.onGnssFullTrackingChanged(isFullTracking));
+            }
+            if (isBatching()) {
+                mMeasurementsReceived = true;
+                mFillingBatch.addMeasurements(eventArgs);
+                onBatchEvent(true);
+                return;
             }
             mExecutor.execute(() -> mListener.onGnssMeasurementsReceived(eventArgs));
         }
@@ -168,6 +213,11 @@ public class LocationObserver implements IObserver {
             new GnssNavigationMessage.Callback() {
         @Override
         public void onGnssNavigationMessageReceived(GnssNavigationMessage message) {
+            if (isBatching()) {
+                mFillingBatch.addNavigationMessage(message);
+                onBatchEvent(false);
+                return;
+            }
             mExecutor.execute(() -> mListener.onGnssNavigationMessageReceived(message));
         }
     };
@@ -179,13 +229,13 @@ public class LocationObserver implements IObserver {
             if (action == null) return;
             switch (action) {
                 case LocationManager.ACTION_GNSS_CAPABILITIES_CHANGED -> mObserverExecutor.execute(() ->
-                        mExecutor.execute(() -> mListener.onGnssCapabilitiesChanged(
+                        dispatchAfterBatch(() -> mListener.onGnssCapabilitiesChanged(
                                 lm.getGnssCapabilities(),
                                 lm.getGnssHardwareModelName(),
                                 lm.getGnssYearOfHardware()
                         )));
                 case LocationManager.MODE_CHANGED_ACTION -> mObserverExecutor.execute(() ->
-                        mExecutor.execute(() ->
+                        dispatchAfterBatch(() ->
                                 mListener.onLocationModeChanged(lm.isLocationEnabled())));
                 case LocationManager.PROVIDERS_CHANGED_ACTION -> mObserverExecutor.execute(() -> {
                     String provider = intent.getStringExtra(
@@ -207,7 +257,7 @@ public class LocationObserver implements IObserver {
                             @Nullable Executor executor) {
         mContext = context;
         mListener = listener;
-        mObserverExecutor = Executors.newSingleThreadExecutor();
+        mObserverExecutor = Executors.newSingleThreadScheduledExecutor();
         mExecutor = Objects.requireNonNullElse(executor, Executors.newSingleThreadExecutor());
         lm = context.getSystemService(LocationManager.class);
 
@@ -253,6 +303,92 @@ public class LocationObserver implements IObserver {
         mForceFullTrack = enabled;
     }
 
+    /**
+     * Gathers status, measurement, navigation message and location callbacks in TRACK mode
+     * and delivers them with {@link Listener#onGnssBatch(GnssEventBatch)}.
+     * Applied on next {@link #startLocating()}.
+     *
+     * @param intervalMs {@link #BATCH_DISABLED}, {@link #BATCH_PER_EPOCH} to deliver on each
+     *                   measurement event or fix (each status until measurements arrive), or
+     *                   the delivery interval. Per epoch, fixes and unbatched callbacks are not
+     *                   delayed; a status after the measurements of its epoch waits for the
+     *                   next measurement event or fix, at most {@code BATCH_MAX_AGE_MS}.
+     */
+    public void setBatchInterval(long intervalMs) {
+        if (intervalMs < BATCH_DISABLED) {
+            throw new IllegalArgumentException("Invalid batch interval " + intervalMs);
+        }
+        mBatchIntervalMs = intervalMs;
+    }
+
+    public long getBatchInterval() {
+        return mBatchIntervalMs;
+    }
+
+    private boolean isBatching() {
+        return mActiveBatchIntervalMs != BATCH_DISABLED;
+    }
+
+    // Observer thread
+    private void onBatchEvent(boolean epochEnd) {
+        long interval = mActiveBatchIntervalMs;
+        if (interval == BATCH_PER_EPOCH) {
+            if (epochEnd || mFillingBatch.getEventCount() >= BATCH_MAX_EVENTS) {
+                flushBatch();
+                return;
+            }
+            interval = BATCH_MAX_AGE_MS;
+        }
+        if (mBatchFlushFuture == null) {
+            mBatchFlushFuture = mObserverExecutor.schedule(mFlushBatch, interval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Observer thread, keeps unbatched callbacks behind the batched events received before them
+    private void dispatchAfterBatch(Runnable callback) {
+        flushBatch();
+        if (mFillingBatch.isEmpty()) {
+            mExecutor.execute(callback);
+        } else {
+            mAfterBatch.add(callback);
+        }
+    }
+
+    // Observer thread
+    private void flushBatch() {
+        if (mBatchFlushFuture != null) {
+            mBatchFlushFuture.cancel(false);
+            mBatchFlushFuture = null;
+        }
+        mBatchFlushPending = false;
+        if (mFillingBatch.isEmpty()) return;
+        if (!mBatchInFlight.compareAndSet(false, true)) {
+            // Listener is still busy with the previous batch, flush again once it's done
+            mBatchFlushPending = true;
+            if (!mBatchInFlight.compareAndSet(false, true)) return;
+            mBatchFlushPending = false;
+        }
+        GnssEventBatch batch = mFillingBatch;
+        mFillingBatch = mDeliveredBatch;
+        mDeliveredBatch = batch;
+        mExecutor.execute(mDeliverBatch);
+        if (!mAfterBatch.isEmpty()) {
+            mAfterBatch.forEach(mExecutor::execute);
+            mAfterBatch.clear();
+        }
+    }
+
+    // Listener thread
+    private void deliverBatch() {
+        mListener.onGnssBatch(mDeliveredBatch);
+        mDeliveredBatch.clear();
+        mBatchInFlight.set(false);
+        if (mBatchFlushPending) {
+            mObserverExecutor.execute(mFlushBatch);
+        }
+    }
+
     public void deleteAidingData(String[] opts) {
         if (areOptionsInValid()) {
             throw new IllegalStateException("Options are not set");
@@ -286,7 +422,7 @@ public class LocationObserver implements IObserver {
         // initial calls
         mExecutor.execute(() -> mListener.onLocationModeChanged(lm.isLocationEnabled()));
         //noinspection DataFlowIssue
-        mExecutor.execute(() -> mLocationListener.onProviderEnabled(null));
+        mObserverExecutor.execute(() -> mLocationListener.onProviderEnabled(null));
         mExecutor.execute(() -> mListener.onGnssCapabilitiesChanged(
                 lm.getGnssCapabilities(),
                 lm.getGnssHardwareModelName(),
@@ -301,6 +437,12 @@ public class LocationObserver implements IObserver {
             throw new IllegalStateException("Options are not set");
         }
 
+        long batchIntervalMs = mMode == LocationMode.TRACK ? mBatchIntervalMs : BATCH_DISABLED;
+        mObserverExecutor.execute(() -> {
+            mMeasurementsReceived = false;
+            mActiveBatchIntervalMs = batchIntervalMs;
+        });
+
         switch (mMode) {
             case SINGLE, TRACK -> {
                 LocationRequest lr = (new LocationRequest.Builder(0))
@@ -329,6 +471,7 @@ public class LocationObserver implements IObserver {
                     lm.unregisterGnssMeasurementsCallback(mGnssMeasurementsCallback);
                     lm.unregisterGnssStatusCallback(mGnssStatusCallback);
                 }
+                mObserverExecutor.execute(mFlushBatch);
             }
             case LAST -> {
                 // Do nothing
@@ -353,21 +496,20 @@ public class LocationObserver implements IObserver {
         return true; // default
     }
 
-    public static int getMultipathSvCount(@Nullable GnssMeasurementsEvent eventArgs) {
-        if (eventArgs == null) return 0;
-        return (int) eventArgs.getMeasurements().stream()
-                .filter(m -> m.getMultipathIndicator()
-                        == GnssMeasurement.MULTIPATH_INDICATOR_DETECTED)
-                .count();
-    }
-
-    public static double getAgcAverage(@Nullable GnssMeasurementsEvent eventArgs) {
-        if (eventArgs == null) return Double.NaN;
-        var agcList = Arrays.asList(eventArgs.getMeasurements().stream()
-                .filter(GnssMeasurement::hasAutomaticGainControlLevelDb)
-                .map(GnssMeasurement::getAutomaticGainControlLevelDb)
-                .toArray(Double[]::new));
-        return agcList.stream().reduce(Double::sum).orElse(0d) / agcList.size();
+    public static void updateEpochStats(@Nullable GnssMeasurementsEvent eventArgs,
+                                        @NonNull MeasurementEpochStats stats) {
+        stats.reset();
+        if (eventArgs == null) return;
+        stats.setFullTracking(getFullTracking(eventArgs));
+        for (GnssMeasurement m : eventArgs.getMeasurements()) {
+            //noinspection deprecation
+            stats.add(m.getConstellationType(),
+                    m.hasCarrierFrequencyHz() ? m.getCarrierFrequencyHz() : Double.NaN,
+                    m.getCn0DbHz(),
+                    m.hasAutomaticGainControlLevelDb()
+                            ? m.getAutomaticGainControlLevelDb() : Double.NaN,
+                    m.getMultipathIndicator() == GnssMeasurement.MULTIPATH_INDICATOR_DETECTED);
+        }
     }
 
     public interface Listener {
@@ -382,6 +524,7 @@ public class LocationObserver implements IObserver {
         void onGnssNavigationMessageReceived(@NonNull GnssNavigationMessage message);
         void onGnssFullTrackingChanged(boolean enabled);
         void onGnssStopped();
+        void onGnssBatch(@NonNull GnssEventBatch batch);
     }
 
     public abstract static class DefaultListener implements Listener {
@@ -440,5 +583,11 @@ public class LocationObserver implements IObserver {
         public void onGnssStopped() {
             Log.d(TAG, "onGnssStopped");
         }
+
+        /** Replays the batch through the single event callbacks, in arrival order */
+        @Override
+        public void onGnssBatch(@NonNull GnssEventBatch batch) {
+            batch.dispatch(this);
+        }
     }
 }
@@ -13,6 +13,8 @@ import java.io.InputStreamReader;
 import java.util.List;
 import java.util.Objects;
 
+import pos.modetest.core.utils.LogClassifier;
+
 public abstract class LogObserver implements IObserver {
     public static final String TAG = TAG_PREFIX + "LogObs";
     public static final String BUF_DEFAULT = "default";
@@ -22,7 +24,7 @@ public abstract class LogObserver implements IObserver {
     @Nullable
     private final List<String> mExtraArgs;
     @Nullable
-    private final List<String> mFilterList;
+    private final LogClassifier mClassifier;
 
     private final Thread mReadThread;
     private CancellationSignal mCancel;
@@ -34,7 +36,7 @@ public abstract class LogObserver implements IObserver {
     public LogObserver(@Nullable String buffer, @Nullable List<String> extraArgs, @Nullable List<String> filterList) {
         mLogcatBuffer = buffer;
         mExtraArgs = extraArgs;
-        mFilterList = filterList;
+        mClassifier = filterList != null ? new LogClassifier(filterList) : null;
         mReadThread = new Thread(this::readLogcat);
         mCancel = null;
     }
@@ -59,8 +61,10 @@ public abstract class LogObserver implements IObserver {
             String line;
             while (!(mCancel != null && mCancel.isCanceled())
                     && (line = bufferedReader.readLine()) != null) {
-                if (mFilterList == null || mFilterList.stream().anyMatch(line::matches)) {
-                    onLogEvent(line);
+                int category = mClassifier != null
+                        ? mClassifier.classify(line) : LogClassifier.NO_MATCH;
+                if (mClassifier == null || category != LogClassifier.NO_MATCH) {
+                    onLogEvent(category, line);
                 }
             }
             process.destroy();
@@ -71,7 +75,11 @@ public abstract class LogObserver implements IObserver {
         Log.d(TAG, "readLogcat - exitCode : " + exitCode);
     }
 
-    public abstract void onLogEvent(String logLine);
+    /**
+     * @param category index of the first matching filter,
+     *                 {@link LogClassifier#NO_MATCH} if there is no filter list
+     */
+    public abstract void onLogEvent(int category, String logLine);
 
     @Override
     public void startObserving() {
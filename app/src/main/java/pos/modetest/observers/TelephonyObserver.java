@@ -154,49 +154,6 @@ public class TelephonyObserver implements IObserver {
         void onDataActivity(@NonNull SubscriptionInfo subInfo, int direction);
     }
 
-    @NonNull
-    public static String getNetworkTypeString(int networkType, int overrideNetworkType) {
-        return switch (networkType) {
-            case TelephonyManager.NETWORK_TYPE_GPRS -> "GPRS";
-            case TelephonyManager.NETWORK_TYPE_EDGE -> "EDGE";
-            case TelephonyManager.NETWORK_TYPE_UMTS -> "UMTS";
-            case TelephonyManager.NETWORK_TYPE_CDMA -> "CDMA";
-            case TelephonyManager.NETWORK_TYPE_EVDO_0 -> "EVDO_0";
-            case TelephonyManager.NETWORK_TYPE_EVDO_A -> "EVDO_A";
-            case TelephonyManager.NETWORK_TYPE_1xRTT -> "1xRTT";
-            case TelephonyManager.NETWORK_TYPE_HSDPA -> "HSDPA";
-            case TelephonyManager.NETWORK_TYPE_HSUPA -> "HSUPA";
-            case TelephonyManager.NETWORK_TYPE_HSPA -> "HSPA";
-            case TelephonyManager.NETWORK_TYPE_IDEN -> "IDEN";
-            case TelephonyManager.NETWORK_TYPE_EVDO_B -> "EVDO_B";
-            case TelephonyManager.NETWORK_TYPE_LTE -> switch (overrideNetworkType) {
-                case TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_LTE_CA -> "LTE_CA";
-                case TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_LTE_ADVANCED_PRO -> "LTE_ADV_PRO";
-                case TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NR_NSA -> "NR_NSA";
-                case TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_NR_ADVANCED -> "NR_ADVANCED";
-                default -> "LTE";
-            };
-            case TelephonyManager.NETWORK_TYPE_EHRPD -> "EHRPD";
-            case TelephonyManager.NETWORK_TYPE_HSPAP -> "HSPAP";
-            case TelephonyManager.NETWORK_TYPE_GSM -> "GSM";
-            case TelephonyManager.NETWORK_TYPE_TD_SCDMA -> "TD_SCDMA";
-            case TelephonyManager.NETWORK_TYPE_IWLAN -> "IWLAN";
-            case TelephonyManager.NETWORK_TYPE_NR -> "NR";
-            default -> "UNKNOWN";
-        };
-    }
-
-    @NonNull
-    public static String getDataActivityString(int direction) {
-        return switch (direction) {
-            case TelephonyManager.DATA_ACTIVITY_IN -> " ↓";
-            case TelephonyManager.DATA_ACTIVITY_OUT -> "↑ ";
-            case TelephonyManager.DATA_ACTIVITY_INOUT -> "⇅";
-            case TelephonyManager.DATA_ACTIVITY_DORMANT -> "~";
-            default -> "-"; // -
-        };
-    }
-
     private class TelephonyCb extends TelephonyCallback implements
             TelephonyCallback.CellInfoListener,
             TelephonyCallback.DataActivityListener,
@@ -0,0 +1,80 @@
+package pos.modetest.recorder;
+
+import android.location.GnssStatus;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.recorder.SessionFormat;
+import pos.modetest.core.recorder.SessionPlayer;
+import pos.modetest.core.recorder.SessionReader;
+import pos.modetest.data.GnssDataAdapter;
+import pos.modetest.observers.LocationObserver;
+
+/**
+ * Feeds {@link SessionPlayer} records to a {@link LocationObserver.Listener}.
+ * <p>
+ * Only fixes, satellite status, GNSS lifecycle, location mode and providers are delivered.
+ * Measurements and navigation messages can't be constructed by apps, nor can the
+ * SubscriptionInfo and CellInfo needed by TelephonyObserver.Listener; use
+ * {@link SessionPlayer.Listener} directly for those records.
+ */
+public class LocationReplayAdapter extends SessionPlayer.DefaultListener {
+    private final LocationObserver.Listener mListener;
+    private final Executor mExecutor;
+
+    /** @param executor Runnable::run to deliver on the player thread */
+    public LocationReplayAdapter(@NonNull LocationObserver.Listener listener,
+                                 @NonNull Executor executor) {
+        mListener = listener;
+        mExecutor = executor;
+    }
+
+    @Override
+    public void onFix(long elapsedRealtimeNanos, @NonNull FixData fix) {
+        Location location = GnssDataAdapter.toLocation(fix);
+        mExecutor.execute(() -> mListener.onLocationChanged(location));
+    }
+
+    @Override
+    public void onSatellites(long elapsedRealtimeNanos, @NonNull SatelliteData sats) {
+        GnssStatus status = GnssDataAdapter.toStatus(sats);
+        mExecutor.execute(() -> mListener.onSatelliteStatusChanged(status));
+    }
+
+    @Override
+    public void onGnssEvent(long elapsedRealtimeNanos, int kind, long value) {
+        switch (kind) {
+            case SessionFormat.GNSS_STARTED -> mExecutor.execute(mListener::onGnssStarted);
+            case SessionFormat.GNSS_STOPPED -> mExecutor.execute(mListener::onGnssStopped);
+            case SessionFormat.GNSS_FIRST_FIX ->
+                    mExecutor.execute(() -> mListener.onFirstFix((int) value));
+            case SessionFormat.GNSS_FULL_TRACKING ->
+                    mExecutor.execute(() -> mListener.onGnssFullTrackingChanged(value != 0));
+        }
+    }
+
+    @Override
+    public void onRecord(long elapsedRealtimeNanos, int type, @NonNull SessionReader reader) {
+        switch (type) {
+            case SessionFormat.TYPE_LOCATION_MODE -> {
+                boolean enabled = reader.readByte() != 0;
+                mExecutor.execute(() -> mListener.onLocationModeChanged(enabled));
+            }
+            case SessionFormat.TYPE_PROVIDERS -> {
+                int count = (int) reader.readVarint();
+                List<String> providers = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    providers.add(reader.readString());
+                }
+                mExecutor.execute(() -> mListener.onProvidersChanged(providers));
+            }
+        }
+    }
+}
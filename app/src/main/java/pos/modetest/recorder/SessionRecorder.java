@@ -0,0 +1,406 @@
+package pos.modetest.recorder;
+
+import static pos.modetest.utils.Constants.TAG_PREFIX;
+
+import android.content.Context;
+import android.location.GnssCapabilities;
+import android.location.GnssClock;
+import android.location.GnssMeasurementsEvent;
+import android.location.GnssNavigationMessage;
+import android.location.GnssStatus;
+import android.location.Location;
+import android.net.Network;
+import android.net.wifi.WifiInfo;
+import android.os.SystemClock;
+import android.telephony.CellInfo;
+import android.telephony.SignalStrength;
+import android.telephony.SubscriptionInfo;
+import android.telephony.TelephonyDisplayInfo;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.gnss.DopEngine;
+import pos.modetest.core.recorder.SessionFormat;
+import pos.modetest.core.recorder.SessionWriter;
+import pos.modetest.core.utils.NetworkTypes;
+import pos.modetest.data.CellInfoHolderFactory;
+import pos.modetest.data.GnssDataAdapter;
+
+/**
+ * Records observer events of a session into a {@link SessionFormat} file.
+ * <p>
+ * Event methods can be called from any thread, they only capture the time and post the
+ * event to the recorder thread which converts and writes it.
+ */
+public class SessionRecorder {
+    public static final String TAG = TAG_PREFIX + "SessRec";
+    public static final String SESSIONS_DIR = "sessions";
+    private static final long SYNC_INTERVAL_MS = 5000;
+    private static final int DOP_RECORDS = 4;
+
+    private final File mDir;
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private volatile boolean mRecording;
+    @Nullable
+    private volatile File mFile;
+
+    // Recorder thread only
+    @Nullable
+    private SessionWriter mWriter;
+    @Nullable
+    private ScheduledFuture<?> mSyncTask;
+    private final FixData mFix = new FixData();
+    private final SatelliteData mSatellites = new SatelliteData();
+    private final MeasurementData mMeasurements = new MeasurementData();
+    private final NavMessageData mNavMessage = new NavMessageData();
+
+    // Filled on the caller thread, returned by the recorder thread once written
+    private final ArrayBlockingQueue<DopRecord> mFreeDops = new ArrayBlockingQueue<>(DOP_RECORDS);
+
+    public SessionRecorder(@NonNull Context context) {
+        mDir = new File(context.getExternalFilesDir(null), SESSIONS_DIR);
+        for (int i = 0; i < DOP_RECORDS; i++) {
+            mFreeDops.offer(new DopRecord());
+        }
+    }
+
+    public boolean isRecording() {
+        return mRecording;
+    }
+
+    /** File of the current or last session */
+    @Nullable
+    public File getFile() {
+        return mFile;
+    }
+
+    /** Most recent session file in the sessions directory */
+    @Nullable
+    public File getLatestSession() {
+        File[] files = mDir.listFiles((dir, name) -> name.endsWith(SessionFormat.FILE_EXTENSION));
+        File latest = null;
+        if (files != null) {
+            for (File file : files) {
+                // names sort by start time
+                if (latest == null || file.getName().compareTo(latest.getName()) > 0) {
+                    latest = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    public void start() {
+        if (mRecording) return;
+        mRecording = true;
+        long wallTimeMillis = System.currentTimeMillis();
+        long elapsedNanos = SystemClock.elapsedRealtimeNanos();
+        mExecutor.execute(() -> {
+            String name = "session_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US)
+                    .format(new Date(wallTimeMillis)) + SessionFormat.FILE_EXTENSION;
+            File file = new File(mDir, name);
+            try {
+                if (!mDir.isDirectory() && !mDir.mkdirs()) {
+                    throw new IOException("Cannot create " + mDir);
+                }
+                mWriter = new SessionWriter(file.toPath(), wallTimeMillis, elapsedNanos);
+                mFile = file;
+                mSyncTask = mExecutor.scheduleWithFixedDelay(this::sync,
+                        SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                Log.i(TAG, "start: " + file);
+            } catch (IOException e) {
+                Log.e(TAG, "start Error : " + e.getMessage(), e);
+                mRecording = false;
+            }
+        });
+    }
+
+    public void stop() {
+        if (!mRecording) return;
+        mRecording = false;
+        mExecutor.execute(this::closeWriter);
+    }
+
+    /** Stops recording and ends the recorder thread once the file is closed, no reuse after */
+    public void release() {
+        mRecording = false;
+        mExecutor.execute(this::closeWriter);
+        mExecutor.shutdown();
+    }
+
+    public void onLocationChanged(@Nullable Location location) {
+        if (location == null) return;
+        post(location.getElapsedRealtimeNanos(), (w, t) -> {
+            GnssDataAdapter.fromLocation(location, mFix);
+            w.writeFix(t, mFix);
+        });
+    }
+
+    public void onSatelliteStatusChanged(@NonNull GnssStatus status) {
+        post((w, t) -> {
+            GnssDataAdapter.fromStatus(status, mSatellites);
+            w.writeSatellites(t, mSatellites);
+        });
+    }
+
+    public void onGnssMeasurementsReceived(@NonNull GnssMeasurementsEvent event) {
+        GnssClock clock = event.getClock();
+        long time = clock.hasElapsedRealtimeNanos()
+                ? clock.getElapsedRealtimeNanos() : SystemClock.elapsedRealtimeNanos();
+        post(time, (w, t) -> {
+            GnssDataAdapter.fromMeasurements(event, mMeasurements);
+            w.writeMeasurements(t, mMeasurements);
+        });
+    }
+
+    public void onGnssNavigationMessageReceived(@NonNull GnssNavigationMessage message) {
+        post((w, t) -> {
+            GnssDataAdapter.fromNavigationMessage(message, mNavMessage);
+            w.writeNavMessage(t, mNavMessage);
+        });
+    }
+
+    /** @param kind one of SessionFormat.GNSS_* */
+    public void onGnssEvent(int kind, long value) {
+        post((w, t) -> w.writeGnssEvent(t, kind, value));
+    }
+
+    public void onLocationModeChanged(boolean enabled) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_LOCATION_MODE, t);
+            w.putByte(enabled ? 1 : 0);
+            w.end();
+        });
+    }
+
+    public void onProvidersChanged(@NonNull List<String> providers) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_PROVIDERS, t);
+            w.putVarint(providers.size());
+            for (var provider : providers) {
+                w.putString(provider);
+            }
+            w.end();
+        });
+    }
+
+    public void onGnssCapabilitiesChanged(@NonNull GnssCapabilities caps,
+                                          String hwModel, int yearOfHw) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_CAPABILITIES, t);
+            w.putString(hwModel);
+            w.putZigZag(yearOfHw);
+            w.putString(caps.toString());
+            w.end();
+        });
+    }
+
+    public void onSubscriptionChanged(int slot, @Nullable SubscriptionInfo subInfo) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_SUBSCRIPTION, t);
+            w.putZigZag(slot);
+            if (subInfo == null) {
+                w.putZigZag(-1);
+                w.putString(null);
+                w.putString(null);
+            } else {
+                w.putZigZag(subInfo.getSubscriptionId());
+                w.putString(subInfo.getMccString() + "-" + subInfo.getMncString());
+                w.putString(String.valueOf(subInfo.getCarrierName()));
+            }
+            w.end();
+        });
+    }
+
+    public void onCellInfoChanged(@NonNull SubscriptionInfo subInfo,
+                                  @NonNull List<CellInfo> cellInfo) {
+        post((w, t) -> {
+            int slot = subInfo.getSimSlotIndex();
+            w.begin(SessionFormat.TYPE_CELLS, t);
+            w.putZigZag(slot);
+            w.putVarint(cellInfo.size());
+            for (var info : cellInfo) {
+                var holder = CellInfoHolderFactory.makeFor(slot, info);
+                w.putString(holder.getType());
+                w.putByte(info.isRegistered() ? 1 : 0);
+                w.putString(holder.getPLMN());
+                w.putString(holder.getPhyId());
+                w.putString(holder.getFrequency());
+                int dbm = info.getCellSignalStrength().getDbm();
+                w.putZigZag(dbm == SignalStrength.INVALID ? Integer.MIN_VALUE : dbm);
+            }
+            w.end();
+        });
+    }
+
+    public void onDisplayInfoChanged(@NonNull SubscriptionInfo subInfo,
+                                     @NonNull TelephonyDisplayInfo displayInfo) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_DISPLAY_INFO, t);
+            w.putZigZag(subInfo.getSimSlotIndex());
+            w.putString(NetworkTypes.getNetworkTypeString(displayInfo.getNetworkType(),
+                    displayInfo.getOverrideNetworkType()));
+            w.end();
+        });
+    }
+
+    public void onDataActivity(@NonNull SubscriptionInfo subInfo, int direction) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_DATA_ACTIVITY, t);
+            w.putZigZag(subInfo.getSimSlotIndex());
+            w.putZigZag(direction);
+            w.end();
+        });
+    }
+
+    public void onDataNetworksChanged(@NonNull Map<Network, SubscriptionInfo> dataInfoMap) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_DATA_NETWORKS, t);
+            w.putVarint(dataInfoMap.size());
+            for (var entry : dataInfoMap.entrySet()) {
+                w.putString(entry.getKey().toString());
+                w.putZigZag(entry.getValue() != null ? entry.getValue().getSimSlotIndex() : -1);
+            }
+            w.end();
+        });
+    }
+
+    public void onWifiNetworksChanged(@NonNull Map<Network, WifiInfo> wifiInfoMap) {
+        post((w, t) -> {
+            w.begin(SessionFormat.TYPE_WIFI, t);
+            w.putVarint(wifiInfoMap.size());
+            for (var info : wifiInfoMap.values()) {
+                w.putString(info.getSSID());
+                w.putString(info.getBSSID());
+                w.putZigZag(info.getRssi());
+                w.putZigZag(info.getFrequency());
+                w.putZigZag(info.getWifiStandard());
+            }
+            w.end();
+        });
+    }
+
+    /** Values are copied here, the engine is reused for the next status */
+    public void onDop(long elapsedRealtimeNanos, @NonNull DopEngine dop) {
+        if (!mRecording) return;
+        DopRecord record = mFreeDops.poll();
+        if (record == null) {
+            // Recorder thread behind, the pool grows back to its size as records are written
+            record = new DopRecord();
+        }
+        record.time = elapsedRealtimeNanos;
+        for (int s = 0; s < DopEngine.SUBSET_COUNT; s++) {
+            record.counts[s] = dop.getSvCount(s);
+            record.values[s * 3] = (float) dop.getHdop(s);
+            record.values[s * 3 + 1] = (float) dop.getVdop(s);
+            record.values[s * 3 + 2] = (float) dop.getTdop(s);
+        }
+        execute(record);
+    }
+
+    private void post(Task task) {
+        post(SystemClock.elapsedRealtimeNanos(), task);
+    }
+
+    private void post(long elapsedRealtimeNanos, Task task) {
+        if (!mRecording) return;
+        execute(() -> writeTask(task, elapsedRealtimeNanos));
+    }
+
+    private void execute(Runnable task) {
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Event raced with release(), nothing left to write it to
+        }
+    }
+
+    /** Recorder thread */
+    private void writeTask(Task task, long elapsedRealtimeNanos) {
+        var writer = mWriter;
+        if (writer == null) return;
+        try {
+            task.write(writer, elapsedRealtimeNanos);
+        } catch (IOException | RuntimeException e) {
+            // Keep what was recorded so far, the session can't continue past a broken record
+            Log.e(TAG, "write Error : " + e.getMessage(), e);
+            writer.abort();
+            mRecording = false;
+            closeWriter();
+        }
+    }
+
+    private void sync() {
+        if (mWriter == null) return;
+        try {
+            mWriter.sync();
+        } catch (IOException e) {
+            Log.w(TAG, "sync Error : " + e.getMessage(), e);
+        }
+    }
+
+    private void closeWriter() {
+        if (mSyncTask != null) {
+            mSyncTask.cancel(false);
+            mSyncTask = null;
+        }
+        if (mWriter == null) return;
+        try {
+            mWriter.close();
+            Log.i(TAG, String.format(Locale.getDefault(), "stop: %d records, %d bytes",
+                    mWriter.getRecordCount(), mWriter.getSize()));
+        } catch (IOException e) {
+            Log.e(TAG, "close Error : " + e.getMessage(), e);
+        }
+        mWriter = null;
+    }
+
+    private interface Task {
+        void write(SessionWriter writer, long elapsedRealtimeNanos) throws IOException;
+    }
+
+    private class DopRecord implements Task, Runnable {
+        final int[] counts = new int[DopEngine.SUBSET_COUNT];
+        final float[] values = new float[DopEngine.SUBSET_COUNT * 3];
+        long time;
+
+        @Override
+        public void run() {
+            writeTask(this, time);
+            mFreeDops.offer(this);
+        }
+
+        @Override
+        public void write(SessionWriter w, long t) throws IOException {
+            w.begin(SessionFormat.TYPE_DOP, t);
+            w.putVarint(counts.length);
+            for (int s = 0; s < counts.length; s++) {
+                w.putVarint(counts[s]);
+                w.putFloat(values[s * 3]);
+                w.putFloat(values[s * 3 + 1]);
+                w.putFloat(values[s * 3 + 2]);
+            }
+            w.end();
+        }
+    }
+}
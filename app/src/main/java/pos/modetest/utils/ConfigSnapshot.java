@@ -0,0 +1,189 @@
+package pos.modetest.utils;
+
+import static pos.modetest.utils.Constants.TAG_PREFIX;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import pos.modetest.core.config.ConfigSnapshotEngine;
+import pos.modetest.core.config.ConfigStore;
+import pos.modetest.core.config.DeviceConfig;
+import pos.modetest.utils.ConfigUtils.ConfigTypes;
+
+/**
+ * App wide cache of the {@link ConfigUtils} sections, read in parallel off the UI thread.
+ * <p>
+ * Conf files are reread when their mtime changes, carrier config and subscriptions when a
+ * carrier config or default subscription broadcast arrives, everything else on TTL.
+ */
+public class ConfigSnapshot {
+    private static final String TAG = TAG_PREFIX + "ConfigSnapshot";
+    private static final int POOL_SIZE = 4;
+    private static final long TTL_SYSPROP_MS = 60_000;
+    private static final long TTL_DUMP_MS = 30_000;
+    private static final long TTL_CONFIG_MS = 10 * 60_000;
+    public static final String SNAPSHOTS_DIR = "config_snapshots";
+
+    private static ConfigSnapshot sInstance;
+
+    private final ConfigSnapshotEngine<ConfigTypes> mEngine;
+    private final AtomicLong mSimGeneration = new AtomicLong();
+    private final Executor mPool;
+    private final File mSnapshotsDir;
+    private CompletableFuture<ConfigStore> mStore;
+
+    private final BroadcastReceiver mSimReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.d(TAG, "onReceive: " + intent.getAction());
+            mSimGeneration.incrementAndGet();
+        }
+    };
+
+    @NonNull
+    public static synchronized ConfigSnapshot getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new ConfigSnapshot(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ConfigSnapshot(Context appContext) {
+        var threadCount = new AtomicInteger();
+        var pool = Executors.newFixedThreadPool(POOL_SIZE,
+                r -> new Thread(r, "ConfigSnapshot-" + threadCount.incrementAndGet()));
+        mPool = pool;
+        mSnapshotsDir = new File(appContext.getExternalFilesDir(null), SNAPSHOTS_DIR);
+        mEngine = new ConfigSnapshotEngine<>(
+                type -> ConfigUtils.readConfigByType(appContext, type), pool);
+        mEngine.setDefaultTtl(TTL_DUMP_MS);
+        // Read again next time instead of keeping a transient failure for the whole TTL
+        mEngine.setUncacheable(ConfigUtils::isFailedSection);
+        mEngine.setPolicy(ConfigTypes.GPS_DEBUG, TTL_CONFIG_MS,
+                () -> new File(ConfigUtils.PATH_GPS_DEBUG_CONF).lastModified());
+        mEngine.setPolicy(ConfigTypes.GPS_VENDOR, TTL_CONFIG_MS,
+                () -> new File(ConfigUtils.PATH_GPS_CONF).lastModified());
+        mEngine.setPolicy(ConfigTypes.SYSPROP, TTL_SYSPROP_MS, null);
+        mEngine.setPolicy(ConfigTypes.CARRIER_CONFIG, TTL_CONFIG_MS, mSimGeneration::get);
+        mEngine.setPolicy(ConfigTypes.DUMP_SUB_MGR, TTL_DUMP_MS, mSimGeneration::get);
+        mEngine.setPolicy(ConfigTypes.RESPROP, TTL_CONFIG_MS, null);
+        mEngine.setPolicy(ConfigTypes.BUILD_PROP, ConfigSnapshotEngine.TTL_FOREVER, null);
+
+        final IntentFilter filter = new IntentFilter();
+        List.of(
+                CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED,
+                SubscriptionManager.ACTION_DEFAULT_SUBSCRIPTION_CHANGED
+        ).forEach(filter::addAction);
+        ContextCompat.registerReceiver(appContext, mSimReceiver,
+                filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    /**
+     * @param onProgress gets the text of all sections read so far, in the order of types,
+     *                   each time one more section completes
+     * @return the text of all sections
+     */
+    @NonNull
+    public CompletableFuture<String> read(@NonNull Collection<ConfigTypes> types,
+                                          @NonNull Executor executor,
+                                          @NonNull Consumer<String> onProgress) {
+        long start = System.currentTimeMillis();
+        Map<ConfigTypes, String> done = new HashMap<>();
+        return mEngine.snapshot(types, (type, content, cached) -> {
+            // Locked so progress is posted in the order sections complete
+            synchronized (done) {
+                done.put(type, content);
+                var sections = new LinkedHashMap<ConfigTypes, String>();
+                for (var t : types) {
+                    var section = done.get(t);
+                    if (section != null) sections.put(t, section);
+                }
+                String text = ConfigUtils.formatSections(sections);
+                executor.execute(() -> onProgress.accept(text));
+            }
+        }).thenApply(sections -> {
+            Log.d(TAG, String.format("read(%d) -> %d ms", types.size(),
+                    System.currentTimeMillis() - start));
+            return ConfigUtils.formatSections(sections);
+        });
+    }
+
+    /** @return the {@link ConfigUtils#SNAPSHOT_CONFIG_TYPES} sections as one snapshot */
+    @NonNull
+    public CompletableFuture<DeviceConfig> readDeviceConfig() {
+        return mEngine.snapshot(ConfigUtils.SNAPSHOT_CONFIG_TYPES, null)
+                .thenApply(sections -> ConfigUtils.toDeviceConfig(sections,
+                        System.currentTimeMillis()));
+    }
+
+    /** @return stored snapshots, loaded from the snapshots directory on first use */
+    @NonNull
+    public synchronized CompletableFuture<ConfigStore> getStore() {
+        if (mStore != null) return mStore;
+        var future = CompletableFuture.supplyAsync(() -> {
+            var store = new ConfigStore(mSnapshotsDir.toPath());
+            try {
+                long start = System.currentTimeMillis();
+                int failed = store.load();
+                Log.d(TAG, String.format("getStore() -> %d snapshots, %d failed, %d ms",
+                        store.size(), failed, System.currentTimeMillis() - start));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return store;
+        }, mPool);
+        mStore = future;
+        // Load again on next use instead of keeping the failure
+        future.whenComplete((store, e) -> {
+            if (e == null) return;
+            Log.e(TAG, "getStore Error : " + e.getMessage(), e);
+            synchronized (this) {
+                if (mStore == future) mStore = null;
+            }
+        });
+        return future;
+    }
+
+    /** @return cached section, null if it has to be read */
+    @Nullable
+    public String getCached(@NonNull ConfigTypes type) {
+        return mEngine.getCached(type);
+    }
+
+    /** Caches a section read outside of {@link #read}, e.g. a streamed dump */
+    public void put(@NonNull ConfigTypes type, @NonNull String content) {
+        mEngine.put(type, content);
+    }
+
+    public void invalidate(@NonNull ConfigTypes type) {
+        mEngine.invalidate(type);
+    }
+
+    public void invalidateAll() {
+        mEngine.invalidateAll();
+    }
+}
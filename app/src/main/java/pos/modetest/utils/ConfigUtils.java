@@ -1,7 +1,7 @@
 package pos.modetest.utils;
 
 import static pos.modetest.utils.Constants.TAG_PREFIX;
-import static pos.modetest.utils.FormatUtils.formatDateTime;
+import static pos.modetest.core.utils.FormatUtils.formatDateTime;
 
 import android.Manifest;
 import android.content.Context;
@@ -28,13 +28,24 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import pos.modetest.core.config.ConfigSection;
+import pos.modetest.core.config.ConfigStore;
+import pos.modetest.core.config.DeviceConfig;
+import pos.modetest.core.config.SysPropParser;
+import pos.modetest.core.utils.ProcessRunner;
+
 public class ConfigUtils {
     private static final String TAG = TAG_PREFIX + "ConfigUtils";
+    private static final long SYSPROP_TIMEOUT_MS = 1000;
+    private static final long DUMPSYS_TIMEOUT_MS = 10_000;
 
     public static final String PATH_GPS_DEBUG_CONF = "/system/etc/gps_debug.conf";
     public static final String PATH_GPS_CONF = "/vendor/etc/gps.conf";
@@ -89,6 +100,16 @@ public class ConfigUtils {
             "provider",
             "com.google.android.gms/.thunderbird.config.EmergencyConfigContentProvider"
     };
+    private static final String[] DUMP_PERMISSIONS = new String[]{
+            Manifest.permission.DUMP,
+            Manifest.permission.PACKAGE_USAGE_STATS,
+            Manifest.permission.BATTERY_STATS,
+            "android.permission.INTERACT_ACROSS_USERS"
+    };
+    private static final String DUMP_PERMISSIONS_MESSAGE =
+            "Please Grant all of the following protected permissions\n";
+    /** Start of the text returned in place of the output of a failed command */
+    public static final String ERROR_PREFIX = "Error: ";
     private static final String[] DUMPSYS_SUB_MGR_ARGS = new String[] {"isub"};
     private static final String[] DUMPSYS_BATTERY_ARGS = new String[] {"battery"};
 
@@ -100,6 +121,15 @@ public class ConfigUtils {
             ConfigTypes.RESPROP
     );
 
+    /** Sections made of key=value lines, stored in config snapshots */
+    public static final List<ConfigTypes> SNAPSHOT_CONFIG_TYPES = List.of(
+            ConfigTypes.GPS_DEBUG,
+            ConfigTypes.GPS_VENDOR,
+            ConfigTypes.SYSPROP,
+            ConfigTypes.CARRIER_CONFIG,
+            ConfigTypes.RESPROP
+    );
+
     public static final Map<ConfigTypes, String> TYPE_TITLES = Map.ofEntries(
             Map.entry(ConfigTypes.GPS_DEBUG, PATH_GPS_DEBUG_CONF),
             Map.entry(ConfigTypes.SYSPROP, "Sysprop"),
@@ -116,12 +146,19 @@ public class ConfigUtils {
     );
 
     public static String readSysProp(@NonNull String propKey) {
-        String prop = HelperUtils.execCommandSync(new String[]{
+        return readSysPropAsync(propKey).join();
+    }
+
+    @NonNull
+    public static CompletableFuture<String> readSysPropAsync(@NonNull String propKey) {
+        return execCommand(new String[]{
                 "getprop",
                 propKey
-        }).trim();
-        Log.v(TAG, String.format("readSysProp(%s) -> %s", propKey, prop));
-        return prop;
+        }, SYSPROP_TIMEOUT_MS).thenApply(out -> {
+            String prop = out.trim();
+            Log.v(TAG, String.format("readSysProp(%s) -> %s", propKey, prop));
+            return prop;
+        });
     }
 
     public static String readAllSysProps(@NonNull List<String> keys, @Nullable List<String> names) {
@@ -129,9 +166,13 @@ public class ConfigUtils {
         if (names != null && keys.size() != names.size()) {
             throw new IndexOutOfBoundsException("keys and names should have the same size");
         }
+        // One getprop run for all keys instead of one process per key
+        String out = execCommand(new String[]{"getprop"}, SYSPROP_TIMEOUT_MS).join();
+        Map<String, String> props = SysPropParser.parse(out);
         for (int i = 0; i < keys.size(); i++) {
             String propKey = keys.get(i);
-            String prop = readSysProp(propKey);
+            String prop = props.getOrDefault(propKey, "").trim();
+            Log.v(TAG, String.format("readAllSysProps(%s) -> %s", propKey, prop));
             if (prop.isBlank()) {
                 continue;
             }
@@ -321,12 +362,80 @@ public class ConfigUtils {
     }
 
     public static String readDumpsys(@NonNull String[] args) {
+        return readDumpsysAsync(args).join();
+    }
+
+    @NonNull
+    public static CompletableFuture<String> readDumpsysAsync(@NonNull String[] args) {
+        return readDumpsysAsync(args, null);
+    }
+
+    /** @param consumer receives the dump as it is produced, on a worker thread */
+    @NonNull
+    public static CompletableFuture<String> readDumpsysAsync(
+            @NonNull String[] args, @Nullable ProcessRunner.ChunkConsumer consumer) {
         String[] cmd = new String[1 + args.length];
         cmd[0] = "dumpsys";
         System.arraycopy(args, 0, cmd, 1, args.length);
-        String dump = HelperUtils.execCommandSync(cmd);
-        Log.v(TAG, String.format("readDumpsys(%s) -> %d", String.join(" ", args), dump.length()));
-        return dump;
+        return execCommand(cmd, DUMPSYS_TIMEOUT_MS, consumer);
+    }
+
+    /** @return dumpsys arguments of a DUMP_* type, null for other types */
+    @Nullable
+    public static String[] getDumpsysArgs(@NonNull ConfigTypes type) {
+        return switch (type) {
+            case DUMP_LOC -> DUMPSYS_LOC_ARGS;
+            case DUMP_GMS_LMS -> DUMPSYS_GMS_LMS_ARGS;
+            case DUMP_GMS_LS -> DUMPSYS_GMS_LS_ARGS;
+            case DUMP_GMS_E911 -> DUMPSYS_GMS_E911_ARGS;
+            case DUMP_SUB_MGR -> DUMPSYS_SUB_MGR_ARGS;
+            case DUMP_BATTERY -> DUMPSYS_BATTERY_ARGS;
+            default -> null;
+        };
+    }
+
+    /** @return text asking for the missing dump permissions, null if all are granted */
+    @Nullable
+    public static String getDumpPermissionsMessage(@NonNull Context context) {
+        if (HelperUtils.checkPermissions(context, DUMP_PERMISSIONS)) {
+            return null;
+        }
+        return DUMP_PERMISSIONS_MESSAGE + String.join("\n", DUMP_PERMISSIONS) + "\n";
+    }
+
+    /** @return true for the error and missing permission texts read in place of a section */
+    public static boolean isFailedSection(@NonNull String section) {
+        return section.startsWith(ERROR_PREFIX) || section.startsWith(DUMP_PERMISSIONS_MESSAGE);
+    }
+
+    @NonNull
+    public static CompletableFuture<String> execCommand(@NonNull String[] args, long timeoutMs) {
+        return execCommand(args, timeoutMs, null);
+    }
+
+    /** @return stdout, or an {@link #ERROR_PREFIX} text if the command failed or timed out */
+    @NonNull
+    public static CompletableFuture<String> execCommand(
+            @NonNull String[] args, long timeoutMs, @Nullable ProcessRunner.ChunkConsumer consumer) {
+        return ProcessRunner.getDefault().run(args, timeoutMs, consumer).handle((result, e) -> {
+            if (e != null) {
+                Log.e(TAG, "execCommand Error: " + e.getMessage(), e);
+                return ERROR_PREFIX + e.getMessage();
+            }
+            Log.v(TAG, String.format(Locale.ROOT, "execCommand(%s) -> %d bytes, %d ms",
+                    result.getCommand(), result.getStdoutSize(),
+                    TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos())));
+            if (result.isTimedOut()) {
+                Log.w(TAG, "execCommand timed out: " + result.getCommand());
+                return ERROR_PREFIX + "timed out after " + timeoutMs + " ms\n" + result.getStdout();
+            }
+            String err = result.getStderr();
+            if (!err.isEmpty()) {
+                Log.w(TAG, "execCommand Error Stream not empty: " + err);
+                return ERROR_PREFIX + err;
+            }
+            return result.getStdout();
+        });
     }
 
     public static String readBuildProps() {
@@ -380,23 +489,10 @@ public class ConfigUtils {
     }
 
     public static String readConfigByType(@NonNull Context context, ConfigTypes type) {
-        switch (type) {
-            case DUMP_LOC,
-                    DUMP_GMS_LMS,
-                    DUMP_GMS_LS,
-                    DUMP_GMS_E911,
-                    DUMP_SUB_MGR,
-                    DUMP_BATTERY -> {
-                var dump_perms = new String[]{
-                        Manifest.permission.DUMP,
-                        Manifest.permission.PACKAGE_USAGE_STATS,
-                        Manifest.permission.BATTERY_STATS,
-                        "android.permission.INTERACT_ACROSS_USERS"
-                };
-                if (!HelperUtils.checkPermissions(context, dump_perms)) {
-                    return "Please Grant all of the following protected permissions\n"
-                            + String.join("\n", dump_perms) + "\n";
-                }
+        if (getDumpsysArgs(type) != null) {
+            var message = getDumpPermissionsMessage(context);
+            if (message != null) {
+                return message;
             }
         }
         return switch (type) {
@@ -419,21 +515,72 @@ public class ConfigUtils {
     public static String readConfigsByType(@NonNull Context context, Collection<ConfigTypes> types) {
         StringBuilder buf = new StringBuilder();
         for(var type : types) {
-            var section = readConfigByType(context, type);
-            if(!section.isBlank()) {
-                buf.append("# ");
-                buf.append(TYPE_TITLES.get(type));
-                if (type == ConfigTypes.CARRIER_CONFIG) {
-                    var extra = getTitleForCarrierConfig();
-                    if (!extra.isBlank()) {
-                        buf.append(" (");
-                        buf.append(extra);
-                        buf.append(")");
-                    }
+            appendSection(buf, type, readConfigByType(context, type));
+        }
+        return buf.toString();
+    }
+
+    /** Same layout as readConfigsByType(), for sections read elsewhere */
+    public static String formatSections(@NonNull Map<ConfigTypes, String> sections) {
+        StringBuilder buf = new StringBuilder();
+        sections.forEach((type, section) -> appendSection(buf, type, section));
+        return buf.toString();
+    }
+
+    private static void appendSection(StringBuilder buf, ConfigTypes type, String section) {
+        if(!section.isBlank()) {
+            buf.append("# ");
+            buf.append(TYPE_TITLES.get(type));
+            if (type == ConfigTypes.CARRIER_CONFIG) {
+                var extra = getTitleForCarrierConfig();
+                if (!extra.isBlank()) {
+                    buf.append(" (");
+                    buf.append(extra);
+                    buf.append(")");
+                }
+            }
+            buf.append("\n");
+            buf.append(section);
+            buf.append("-------\n");
+        }
+    }
+
+    /** @param sections text of {@link #SNAPSHOT_CONFIG_TYPES}, section names are the type names */
+    @NonNull
+    public static DeviceConfig toDeviceConfig(@NonNull Map<ConfigTypes, String> sections,
+                                              long timeMillis) {
+        var parsed = sections.entrySet().stream()
+                .map(e -> ConfigSection.parse(e.getKey().name(), e.getValue()))
+                .collect(Collectors.toList());
+        String id = (Build.DEVICE + "_" + timeMillis).replaceAll("[^A-Za-z0-9._-]", "_");
+        return new DeviceConfig(id, Build.DEVICE, Build.ID, timeMillis, parsed);
+    }
+
+    /**
+     * Lists the keys of config whose value differs in other stored snapshots, with the
+     * devices and builds holding each other value.
+     */
+    @NonNull
+    public static String formatDeviceDifferences(@NonNull ConfigStore store,
+                                                 @NonNull DeviceConfig config) {
+        StringBuilder buf = new StringBuilder();
+        for (var section : config.getSections().values()) {
+            boolean header = false;
+            for (var e : section.getEntries().entrySet()) {
+                var values = store.getValues(section.getName(), e.getKey());
+                if (values.size() < 2) continue;
+                if (!header) {
+                    buf.append('[').append(section.getName()).append("]\n");
+                    header = true;
                 }
-                buf.append("\n");
-                buf.append(section);
-                buf.append("-------\n");
+                buf.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+                values.forEach((value, configs) -> {
+                    if (value.equals(e.getValue())) return;
+                    buf.append("  ").append(value).append(" : ").append(configs.stream()
+                            .map(c -> c.getDevice() + " (" + c.getBuild() + ")")
+                            .distinct()
+                            .collect(Collectors.joining(", "))).append('\n');
+                });
             }
         }
         return buf.toString();
@@ -0,0 +1,75 @@
+package pos.modetest.utils;
+
+import static pos.modetest.utils.Constants.TAG_PREFIX;
+
+import android.os.Handler;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Collects UI frame durations of a window between {@link #start} and {@link #stop}.
+ */
+public class FrameTimeMonitor implements Window.OnFrameMetricsAvailableListener {
+    private static final String TAG = TAG_PREFIX + "FrameTime";
+    private static final long DEFAULT_DEADLINE_NS = 16_666_667L; // 60Hz
+
+    private Window mWindow;
+    private long mFrameCount;
+    private long mJankCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+    private int mDroppedReports;
+
+    public void start(@NonNull Window window, @NonNull Handler handler) {
+        stop();
+        mFrameCount = 0;
+        mJankCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+        mDroppedReports = 0;
+        mWindow = window;
+        mWindow.addOnFrameMetricsAvailableListener(this, handler);
+    }
+
+    public void stop() {
+        if (mWindow == null) return;
+        try {
+            mWindow.removeOnFrameMetricsAvailableListener(this);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "stop: " + e.getMessage());
+        }
+        mWindow = null;
+    }
+
+    @Override
+    public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics,
+                                        int dropCountSinceLastInvocation) {
+        long total = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        long deadline = frameMetrics.getMetric(FrameMetrics.DEADLINE);
+        if (deadline <= 0) {
+            deadline = DEFAULT_DEADLINE_NS;
+        }
+        mFrameCount++;
+        mTotalNanos += total;
+        mMaxNanos = Math.max(mMaxNanos, total);
+        if (total > deadline) mJankCount++;
+        mDroppedReports += dropCountSinceLastInvocation;
+    }
+
+    @NonNull
+    public String getSummary() {
+        return String.format(Locale.getDefault(),
+                "frames: %d, jank: %d (%.01f%%), avg: %.02fms, max: %.02fms, dropped reports: %d",
+                mFrameCount,
+                mJankCount,
+                mFrameCount == 0 ? 0d : 100d * mJankCount / mFrameCount,
+                mFrameCount == 0 ? 0d : mTotalNanos / 1e6d / mFrameCount,
+                mMaxNanos / 1e6d,
+                mDroppedReports);
+    }
+}
@@ -12,17 +12,12 @@ import android.util.Log;
 
 import androidx.core.content.ContextCompat;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.concurrent.TimeUnit;
-
 import pos.modetest.R;
 
 public class HelperUtils {
     private static final String TAG = TAG_PREFIX + "HelperUtils";
     private static final String PREF_KEY_SHORTCUT = "addshortcut";
     private static final String ID_SHORTCUT_MAIN = "id1";
-    private static final long EXEC_TIMEOUT_MS = 1000;
 
     public static void requestAddShortcut(Context context) {
         //noinspection deprecation
@@ -62,32 +57,4 @@ public class HelperUtils {
         }
         return true;
     }
-
-    public static String execCommandSync(String[] args) {
-        StringBuilder buf = new StringBuilder();
-        StringBuilder bufErr = new StringBuilder();
-        ProcessBuilder processBuilder = new ProcessBuilder(args);
-
-        try {
-            Process p = processBuilder.start();
-            BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            BufferedReader err = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            p.waitFor(EXEC_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-            String line;
-            while ((line = out.readLine()) != null) {
-                buf.append(line).append("\n");
-            }
-            while ((line = err.readLine()) != null) {
-                bufErr.append(line).append("\n");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "execCommandSync Error: " + e.getMessage(), e);
-            return "Error: " + e.getMessage();
-        }
-        if (bufErr.length() > 0) {
-            Log.w(TAG, "execCommandSync Error Stream not empty: " + bufErr);
-            return "Error: " + bufErr;
-        }
-        return buf.toString();
-    }
 }
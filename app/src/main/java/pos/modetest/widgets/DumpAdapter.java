@@ -0,0 +1,194 @@
+package pos.modetest.widgets;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Color;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import pos.modetest.R;
+import pos.modetest.core.config.DumpDocument;
+import pos.modetest.databinding.LayoutDumpLineBinding;
+
+/**
+ * One row per visible {@link DumpDocument} line, sections fold on click.
+ * <p>
+ * The document may still be growing, {@link #refresh()} picks up the new lines.
+ */
+public class DumpAdapter extends RecyclerView.Adapter<DumpAdapter.LineHolder> {
+    private static final String MARK_COLLAPSED = "▸ ";
+    private static final String MARK_EXPANDED = "▾ ";
+    private static final String MARK_LEAF = "  ";
+
+    private final int mMatchColor;
+    private final int mCurrentMatchColor;
+    private final BitSet mCollapsed = new BitSet();
+    private final BitSet mMatches = new BitSet();
+    private DumpDocument mDocument = new DumpDocument();
+    private int[] mVisible = new int[0];
+    private int mCurrentMatch = -1;
+    private OnLineLongClickListener mLongClickListener;
+
+    public DumpAdapter(@NonNull Context context) {
+        mMatchColor = context.getColor(R.color.search_match_bg);
+        mCurrentMatchColor = context.getColor(R.color.search_current_bg);
+    }
+
+    public void setOnLineLongClickListener(@Nullable OnLineLongClickListener listener) {
+        mLongClickListener = listener;
+    }
+
+    @NonNull
+    public DumpDocument getDocument() {
+        return mDocument;
+    }
+
+    @SuppressLint("NotifyDataSetChanged")
+    public void setDocument(@NonNull DumpDocument document) {
+        mDocument = document;
+        mCollapsed.clear();
+        mMatches.clear();
+        mCurrentMatch = -1;
+        mVisible = document.getVisibleLines(mCollapsed);
+        notifyDataSetChanged();
+    }
+
+    /** Shows lines added to the document since the last call */
+    @SuppressLint("NotifyDataSetChanged")
+    public void refresh() {
+        int[] old = mVisible;
+        mVisible = mDocument.getVisibleLines(mCollapsed);
+        if (startsWith(mVisible, old)) {
+            if (old.length > 0) {
+                notifyItemChanged(old.length - 1); // may have got children
+            }
+            notifyItemRangeInserted(old.length, mVisible.length - old.length);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    public void toggle(int line) {
+        if (!mDocument.hasChildren(line)) return;
+        int position = Arrays.binarySearch(mVisible, line);
+        int before = mVisible.length;
+        mCollapsed.flip(line);
+        mVisible = mDocument.getVisibleLines(mCollapsed);
+        notifyItemChanged(position);
+        if (mVisible.length < before) {
+            notifyItemRangeRemoved(position + 1, before - mVisible.length);
+        } else {
+            notifyItemRangeInserted(position + 1, mVisible.length - before);
+        }
+    }
+
+    /** @param lines matching lines, highlighted until replaced */
+    @SuppressLint("NotifyDataSetChanged")
+    public void setMatches(@NonNull int[] lines) {
+        mMatches.clear();
+        for (int line : lines) {
+            mMatches.set(line);
+        }
+        mCurrentMatch = -1;
+        notifyDataSetChanged();
+    }
+
+    /** @param lines matching lines, the current ones plus those in lines appended since */
+    public void addMatches(@NonNull int[] lines) {
+        for (int line : lines) {
+            if (mMatches.get(line)) continue;
+            mMatches.set(line);
+            int position = Arrays.binarySearch(mVisible, line);
+            if (position >= 0) {
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    /**
+     * Unfolds the sections hiding line and marks it as the current match.
+     *
+     * @return adapter position of line
+     */
+    @SuppressLint("NotifyDataSetChanged")
+    public int reveal(int line) {
+        if (mDocument.isHidden(line, mCollapsed)) {
+            for (int p = mDocument.getParent(line); p >= 0; p = mDocument.getParent(p)) {
+                mCollapsed.clear(p);
+            }
+            mVisible = mDocument.getVisibleLines(mCollapsed);
+            notifyDataSetChanged();
+        }
+        int previous = Arrays.binarySearch(mVisible, mCurrentMatch);
+        mCurrentMatch = line;
+        int position = Arrays.binarySearch(mVisible, line);
+        if (previous >= 0) notifyItemChanged(previous);
+        notifyItemChanged(position);
+        return position;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mVisible.length;
+    }
+
+    @NonNull
+    @Override
+    public LineHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        var binding = LayoutDumpLineBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false);
+        var holder = new LineHolder(binding);
+        binding.getRoot().setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) toggle(mVisible[position]);
+        });
+        binding.getRoot().setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || mLongClickListener == null) {
+                return false;
+            }
+            mLongClickListener.onLineLongClick(mDocument, mVisible[position]);
+            return true;
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull LineHolder holder, int position) {
+        int line = mVisible[position];
+        String mark = !mDocument.hasChildren(line) ? MARK_LEAF
+                : mCollapsed.get(line) ? MARK_COLLAPSED : MARK_EXPANDED;
+        holder.mBinding.getRoot().setText(mark + mDocument.getLine(line));
+        int background = line == mCurrentMatch ? mCurrentMatchColor
+                : mMatches.get(line) ? mMatchColor : Color.TRANSPARENT;
+        holder.mBinding.getRoot().setBackgroundColor(background);
+    }
+
+    private static boolean startsWith(int[] array, int[] prefix) {
+        if (array.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (array[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    public interface OnLineLongClickListener {
+        void onLineLongClick(@NonNull DumpDocument document, int line);
+    }
+
+    public static class LineHolder extends RecyclerView.ViewHolder {
+        final LayoutDumpLineBinding mBinding;
+
+        LineHolder(@NonNull LayoutDumpLineBinding binding) {
+            super(binding.getRoot());
+            mBinding = binding;
+        }
+    }
+}
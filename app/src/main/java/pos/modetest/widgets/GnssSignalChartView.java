@@ -0,0 +1,190 @@
+package pos.modetest.widgets;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import pos.modetest.R;
+import pos.modetest.core.chart.SignalChartLayout;
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.SatelliteData;
+
+/**
+ * Skyplot and per-signal C/N0 bars, animated between status epochs.
+ * <p>
+ * Geometry comes from {@link SignalChartLayout}. Grid and labels are recorded once per size
+ * into a {@link RenderNode}, the signals are drawn with preallocated paints, and frames are
+ * only requested while an animation runs.
+ */
+public class GnssSignalChartView extends View {
+    private static final long ANIMATION_MS = 400;
+    private static final float[] RING_ELEVATIONS = {0f, 30f, 60f};
+    private static final float CN0_GRID_STEP = 10f;
+    private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+
+    private final SignalChartLayout mLayout = new SignalChartLayout();
+    private final RenderNode mBackground = new RenderNode("GnssSignalChartBackground");
+    private final Paint mGridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final int[] mColors = new int[Constellation.COUNT];
+    private final char[] mLabel = new char[11];
+    private final float mDotRadius;
+    private final float mPadding;
+    private final float mStrokeWidth;
+    private long mAnimationStart;
+
+    public GnssSignalChartView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public GnssSignalChartView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        Resources res = context.getResources();
+        mDotRadius = dp(res, 6);
+        mPadding = dp(res, 12);
+        mStrokeWidth = dp(res, 1);
+
+        mGridPaint.setStyle(Paint.Style.STROKE);
+        mGridPaint.setStrokeWidth(mStrokeWidth);
+        mGridPaint.setColor(Color.LTGRAY);
+        mTextPaint.setColor(Color.DKGRAY);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 9,
+                res.getDisplayMetrics()));
+        mFillPaint.setStyle(Paint.Style.FILL);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+
+        mColors[Constellation.UNKNOWN] = res.getColor(R.color.sv_unknown, null);
+        mColors[Constellation.GPS] = res.getColor(R.color.sv_gps, null);
+        mColors[Constellation.SBAS] = res.getColor(R.color.sv_sbas, null);
+        mColors[Constellation.GLONASS] = res.getColor(R.color.sv_glonass, null);
+        mColors[Constellation.QZSS] = res.getColor(R.color.sv_qzss, null);
+        mColors[Constellation.BEIDOU] = res.getColor(R.color.sv_beidou, null);
+        mColors[Constellation.GALILEO] = res.getColor(R.color.sv_galileo, null);
+        mColors[Constellation.IRNSS] = res.getColor(R.color.sv_irnss, null);
+    }
+
+    /** @param sats converted status, null clears the chart */
+    public void setStatus(@Nullable SatelliteData sats) {
+        if (sats == null) {
+            clear();
+            return;
+        }
+        mLayout.update(sats);
+        mAnimationStart = SystemClock.uptimeMillis();
+        postInvalidateOnAnimation();
+    }
+
+    public void clear() {
+        mLayout.clear();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mLayout.setSize(w, h, mPadding);
+        mBackground.setPosition(0, 0, w, h);
+        RecordingCanvas canvas = mBackground.beginRecording();
+        drawBackground(canvas);
+        mBackground.endRecording();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        if (canvas.isHardwareAccelerated() && mBackground.hasDisplayList()) {
+            canvas.drawRenderNode(mBackground);
+        } else {
+            drawBackground(canvas);
+        }
+
+        mLayout.setProgress((SystemClock.uptimeMillis() - mAnimationStart)
+                / (float) ANIMATION_MS);
+        int count = mLayout.getCount();
+        float barWidth = mLayout.getBarWidth();
+        float bottom = mLayout.getBarAreaBottom();
+        float textOffset = (mTextPaint.descent() + mTextPaint.ascent()) / 2f;
+        for (int i = 0; i < count; i++) {
+            mFillPaint.setColor(mColors[mLayout.getConstellation(i)]);
+            boolean used = mLayout.isUsed(i);
+            mStrokePaint.setColor(used ? Color.BLACK : Color.GRAY);
+            mStrokePaint.setStrokeWidth(used ? mStrokeWidth * 2 : mStrokeWidth);
+
+            float left = mLayout.getBarLeft(i);
+            float top = mLayout.getBarTop(i);
+            canvas.drawRect(left, top, left + barWidth, bottom, mFillPaint);
+            canvas.drawRect(left, top, left + barWidth, bottom, mStrokePaint);
+
+            float x = mLayout.getX(i);
+            float y = mLayout.getY(i);
+            canvas.drawCircle(x, y, mDotRadius, mFillPaint);
+            canvas.drawCircle(x, y, mDotRadius, mStrokePaint);
+            int start = formatInt(mLayout.getSvid(i));
+            canvas.drawText(mLabel, start, mLabel.length - start, x,
+                    y - mDotRadius * 1.5f - textOffset, mTextPaint);
+        }
+
+        if (mLayout.isAnimating()) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    private void drawBackground(@NonNull Canvas canvas) {
+        float cx = mLayout.getSkyCenterX();
+        float cy = mLayout.getSkyCenterY();
+        float radius = mLayout.getSkyRadius();
+        if (radius <= 0f) return;
+        for (float elevation : RING_ELEVATIONS) {
+            canvas.drawCircle(cx, cy, mLayout.getRingRadius(elevation), mGridPaint);
+        }
+        canvas.drawLine(cx - radius, cy, cx + radius, cy, mGridPaint);
+        canvas.drawLine(cx, cy - radius, cx, cy + radius, mGridPaint);
+        float half = mPadding / 2f;
+        float textOffset = (mTextPaint.descent() + mTextPaint.ascent()) / 2f;
+        canvas.drawText(DIRECTIONS, 0, 1, cx, cy - radius - half - textOffset, mTextPaint);
+        canvas.drawText(DIRECTIONS, 1, 1, cx + radius + half, cy - textOffset, mTextPaint);
+        canvas.drawText(DIRECTIONS, 2, 1, cx, cy + radius + half - textOffset, mTextPaint);
+        canvas.drawText(DIRECTIONS, 3, 1, cx - radius - half, cy - textOffset, mTextPaint);
+
+        float left = mLayout.getBarAreaLeft();
+        float right = mLayout.getBarAreaRight();
+        for (float cn0 = 0f; cn0 <= SignalChartLayout.MAX_CN0_DBHZ; cn0 += CN0_GRID_STEP) {
+            float y = mLayout.getCn0Y(cn0);
+            canvas.drawLine(left, y, right, y, mGridPaint);
+            int start = formatInt((int) cn0);
+            canvas.drawText(mLabel, start, mLabel.length - start, left - half, y - textOffset,
+                    mTextPaint);
+        }
+    }
+
+    /** Writes the digits right aligned into mLabel, returns the first index */
+    private int formatInt(int value) {
+        int i = mLabel.length;
+        int v = Math.abs(value);
+        do {
+            mLabel[--i] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        if (value < 0) mLabel[--i] = '-';
+        return i;
+    }
+
+    private static float dp(Resources res, float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value,
+                res.getDisplayMetrics());
+    }
+}
@@ -0,0 +1,123 @@
+package pos.modetest.widgets;
+
+import android.content.Context;
+import android.location.GnssStatus;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.widget.TableLayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import pos.modetest.core.data.GnssSvTableModel;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.data.GnssDataAdapter;
+import pos.modetest.data.GnssSvStatusHeaderHolder;
+import pos.modetest.data.GnssSvStatusHolder;
+import pos.modetest.databinding.LayoutSvStatusRowBinding;
+
+/**
+ * Satellite table which keeps a pool of inflated rows across {@link GnssStatus} updates.
+ * <p>
+ * Rows are never removed, surplus rows are hidden, and only the rows reported dirty by
+ * {@link GnssSvTableModel} are re-bound.
+ */
+public class GnssSvTableLayout extends TableLayout {
+    private final GnssSvTableModel mModel = new GnssSvTableModel();
+    private final SatelliteData mSatellites = new SatelliteData();
+    private final List<LayoutSvStatusRowBinding> mRows = new ArrayList<>();
+    private LayoutSvStatusRowBinding mHeader;
+
+    private long mUpdateCount;
+    private long mUpdateNanos;
+    private long mReboundRows;
+    private long mTotalRows;
+
+    public GnssSvTableLayout(@NonNull Context context) {
+        super(context);
+    }
+
+    public GnssSvTableLayout(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public void setStatus(@Nullable GnssStatus status) {
+        if (status != null) {
+            GnssDataAdapter.fromStatus(status, mSatellites);
+        }
+        setStatus(status, mSatellites);
+    }
+
+    /** @param sats status already converted by the caller, skips a second conversion */
+    public void setStatus(@Nullable GnssStatus status, @Nullable SatelliteData sats) {
+        // Don't draw table if no status. To differentiate between empty and no status
+        if (status == null || sats == null) {
+            clear();
+            return;
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
+        LayoutInflater inflater = LayoutInflater.from(getContext());
+
+        // Header Row
+        if (mHeader == null) {
+            mHeader = LayoutSvStatusRowBinding.inflate(inflater, this, true);
+            mHeader.setSv(new GnssSvStatusHeaderHolder(getContext()));
+        }
+        mHeader.getRoot().setVisibility(VISIBLE);
+
+        // Individual status Rows
+        mModel.update(sats);
+        int count = mModel.getRowCount();
+        for (int i = 0; i < count; i++) {
+            LayoutSvStatusRowBinding row;
+            if (i < mRows.size()) {
+                row = mRows.get(i);
+            } else {
+                row = LayoutSvStatusRowBinding.inflate(inflater, this, true);
+                mRows.add(row);
+            }
+            if (mModel.isDirty(i)) {
+                row.setSv(new GnssSvStatusHolder(getContext(), status, i));
+            }
+            row.getRoot().setVisibility(VISIBLE);
+        }
+        for (int i = count; i < mRows.size(); i++) {
+            mRows.get(i).getRoot().setVisibility(GONE);
+        }
+
+        mUpdateCount++;
+        mUpdateNanos += SystemClock.elapsedRealtimeNanos() - start;
+        mReboundRows += mModel.getDirtyCount();
+        mTotalRows += count;
+    }
+
+    public void clear() {
+        mModel.clear();
+        if (mHeader != null) {
+            mHeader.getRoot().setVisibility(GONE);
+        }
+        for (var row : mRows) {
+            row.getRoot().setVisibility(GONE);
+        }
+    }
+
+    public void resetStats() {
+        mUpdateCount = 0;
+        mUpdateNanos = 0;
+        mReboundRows = 0;
+        mTotalRows = 0;
+    }
+
+    @NonNull
+    public String getStatsSummary() {
+        return String.format(Locale.getDefault(), "updates: %d, avg: %.03fms, rebound rows: %d/%d",
+                mUpdateCount,
+                mUpdateCount == 0 ? 0d : mUpdateNanos / 1e6d / mUpdateCount,
+                mReboundRows, mTotalRows);
+    }
+}
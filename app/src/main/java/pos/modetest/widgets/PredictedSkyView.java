@@ -0,0 +1,211 @@
+package pos.modetest.widgets;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+import pos.modetest.R;
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.gnss.OrbitGrid;
+
+/**
+ * Skyplot of the SV tracks of an {@link OrbitGrid}, a dot at the first step of each track.
+ * <p>
+ * Tracks are copied as elevation and azimuth when set, so the grid can be refilled meanwhile.
+ * Paths are rebuilt only on size or grid changes.
+ */
+public class PredictedSkyView extends View {
+    private static final float[] RING_ELEVATIONS = {0f, 30f, 60f};
+    private static final String[] DIRECTIONS = {"N", "E", "S", "W"};
+
+    private final Paint mGridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTrackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final int[] mColors = new int[Constellation.COUNT];
+    private final float mDotRadius;
+    private final float mPadding;
+
+    private int mSvCount;
+    private int mStepCount;
+    private int[] mConstellations = new int[0];
+    private int[] mSvids = new int[0];
+    private float[] mElevations = new float[0];
+    private float[] mAzimuths = new float[0];
+    private Path[] mPaths = new Path[0];
+    private float mCenterX;
+    private float mCenterY;
+    private float mRadius;
+
+    public PredictedSkyView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public PredictedSkyView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        Resources res = context.getResources();
+        mDotRadius = dp(res, 5);
+        mPadding = dp(res, 14);
+
+        mGridPaint.setStyle(Paint.Style.STROKE);
+        mGridPaint.setStrokeWidth(dp(res, 1));
+        mGridPaint.setColor(Color.LTGRAY);
+        mTextPaint.setColor(Color.DKGRAY);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 9,
+                res.getDisplayMetrics()));
+        mTrackPaint.setStyle(Paint.Style.STROKE);
+        mTrackPaint.setStrokeWidth(dp(res, 2));
+        mTrackPaint.setStrokeCap(Paint.Cap.ROUND);
+        mFillPaint.setStyle(Paint.Style.FILL);
+
+        mColors[Constellation.UNKNOWN] = res.getColor(R.color.sv_unknown, null);
+        mColors[Constellation.GPS] = res.getColor(R.color.sv_gps, null);
+        mColors[Constellation.SBAS] = res.getColor(R.color.sv_sbas, null);
+        mColors[Constellation.GLONASS] = res.getColor(R.color.sv_glonass, null);
+        mColors[Constellation.QZSS] = res.getColor(R.color.sv_qzss, null);
+        mColors[Constellation.BEIDOU] = res.getColor(R.color.sv_beidou, null);
+        mColors[Constellation.GALILEO] = res.getColor(R.color.sv_galileo, null);
+        mColors[Constellation.IRNSS] = res.getColor(R.color.sv_irnss, null);
+    }
+
+    /** @param grid propagated with a receiver position, SVs never above the horizon skipped */
+    public void setGrid(@NonNull OrbitGrid grid) {
+        int steps = grid.getStepCount();
+        int size = grid.getSvCount() * steps;
+        if (mElevations.length < size) {
+            mElevations = new float[size];
+            mAzimuths = new float[size];
+        }
+        if (mSvids.length < grid.getSvCount()) {
+            mConstellations = new int[grid.getSvCount()];
+            mSvids = new int[grid.getSvCount()];
+        }
+        int count = 0;
+        for (int sv = 0; sv < grid.getSvCount(); sv++) {
+            boolean visible = false;
+            for (int k = 0; k < steps; k++) {
+                double el = grid.getElevationDegrees(sv, k);
+                visible |= el >= 0;
+                mElevations[count * steps + k] = (float) el;
+                mAzimuths[count * steps + k] = (float) grid.getAzimuthDegrees(sv, k);
+            }
+            if (!visible) continue;
+            int constellation = grid.getConstellation(sv);
+            mConstellations[count] = constellation < Constellation.COUNT ? constellation
+                    : Constellation.UNKNOWN;
+            mSvids[count] = grid.getSvid(sv);
+            count++;
+        }
+        mSvCount = count;
+        mStepCount = steps;
+        if (mPaths.length < count) {
+            int old = mPaths.length;
+            mPaths = Arrays.copyOf(mPaths, count);
+            for (int i = old; i < count; i++) mPaths[i] = new Path();
+        }
+        buildPaths();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mCenterX = w / 2f;
+        mCenterY = h / 2f;
+        mRadius = Math.max(0f, Math.min(w, h) / 2f - mPadding);
+        buildPaths();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // Square, as wide as allowed
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        setMeasuredDimension(width, resolveSize(width, heightMeasureSpec));
+    }
+
+    private void buildPaths() {
+        for (int i = 0; i < mSvCount; i++) {
+            Path path = mPaths[i];
+            path.rewind();
+            boolean drawing = false;
+            for (int k = 0; k < mStepCount; k++) {
+                float el = mElevations[i * mStepCount + k];
+                if (!(el >= 0f)) {
+                    drawing = false;
+                    continue;
+                }
+                float x = getX(el, mAzimuths[i * mStepCount + k]);
+                float y = getY(el, mAzimuths[i * mStepCount + k]);
+                if (drawing) {
+                    path.lineTo(x, y);
+                } else {
+                    path.moveTo(x, y);
+                    drawing = true;
+                }
+            }
+        }
+    }
+
+    private float getX(float elevation, float azimuth) {
+        float r = mRadius * (90f - elevation) / 90f;
+        return mCenterX + r * (float) Math.sin(Math.toRadians(azimuth));
+    }
+
+    private float getY(float elevation, float azimuth) {
+        float r = mRadius * (90f - elevation) / 90f;
+        return mCenterY - r * (float) Math.cos(Math.toRadians(azimuth));
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        if (mRadius <= 0f) return;
+        for (float elevation : RING_ELEVATIONS) {
+            canvas.drawCircle(mCenterX, mCenterY, mRadius * (90f - elevation) / 90f,
+                    mGridPaint);
+        }
+        canvas.drawLine(mCenterX - mRadius, mCenterY, mCenterX + mRadius, mCenterY, mGridPaint);
+        canvas.drawLine(mCenterX, mCenterY - mRadius, mCenterX, mCenterY + mRadius, mGridPaint);
+        float half = mPadding / 2f;
+        float textOffset = (mTextPaint.descent() + mTextPaint.ascent()) / 2f;
+        canvas.drawText(DIRECTIONS[0], mCenterX, mCenterY - mRadius - half - textOffset,
+                mTextPaint);
+        canvas.drawText(DIRECTIONS[1], mCenterX + mRadius + half, mCenterY - textOffset,
+                mTextPaint);
+        canvas.drawText(DIRECTIONS[2], mCenterX, mCenterY + mRadius + half - textOffset,
+                mTextPaint);
+        canvas.drawText(DIRECTIONS[3], mCenterX - mRadius - half, mCenterY - textOffset,
+                mTextPaint);
+
+        for (int i = 0; i < mSvCount; i++) {
+            int color = mColors[mConstellations[i]];
+            mTrackPaint.setColor(color);
+            canvas.drawPath(mPaths[i], mTrackPaint);
+            float el = mElevations[i * mStepCount];
+            if (!(el >= 0f)) continue;
+            float x = getX(el, mAzimuths[i * mStepCount]);
+            float y = getY(el, mAzimuths[i * mStepCount]);
+            mFillPaint.setColor(color);
+            canvas.drawCircle(x, y, mDotRadius, mFillPaint);
+            canvas.drawText(Integer.toString(mSvids[i]), x, y - mDotRadius * 1.5f - textOffset,
+                    mTextPaint);
+        }
+    }
+
+    private static float dp(Resources res, float value) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value,
+                res.getDisplayMetrics());
+    }
+}
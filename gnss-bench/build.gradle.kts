@@ -0,0 +1,51 @@
+/**
+ * JMH benchmarks of the :gnss-core data path.
+ *
+ * ./gradlew :gnss-bench:jmh
+ * ./gradlew :gnss-bench:jmh -PbenchSession=/path/to/session.gnsr -PbenchIncludes=EpochStats
+ *
+ * Results are written as JSON to build/results/jmh/, named after the app version so runs of
+ * successive releases can be compared.
+ */
+
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+sourceSets {
+    named("jmh") {
+        // Recorded logcat capture shared with the :gnss-core unit tests
+        resources.srcDir(project(":gnss-core").file("src/test/resources"))
+    }
+}
+
+dependencies {
+    jmhImplementation(project(":gnss-core"))
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    warmupIterations = 3
+    warmup = "1s"
+    iterations = 5
+    timeOnIteration = "1s"
+    fork = 1
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file(
+        "results/jmh/results_v${libs.versions.app.main.get()}.json")
+    providers.gradleProperty("benchIncludes").orNull?.let { includes.add(it) }
+    providers.gradleProperty("benchSession").orNull?.let { session ->
+        benchmarkParameters.put("fixture",
+            objects.listProperty<String>().value(listOf("synthetic", session)))
+    }
+}
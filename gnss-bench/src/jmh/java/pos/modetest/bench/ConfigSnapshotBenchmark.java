@@ -0,0 +1,52 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.config.ConfigSnapshotEngine;
+
+/** Snapshot of the config sections once all are cached, as when reopening the config view */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigSnapshotBenchmark {
+    private static final int SECTIONS = 12;
+
+    private ExecutorService mExecutor;
+    private ConfigSnapshotEngine<String> mEngine;
+    private final List<String> mKeys = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws Exception {
+        mExecutor = Executors.newFixedThreadPool(4);
+        mEngine = new ConfigSnapshotEngine<>(key -> key + "=1", mExecutor);
+        mEngine.setDefaultTtl(ConfigSnapshotEngine.TTL_FOREVER);
+        for (int i = 0; i < SECTIONS; i++) {
+            mKeys.add("section" + i);
+        }
+        mEngine.snapshot(mKeys, null).get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, String> warmSnapshot() throws Exception {
+        return mEngine.snapshot(mKeys, null).get();
+    }
+}
@@ -0,0 +1,76 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import pos.modetest.core.config.ConfigSection;
+import pos.modetest.core.config.ConfigStore;
+import pos.modetest.core.config.DeviceConfig;
+
+/** Loading a library of 2000 stored snapshots and querying its value index */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigStoreBenchmark {
+    private static final int SNAPSHOTS = 2000;
+    private static final int KEYS = 100;
+
+    private Path mDir;
+    private ConfigStore mStore;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("gnss-bench");
+        var store = new ConfigStore(mDir);
+        for (int n = 0; n < SNAPSHOTS; n++) {
+            Map<String, String> gps = new LinkedHashMap<>();
+            gps.put("SUPL_HOST", "supl.google.com");
+            for (int k = 0; k < KEYS; k++) {
+                gps.put("KEY_" + k, Integer.toString(k * n % 7));
+            }
+            store.put(new DeviceConfig("dev" + n, "device" + n, "build" + n % 3, 1000L * n,
+                    List.of(new ConfigSection("GPS_VENDOR", gps))));
+        }
+        mStore = load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(mDir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConfigStore load() throws IOException {
+        var store = new ConfigStore(mDir);
+        store.load();
+        return store;
+    }
+
+    @Benchmark
+    public int findDiffering() {
+        mNext = (mNext + 1) % KEYS;
+        return mStore.findDiffering("GPS_VENDOR", "KEY_" + mNext, "0").size();
+    }
+}
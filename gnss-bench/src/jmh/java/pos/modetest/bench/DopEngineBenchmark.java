@@ -0,0 +1,41 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.gnss.DopEngine;
+
+/** DOP of the constellation subsets for one status epoch */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DopEngineBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private SatelliteData[] mEpochs;
+    private final DopEngine mDop = new DopEngine();
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mEpochs = Fixtures.load(fixture).getSatellites();
+    }
+
+    @Benchmark
+    public double update() {
+        mDop.update(mEpochs[mNext], mNext);
+        mNext = (mNext + 1) % mEpochs.length;
+        return mDop.getPdop(DopEngine.SUBSET_ALL);
+    }
+}
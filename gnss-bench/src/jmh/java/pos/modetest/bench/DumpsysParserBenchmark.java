@@ -0,0 +1,64 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.config.DumpDocument;
+import pos.modetest.core.config.DumpsysParser;
+
+/** A 2 MiB location dump streamed in 16 KiB chunks as dumpsys writes it, then searched */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DumpsysParserBenchmark {
+    private static final String DUMP_LOCATION = "/dumpsys/location.txt";
+    private static final int DUMP_SIZE = 2 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private byte[] mDump;
+    private final byte[] mChunk = new byte[CHUNK_SIZE];
+    private DumpDocument mDocument;
+
+    @Setup
+    public void setUp() throws IOException {
+        String section;
+        try (InputStream in = Objects.requireNonNull(
+                DumpsysParserBenchmark.class.getResourceAsStream(DUMP_LOCATION), DUMP_LOCATION)) {
+            section = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        var buf = new StringBuilder();
+        while (buf.length() < DUMP_SIZE) {
+            buf.append(section);
+        }
+        mDump = buf.toString().getBytes(StandardCharsets.UTF_8);
+        mDocument = parse();
+    }
+
+    @Benchmark
+    public DumpDocument parse() {
+        var parser = new DumpsysParser(new DumpDocument());
+        for (int off = 0; off < mDump.length; off += CHUNK_SIZE) {
+            int n = Math.min(CHUNK_SIZE, mDump.length - off);
+            System.arraycopy(mDump, off, mChunk, 0, n);
+            parser.onChunk(mChunk, n);
+        }
+        parser.finish();
+        return parser.getDocument();
+    }
+
+    @Benchmark
+    public int[] search() {
+        return mDocument.search("ttff min");
+    }
+}
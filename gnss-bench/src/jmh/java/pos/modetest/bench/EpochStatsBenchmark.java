@@ -0,0 +1,41 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.MeasurementEpochStats;
+
+/** Per-epoch AGC, multipath and C/N0 statistics of the measurement panel */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EpochStatsBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private MeasurementData[] mEpochs;
+    private final MeasurementEpochStats mStats = new MeasurementEpochStats();
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mEpochs = Fixtures.load(fixture).getMeasurements();
+    }
+
+    @Benchmark
+    public double update() {
+        mStats.update(mEpochs[mNext]);
+        mNext = (mNext + 1) % mEpochs.length;
+        return mStats.getAgcMean();
+    }
+}
@@ -0,0 +1,50 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.FixFormat;
+
+/** All LocationHolder fields bound by the location panel for one fix */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FixFormatBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private FixData[] mFixes;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFixes = Fixtures.load(fixture).getFixes();
+    }
+
+    @Benchmark
+    public void formatFix(Blackhole bh) {
+        FixData fix = mFixes[mNext];
+        mNext = (mNext + 1) % mFixes.length;
+        bh.consume(FixFormat.formatLatitude(fix));
+        bh.consume(FixFormat.formatLongitude(fix));
+        bh.consume(FixFormat.formatAltitude(fix));
+        bh.consume(FixFormat.formatAccuracy(fix));
+        bh.consume(FixFormat.formatVerticalAccuracy(fix));
+        bh.consume(FixFormat.formatSpeed(fix));
+        bh.consume(FixFormat.formatBearing(fix));
+        bh.consume(FixFormat.formatBearingAccuracy(fix));
+        bh.consume(FixFormat.formatRealTime(fix));
+        bh.consume(FixFormat.formatTime(fix));
+    }
+}
@@ -0,0 +1,49 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.stats.FixKalmanFilter;
+
+/**
+ * Kalman filter stage of every delivered fix. Fixes are replayed in a loop, the time going
+ * back at each lap restarts the filter once per lap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FixKalmanBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    @Param({"" + FixKalmanFilter.MODEL_CONSTANT_VELOCITY,
+            "" + FixKalmanFilter.MODEL_CONSTANT_ACCELERATION})
+    public int model;
+
+    private FixData[] mFixes;
+    private FixKalmanFilter mFilter;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFixes = Fixtures.load(fixture).getFixes();
+        mFilter = new FixKalmanFilter(model);
+    }
+
+    @Benchmark
+    public double update() {
+        mFilter.update(mFixes[mNext]);
+        mNext = (mNext + 1) % mFixes.length;
+        return mFilter.getLatitude();
+    }
+}
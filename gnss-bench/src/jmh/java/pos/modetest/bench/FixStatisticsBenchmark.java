@@ -0,0 +1,50 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.stats.FixStatistics;
+import pos.modetest.core.stats.FixStatsFormat;
+
+/** Streaming fix statistics: one fix added, and the stats panel text of MainActivity */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FixStatisticsBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private FixData[] mFixes;
+    private final FixStatistics mStats = new FixStatistics();
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFixes = Fixtures.load(fixture).getFixes();
+        for (FixData fix : mFixes) {
+            mStats.addFix(fix);
+        }
+    }
+
+    @Benchmark
+    public double addFix() {
+        mStats.addFix(mFixes[mNext]);
+        mNext = (mNext + 1) % mFixes.length;
+        return mStats.getCep50Meters();
+    }
+
+    @Benchmark
+    public String formatSummary() {
+        return FixStatsFormat.formatSummary(mStats);
+    }
+}
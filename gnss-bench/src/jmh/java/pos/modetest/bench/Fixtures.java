@@ -0,0 +1,247 @@
+package pos.modetest.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.gnss.PseudorangeEngine;
+import pos.modetest.core.recorder.SessionFormat;
+import pos.modetest.core.recorder.SessionReader;
+import pos.modetest.core.recorder.SessionWriter;
+
+/**
+ * Benchmark inputs. A fixture is either {@link #SYNTHETIC} or the path of a recorded session.
+ */
+final class Fixtures {
+    static final String SYNTHETIC = "synthetic";
+    static final String LOGCAT_CAPTURE = "/logcat/bluesky_capture.txt";
+
+    // Same filters as BlueskyLogObserver
+    static final List<String> LOGCAT_FILTERS = List.of(
+            ".*LocationManagerService:.*",
+            ".*hasEnvironmentBearing.*",
+            ".*(Bluesky(Manager|Registrant)|GCoreFlp):.*"
+    );
+
+    private static final int SYNTHETIC_EPOCHS = 60;
+    private static final long START_WALL_MS = 1_760_000_000_000L;
+    private static final long START_ELAPSED_NS = 100_000_000_000L;
+    private static final long SECOND_NS = 1_000_000_000L;
+    // GPS time of the first epoch is about 2024-05
+    private static final long SYNTHETIC_FULL_BIAS_NS = -1_400_000_000_000_000_000L;
+
+    // Multi-band signal plan of a recent phone: {constellation, svid count, carrier MHz...}
+    private static final int[] PLAN_TYPES = {Constellation.GPS, Constellation.GPS,
+            Constellation.GALILEO, Constellation.GALILEO, Constellation.BEIDOU,
+            Constellation.BEIDOU, Constellation.GLONASS, Constellation.QZSS, Constellation.SBAS};
+    private static final int[] PLAN_SVS = {10, 6, 8, 8, 10, 6, 7, 2, 2};
+    private static final double[] PLAN_MHZ = {1575.42, 1176.45, 1575.42, 1176.45, 1561.098,
+            1176.45, 1602, 1575.42, 1575.42};
+
+    private final List<SatelliteData> mSatellites = new ArrayList<>();
+    private final List<MeasurementData> mMeasurements = new ArrayList<>();
+    private final List<FixData> mFixes = new ArrayList<>();
+    private final List<NavMessageData> mNavMessages = new ArrayList<>();
+
+    private Fixtures() {
+    }
+
+    SatelliteData[] getSatellites() {
+        return mSatellites.toArray(new SatelliteData[0]);
+    }
+
+    MeasurementData[] getMeasurements() {
+        return mMeasurements.toArray(new MeasurementData[0]);
+    }
+
+    FixData[] getFixes() {
+        return mFixes.toArray(new FixData[0]);
+    }
+
+    /** Navigation messages in arrival order, may be empty for a recorded session */
+    NavMessageData[] getNavMessages() {
+        return mNavMessages.toArray(new NavMessageData[0]);
+    }
+
+    static Fixtures load(String fixture) throws IOException {
+        var fixtures = new Fixtures();
+        if (SYNTHETIC.equals(fixture)) {
+            for (int e = 0; e < SYNTHETIC_EPOCHS; e++) {
+                fixtures.mSatellites.add(syntheticSatellites(e));
+                fixtures.mMeasurements.add(syntheticMeasurements(e));
+                fixtures.mFixes.add(syntheticFix(e));
+            }
+            fixtures.mNavMessages.addAll(SyntheticSky.navMessages());
+            return fixtures;
+        }
+        try (var reader = new SessionReader(Path.of(fixture))) {
+            while (reader.next()) {
+                switch (reader.getType()) {
+                    case SessionFormat.TYPE_SATELLITES -> {
+                        var sats = new SatelliteData();
+                        reader.readSatellites(sats);
+                        fixtures.mSatellites.add(sats);
+                    }
+                    case SessionFormat.TYPE_MEASUREMENTS -> {
+                        var meas = new MeasurementData();
+                        reader.readMeasurements(meas);
+                        fixtures.mMeasurements.add(meas);
+                    }
+                    case SessionFormat.TYPE_FIX -> {
+                        var fix = new FixData();
+                        reader.readFix(fix);
+                        fixtures.mFixes.add(fix);
+                    }
+                    case SessionFormat.TYPE_NAV_MESSAGE -> {
+                        var msg = new NavMessageData();
+                        reader.readNavMessage(msg);
+                        fixtures.mNavMessages.add(msg);
+                    }
+                }
+            }
+        }
+        if (fixtures.mSatellites.isEmpty() || fixtures.mMeasurements.isEmpty()
+                || fixtures.mFixes.isEmpty()) {
+            throw new IOException("Session needs satellites, measurements and fixes: " + fixture);
+        }
+        return fixtures;
+    }
+
+    /** Session file to replay, synthetic sessions are written to a temp file */
+    static Path sessionFile(String fixture, Path tempDir) throws IOException {
+        if (!SYNTHETIC.equals(fixture)) {
+            return Path.of(fixture);
+        }
+        Path file = tempDir.resolve("synthetic" + SessionFormat.FILE_EXTENSION);
+        load(SYNTHETIC).write(file);
+        return file;
+    }
+
+    /** Writes the fixture as a session, one epoch of satellites, measurements and fix per second */
+    void write(Path file) throws IOException {
+        int epochs = Math.max(mSatellites.size(), Math.max(mMeasurements.size(), mFixes.size()));
+        try (var writer = new SessionWriter(file, START_WALL_MS, START_ELAPSED_NS)) {
+            writer.writeGnssEvent(START_ELAPSED_NS, SessionFormat.GNSS_STARTED, 0);
+            for (int e = 0; e < epochs; e++) {
+                long t = START_ELAPSED_NS + e * SECOND_NS;
+                if (e < mSatellites.size()) writer.writeSatellites(t, mSatellites.get(e));
+                if (e < mMeasurements.size()) {
+                    writer.writeMeasurements(t + 1000, mMeasurements.get(e));
+                }
+                if (e < mFixes.size()) writer.writeFix(t + 50_000_000L, mFixes.get(e));
+            }
+            writer.writeGnssEvent(START_ELAPSED_NS + epochs * SECOND_NS,
+                    SessionFormat.GNSS_STOPPED, 0);
+        }
+    }
+
+    static List<String> logcatLines() throws IOException {
+        var stream = Objects.requireNonNull(Fixtures.class.getResourceAsStream(LOGCAT_CAPTURE),
+                LOGCAT_CAPTURE);
+        List<String> lines = new ArrayList<>();
+        try (var reader = new BufferedReader(
+                new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static SatelliteData syntheticSatellites(int epoch) {
+        var sats = new SatelliteData();
+        for (int p = 0; p < PLAN_TYPES.length; p++) {
+            for (int sv = 1; sv <= PLAN_SVS[p]; sv++) {
+                double mhz = PLAN_TYPES[p] == Constellation.GLONASS
+                        ? PLAN_MHZ[p] + (sv - 4) * 0.5625 : PLAN_MHZ[p];
+                // a quarter of the signals change their C/N0 every epoch
+                float cn0 = 22f + (sv * 7 + p * 3) % 25 + ((sv + epoch) % 4 == 0 ? epoch % 3 : 0);
+                int flags = (sv % 3 != 0 ? SatelliteData.FLAG_USED_IN_FIX : 0)
+                        | SatelliteData.FLAG_HAS_EPHEMERIS | SatelliteData.FLAG_HAS_ALMANAC;
+                sats.add(PLAN_TYPES[p], sv, flags, cn0, 5f + (sv * 13) % 80,
+                        (sv * 37 + p * 11 + epoch * 0.1f) % 360, (float) (mhz * 1e6),
+                        cn0 - 3f);
+            }
+        }
+        return sats;
+    }
+
+    private static MeasurementData syntheticMeasurements(int epoch) {
+        var meas = new MeasurementData();
+        meas.setTimeNanos(epoch * SECOND_NS);
+        meas.setFullBiasNanos(SYNTHETIC_FULL_BIAS_NS);
+        meas.setLeapSecond(18);
+        meas.setBiasNanos(0.25);
+        meas.setDriftNanosPerSecond(12.5);
+        meas.setElapsedRealtimeNanos(START_ELAPSED_NS + epoch * SECOND_NS);
+        for (int p = 0; p < PLAN_TYPES.length; p++) {
+            for (int sv = 1; sv <= PLAN_SVS[p]; sv++) {
+                int i = meas.add(PLAN_TYPES[p], sv);
+                meas.setCn0DbHz(i, 22 + (sv * 7 + p * 3) % 25);
+                meas.setCarrierFrequencyHz(i, (float) (PLAN_MHZ[p] * 1e6));
+                meas.setAutomaticGainControlLevelDb(i, PLAN_MHZ[p] > 1500 ? 1.5 : -2.0);
+                meas.setMultipathIndicator(i, (sv + epoch) % 9 == 0
+                        ? MeasurementData.MULTIPATH_INDICATOR_DETECTED : 0);
+                setReceivedSvTime(meas, i, 70_000_000L + sv * 1_000_000L);
+                meas.setPseudorangeRateMetersPerSecond(i, -400 + sv * 61.5);
+            }
+        }
+        return meas;
+    }
+
+    /** State and received time of a signal decoded down to the week, day or SBAS second */
+    private static void setReceivedSvTime(MeasurementData meas, int i, long travelNanos) {
+        long rxNanos = meas.getTimeNanos() - meas.getFullBiasNanos() - travelNanos;
+        int state = MeasurementData.STATE_CODE_LOCK;
+        long received = switch (meas.getConstellation(i)) {
+            case Constellation.GLONASS -> {
+                state |= MeasurementData.STATE_GLO_TOD_DECODED;
+                yield Math.floorMod(rxNanos + PseudorangeEngine.GLONASS_OFFSET_NANOS
+                        - 18 * SECOND_NS, PseudorangeEngine.DAY_NANOS);
+            }
+            case Constellation.BEIDOU -> {
+                state |= MeasurementData.STATE_TOW_DECODED;
+                yield Math.floorMod(rxNanos - PseudorangeEngine.BDS_OFFSET_NANOS,
+                        PseudorangeEngine.WEEK_NANOS);
+            }
+            case Constellation.SBAS -> {
+                state |= MeasurementData.STATE_SBAS_SYNC;
+                yield Math.floorMod(rxNanos, SECOND_NS);
+            }
+            default -> {
+                state |= MeasurementData.STATE_TOW_DECODED;
+                yield Math.floorMod(rxNanos, PseudorangeEngine.WEEK_NANOS);
+            }
+        };
+        meas.setState(i, state);
+        meas.setReceivedSvTimeNanos(i, received);
+    }
+
+    private static FixData syntheticFix(int epoch) {
+        var fix = new FixData();
+        fix.setProvider("gps");
+        fix.setTimeMillis(START_WALL_MS + epoch * 1000L);
+        fix.setElapsedRealtimeNanos(START_ELAPSED_NS + epoch * SECOND_NS);
+        fix.setLatitude(35.681236 + epoch * 1e-5);
+        fix.setLongitude(139.767125 - epoch * 1e-5);
+        fix.setAltitude(40.5 + epoch % 5);
+        fix.setSpeed(1.25f);
+        fix.setBearing(epoch * 3 % 360);
+        fix.setAccuracy(3.5f + epoch % 4);
+        fix.setVerticalAccuracy(6f);
+        fix.setSpeedAccuracy(0.5f);
+        fix.setBearingAccuracy(12f);
+        return fix;
+    }
+}
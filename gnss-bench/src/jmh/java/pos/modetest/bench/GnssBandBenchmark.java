@@ -0,0 +1,59 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.GnssBand;
+import pos.modetest.core.data.SatelliteData;
+
+/** Band classification of every signal of a satellite status epoch, index vs if/else chain */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GnssBandBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private SatelliteData[] mEpochs;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mEpochs = Fixtures.load(fixture).getSatellites();
+    }
+
+    @Benchmark
+    public void classifyIndexed(Blackhole bh) {
+        SatelliteData sats = nextEpoch();
+        for (int i = 0; i < sats.getCount(); i++) {
+            bh.consume(GnssBand.classify(sats.getConstellation(i), sats.getCarrierFrequencyHz(i))
+                    .getLabel());
+        }
+    }
+
+    /** Same epochs through the if/else chain the index replaced */
+    @Benchmark
+    public void classifyLegacy(Blackhole bh) {
+        SatelliteData sats = nextEpoch();
+        for (int i = 0; i < sats.getCount(); i++) {
+            bh.consume(LegacyBandChain.label(sats.getConstellation(i),
+                    sats.getCarrierFrequencyHz(i)));
+        }
+    }
+
+    private SatelliteData nextEpoch() {
+        SatelliteData sats = mEpochs[mNext];
+        mNext = (mNext + 1) % mEpochs.length;
+        return sats;
+    }
+}
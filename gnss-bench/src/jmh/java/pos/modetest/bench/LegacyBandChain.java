@@ -0,0 +1,75 @@
+package pos.modetest.bench;
+
+import pos.modetest.core.data.Constellation;
+
+/**
+ * If/else chain of GnssSvStatusHolder.getFrequency() before the band index, with the
+ * HelperUtils.checkFreqBand() helpers of the app, as the baseline of {@link GnssBandBenchmark}.
+ */
+final class LegacyBandChain {
+    private LegacyBandChain() {
+    }
+
+    static String label(int type, double freqHz) {
+        double freqMHz = freqHz / 1_000_000d;
+        return switch (type) {
+            case Constellation.GPS -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1227.60, 1d)) yield "L2";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else yield null;
+            }
+            case Constellation.GLONASS -> {
+                if (checkFreqBand(freqMHz, 1598.0625, 1607.0625, 0.1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1242.9375, 1249.9375, 0.1d)) yield "L2";
+                else if (checkFreqBand(freqMHz, 1201.743, 1208.511, 0.1d)) yield "L3";
+                else yield null;
+            }
+            case Constellation.GALILEO -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "E1";
+                else if (checkFreqBand(freqMHz, 1278.75, 1d)) yield "E6";
+                else if (checkFreqBand(freqMHz, 1191.795, 1d)) yield "E5";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "E5a";
+                else if (checkFreqBand(freqMHz, 1207.14, 1d)) yield "E5b";
+                else yield null;
+            }
+            case Constellation.BEIDOU -> {
+                if (checkFreqBand(freqMHz, 1561.098, 1d)) yield "B1I";
+                else if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "B1C";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "B2a";
+                else if (checkFreqBand(freqMHz, 1207.14, 1d)) yield "B2b";
+                else if (checkFreqBand(freqMHz, 1268.52, 1d)) yield "B3";
+                else yield null;
+            }
+            case Constellation.QZSS -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1227.6, 1d)) yield "L2";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else if (checkFreqBand(freqMHz, 1278.75, 1d)) yield "L6";
+                else yield null;
+            }
+            case Constellation.IRNSS -> {
+                if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else if (checkFreqBand(freqMHz, 2492.028, 1d)) yield "S";
+                else yield null;
+            }
+            case Constellation.SBAS -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else yield null;
+            }
+            default -> null;
+        };
+    }
+
+    private static boolean checkFreqBand(double freqHz, double startFreqHz, double stopFreqHz,
+                                         double tolerance) {
+        return freqHz >= (startFreqHz - tolerance) && freqHz <= (stopFreqHz + tolerance);
+    }
+
+    private static boolean checkFreqBand(double freqHz, double centerFreqHz, double tolerance) {
+        return Math.copySign(freqHz - centerFreqHz, 1.0) <= tolerance
+                || (freqHz == centerFreqHz)
+                || (Double.isNaN(freqHz) && Double.isNaN(centerFreqHz));
+    }
+}
@@ -0,0 +1,52 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.utils.LogClassifier;
+
+/** Bluesky logcat filters over a recorded capture, one operation per line */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogClassifierBenchmark {
+    private List<String> mLines;
+    private LogClassifier mClassifier;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mLines = Fixtures.logcatLines();
+        mClassifier = new LogClassifier(Fixtures.LOGCAT_FILTERS);
+    }
+
+    @Benchmark
+    public int classify() {
+        String line = mLines.get(mNext);
+        mNext = (mNext + 1) % mLines.size();
+        return mClassifier.classify(line);
+    }
+
+    /** LogObserver.readLogcat() filter followed by BlueskyLogObserver.onLogEvent() before */
+    @Benchmark
+    public int classifyLegacy() {
+        String line = mLines.get(mNext);
+        mNext = (mNext + 1) % mLines.size();
+        if (Fixtures.LOGCAT_FILTERS.stream().noneMatch(line::matches)) {
+            return LogClassifier.NO_MATCH;
+        }
+        for (int i = 0; i < Fixtures.LOGCAT_FILTERS.size(); i++) {
+            if (line.matches(Fixtures.LOGCAT_FILTERS.get(i))) return i;
+        }
+        return LogClassifier.NO_MATCH;
+    }
+}
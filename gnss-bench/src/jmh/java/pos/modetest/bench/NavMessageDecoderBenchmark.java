@@ -0,0 +1,49 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.gnss.EphemerisCache;
+import pos.modetest.core.gnss.NavMessageDecoder;
+
+/** One navigation message decoded, repeated frames once every SV is known */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NavMessageDecoderBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private NavMessageData[] mMessages;
+    private final NavMessageDecoder mDecoder = new NavMessageDecoder(new EphemerisCache());
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mMessages = Fixtures.load(fixture).getNavMessages();
+        if (mMessages.length == 0) {
+            throw new IOException("Session has no navigation messages: " + fixture);
+        }
+        mDecoder.setReferenceWeek(SyntheticSky.WEEK);
+        for (NavMessageData msg : mMessages) {
+            mDecoder.decode(msg);
+        }
+    }
+
+    @Benchmark
+    public boolean decode() {
+        boolean changed = mDecoder.decode(mMessages[mNext]);
+        mNext = (mNext + 1) % mMessages.length;
+        return changed;
+    }
+}
@@ -0,0 +1,72 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.gnss.Ephemeris;
+import pos.modetest.core.gnss.OrbitGrid;
+import pos.modetest.core.gnss.OrbitPropagator;
+import pos.modetest.core.gnss.SatelliteOrbit;
+
+/** Sky plot grid of the synthetic sky, and single SV positions fitted or from the ephemeris */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrbitPropagatorBenchmark {
+    private static final double START = SyntheticSky.gpsSeconds(SyntheticSky.TOE - 1800);
+
+    private OrbitPropagator mPropagator;
+    private final OrbitGrid mGrid = new OrbitGrid();
+    private Ephemeris mEphemeris;
+    private final double[] mOut = new double[4];
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        var cache = SyntheticSky.newCache();
+        mPropagator = new OrbitPropagator(cache);
+        mEphemeris = cache.get(Constellation.GPS, 1);
+        mGrid.setReceiver(SyntheticSky.LAT, SyntheticSky.LON, SyntheticSky.ALT);
+        mPropagator.propagate(START, 30, 61, mGrid);
+    }
+
+    @Benchmark
+    public OrbitGrid propagateRefit() {
+        mPropagator.clear();
+        mPropagator.propagate(START, 30, 61, mGrid);
+        return mGrid;
+    }
+
+    @Benchmark
+    public OrbitGrid propagateFitted() {
+        mPropagator.propagate(START, 30, 61, mGrid);
+        return mGrid;
+    }
+
+    @Benchmark
+    public double[] positionFitted() {
+        mPropagator.getPosition(Constellation.GPS, 1, START + nextOffset(), mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public double[] positionDirect() {
+        SatelliteOrbit.compute(mEphemeris, SyntheticSky.WEEK,
+                SyntheticSky.TOE - 1800 + nextOffset(), mOut);
+        return mOut;
+    }
+
+    /** Within the fitted half hour */
+    private double nextOffset() {
+        mNext = (mNext + 1) % 1800;
+        return mNext;
+    }
+}
@@ -0,0 +1,40 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.utils.ProcessRunner;
+
+/** Start to result latency of a dumpsys-sized command output, needs a POSIX sh */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProcessRunnerBenchmark {
+    private static final long TIMEOUT_MS = 10_000;
+
+    @Param({"65536", "524288", "4194304"})
+    public int size;
+
+    private ProcessRunner mRunner;
+    private String[] mArgs;
+
+    @Setup
+    public void setUp() {
+        mRunner = new ProcessRunner();
+        mArgs = new String[]{"sh", "-c",
+                "yes 'mLastLocation[gps 35.681236,139.767125 hAcc=3.5]' | head -c " + size};
+    }
+
+    @Benchmark
+    public int dump() throws Exception {
+        return mRunner.run(mArgs, TIMEOUT_MS).get().getStdoutSize();
+    }
+}
@@ -0,0 +1,41 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.gnss.PseudorangeEngine;
+
+/** Pseudoranges of one measurement epoch */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PseudorangeBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private MeasurementData[] mEpochs;
+    private final PseudorangeEngine mEngine = new PseudorangeEngine();
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mEpochs = Fixtures.load(fixture).getMeasurements();
+    }
+
+    @Benchmark
+    public int compute() {
+        int valid = mEngine.compute(mEpochs[mNext]);
+        mNext = (mNext + 1) % mEpochs.length;
+        return valid;
+    }
+}
@@ -0,0 +1,48 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.gnss.EphemerisCache;
+import pos.modetest.core.gnss.PseudorangeEngine;
+import pos.modetest.core.gnss.PvtEngine;
+
+/** Least squares position of one dual band epoch, from scratch and from the last fix */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PvtEngineBenchmark {
+    private EphemerisCache mCache;
+    private MeasurementData mEpoch;
+    private final PseudorangeEngine mPseudoranges = new PseudorangeEngine();
+    private final PvtEngine mPvt = new PvtEngine();
+
+    @Setup
+    public void setUp() {
+        mCache = SyntheticSky.newCache();
+        mEpoch = SyntheticSky.newEpoch(mCache);
+        mPseudoranges.compute(mEpoch);
+        if (!mPvt.solve(mEpoch, mPseudoranges, mCache)) {
+            throw new IllegalStateException("No fix, status " + mPvt.getStatus());
+        }
+    }
+
+    @Benchmark
+    public boolean solveCold() {
+        mPvt.clear();
+        return mPvt.solve(mEpoch, mPseudoranges, mCache);
+    }
+
+    @Benchmark
+    public boolean solveWarm() {
+        return mPvt.solve(mEpoch, mPseudoranges, mCache);
+    }
+}
@@ -0,0 +1,52 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.GnssBand;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.data.SatelliteStateStore;
+
+/** Satellite status epoch applied to the store, then the status line queries */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SatelliteStateStoreBenchmark {
+    private static final long EPOCH_NS = 1_000_000_000L;
+
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private SatelliteData[] mEpochs;
+    private final SatelliteStateStore mStore = new SatelliteStateStore();
+    private int mNext;
+    private long mElapsedNanos;
+
+    @Setup
+    public void setUp() throws IOException {
+        mEpochs = Fixtures.load(fixture).getSatellites();
+    }
+
+    @Benchmark
+    public int update() {
+        mStore.update(mEpochs[mNext], mElapsedNanos += EPOCH_NS);
+        mNext = (mNext + 1) % mEpochs.length;
+        return mStore.getUsedCount();
+    }
+
+    @Benchmark
+    public double query() {
+        return mStore.getUsedCount(GnssBand.Group.L5)
+                + mStore.getTopCn0MeanDbHz(Constellation.GPS, 4);
+    }
+}
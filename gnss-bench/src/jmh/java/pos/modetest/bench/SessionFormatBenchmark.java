@@ -0,0 +1,77 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.recorder.SessionFormat;
+import pos.modetest.core.recorder.SessionReader;
+
+/** Writing and decoding a whole session file, one operation per session */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SessionFormatBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private Fixtures mFixtures;
+    private Path mTempDir;
+    private Path mWriteFile;
+    private Path mReadFile;
+    private final SatelliteData mSatellites = new SatelliteData();
+    private final MeasurementData mMeasurements = new MeasurementData();
+    private final FixData mFix = new FixData();
+
+    @Setup
+    public void setUp() throws IOException {
+        mFixtures = Fixtures.load(fixture);
+        mTempDir = Files.createTempDirectory("gnss-bench");
+        mWriteFile = mTempDir.resolve("write" + SessionFormat.FILE_EXTENSION);
+        mReadFile = Fixtures.sessionFile(fixture, mTempDir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(mTempDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(mTempDir);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        mFixtures.write(mWriteFile);
+        return Files.size(mWriteFile);
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        try (var reader = new SessionReader(mReadFile)) {
+            while (reader.next()) {
+                switch (reader.getType()) {
+                    case SessionFormat.TYPE_SATELLITES -> reader.readSatellites(mSatellites);
+                    case SessionFormat.TYPE_MEASUREMENTS -> reader.readMeasurements(mMeasurements);
+                    case SessionFormat.TYPE_FIX -> reader.readFix(mFix);
+                }
+            }
+            return reader.getRecordCount();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package pos.modetest.bench;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.FixFormat;
+import pos.modetest.core.data.GnssSvTableModel;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.MeasurementEpochStats;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.recorder.SessionPlayer;
+
+/**
+ * End to end: a whole session replayed as fast as possible through the same processing as
+ * MainActivity, table model, epoch statistics and fix formatting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SessionReplayBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private Path mTempDir;
+    private SessionPlayer mPlayer;
+    // Keeps the listener work observable so it isn't eliminated
+    private long mSink;
+
+    @Setup
+    public void setUp() throws IOException {
+        mTempDir = Files.createTempDirectory("gnss-bench");
+        var model = new GnssSvTableModel();
+        var stats = new MeasurementEpochStats();
+        mPlayer = new SessionPlayer(Fixtures.sessionFile(fixture, mTempDir),
+                new SessionPlayer.DefaultListener() {
+                    @Override
+                    public void onSatellites(long elapsedRealtimeNanos,
+                                             @NonNull SatelliteData satellites) {
+                        model.update(satellites);
+                        mSink += model.getDirtyCount();
+                    }
+
+                    @Override
+                    public void onMeasurements(long elapsedRealtimeNanos,
+                                               @NonNull MeasurementData measurements) {
+                        stats.update(measurements);
+                        mSink += stats.getMultipathCount();
+                    }
+
+                    @Override
+                    public void onFix(long elapsedRealtimeNanos, @NonNull FixData fix) {
+                        mSink += FixFormat.formatLatitude(fix).length()
+                                + FixFormat.formatLongitude(fix).length()
+                                + FixFormat.formatAccuracy(fix).length();
+                    }
+                });
+        mPlayer.setSpeed(SessionPlayer.SPEED_ASAP);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (var files = Files.list(mTempDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(mTempDir);
+    }
+
+    @Benchmark
+    public long replay() throws IOException, InterruptedException {
+        return mPlayer.play() + mSink;
+    }
+}
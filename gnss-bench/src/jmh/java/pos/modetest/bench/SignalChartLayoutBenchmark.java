@@ -0,0 +1,57 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.chart.SignalChartLayout;
+import pos.modetest.core.data.SatelliteData;
+
+/** Chart geometry of one status epoch, then of one animation frame */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignalChartLayoutBenchmark {
+    private static final int FRAMES_PER_EPOCH = 60;
+
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private SatelliteData[] mEpochs;
+    private final SignalChartLayout mLayout = new SignalChartLayout();
+    private int mNext;
+    private int mFrame;
+
+    @Setup
+    public void setUp() throws IOException {
+        mEpochs = Fixtures.load(fixture).getSatellites();
+        mLayout.setSize(1080, 1400, 32);
+        mLayout.update(mEpochs[0]);
+    }
+
+    @Benchmark
+    public int update() {
+        mLayout.update(mEpochs[mNext]);
+        mNext = (mNext + 1) % mEpochs.length;
+        return mLayout.getCount();
+    }
+
+    @Benchmark
+    public float frame() {
+        mFrame = mFrame % FRAMES_PER_EPOCH + 1;
+        if (mFrame == 1) {
+            mLayout.update(mEpochs[mNext]);
+            mNext = (mNext + 1) % mEpochs.length;
+        }
+        mLayout.setProgress(mFrame / (float) FRAMES_PER_EPOCH);
+        return mLayout.getCount() > 0 ? mLayout.getX(0) : 0f;
+    }
+}
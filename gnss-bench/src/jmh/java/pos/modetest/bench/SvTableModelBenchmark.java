@@ -0,0 +1,41 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.GnssSvTableModel;
+import pos.modetest.core.data.SatelliteData;
+
+/** Satellite status epoch to table rows to re-bind, as done by GnssSvTableLayout */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SvTableModelBenchmark {
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private SatelliteData[] mEpochs;
+    private final GnssSvTableModel mModel = new GnssSvTableModel();
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mEpochs = Fixtures.load(fixture).getSatellites();
+    }
+
+    @Benchmark
+    public int update() {
+        mModel.update(mEpochs[mNext]);
+        mNext = (mNext + 1) % mEpochs.length;
+        return mModel.getDirtyCount();
+    }
+}
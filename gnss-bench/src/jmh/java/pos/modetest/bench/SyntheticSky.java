@@ -0,0 +1,220 @@
+package pos.modetest.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.gnss.Atmosphere;
+import pos.modetest.core.gnss.Ephemeris;
+import pos.modetest.core.gnss.EphemerisCache;
+import pos.modetest.core.gnss.GnssTime;
+import pos.modetest.core.gnss.NavMessageDecoder;
+import pos.modetest.core.gnss.PseudorangeEngine;
+import pos.modetest.core.gnss.PvtEngine;
+import pos.modetest.core.gnss.SatelliteOrbit;
+import pos.modetest.core.gnss.Wgs84;
+
+/**
+ * A synthetic GPS constellation broadcast as LNAV subframes, and the dual band measurements of a
+ * receiver at a fixed position, for the engines that need orbits.
+ */
+final class SyntheticSky {
+    static final int WEEK = 2400;
+    static final double TOE = 7200;
+    static final double RX_TOW = 7300;
+    static final double LAT = Math.toRadians(48.137);
+    static final double LON = Math.toRadians(11.575);
+    static final double ALT = 520;
+
+    private static final double C = PseudorangeEngine.SPEED_OF_LIGHT_M_S;
+    private static final long SECOND_NS = PseudorangeEngine.SECOND_NANOS;
+    private static final long TIME_NANOS = 5_000 * SECOND_NS;
+    private static final double MASK = Math.toRadians(5);
+    /** Receiver clock per state: GPS L1, GPS L5, Galileo E1, Galileo E5a */
+    private static final double[] CLOCKS = {42.5, 45.25};
+    private static final double[] KLOBUCHAR = {1.1176e-8, 7.4506e-9, -5.9605e-8, -5.9605e-8,
+            90112, 0, -196608, -65536};
+    private static final int SV_COUNT = 32;
+    private static final int LNAV_WORDS = 10;
+    private static final int LNAV_PREAMBLE = 0x8B;
+    private static final int LNAV_TOW = 7000;
+    private static final int[] LNAV_PARITY_MASKS = {
+            0xBB1F3480, 0x5D8F9A40, 0xAEC7CD00, 0x5763E680, 0x6BB1F340, 0x8B7A89C0};
+
+    private SyntheticSky() {
+    }
+
+    static double gpsSeconds(double timeOfWeek) {
+        return WEEK * GnssTime.WEEK_SECONDS + timeOfWeek;
+    }
+
+    /** Subframes 1-3 of 32 GPS SVs in 6 planes, in broadcast order */
+    static List<NavMessageData> navMessages() {
+        List<NavMessageData> messages = new ArrayList<>();
+        for (int sv = 1; sv <= SV_COUNT; sv++) {
+            int plane = (sv - 1) % 6;
+            int[][] subframes = ephemerisSubframes(sv, Math.toRadians(55), plane * Math.PI / 3,
+                    ((sv - 1) / 6) * Math.PI / 3 + plane * 0.4);
+            for (int[] words : subframes) {
+                messages.add(encode(sv, words));
+            }
+        }
+        return messages;
+    }
+
+    /** Ephemerides decoded from {@link #navMessages()} and the ionosphere model */
+    static EphemerisCache newCache() {
+        var cache = new EphemerisCache();
+        var decoder = new NavMessageDecoder(cache);
+        decoder.setReferenceWeek(WEEK);
+        for (NavMessageData msg : navMessages()) {
+            decoder.decode(msg);
+        }
+        if (cache.getSvCount() != SV_COUNT || decoder.getRejectedCount() != 0) {
+            throw new IllegalStateException("Decoded " + cache.getSvCount() + " SVs");
+        }
+        cache.setKlobuchar(KLOBUCHAR);
+        return cache;
+    }
+
+    /** L1 and L5 signals of the SVs above 5 degrees at {@link #RX_TOW}, without noise */
+    static MeasurementData newEpoch(EphemerisCache cache) {
+        var data = new MeasurementData();
+        long gpsNanos = WEEK * 604_800L * SECOND_NS + (long) (RX_TOW * SECOND_NS);
+        data.setTimeNanos(TIME_NANOS);
+        data.setFullBiasNanos(TIME_NANOS - gpsNanos);
+        data.setLeapSecond(PseudorangeEngine.DEFAULT_LEAP_SECONDS);
+
+        double[] rx = new double[3];
+        Wgs84.toEcef(LAT, LON, ALT, rx);
+        double[] orbit = new double[4];
+        for (Ephemeris eph : cache.getValid(gpsSeconds(RX_TOW))) {
+            double tau = 0.075;
+            double dx = 0;
+            double dy = 0;
+            double dz = 0;
+            double range = 0;
+            for (int it = 0; it < 5; it++) {
+                SatelliteOrbit.compute(eph, WEEK, RX_TOW - tau, orbit);
+                double theta = Wgs84.OMEGA_E * tau;
+                dx = orbit[0] + theta * orbit[1] - rx[0];
+                dy = orbit[1] - theta * orbit[0] - rx[1];
+                dz = orbit[2] - rx[2];
+                range = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                tau = range / C;
+            }
+            double ex = dx / range;
+            double ey = dy / range;
+            double ez = dz / range;
+            double el = Math.asin(Math.cos(LAT) * (Math.cos(LON) * ex + Math.sin(LON) * ey)
+                    + Math.sin(LAT) * ez);
+            if (el < MASK) continue;
+            double east = -Math.sin(LON) * ex + Math.cos(LON) * ey;
+            double north = -Math.sin(LAT) * (Math.cos(LON) * ex + Math.sin(LON) * ey)
+                    + Math.cos(LAT) * ez;
+            double iono = Atmosphere.klobucharMeters(KLOBUCHAR, LAT, LON,
+                    Math.atan2(east, north), el, RX_TOW);
+            double tropo = Atmosphere.troposphereMeters(LAT, ALT, el);
+            for (int band = 0; band < 2; band++) {
+                double freq = band == 0 ? PvtEngine.L1_HZ : PvtEngine.L5_HZ;
+                double gamma = (PvtEngine.L1_HZ / freq) * (PvtEngine.L1_HZ / freq);
+                double pr = range + CLOCKS[band]
+                        - (orbit[3] - gamma * eph.getTgd()) * C + tropo + gamma * iono;
+                double travel = pr / C * 1e9;
+                long whole = (long) Math.floor(travel);
+                int i = data.add(eph.getConstellation(), eph.getSvid());
+                data.setState(i, MeasurementData.STATE_CODE_LOCK
+                        | MeasurementData.STATE_TOW_DECODED);
+                data.setReceivedSvTimeNanos(i, Math.floorMod(gpsNanos - whole,
+                        PseudorangeEngine.WEEK_NANOS));
+                data.setTimeOffsetNanos(i, travel - whole);
+                data.setReceivedSvTimeUncertaintyNanos(i, 10);
+                data.setCarrierFrequencyHz(i, (float) freq);
+                data.setCn0DbHz(i, 30 + 20 * Math.sin(el) - 3 * band);
+            }
+        }
+        return data;
+    }
+
+    private static int[][] ephemerisSubframes(int svid, double i0, double omega0, double m0) {
+        int[] sf1 = subframe(1);
+        set(sf1, 61, 10, WEEK % 1024);
+        set(sf1, 197, 8, Math.round(-4.5e-9 * 0x1p31));
+        set(sf1, 211, 8, svid);
+        set(sf1, 219, 16, (long) TOE / 16);
+        set(sf1, 249, 16, Math.round(1e-12 * 0x1p43));
+        set(sf1, 271, 22, Math.round(1e-5 * (svid % 7 - 3) * 0x1p31));
+
+        int[] sf2 = subframe(2);
+        set(sf2, 61, 8, svid);
+        set(sf2, 91, 16, semicircles(4.5e-9, 43));
+        set32(sf2, 107, 121, semicircles(m0, 31));
+        set32(sf2, 167, 181, Math.round((0.004 + svid * 1e-4) * 0x1p33));
+        set32(sf2, 227, 241, Math.round(5153.7 * 0x1p19));
+        set(sf2, 271, 16, (long) TOE / 16);
+
+        int[] sf3 = subframe(3);
+        set32(sf3, 77, 91, semicircles(omega0, 31));
+        set32(sf3, 137, 151, semicircles(i0, 31));
+        set32(sf3, 197, 211, semicircles(0.5 + svid * 0.01, 31));
+        set(sf3, 241, 24, semicircles(-8e-9, 43));
+        set(sf3, 271, 8, svid);
+        set(sf3, 279, 14, semicircles(2e-10, 43));
+        return new int[][]{sf1, sf2, sf3};
+    }
+
+    /** Radians in semicircles scaled by 2^scale, wrapped to [-1, 1) semicircles */
+    private static long semicircles(double radians, int scale) {
+        double sc = radians / Math.PI;
+        sc -= 2 * Math.floor((sc + 1) / 2);
+        return Math.round(Math.scalb(sc, scale));
+    }
+
+    /** TLM and HOW */
+    private static int[] subframe(int id) {
+        int[] words = new int[LNAV_WORDS];
+        words[0] = LNAV_PREAMBLE << 16;
+        words[1] = ((LNAV_TOW / 6 + id) << 7) | (id << 2);
+        return words;
+    }
+
+    /** Sets ICD bits (1 based) in the 24 data bits of the words */
+    private static void set(int[] words, int start, int length, long value) {
+        for (int k = 0; k < length; k++) {
+            int p = start - 1 + k;
+            int bit = (int) (value >>> (length - 1 - k)) & 1;
+            int shift = 23 - p % 30;
+            words[p / 30] = (words[p / 30] & ~(1 << shift)) | (bit << shift);
+        }
+    }
+
+    private static void set32(int[] words, int msbStart, int lsbStart, long value) {
+        set(words, msbStart, 8, value >>> 24);
+        set(words, lsbStart, 24, value & 0xFFFFFF);
+    }
+
+    /** Parity and the D30* inversion, 30 bits right aligned in 4 bytes per word */
+    private static NavMessageData encode(int svid, int[] words) {
+        var msg = new NavMessageData();
+        msg.set(NavMessageData.TYPE_GPS_L1CA, svid, 1, (words[1] >>> 2) & 7,
+                NavMessageData.STATUS_PARITY_PASSED);
+        byte[] out = msg.ensureData(4 * LNAV_WORDS);
+        int prev = 0;
+        for (int i = 0; i < LNAV_WORDS; i++) {
+            int word = (prev << 30) | (words[i] << 6);
+            int parity = 0;
+            for (int mask : LNAV_PARITY_MASKS) {
+                parity = (parity << 1) | (Integer.bitCount(word & mask) & 1);
+            }
+            word |= parity;
+            if ((prev & 1) != 0) word ^= 0x3FFFFFC0;
+            int raw = word & 0x3FFFFFFF;
+            for (int b = 0; b < 4; b++) {
+                out[4 * i + b] = (byte) (raw >>> (24 - 8 * b));
+            }
+            prev = raw & 3;
+        }
+        return msg;
+    }
+}
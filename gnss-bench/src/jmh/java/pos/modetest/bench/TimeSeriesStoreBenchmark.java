@@ -0,0 +1,68 @@
+package pos.modetest.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.SatelliteData;
+import pos.modetest.core.series.SeriesPoints;
+import pos.modetest.core.series.TimeSeriesStore;
+
+/**
+ * Per-signal history fed at 1 Hz as MainActivity does, on top of an hour already stored, and
+ * the hour read back as a chart would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeSeriesStoreBenchmark {
+    private static final long HOUR_MS = 3_600_000;
+    private static final int CHART_POINTS = 300;
+
+    @Param({Fixtures.SYNTHETIC})
+    public String fixture;
+
+    private SatelliteData[] mSatellites;
+    private MeasurementData[] mMeasurements;
+    private final TimeSeriesStore mStore = new TimeSeriesStore();
+    private final SeriesPoints mPoints = new SeriesPoints();
+    private long mTimeMillis;
+    private int mNext;
+    private int mNextSeries;
+
+    @Setup
+    public void setUp() throws IOException {
+        var fixtures = Fixtures.load(fixture);
+        mSatellites = fixtures.getSatellites();
+        mMeasurements = fixtures.getMeasurements();
+        while (mTimeMillis < HOUR_MS) {
+            addEpoch();
+        }
+    }
+
+    @Benchmark
+    public int addEpoch() {
+        mStore.addStatus(mSatellites[mNext % mSatellites.length], mTimeMillis);
+        mStore.addMeasurements(mMeasurements[mNext % mMeasurements.length], mTimeMillis);
+        mNext++;
+        mTimeMillis += 1000;
+        return mStore.getSeriesCount();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int queryHour() {
+        mNextSeries = (mNextSeries + 1) % mStore.getSeriesCount();
+        mStore.query(mNextSeries, mTimeMillis - HOUR_MS, mTimeMillis, CHART_POINTS, mPoints);
+        return mPoints.getCount();
+    }
+}
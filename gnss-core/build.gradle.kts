@@ -0,0 +1,23 @@
+/**
+ * Pure Java domain logic shared by the app, built and tested on a plain JVM.
+ * Must not depend on the Android framework.
+ */
+
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    api(libs.androidx.annotation)
+
+    testImplementation(libs.junit)
+}
@@ -0,0 +1,336 @@
+package pos.modetest.core.campaign;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.stats.FixStatistics;
+
+/**
+ * Repeats {delete aiding data -> start -> first fix or timeout -> stop -> cool-down} and keeps
+ * the TTFF and first fix of every iteration. The last iteration finishes without cool-down.
+ * <p>
+ * Everything outside the state machine goes through {@link Host}: the location calls and a
+ * single timer. Events and timer callbacks must all come on one thread, stale ones (a fix
+ * after the timeout, a late timer) are ignored.
+ */
+public class TtffCampaign {
+    public static final long DEFAULT_SETTLE_MILLIS = 5_000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 120_000;
+    public static final long DEFAULT_COOL_DOWN_MILLIS = 10_000;
+
+    public static final String CSV_HEADER =
+            "iteration,start_ms,ttff_ms,latitude,longitude,accuracy_m,vertical_accuracy_m";
+
+    public enum State {
+        IDLE,
+        /** Aiding data deleted, waiting for the engine to apply it */
+        SETTLING,
+        WAITING_FIX,
+        COOL_DOWN,
+        FINISHED,
+        CANCELLED,
+    }
+
+    private final Host mHost;
+    private final Listener mListener;
+    private final List<Result> mResults = new ArrayList<>();
+    private final FixStatistics mStats = new FixStatistics();
+
+    private int mIterations = 1;
+    @NonNull
+    private String[] mAidingData = new String[0];
+    private boolean mSingle;
+    private long mSettleMillis = DEFAULT_SETTLE_MILLIS;
+    private long mTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private long mCoolDownMillis = DEFAULT_COOL_DOWN_MILLIS;
+
+    private State mState = State.IDLE;
+    private int mIteration;
+    private int mTimeoutCount;
+    // Current iteration
+    private long mStartMillis;
+    private long mTtffMillis;
+    private boolean mHasFix;
+    private final FixData mFix = new FixData();
+
+    public TtffCampaign(@NonNull Host host, @NonNull Listener listener) {
+        mHost = host;
+        mListener = listener;
+    }
+
+    public int getIterations() {
+        return mIterations;
+    }
+
+    public void setIterations(int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Invalid iterations " + iterations);
+        }
+        mIterations = iterations;
+    }
+
+    @NonNull
+    public String[] getAidingData() {
+        return mAidingData;
+    }
+
+    /** @param aidingData items to delete before each iteration, empty for hot starts */
+    public void setAidingData(@NonNull String[] aidingData) {
+        mAidingData = aidingData.clone();
+    }
+
+    public boolean isSingle() {
+        return mSingle;
+    }
+
+    /** @param single SINGLE request per iteration instead of TRACK */
+    public void setSingle(boolean single) {
+        mSingle = single;
+    }
+
+    public long getSettleMillis() {
+        return mSettleMillis;
+    }
+
+    public void setSettleMillis(long settleMillis) {
+        mSettleMillis = settleMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return mTimeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    public long getCoolDownMillis() {
+        return mCoolDownMillis;
+    }
+
+    public void setCoolDownMillis(long coolDownMillis) {
+        mCoolDownMillis = coolDownMillis;
+    }
+
+    @NonNull
+    public State getState() {
+        return mState;
+    }
+
+    public boolean isRunning() {
+        return mState != State.IDLE && mState != State.FINISHED && mState != State.CANCELLED;
+    }
+
+    /** @return current iteration, 1 based, 0 before start */
+    public int getIteration() {
+        return mIteration;
+    }
+
+    public int getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    @NonNull
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(mResults);
+    }
+
+    /** TTFF and first fix of the completed iterations */
+    @NonNull
+    public FixStatistics getStatistics() {
+        return mStats;
+    }
+
+    public void start() {
+        if (isRunning()) {
+            throw new IllegalStateException("Campaign already running");
+        }
+        mResults.clear();
+        mStats.clear();
+        mIteration = 0;
+        mTimeoutCount = 0;
+        nextIteration();
+    }
+
+    public void cancel() {
+        if (!isRunning()) return;
+        mHost.cancelTimer();
+        if (mState == State.WAITING_FIX) {
+            mHost.stopLocating();
+        }
+        setState(State.CANCELLED);
+    }
+
+    public void onFirstFix(int ttffMillis) {
+        if (mState != State.WAITING_FIX || mTtffMillis >= 0) return;
+        mTtffMillis = ttffMillis;
+        if (mHasFix) completeIteration();
+    }
+
+    public void onLocation(@NonNull FixData fix) {
+        if (mState != State.WAITING_FIX || mHasFix) return;
+        mHasFix = true;
+        mFix.setLatitude(fix.getLatitude());
+        mFix.setLongitude(fix.getLongitude());
+        mFix.setAltitude(fix.getAltitude());
+        mFix.setAccuracy(fix.getAccuracy());
+        mFix.setVerticalAccuracy(fix.getVerticalAccuracy());
+        if (mTtffMillis >= 0) completeIteration();
+    }
+
+    /** Called by the host once the delay of {@link Host#scheduleTimer} elapsed */
+    public void onTimer() {
+        switch (mState) {
+            case SETTLING -> startLocating();
+            case WAITING_FIX -> {
+                // Keeps the TTFF if the fix itself was missed
+                if (mTtffMillis < 0) mTimeoutCount++;
+                completeIteration();
+            }
+            case COOL_DOWN -> nextIteration();
+            default -> {
+                // Stale timer
+            }
+        }
+    }
+
+    private void nextIteration() {
+        if (mIteration >= mIterations) {
+            setState(State.FINISHED);
+            return;
+        }
+        mIteration++;
+        if (mAidingData.length > 0) {
+            mHost.deleteAidingData(mAidingData);
+            setState(State.SETTLING);
+            mHost.scheduleTimer(mSettleMillis);
+        } else {
+            startLocating();
+        }
+    }
+
+    private void startLocating() {
+        mTtffMillis = -1;
+        mHasFix = false;
+        mFix.clear();
+        mStartMillis = mHost.elapsedRealtime();
+        setState(State.WAITING_FIX);
+        mHost.startLocating(mSingle);
+        mHost.scheduleTimer(mTimeoutMillis);
+    }
+
+    private void completeIteration() {
+        mHost.cancelTimer();
+        mHost.stopLocating();
+        var result = new Result(mIteration, mStartMillis, mTtffMillis, mHasFix ? mFix : null);
+        mResults.add(result);
+        if (result.isFixed()) {
+            mStats.addTtff(result.getTtffMillis());
+        }
+        if (mHasFix) {
+            mStats.addFix(mFix);
+        }
+        mListener.onIterationDone(result);
+        if (mIteration >= mIterations) {
+            // Nothing to cool down for
+            setState(State.FINISHED);
+            return;
+        }
+        setState(State.COOL_DOWN);
+        mHost.scheduleTimer(mCoolDownMillis);
+    }
+
+    private void setState(State state) {
+        mState = state;
+        mListener.onStateChanged(state);
+    }
+
+    /** One iteration, TTFF -1 if it timed out, location values NaN without a fix */
+    public static class Result {
+        private final int mIteration;
+        private final long mStartMillis;
+        private final long mTtffMillis;
+        private final double mLatitude;
+        private final double mLongitude;
+        private final float mAccuracy;
+        private final float mVerticalAccuracy;
+
+        Result(int iteration, long startMillis, long ttffMillis, @Nullable FixData fix) {
+            mIteration = iteration;
+            mStartMillis = startMillis;
+            mTtffMillis = ttffMillis;
+            mLatitude = fix != null ? fix.getLatitude() : Double.NaN;
+            mLongitude = fix != null ? fix.getLongitude() : Double.NaN;
+            mAccuracy = fix != null ? fix.getAccuracy() : Float.NaN;
+            mVerticalAccuracy = fix != null ? fix.getVerticalAccuracy() : Float.NaN;
+        }
+
+        public int getIteration() {
+            return mIteration;
+        }
+
+        /** @return host elapsed realtime when locating started */
+        public long getStartMillis() {
+            return mStartMillis;
+        }
+
+        public boolean isFixed() {
+            return mTtffMillis >= 0;
+        }
+
+        public long getTtffMillis() {
+            return mTtffMillis;
+        }
+
+        public double getLatitude() {
+            return mLatitude;
+        }
+
+        public double getLongitude() {
+            return mLongitude;
+        }
+
+        public float getAccuracy() {
+            return mAccuracy;
+        }
+
+        public float getVerticalAccuracy() {
+            return mVerticalAccuracy;
+        }
+
+        /** @return line matching {@link #CSV_HEADER}, missing values left empty */
+        @NonNull
+        public String toCsvLine() {
+            return mIteration + "," + mStartMillis + "," + (isFixed() ? mTtffMillis : "")
+                    + "," + csv("%.8f", mLatitude) + "," + csv("%.8f", mLongitude)
+                    + "," + csv("%.2f", mAccuracy) + "," + csv("%.2f", mVerticalAccuracy);
+        }
+
+        private static String csv(String format, double value) {
+            return Double.isNaN(value) ? "" : String.format(Locale.ROOT, format, value);
+        }
+    }
+
+    /** Location side of the campaign, a fake one makes the state machine testable */
+    public interface Host {
+        void deleteAidingData(@NonNull String[] items);
+        void startLocating(boolean single);
+        void stopLocating();
+
+        /** Calls {@link #onTimer()} once after the delay, replacing any pending timer */
+        void scheduleTimer(long delayMillis);
+        void cancelTimer();
+        long elapsedRealtime();
+    }
+
+    public interface Listener {
+        void onStateChanged(@NonNull State state);
+        void onIterationDone(@NonNull Result result);
+    }
+}
@@ -0,0 +1,308 @@
+package pos.modetest.core.chart;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.GnssBand;
+import pos.modetest.core.data.SatelliteData;
+
+/**
+ * Geometry of the skyplot and C/N0 bar chart, kept out of the view so it runs on the JVM.
+ * <p>
+ * {@link #update} sorts the signals of an epoch by (constellation, band, svid) and matches them
+ * to the previous epoch, the values shown at that moment become the start of the animation.
+ * {@link #setProgress} interpolates towards the epoch and projects into the areas set by
+ * {@link #setSize}. Arrays only grow, nothing is allocated per frame.
+ */
+public class SignalChartLayout {
+    public static final float MAX_CN0_DBHZ = 50f;
+
+    // Share of the long side given to the skyplot, the rest goes to the bars
+    private static final float SKY_SHARE = 0.6f;
+    private static final float BAR_FILL = 0.8f;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int mCount;
+    private int mCapacity;
+    private int[] mKeys = new int[0];
+    private boolean[] mUsed = new boolean[0];
+    private float[] mFromAzimuth = new float[0];
+    private float[] mFromElevation = new float[0];
+    private float[] mFromCn0 = new float[0];
+    private float[] mToAzimuth = new float[0];
+    private float[] mToElevation = new float[0];
+    private float[] mToCn0 = new float[0];
+    private float[] mAzimuth = new float[0];
+    private float[] mElevation = new float[0];
+    private float[] mCn0 = new float[0];
+    private float[] mX = new float[0];
+    private float[] mY = new float[0];
+    private float[] mBarTop = new float[0];
+    // Previous epoch, swapped with the current arrays on update
+    private int mPrevCount;
+    private int[] mPrevKeys = new int[0];
+    private float[] mPrevAzimuth = new float[0];
+    private float[] mPrevElevation = new float[0];
+    private float[] mPrevCn0 = new float[0];
+    // (key << 32 | index) of the epoch being sorted
+    private long[] mSort = new long[0];
+
+    private float mProgress = 1f;
+
+    private float mSkyCenterX;
+    private float mSkyCenterY;
+    private float mSkyRadius;
+    private float mBarLeft;
+    private float mBarTopEdge;
+    private float mBarRight;
+    private float mBarBottom;
+    private float mBarPitch;
+
+    public void clear() {
+        mCount = 0;
+        mPrevCount = 0;
+        mProgress = 1f;
+    }
+
+    /**
+     * Skyplot is a square on the left in landscape or on top in portrait, bars take the rest.
+     *
+     * @param padding inset of both areas, room for strokes and labels
+     */
+    public void setSize(int width, int height, float padding) {
+        float side;
+        if (width >= height) {
+            side = Math.min(height, width * SKY_SHARE);
+            mBarLeft = side + padding;
+            mBarTopEdge = padding;
+        } else {
+            side = Math.min(width, height * SKY_SHARE);
+            mBarLeft = padding;
+            mBarTopEdge = side + padding;
+        }
+        mSkyCenterX = side / 2f;
+        mSkyCenterY = side / 2f;
+        mSkyRadius = Math.max(0f, side / 2f - padding);
+        mBarRight = Math.max(mBarLeft, width - padding);
+        mBarBottom = Math.max(mBarTopEdge, height - padding);
+        project();
+    }
+
+    /** Starts an animation from the values shown now towards the given epoch */
+    public void update(@NonNull SatelliteData sats) {
+        int count = sats.getCount();
+        ensureCapacity(count);
+
+        int[] keys = mPrevKeys;
+        mPrevKeys = mKeys;
+        mKeys = keys;
+        float[] values = mPrevAzimuth;
+        mPrevAzimuth = mAzimuth;
+        mAzimuth = values;
+        values = mPrevElevation;
+        mPrevElevation = mElevation;
+        mElevation = values;
+        values = mPrevCn0;
+        mPrevCn0 = mCn0;
+        mCn0 = values;
+        mPrevCount = mCount;
+
+        for (int i = 0; i < count; i++) {
+            var band = GnssBand.classify(sats.getConstellation(i), sats.getCarrierFrequencyHz(i));
+            long key = makeKey(sats.getConstellation(i), band, sats.getSvid(i));
+            mSort[i] = (key << 32) | i;
+        }
+        Arrays.sort(mSort, 0, count);
+
+        // Both epochs sorted by key, matched in one pass
+        int prev = 0;
+        for (int n = 0; n < count; n++) {
+            int key = (int) (mSort[n] >>> 32);
+            int i = (int) mSort[n];
+            mKeys[n] = key;
+            mUsed[n] = (sats.getFlags(i) & SatelliteData.FLAG_USED_IN_FIX) != 0;
+            mToAzimuth[n] = sats.getAzimuthDegrees(i);
+            mToElevation[n] = sats.getElevationDegrees(i);
+            float cn0 = sats.getCn0DbHz(i);
+            mToCn0[n] = Float.isNaN(cn0) ? 0f : cn0;
+            while (prev < mPrevCount && mPrevKeys[prev] < key) prev++;
+            if (prev < mPrevCount && mPrevKeys[prev] == key) {
+                mFromAzimuth[n] = mPrevAzimuth[prev];
+                mFromElevation[n] = mPrevElevation[prev];
+                mFromCn0[n] = mPrevCn0[prev];
+                prev++;
+            } else {
+                // New signal appears in place, its bar grows from 0
+                mFromAzimuth[n] = mToAzimuth[n];
+                mFromElevation[n] = mToElevation[n];
+                mFromCn0[n] = 0f;
+            }
+        }
+        mCount = count;
+        mProgress = -1f;
+        setProgress(0f);
+    }
+
+    /** @param progress 0 at the start of the animation, 1 (or more) at the epoch values */
+    public void setProgress(float progress) {
+        float t = Math.max(0f, Math.min(1f, progress));
+        if (t == mProgress) return;
+        mProgress = t;
+        // Smoothstep, no jump in speed at either end
+        float f = t * t * (3f - 2f * t);
+        for (int i = 0; i < mCount; i++) {
+            float delta = mToAzimuth[i] - mFromAzimuth[i];
+            // Shortest way around north
+            if (delta > 180f) delta -= 360f;
+            else if (delta < -180f) delta += 360f;
+            float azimuth = mFromAzimuth[i] + delta * f;
+            mAzimuth[i] = azimuth < 0f ? azimuth + 360f : azimuth >= 360f ? azimuth - 360f : azimuth;
+            mElevation[i] = mFromElevation[i] + (mToElevation[i] - mFromElevation[i]) * f;
+            mCn0[i] = mFromCn0[i] + (mToCn0[i] - mFromCn0[i]) * f;
+        }
+        project();
+    }
+
+    public boolean isAnimating() {
+        return mProgress < 1f;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getConstellation(int i) {
+        return mKeys[i] >>> 24;
+    }
+
+    @NonNull
+    public GnssBand getBand(int i) {
+        return GnssBand.fromOrdinal((mKeys[i] >>> 16) & 0xFF);
+    }
+
+    public int getSvid(int i) {
+        return mKeys[i] & 0xFFFF;
+    }
+
+    public boolean isUsed(int i) {
+        return mUsed[i];
+    }
+
+    public float getAzimuthDegrees(int i) {
+        return mAzimuth[i];
+    }
+
+    public float getElevationDegrees(int i) {
+        return mElevation[i];
+    }
+
+    public float getCn0DbHz(int i) {
+        return mCn0[i];
+    }
+
+    /** @return skyplot x of the signal, north up and east right */
+    public float getX(int i) {
+        return mX[i];
+    }
+
+    public float getY(int i) {
+        return mY[i];
+    }
+
+    public float getSkyCenterX() {
+        return mSkyCenterX;
+    }
+
+    public float getSkyCenterY() {
+        return mSkyCenterY;
+    }
+
+    public float getSkyRadius() {
+        return mSkyRadius;
+    }
+
+    /** @return radius of the elevation ring, 0 at zenith, the sky radius at the horizon */
+    public float getRingRadius(float elevationDegrees) {
+        float elevation = Math.max(0f, Math.min(90f, elevationDegrees));
+        return mSkyRadius * (90f - elevation) / 90f;
+    }
+
+    public float getBarAreaLeft() {
+        return mBarLeft;
+    }
+
+    public float getBarAreaTop() {
+        return mBarTopEdge;
+    }
+
+    public float getBarAreaRight() {
+        return mBarRight;
+    }
+
+    public float getBarAreaBottom() {
+        return mBarBottom;
+    }
+
+    public float getBarLeft(int i) {
+        return mBarLeft + i * mBarPitch + mBarPitch * (1f - BAR_FILL) / 2f;
+    }
+
+    public float getBarWidth() {
+        return mBarPitch * BAR_FILL;
+    }
+
+    public float getBarTop(int i) {
+        return mBarTop[i];
+    }
+
+    /** @return y of the C/N0 level in the bar area, clamped to [0, {@link #MAX_CN0_DBHZ}] */
+    public float getCn0Y(float cn0DbHz) {
+        float level = Math.max(0f, Math.min(1f, cn0DbHz / MAX_CN0_DBHZ));
+        return mBarBottom - level * (mBarBottom - mBarTopEdge);
+    }
+
+    private void project() {
+        mBarPitch = mCount > 0 ? (mBarRight - mBarLeft) / mCount : 0f;
+        for (int i = 0; i < mCount; i++) {
+            float r = getRingRadius(mElevation[i]);
+            double azimuth = Math.toRadians(mAzimuth[i]);
+            mX[i] = mSkyCenterX + r * (float) Math.sin(azimuth);
+            mY[i] = mSkyCenterY - r * (float) Math.cos(azimuth);
+            mBarTop[i] = getCn0Y(mCn0[i]);
+        }
+    }
+
+    private static int makeKey(int constellation, GnssBand band, int svid) {
+        if (constellation < 0 || constellation >= Constellation.COUNT) {
+            constellation = Constellation.UNKNOWN;
+        }
+        return (constellation << 24) | (band.ordinal() << 16) | (svid & 0xFFFF);
+    }
+
+    private void ensureCapacity(int count) {
+        if (count <= mCapacity) return;
+        int capacity = Math.max(count, Math.max(INITIAL_CAPACITY, mCapacity * 2));
+        mKeys = Arrays.copyOf(mKeys, capacity);
+        mUsed = Arrays.copyOf(mUsed, capacity);
+        mFromAzimuth = Arrays.copyOf(mFromAzimuth, capacity);
+        mFromElevation = Arrays.copyOf(mFromElevation, capacity);
+        mFromCn0 = Arrays.copyOf(mFromCn0, capacity);
+        mToAzimuth = Arrays.copyOf(mToAzimuth, capacity);
+        mToElevation = Arrays.copyOf(mToElevation, capacity);
+        mToCn0 = Arrays.copyOf(mToCn0, capacity);
+        mAzimuth = Arrays.copyOf(mAzimuth, capacity);
+        mElevation = Arrays.copyOf(mElevation, capacity);
+        mCn0 = Arrays.copyOf(mCn0, capacity);
+        mX = Arrays.copyOf(mX, capacity);
+        mY = Arrays.copyOf(mY, capacity);
+        mBarTop = Arrays.copyOf(mBarTop, capacity);
+        mPrevKeys = Arrays.copyOf(mPrevKeys, capacity);
+        mPrevAzimuth = Arrays.copyOf(mPrevAzimuth, capacity);
+        mPrevElevation = Arrays.copyOf(mPrevElevation, capacity);
+        mPrevCn0 = Arrays.copyOf(mPrevCn0, capacity);
+        mSort = Arrays.copyOf(mSort, capacity);
+        mCapacity = capacity;
+    }
+}
@@ -0,0 +1,168 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Added, removed and changed keys between two {@link DeviceConfig}s.
+ * Sections with the same hash are skipped without comparing their entries.
+ */
+public class ConfigDiff {
+    private final String mFromId;
+    private final String mToId;
+    private final List<Change> mChanges;
+    private final int mSkippedSections;
+
+    private ConfigDiff(String fromId, String toId, List<Change> changes, int skippedSections) {
+        mFromId = fromId;
+        mToId = toId;
+        mChanges = Collections.unmodifiableList(changes);
+        mSkippedSections = skippedSections;
+    }
+
+    /** @return changes from from to to, by section then key in the order of from */
+    @NonNull
+    public static ConfigDiff compare(@NonNull DeviceConfig from, @NonNull DeviceConfig to) {
+        List<Change> changes = new ArrayList<>();
+        int skipped = 0;
+        Set<String> names = new LinkedHashSet<>(from.getSections().keySet());
+        names.addAll(to.getSections().keySet());
+        for (String name : names) {
+            var a = from.getSection(name);
+            var b = to.getSection(name);
+            if (a != null && b != null && a.getHash() == b.getHash() && a.size() == b.size()) {
+                skipped++;
+                continue;
+            }
+            compare(name, a != null ? a.getEntries() : Map.of(),
+                    b != null ? b.getEntries() : Map.of(), changes);
+        }
+        return new ConfigDiff(from.getId(), to.getId(), changes, skipped);
+    }
+
+    private static void compare(String section, Map<String, String> from, Map<String, String> to,
+                                List<Change> changes) {
+        for (var e : from.entrySet()) {
+            String newValue = to.get(e.getKey());
+            if (newValue == null) {
+                changes.add(new Change(section, e.getKey(), e.getValue(), null));
+            } else if (!newValue.equals(e.getValue())) {
+                changes.add(new Change(section, e.getKey(), e.getValue(), newValue));
+            }
+        }
+        for (var e : to.entrySet()) {
+            if (!from.containsKey(e.getKey())) {
+                changes.add(new Change(section, e.getKey(), null, e.getValue()));
+            }
+        }
+    }
+
+    @NonNull
+    public String getFromId() {
+        return mFromId;
+    }
+
+    @NonNull
+    public String getToId() {
+        return mToId;
+    }
+
+    @NonNull
+    public List<Change> getChanges() {
+        return mChanges;
+    }
+
+    public boolean isEmpty() {
+        return mChanges.isEmpty();
+    }
+
+    /** @return number of sections skipped because their hashes matched */
+    public int getSkippedSections() {
+        return mSkippedSections;
+    }
+
+    /** @return one "[section] + key=value", "- key=value" or "~ key=old -> new" per change */
+    @NonNull
+    public String format() {
+        StringBuilder buf = new StringBuilder();
+        String section = null;
+        for (var c : mChanges) {
+            if (!c.getSection().equals(section)) {
+                section = c.getSection();
+                buf.append('[').append(section).append("]\n");
+            }
+            switch (c.getKind()) {
+                case ADDED -> buf.append("  + ").append(c.getKey())
+                        .append('=').append(c.getNewValue());
+                case REMOVED -> buf.append("  - ").append(c.getKey())
+                        .append('=').append(c.getOldValue());
+                case CHANGED -> buf.append("  ~ ").append(c.getKey())
+                        .append('=').append(c.getOldValue()).append(" -> ").append(c.getNewValue());
+            }
+            buf.append('\n');
+        }
+        return buf.toString();
+    }
+
+    public enum Kind {
+        ADDED,
+        REMOVED,
+        CHANGED,
+    }
+
+    public static class Change {
+        private final String mSection;
+        private final String mKey;
+        @Nullable
+        private final String mOldValue;
+        @Nullable
+        private final String mNewValue;
+
+        Change(String section, String key, @Nullable String oldValue, @Nullable String newValue) {
+            mSection = section;
+            mKey = key;
+            mOldValue = oldValue;
+            mNewValue = newValue;
+        }
+
+        @NonNull
+        public String getSection() {
+            return mSection;
+        }
+
+        @NonNull
+        public String getKey() {
+            return mKey;
+        }
+
+        /** @return value in from, null if added */
+        @Nullable
+        public String getOldValue() {
+            return mOldValue;
+        }
+
+        /** @return value in to, null if removed */
+        @Nullable
+        public String getNewValue() {
+            return mNewValue;
+        }
+
+        @NonNull
+        public Kind getKind() {
+            return mOldValue == null ? Kind.ADDED : mNewValue == null ? Kind.REMOVED : Kind.CHANGED;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return getKind() + " [" + mSection + "] " + mKey + ": " + mOldValue + " -> " + mNewValue;
+        }
+    }
+}
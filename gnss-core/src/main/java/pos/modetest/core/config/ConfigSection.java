@@ -0,0 +1,87 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ordered key/value pairs of one config source, e.g. gps.conf or the carrier config gps.* keys.
+ * <p>
+ * Immutable, the 64 bit content hash lets {@link ConfigDiff} skip equal sections without
+ * looking at their entries.
+ */
+public class ConfigSection {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String mName;
+    private final Map<String, String> mEntries;
+    private final long mHash;
+
+    public ConfigSection(@NonNull String name, @NonNull Map<String, String> entries) {
+        mName = name;
+        mEntries = Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+        long hash = FNV_OFFSET;
+        for (var e : mEntries.entrySet()) {
+            hash = hash(hash, e.getKey());
+            hash = hash(hash, e.getValue());
+        }
+        mHash = hash;
+    }
+
+    /**
+     * Reads "key=value" lines as written by ConfigUtils, blank lines, comments and lines
+     * without '=' are skipped. A repeated key keeps its last value.
+     */
+    @NonNull
+    public static ConfigSection parse(@NonNull String name, @NonNull String text) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (String line : text.split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            int eq = line.indexOf('=');
+            if (eq <= 0) continue;
+            String key = line.substring(0, eq).strip();
+            if (key.isEmpty()) continue;
+            entries.remove(key);
+            entries.put(key, line.substring(eq + 1).strip());
+        }
+        return new ConfigSection(name, entries);
+    }
+
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    /** @return unmodifiable entries in source order */
+    @NonNull
+    public Map<String, String> getEntries() {
+        return mEntries;
+    }
+
+    @Nullable
+    public String get(@NonNull String key) {
+        return mEntries.get(key);
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /** @return FNV-1a hash of the entries in order */
+    public long getHash() {
+        return mHash;
+    }
+
+    private static long hash(long hash, String s) {
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        // Separator, so "ab"+"c" and "a"+"bc" differ
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+}
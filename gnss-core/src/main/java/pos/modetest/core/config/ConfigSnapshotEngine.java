@@ -0,0 +1,218 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Reads config sections concurrently and caches each one.
+ * <p>
+ * A cached section is reused until its TTL expires, its version changes (e.g. file mtime or a
+ * counter bumped by a broadcast) or it is invalidated. Concurrent reads of the same section
+ * share one load.
+ *
+ * @param <K> section key
+ */
+public class ConfigSnapshotEngine<K> {
+    public static final long TTL_FOREVER = Long.MAX_VALUE;
+    public static final long TTL_NONE = 0;
+
+    private static final LongSupplier NO_VERSION = () -> 0;
+
+    private final Loader<K> mLoader;
+    private final Executor mExecutor;
+    private final Map<K, Policy> mPolicies = new HashMap<>();
+    private final Map<K, Entry> mEntries = new HashMap<>();
+    private long mDefaultTtlMs = TTL_NONE;
+    private LongSupplier mClock = System::currentTimeMillis;
+    private Predicate<String> mUncacheable = content -> false;
+
+    /** @param executor bounds how many sections load at once */
+    public ConfigSnapshotEngine(@NonNull Loader<K> loader, @NonNull Executor executor) {
+        mLoader = loader;
+        mExecutor = executor;
+    }
+
+    public synchronized void setDefaultTtl(long ttlMs) {
+        mDefaultTtlMs = ttlMs;
+    }
+
+    /** @param version read on every access, a different value discards the cached section */
+    public synchronized void setPolicy(@NonNull K key, long ttlMs,
+                                       @Nullable LongSupplier version) {
+        mPolicies.put(key, new Policy(ttlMs, version != null ? version : NO_VERSION));
+    }
+
+    public synchronized void setClock(@NonNull LongSupplier clockMs) {
+        mClock = clockMs;
+    }
+
+    /**
+     * @param uncacheable true for content that is returned but not cached, such as an error
+     *                    text read in place of a section, so the next read tries again
+     */
+    public synchronized void setUncacheable(@NonNull Predicate<String> uncacheable) {
+        mUncacheable = uncacheable;
+    }
+
+    /** Caches content read elsewhere, e.g. streamed, as if it was loaded now */
+    public synchronized void put(@NonNull K key, @NonNull String content) {
+        if (mUncacheable.test(content)) return;
+        var entry = new Entry();
+        entry.mVersion = getPolicy(key).mVersion.getAsLong();
+        entry.mContent = content;
+        entry.mLoadedAtMs = mClock.getAsLong();
+        mEntries.put(key, entry);
+    }
+
+    /** A load in progress still completes, but its result is not cached */
+    public synchronized void invalidate(@NonNull K key) {
+        mEntries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        mEntries.clear();
+    }
+
+    /** @return cached content, null if missing or stale */
+    @Nullable
+    public synchronized String getCached(@NonNull K key) {
+        var entry = mEntries.get(key);
+        if (entry == null || entry.mContent == null) return null;
+        return isFresh(key, entry) ? entry.mContent : null;
+    }
+
+    @NonNull
+    public CompletableFuture<String> read(@NonNull K key) {
+        return read(key, null);
+    }
+
+    /**
+     * Reads the sections concurrently, cached ones are delivered right away on the caller
+     * thread, the others on the executor as they complete.
+     *
+     * @return all loaded sections in the order of keys, failed sections are left out
+     */
+    @NonNull
+    public CompletableFuture<Map<K, String>> snapshot(@NonNull Collection<K> keys,
+                                                      @Nullable Listener<K> listener) {
+        var futures = new LinkedHashMap<K, CompletableFuture<String>>();
+        for (K key : keys) {
+            futures.put(key, read(key, listener));
+        }
+        return CompletableFuture.allOf(futures.values().stream()
+                        .map(f -> f.exceptionally(e -> null))
+                        .toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    var sections = new LinkedHashMap<K, String>();
+                    futures.forEach((key, f) -> {
+                        var content = f.exceptionally(e -> null).join();
+                        if (content != null) sections.put(key, content);
+                    });
+                    return sections;
+                });
+    }
+
+    private CompletableFuture<String> read(@NonNull K key, @Nullable Listener<K> listener) {
+        CompletableFuture<String> future;
+        String cached = null;
+        synchronized (this) {
+            var entry = mEntries.get(key);
+            if (entry != null && entry.mContent != null && isFresh(key, entry)) {
+                cached = entry.mContent;
+                future = CompletableFuture.completedFuture(cached);
+            } else if (entry != null && entry.mLoading != null) {
+                future = entry.mLoading;
+            } else {
+                future = load(key);
+            }
+        }
+        if (listener == null) return future;
+        if (cached != null) {
+            listener.onSection(key, cached, true);
+            return future;
+        }
+        // Chained so the snapshot completes only after every section was delivered
+        return future.thenApply(content -> {
+            listener.onSection(key, content, false);
+            return content;
+        });
+    }
+
+    // Called with the lock held
+    private CompletableFuture<String> load(K key) {
+        var entry = new Entry();
+        entry.mVersion = getPolicy(key).mVersion.getAsLong();
+        var future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mLoader.load(key);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, mExecutor);
+        entry.mLoading = future;
+        mEntries.put(key, entry);
+        future.whenComplete((content, e) -> {
+            synchronized (this) {
+                if (mEntries.get(key) != entry || entry.mLoading != future) return;
+                entry.mLoading = null;
+                if (e != null || mUncacheable.test(content)) {
+                    mEntries.remove(key);
+                    return;
+                }
+                entry.mContent = content;
+                entry.mLoadedAtMs = mClock.getAsLong();
+            }
+        });
+        return future;
+    }
+
+    private boolean isFresh(K key, Entry entry) {
+        var policy = getPolicy(key);
+        long age = mClock.getAsLong() - entry.mLoadedAtMs;
+        if (policy.mTtlMs != TTL_FOREVER && age >= policy.mTtlMs) return false;
+        return policy.mVersion.getAsLong() == entry.mVersion;
+    }
+
+    private Policy getPolicy(K key) {
+        var policy = mPolicies.get(key);
+        return policy != null ? policy : new Policy(mDefaultTtlMs, NO_VERSION);
+    }
+
+    public interface Loader<K> {
+        @NonNull
+        String load(@NonNull K key) throws Exception;
+    }
+
+    public interface Listener<K> {
+        /** @param cached true if served from the cache without loading */
+        void onSection(@NonNull K key, @NonNull String content, boolean cached);
+    }
+
+    private static class Policy {
+        final long mTtlMs;
+        final LongSupplier mVersion;
+
+        Policy(long ttlMs, LongSupplier version) {
+            mTtlMs = ttlMs;
+            mVersion = version;
+        }
+    }
+
+    private static class Entry {
+        String mContent;
+        long mLoadedAtMs;
+        long mVersion;
+        CompletableFuture<String> mLoading;
+    }
+}
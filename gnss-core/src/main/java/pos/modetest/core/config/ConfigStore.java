@@ -0,0 +1,337 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Library of {@link DeviceConfig}s, one text file per snapshot in a directory.
+ * <p>
+ * All snapshots are kept in memory with an inverted index from section and key to the
+ * snapshots holding each value, so "which devices have another LPP_PROFILE" is a few bitset
+ * operations instead of a scan. All methods are synchronized.
+ */
+public class ConfigStore {
+    public static final String FILE_EXTENSION = ".cfg";
+    private static final String MAGIC = "#gnss-config 1";
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String HEADER_ID = "id";
+    private static final String HEADER_DEVICE = "device";
+    private static final String HEADER_BUILD = "build";
+    private static final String HEADER_TIME = "time";
+
+    private final Path mDir;
+    // Ordinal -> snapshot, null once removed until the ordinal is reused
+    private final List<DeviceConfig> mConfigs = new ArrayList<>();
+    private final Map<String, Integer> mOrdinals = new HashMap<>();
+    private final BitSet mLive = new BitSet();
+    // section + '\0' + key -> value -> ordinals
+    private final Map<String, Map<String, BitSet>> mIndex = new HashMap<>();
+
+    public ConfigStore(@NonNull Path dir) {
+        mDir = dir;
+    }
+
+    /**
+     * Reads every snapshot file of the directory, replacing snapshots with the same id.
+     *
+     * @return number of files that could not be read
+     */
+    public synchronized int load() throws IOException {
+        if (!Files.isDirectory(mDir)) {
+            return 0;
+        }
+        int failed = 0;
+        try (var files = Files.newDirectoryStream(mDir, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    index(read(reader));
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                }
+            }
+        }
+        return failed;
+    }
+
+    /** Writes config to the directory and indexes it, an older snapshot with its id is replaced */
+    public synchronized void put(@NonNull DeviceConfig config) throws IOException {
+        checkId(config.getId());
+        Files.createDirectories(mDir);
+        Path tmp = mDir.resolve(config.getId() + ".tmp");
+        try (var writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            write(config, writer);
+        }
+        Files.move(tmp, fileOf(config.getId()), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        index(config);
+    }
+
+    public synchronized boolean remove(@NonNull String id) throws IOException {
+        checkId(id);
+        Files.deleteIfExists(fileOf(id));
+        return unindex(id);
+    }
+
+    @Nullable
+    public synchronized DeviceConfig get(@NonNull String id) {
+        Integer ordinal = mOrdinals.get(id);
+        return ordinal != null ? mConfigs.get(ordinal) : null;
+    }
+
+    public synchronized int size() {
+        return mOrdinals.size();
+    }
+
+    /**
+     * @return all snapshots, in ordinal order: a replaced snapshot keeps its place, a new one
+     * takes the place of the first removed snapshot
+     */
+    @NonNull
+    public synchronized List<DeviceConfig> getAll() {
+        return collect(mLive);
+    }
+
+    /** @return number of ordinals in use or free for reuse, for tests and benchmarks */
+    synchronized int getOrdinalCount() {
+        return mConfigs.size();
+    }
+
+    /** @return newest snapshot of device, null if none */
+    @Nullable
+    public synchronized DeviceConfig getLatest(@NonNull String device) {
+        DeviceConfig latest = null;
+        for (int i = mLive.nextSetBit(0); i >= 0; i = mLive.nextSetBit(i + 1)) {
+            var config = mConfigs.get(i);
+            if (config.getDevice().equals(device)
+                    && (latest == null || config.getTimeMillis() >= latest.getTimeMillis())) {
+                latest = config;
+            }
+        }
+        return latest;
+    }
+
+    /** @return snapshots holding each value of the key, snapshots without the key are left out */
+    @NonNull
+    public synchronized Map<String, List<DeviceConfig>> getValues(@NonNull String section,
+                                                                  @NonNull String key) {
+        Map<String, List<DeviceConfig>> values = new LinkedHashMap<>();
+        var postings = mIndex.get(indexKey(section, key));
+        if (postings != null) {
+            postings.forEach((value, ordinals) -> values.put(value, collect(ordinals)));
+        }
+        return values;
+    }
+
+    /**
+     * @param value expected value, null to get the snapshots holding the key
+     * @return snapshots whose value of the key is not value, including those without the key
+     */
+    @NonNull
+    public synchronized List<DeviceConfig> findDiffering(@NonNull String section,
+                                                         @NonNull String key,
+                                                         @Nullable String value) {
+        var postings = mIndex.getOrDefault(indexKey(section, key), Map.of());
+        var result = (BitSet) mLive.clone();
+        if (value != null) {
+            var same = postings.get(value);
+            if (same != null) result.andNot(same);
+        } else {
+            var any = new BitSet();
+            postings.values().forEach(any::or);
+            result.and(any);
+        }
+        return collect(result);
+    }
+
+    /** Writes config in the snapshot file format */
+    public static void write(@NonNull DeviceConfig config, @NonNull Writer out) throws IOException {
+        var writer = out instanceof BufferedWriter ? (BufferedWriter) out : new BufferedWriter(out);
+        writer.write(MAGIC);
+        writer.write('\n');
+        writeEntry(writer, HEADER_ID, config.getId());
+        writeEntry(writer, HEADER_DEVICE, config.getDevice());
+        writeEntry(writer, HEADER_BUILD, config.getBuild());
+        writeEntry(writer, HEADER_TIME, Long.toString(config.getTimeMillis()));
+        for (var section : config.getSections().values()) {
+            writer.write('[' + escape(section.getName(), false) + ']');
+            writer.write('\n');
+            for (var e : section.getEntries().entrySet()) {
+                writeEntry(writer, e.getKey(), e.getValue());
+            }
+        }
+        writer.flush();
+    }
+
+    /** Reads a snapshot written by {@link #write} */
+    @NonNull
+    public static DeviceConfig read(@NonNull Reader in) throws IOException {
+        var reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        if (!MAGIC.equals(reader.readLine())) {
+            throw new IOException("Not a config snapshot");
+        }
+        Map<String, String> header = new HashMap<>();
+        List<ConfigSection> sections = new ArrayList<>();
+        String sectionName = null;
+        Map<String, String> entries = header;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') continue;
+            if (line.charAt(0) == '[' && line.endsWith("]")) {
+                if (sectionName != null) sections.add(new ConfigSection(sectionName, entries));
+                sectionName = unescape(line.substring(1, line.length() - 1));
+                entries = new LinkedHashMap<>();
+                continue;
+            }
+            int eq = separatorOf(line);
+            if (eq < 0) {
+                throw new IOException("Missing '=' in " + line);
+            }
+            entries.put(unescape(line.substring(0, eq)), unescape(line.substring(eq + 1)));
+        }
+        if (sectionName != null) sections.add(new ConfigSection(sectionName, entries));
+        String id = header.get(HEADER_ID);
+        String time = header.get(HEADER_TIME);
+        if (id == null || time == null) {
+            throw new IOException("Missing id or time");
+        }
+        try {
+            return new DeviceConfig(id, header.getOrDefault(HEADER_DEVICE, ""),
+                    header.getOrDefault(HEADER_BUILD, ""), Long.parseLong(time), sections);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad time " + time, e);
+        }
+    }
+
+    private void index(DeviceConfig config) {
+        checkId(config.getId());
+        unindex(config.getId());
+        // Reuse the first freed ordinal so the list and the bitsets don't grow with replaces
+        int ordinal = mLive.nextClearBit(0);
+        if (ordinal == mConfigs.size()) {
+            mConfigs.add(config);
+        } else {
+            mConfigs.set(ordinal, config);
+        }
+        mOrdinals.put(config.getId(), ordinal);
+        mLive.set(ordinal);
+        for (var section : config.getSections().values()) {
+            for (var e : section.getEntries().entrySet()) {
+                mIndex.computeIfAbsent(indexKey(section.getName(), e.getKey()), k -> new HashMap<>())
+                        .computeIfAbsent(e.getValue(), v -> new BitSet())
+                        .set(ordinal);
+            }
+        }
+    }
+
+    private boolean unindex(String id) {
+        Integer ordinal = mOrdinals.remove(id);
+        if (ordinal == null) {
+            return false;
+        }
+        var config = mConfigs.set(ordinal, null);
+        mLive.clear(ordinal);
+        for (var section : config.getSections().values()) {
+            for (var e : section.getEntries().entrySet()) {
+                String key = indexKey(section.getName(), e.getKey());
+                var postings = mIndex.get(key);
+                var ordinals = postings.get(e.getValue());
+                ordinals.clear(ordinal);
+                if (ordinals.isEmpty()) postings.remove(e.getValue());
+                if (postings.isEmpty()) mIndex.remove(key);
+            }
+        }
+        return true;
+    }
+
+    private List<DeviceConfig> collect(BitSet ordinals) {
+        List<DeviceConfig> configs = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            configs.add(mConfigs.get(i));
+        }
+        return configs;
+    }
+
+    private Path fileOf(String id) {
+        return mDir.resolve(id + FILE_EXTENSION);
+    }
+
+    private static String indexKey(String section, String key) {
+        return section + '\0' + key;
+    }
+
+    private static void checkId(String id) {
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid snapshot id: " + id);
+        }
+    }
+
+    private static void writeEntry(BufferedWriter writer, String key, String value)
+            throws IOException {
+        writer.write(escape(key, true));
+        writer.write('=');
+        writer.write(escape(value, false));
+        writer.write('\n');
+    }
+
+    /** Escapes line ends and backslashes, for keys also '=' and a leading '[' or '#' */
+    private static String escape(String s, boolean key) {
+        StringBuilder buf = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\' -> buf.append("\\\\");
+                case '\n' -> buf.append("\\n");
+                case '\r' -> buf.append("\\r");
+                case '=' -> buf.append(key ? "\\=" : "=");
+                case '[', '#' -> buf.append(key && i == 0 ? "\\" : "").append(c);
+                default -> buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder buf = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                buf.append(c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    /** @return index of the first '=' not escaped by a backslash, -1 if none */
+    private static int separatorOf(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '=') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,74 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Config sections of one device and build, taken at one point in time.
+ */
+public class DeviceConfig {
+    private final String mId;
+    private final String mDevice;
+    private final String mBuild;
+    private final long mTimeMillis;
+    private final Map<String, ConfigSection> mSections;
+
+    /**
+     * @param id     unique within a {@link ConfigStore}, also used as file name
+     * @param device device name, e.g. Build.DEVICE
+     * @param build  firmware build, e.g. Build.ID
+     */
+    public DeviceConfig(@NonNull String id, @NonNull String device, @NonNull String build,
+                        long timeMillis, @NonNull Collection<ConfigSection> sections) {
+        mId = id;
+        mDevice = device;
+        mBuild = build;
+        mTimeMillis = timeMillis;
+        Map<String, ConfigSection> map = new LinkedHashMap<>();
+        for (var section : sections) {
+            map.put(section.getName(), section);
+        }
+        mSections = Collections.unmodifiableMap(map);
+    }
+
+    @NonNull
+    public String getId() {
+        return mId;
+    }
+
+    @NonNull
+    public String getDevice() {
+        return mDevice;
+    }
+
+    @NonNull
+    public String getBuild() {
+        return mBuild;
+    }
+
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    /** @return unmodifiable sections by name, in the order given */
+    @NonNull
+    public Map<String, ConfigSection> getSections() {
+        return mSections;
+    }
+
+    @Nullable
+    public ConfigSection getSection(@NonNull String name) {
+        return mSections.get(name);
+    }
+
+    @Nullable
+    public String get(@NonNull String section, @NonNull String key) {
+        var s = mSections.get(section);
+        return s != null ? s.get(key) : null;
+    }
+}
@@ -0,0 +1,180 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Lines of a dumpsys style output arranged as a tree by indentation, a line owns the following
+ * lines that are indented deeper. Blank lines belong to the section of the next line.
+ * <p>
+ * Lines are appended by {@link DumpsysParser} on a worker thread while readers may query the
+ * document, all methods are synchronized.
+ */
+public class DumpDocument {
+    private static final int TAB_WIDTH = 8;
+    private static final int INDENT_BLANK = Integer.MAX_VALUE;
+    private static final int OPEN = -1;
+
+    private final StringBuilder mText = new StringBuilder();
+    private final TokenIndex mIndex = new TokenIndex();
+    private int[] mLineStart = new int[256];
+    private int[] mIndent = new int[256];
+    private int[] mParent = new int[256];
+    private int[] mSubtreeEnd = new int[256];
+    private int mLineCount;
+    // Lines whose section is still open, innermost last
+    private int[] mOpen = new int[32];
+    private int mOpenCount;
+    // First of the blank lines read since the last non-blank one, -1 if none
+    private int mBlankStart = -1;
+    private boolean mComplete;
+
+    /** Adds one line, without its line terminator */
+    public synchronized void addLine(@NonNull CharSequence line) {
+        if (mLineCount == mLineStart.length) {
+            int size = mLineCount * 2;
+            mLineStart = Arrays.copyOf(mLineStart, size);
+            mIndent = Arrays.copyOf(mIndent, size);
+            mParent = Arrays.copyOf(mParent, size);
+            mSubtreeEnd = Arrays.copyOf(mSubtreeEnd, size);
+        }
+        int i = mLineCount++;
+        int indent = indentOf(line);
+        mLineStart[i] = mText.length();
+        mText.append(line);
+        mIndent[i] = indent;
+        if (indent == INDENT_BLANK) {
+            // Parent is settled by the next non-blank line, sections close before the blanks
+            if (mBlankStart < 0) mBlankStart = i;
+            mParent[i] = mOpenCount > 0 ? mOpen[mOpenCount - 1] : -1;
+            mSubtreeEnd[i] = i;
+            return;
+        }
+        int closeEnd = (mBlankStart >= 0 ? mBlankStart : i) - 1;
+        while (mOpenCount > 0 && mIndent[mOpen[mOpenCount - 1]] >= indent) {
+            mSubtreeEnd[mOpen[--mOpenCount]] = closeEnd;
+        }
+        int parent = mOpenCount > 0 ? mOpen[mOpenCount - 1] : -1;
+        if (mBlankStart >= 0) {
+            Arrays.fill(mParent, mBlankStart, i, parent);
+            mBlankStart = -1;
+        }
+        mParent[i] = parent;
+        mSubtreeEnd[i] = OPEN;
+        if (mOpenCount == mOpen.length) {
+            mOpen = Arrays.copyOf(mOpen, mOpenCount * 2);
+        }
+        mOpen[mOpenCount++] = i;
+        mIndex.add(line, i);
+    }
+
+    /** Closes all sections, no lines may be added afterwards */
+    public synchronized void finish() {
+        while (mOpenCount > 0) {
+            mSubtreeEnd[mOpen[--mOpenCount]] = mLineCount - 1;
+        }
+        mBlankStart = -1;
+        mComplete = true;
+    }
+
+    public synchronized boolean isComplete() {
+        return mComplete;
+    }
+
+    public synchronized int getLineCount() {
+        return mLineCount;
+    }
+
+    @NonNull
+    public synchronized String getLine(int line) {
+        return mText.substring(mLineStart[line], lineEnd(line));
+    }
+
+    /** @return leading whitespace width, tabs count to the next multiple of 8 */
+    public synchronized int getIndent(int line) {
+        return mIndent[line] == INDENT_BLANK ? 0 : mIndent[line];
+    }
+
+    /** @return enclosing section line, -1 for top level lines */
+    public synchronized int getParent(int line) {
+        return mParent[line];
+    }
+
+    /** @return last line of the section started by line, itself if it has no children */
+    public synchronized int getSubtreeEnd(int line) {
+        int end = mSubtreeEnd[line];
+        return end == OPEN ? mLineCount - 1 : end;
+    }
+
+    public synchronized boolean hasChildren(int line) {
+        return getSubtreeEnd(line) > line;
+    }
+
+    /** @return the section started by line, one line per row */
+    @NonNull
+    public synchronized String getSectionText(int line) {
+        return joinLines(line, getSubtreeEnd(line));
+    }
+
+    /** @return lines shown when the sections starting at collapsed lines are folded */
+    @NonNull
+    public synchronized int[] getVisibleLines(@NonNull BitSet collapsed) {
+        int[] visible = new int[mLineCount];
+        int count = 0;
+        for (int i = 0; i < mLineCount; i++) {
+            visible[count++] = i;
+            if (collapsed.get(i)) {
+                i = getSubtreeEnd(i);
+            }
+        }
+        return Arrays.copyOf(visible, count);
+    }
+
+    /** @return true if line is inside a section folded by collapsed */
+    public synchronized boolean isHidden(int line, @NonNull BitSet collapsed) {
+        for (int p = mParent[line]; p >= 0; p = mParent[p]) {
+            if (collapsed.get(p)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Every word of the query must match a word of the line or its beginning, case insensitive.
+     * Words are runs of letters and digits.
+     *
+     * @return matching lines in ascending order
+     */
+    @NonNull
+    public synchronized int[] search(@NonNull String query) {
+        return mIndex.search(query, mLineCount);
+    }
+
+    private int lineEnd(int line) {
+        return line + 1 < mLineCount ? mLineStart[line + 1] : mText.length();
+    }
+
+    private String joinLines(int first, int last) {
+        var buf = new StringBuilder();
+        for (int i = first; i <= last; i++) {
+            buf.append(mText, mLineStart[i], lineEnd(i)).append('\n');
+        }
+        return buf.toString();
+    }
+
+    private static int indentOf(CharSequence line) {
+        int width = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                width++;
+            } else if (c == '\t') {
+                width = (width / TAB_WIDTH + 1) * TAB_WIDTH;
+            } else {
+                return width;
+            }
+        }
+        return INDENT_BLANK;
+    }
+}
@@ -0,0 +1,98 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import pos.modetest.core.utils.ProcessRunner;
+
+/**
+ * Splits streamed command output into lines of a {@link DumpDocument}.
+ * <p>
+ * Chunks may end anywhere, inside a line or a UTF-8 sequence. Not thread safe, feed it from
+ * one thread and call {@link #finish()} once the stream ended.
+ */
+public class DumpsysParser implements ProcessRunner.ChunkConsumer {
+    private final DumpDocument mDocument;
+    private final CharsetDecoder mDecoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer mChars = CharBuffer.allocate(16 * 1024);
+    private ByteBuffer mPending = ByteBuffer.allocate(0);
+    private final StringBuilder mLine = new StringBuilder();
+    private boolean mSkipLf;
+
+    public DumpsysParser(@NonNull DumpDocument document) {
+        mDocument = document;
+    }
+
+    @NonNull
+    public static DumpDocument parse(@NonNull CharSequence text) {
+        var document = new DumpDocument();
+        var parser = new DumpsysParser(document);
+        parser.feed(text);
+        parser.finish();
+        return document;
+    }
+
+    @NonNull
+    public DumpDocument getDocument() {
+        return mDocument;
+    }
+
+    @Override
+    public void onChunk(@NonNull byte[] chunk, int length) {
+        ByteBuffer in;
+        if (mPending.hasRemaining()) {
+            // Prepend the incomplete UTF-8 sequence left by the previous chunk
+            in = ByteBuffer.allocate(mPending.remaining() + length);
+            in.put(mPending).put(chunk, 0, length).flip();
+        } else {
+            in = ByteBuffer.wrap(chunk, 0, length);
+        }
+        while (true) {
+            mChars.clear();
+            var result = mDecoder.decode(in, mChars, false);
+            mChars.flip();
+            feed(mChars);
+            if (!result.isOverflow()) break;
+        }
+        mPending = ByteBuffer.allocate(in.remaining()).put(in).flip();
+    }
+
+    public void feed(@NonNull CharSequence text) {
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (mSkipLf) {
+                mSkipLf = false;
+                if (c == '\n') continue;
+            }
+            if (c == '\n' || c == '\r') {
+                mSkipLf = c == '\r';
+                mDocument.addLine(mLine);
+                mLine.setLength(0);
+            } else {
+                mLine.append(c);
+            }
+        }
+    }
+
+    public void finish() {
+        if (mPending.hasRemaining()) {
+            mChars.clear();
+            mDecoder.decode(mPending, mChars, true);
+            mChars.flip();
+            feed(mChars);
+        }
+        if (mLine.length() > 0) {
+            mDocument.addLine(mLine);
+            mLine.setLength(0);
+        }
+        mDocument.finish();
+    }
+}
@@ -0,0 +1,44 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses the output of getprop without arguments, one "[key]: [value]" per property.
+ * Values may span several lines.
+ */
+public class SysPropParser {
+    private SysPropParser() {
+    }
+
+    @NonNull
+    public static Map<String, String> parse(@NonNull String output) {
+        Map<String, String> props = new HashMap<>();
+        int pos = 0;
+        int len = output.length();
+        while (pos < len) {
+            int keyStart = output.indexOf('[', pos);
+            if (keyStart < 0) break;
+            int keyEnd = output.indexOf("]: [", keyStart);
+            if (keyEnd < 0) break;
+            int valueStart = keyEnd + 4;
+            // value ends at the first "]" followed by a line end
+            int valueEnd = valueStart;
+            while (true) {
+                valueEnd = output.indexOf(']', valueEnd);
+                if (valueEnd < 0 || valueEnd + 1 == len || output.charAt(valueEnd + 1) == '\n'
+                        || output.charAt(valueEnd + 1) == '\r') {
+                    break;
+                }
+                valueEnd++;
+            }
+            if (valueEnd < 0) break;
+            props.put(output.substring(keyStart + 1, keyEnd),
+                    output.substring(valueStart, valueEnd));
+            pos = valueEnd + 1;
+        }
+        return props;
+    }
+}
@@ -0,0 +1,81 @@
+package pos.modetest.core.config;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from lower case words to the lines containing them.
+ * Words are runs of letters and digits, so "gps.nfw_proxy_apps" indexes gps, nfw, proxy, apps.
+ */
+class TokenIndex {
+    private final TreeMap<String, Postings> mPostings = new TreeMap<>();
+    private final StringBuilder mToken = new StringBuilder();
+
+    void add(@NonNull CharSequence line, int lineIndex) {
+        int len = line.length();
+        for (int i = 0; i <= len; i++) {
+            char c = i < len ? line.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                mToken.append(c);
+            } else if (mToken.length() > 0) {
+                // Same folding as the query, some letters lower case to more than one char
+                mPostings.computeIfAbsent(mToken.toString().toLowerCase(Locale.ROOT),
+                        k -> new Postings()).add(lineIndex);
+                mToken.setLength(0);
+            }
+        }
+    }
+
+    /** @return lines where every query word prefixes some word, ascending */
+    @NonNull
+    int[] search(@NonNull String query, int lineCount) {
+        BitSet result = null;
+        for (String word : tokenize(query)) {
+            var lines = new BitSet(lineCount);
+            // Every word starting with the query word
+            for (Map.Entry<String, Postings> e
+                    : mPostings.subMap(word, word + Character.MAX_VALUE).entrySet()) {
+                e.getValue().setAll(lines);
+            }
+            if (result == null) {
+                result = lines;
+            } else {
+                result.and(lines);
+            }
+            if (result.isEmpty()) break;
+        }
+        return result == null ? new int[0] : result.stream().toArray();
+    }
+
+    private static String[] tokenize(String query) {
+        return Arrays.stream(query.split("[^\\p{L}\\p{Nd}]+"))
+                .filter(s -> !s.isEmpty())
+                .map(s -> s.toLowerCase(Locale.ROOT))
+                .toArray(String[]::new);
+    }
+
+    /** Ascending line numbers, a line is stored once even if the word repeats */
+    private static class Postings {
+        private int[] mLines = new int[4];
+        private int mCount;
+
+        void add(int line) {
+            if (mCount > 0 && mLines[mCount - 1] == line) return;
+            if (mCount == mLines.length) {
+                mLines = Arrays.copyOf(mLines, mCount * 2);
+            }
+            mLines[mCount++] = line;
+        }
+
+        void setAll(BitSet bits) {
+            for (int i = 0; i < mCount; i++) {
+                bits.set(mLines[i]);
+            }
+        }
+    }
+}
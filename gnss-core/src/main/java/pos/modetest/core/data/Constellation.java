@@ -0,0 +1,49 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Constellation types, same values as android.location.GnssStatus.CONSTELLATION_*
+ */
+public class Constellation {
+    public static final int UNKNOWN = 0;
+    public static final int GPS = 1;
+    public static final int SBAS = 2;
+    public static final int GLONASS = 3;
+    public static final int QZSS = 4;
+    public static final int BEIDOU = 5;
+    public static final int GALILEO = 6;
+    public static final int IRNSS = 7;
+    public static final int COUNT = 8;
+
+    private static final int PRN_OFFSET_QXDM_GLONASS = 64;
+    private static final int PRN_OFFSET_QXDM_BEIDOU = 200;
+    private static final int PRN_OFFSET_QXDM_GALILEO = 300;
+
+    private Constellation() {
+    }
+
+    /** PRN numbering used by QXDM logs, svid shifted per constellation */
+    public static int getQxdmPrn(int constellation, int svid) {
+        return svid + switch (constellation) {
+            case BEIDOU -> PRN_OFFSET_QXDM_BEIDOU;
+            case GALILEO -> PRN_OFFSET_QXDM_GALILEO;
+            case GLONASS -> PRN_OFFSET_QXDM_GLONASS;
+            default -> 0;
+        };
+    }
+
+    @NonNull
+    public static String getName(int constellation) {
+        return switch (constellation) {
+            case GPS -> "GPS";
+            case SBAS -> "SBAS";
+            case GLONASS -> "GLONASS";
+            case QZSS -> "QZSS";
+            case BEIDOU -> "BEIDOU";
+            case GALILEO -> "GALILEO";
+            case IRNSS -> "IRNSS";
+            default -> "UNKNOWN";
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Reusable holder of one position fix, optional values are NaN when not available.
+ */
+public class FixData {
+    @Nullable
+    private String mProvider;
+    private long mTimeMillis;
+    private long mElapsedRealtimeNanos;
+    private double mLatitude;
+    private double mLongitude;
+    private double mAltitude;
+    private float mSpeed;
+    private float mBearing;
+    private float mAccuracy;
+    private float mVerticalAccuracy;
+    private float mSpeedAccuracy;
+    private float mBearingAccuracy;
+
+    public FixData() {
+        clear();
+    }
+
+    public void clear() {
+        mProvider = null;
+        mTimeMillis = 0;
+        mElapsedRealtimeNanos = 0;
+        mLatitude = 0;
+        mLongitude = 0;
+        mAltitude = Double.NaN;
+        mSpeed = Float.NaN;
+        mBearing = Float.NaN;
+        mAccuracy = Float.NaN;
+        mVerticalAccuracy = Float.NaN;
+        mSpeedAccuracy = Float.NaN;
+        mBearingAccuracy = Float.NaN;
+    }
+
+    @Nullable
+    public String getProvider() {
+        return mProvider;
+    }
+
+    public void setProvider(@Nullable String provider) {
+        mProvider = provider;
+    }
+
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    public void setTimeMillis(long timeMillis) {
+        mTimeMillis = timeMillis;
+    }
+
+    public long getElapsedRealtimeNanos() {
+        return mElapsedRealtimeNanos;
+    }
+
+    public void setElapsedRealtimeNanos(long elapsedRealtimeNanos) {
+        mElapsedRealtimeNanos = elapsedRealtimeNanos;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public void setLatitude(double latitude) {
+        mLatitude = latitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public void setLongitude(double longitude) {
+        mLongitude = longitude;
+    }
+
+    public double getAltitude() {
+        return mAltitude;
+    }
+
+    public void setAltitude(double altitude) {
+        mAltitude = altitude;
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    public void setSpeed(float speed) {
+        mSpeed = speed;
+    }
+
+    public float getBearing() {
+        return mBearing;
+    }
+
+    public void setBearing(float bearing) {
+        mBearing = bearing;
+    }
+
+    public float getAccuracy() {
+        return mAccuracy;
+    }
+
+    public void setAccuracy(float accuracy) {
+        mAccuracy = accuracy;
+    }
+
+    public float getVerticalAccuracy() {
+        return mVerticalAccuracy;
+    }
+
+    public void setVerticalAccuracy(float verticalAccuracy) {
+        mVerticalAccuracy = verticalAccuracy;
+    }
+
+    public float getSpeedAccuracy() {
+        return mSpeedAccuracy;
+    }
+
+    public void setSpeedAccuracy(float speedAccuracy) {
+        mSpeedAccuracy = speedAccuracy;
+    }
+
+    public float getBearingAccuracy() {
+        return mBearingAccuracy;
+    }
+
+    public void setBearingAccuracy(float bearingAccuracy) {
+        mBearingAccuracy = bearingAccuracy;
+    }
+}
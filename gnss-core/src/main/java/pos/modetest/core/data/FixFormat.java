@@ -0,0 +1,73 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+import pos.modetest.core.utils.FormatUtils;
+
+/**
+ * Display strings of {@link FixData} fields, missing values are shown as {@link #EMPTY_TEXT}.
+ */
+public class FixFormat {
+    /** Same as Constants.EMPTY_TEXT_3C of the app */
+    public static final String EMPTY_TEXT = "---";
+
+    private FixFormat() {
+    }
+
+    @NonNull
+    public static String formatLatitude(@NonNull FixData fix) {
+        return format("%.08f", fix.getLatitude());
+    }
+
+    @NonNull
+    public static String formatLongitude(@NonNull FixData fix) {
+        return format("%.08f", fix.getLongitude());
+    }
+
+    @NonNull
+    public static String formatAltitude(@NonNull FixData fix) {
+        return format("%.02f", fix.getAltitude());
+    }
+
+    @NonNull
+    public static String formatAccuracy(@NonNull FixData fix) {
+        return format("%.04f", fix.getAccuracy());
+    }
+
+    @NonNull
+    public static String formatVerticalAccuracy(@NonNull FixData fix) {
+        return format("%.04f", fix.getVerticalAccuracy());
+    }
+
+    @NonNull
+    public static String formatSpeed(@NonNull FixData fix) {
+        return format("%.04f", fix.getSpeed());
+    }
+
+    @NonNull
+    public static String formatBearing(@NonNull FixData fix) {
+        return format("%.02f", fix.getBearing());
+    }
+
+    @NonNull
+    public static String formatBearingAccuracy(@NonNull FixData fix) {
+        return format("%.02f", fix.getBearingAccuracy());
+    }
+
+    @NonNull
+    public static String formatRealTime(@NonNull FixData fix) {
+        return FormatUtils.formatTimeDurationNanos(fix.getElapsedRealtimeNanos());
+    }
+
+    @NonNull
+    public static String formatTime(@NonNull FixData fix) {
+        return FormatUtils.formatDateTime(fix.getTimeMillis());
+    }
+
+    private static String format(String format, double value) {
+        if (Double.isNaN(value)) return EMPTY_TEXT;
+        return String.format(Locale.getDefault(), format, value);
+    }
+}
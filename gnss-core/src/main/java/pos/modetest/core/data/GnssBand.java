@@ -0,0 +1,157 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Signal bands per constellation, with a static lookup index from carrier frequency.
+ * <p>
+ * {@link #classify(int, double)} runs a binary search over per-constellation sorted ranges and
+ * returns one of the enum constants, so it never allocates.
+ */
+public enum GnssBand {
+    GPS_L1(Constellation.GPS, "L1", Group.L1, 1575.42),
+    GPS_L2(Constellation.GPS, "L2", Group.L2, 1227.60),
+    GPS_L5(Constellation.GPS, "L5", Group.L5, 1176.45),
+    GLONASS_L1(Constellation.GLONASS, "L1", Group.L1, 1598.0625, 1607.0625, 0.1d),
+    GLONASS_L2(Constellation.GLONASS, "L2", Group.L2, 1242.9375, 1249.9375, 0.1d),
+    GLONASS_L3(Constellation.GLONASS, "L3", Group.E5B, 1201.743, 1208.511, 0.1d),
+    GALILEO_E1(Constellation.GALILEO, "E1", Group.L1, 1575.42),
+    GALILEO_E6(Constellation.GALILEO, "E6", Group.L6, 1278.75),
+    GALILEO_E5(Constellation.GALILEO, "E5", Group.L5, 1191.795),
+    GALILEO_E5A(Constellation.GALILEO, "E5a", Group.L5, 1176.45),
+    GALILEO_E5B(Constellation.GALILEO, "E5b", Group.E5B, 1207.14),
+    BEIDOU_B1I(Constellation.BEIDOU, "B1I", Group.L1, 1561.098),
+    BEIDOU_B1C(Constellation.BEIDOU, "B1C", Group.L1, 1575.42),
+    BEIDOU_B2A(Constellation.BEIDOU, "B2a", Group.L5, 1176.45),
+    BEIDOU_B2B(Constellation.BEIDOU, "B2b", Group.E5B, 1207.14),
+    BEIDOU_B3(Constellation.BEIDOU, "B3", Group.L6, 1268.52),
+    QZSS_L1(Constellation.QZSS, "L1", Group.L1, 1575.42),
+    QZSS_L2(Constellation.QZSS, "L2", Group.L2, 1227.6),
+    QZSS_L5(Constellation.QZSS, "L5", Group.L5, 1176.45),
+    QZSS_L6(Constellation.QZSS, "L6", Group.L6, 1278.75),
+    IRNSS_L5(Constellation.IRNSS, "L5", Group.L5, 1176.45),
+    IRNSS_S(Constellation.IRNSS, "S", Group.S, 2492.028),
+    SBAS_L1(Constellation.SBAS, "L1", Group.L1, 1575.42),
+    SBAS_L5(Constellation.SBAS, "L5", Group.L5, 1176.45),
+    UNKNOWN(Constellation.UNKNOWN, null, Group.OTHER, Double.NaN);
+
+    /** Frequency groups shared across constellations, e.g. to detect dual-frequency tracking */
+    public enum Group {
+        L1,
+        L2,
+        L5,
+        E5B,
+        L6,
+        S,
+        OTHER,
+    }
+
+    private static final double MHZ = 1_000_000d;
+    private static final double DEFAULT_TOLERANCE_MHZ = 1d;
+    private static final GnssBand[] VALUES = values();
+
+    // Lookup index per constellation type, sorted by lower band edge
+    private static final double[][] INDEX_LOW_MHZ;
+    private static final double[][] INDEX_HIGH_MHZ;
+    private static final GnssBand[][] INDEX_BANDS;
+
+    static {
+        int maxType = 0;
+        for (var band : VALUES) {
+            maxType = Math.max(maxType, band.mConstellation);
+        }
+        INDEX_LOW_MHZ = new double[maxType + 1][];
+        INDEX_HIGH_MHZ = new double[maxType + 1][];
+        INDEX_BANDS = new GnssBand[maxType + 1][];
+        for (int type = 0; type <= maxType; type++) {
+            List<GnssBand> bands = new ArrayList<>();
+            for (var band : VALUES) {
+                if (band.mConstellation == type && band != UNKNOWN) {
+                    bands.add(band);
+                }
+            }
+            bands.sort(Comparator.comparingDouble(b -> b.mLowMHz));
+            INDEX_BANDS[type] = bands.toArray(new GnssBand[0]);
+            INDEX_LOW_MHZ[type] = new double[bands.size()];
+            INDEX_HIGH_MHZ[type] = new double[bands.size()];
+            for (int i = 0; i < bands.size(); i++) {
+                INDEX_LOW_MHZ[type][i] = bands.get(i).mLowMHz;
+                INDEX_HIGH_MHZ[type][i] = bands.get(i).mHighMHz;
+            }
+        }
+    }
+
+    private final int mConstellation;
+    @Nullable
+    private final String mLabel;
+    @NonNull
+    private final Group mGroup;
+    private final double mCenterMHz;
+    private final double mLowMHz;
+    private final double mHighMHz;
+
+    GnssBand(int constellation, @Nullable String label, @NonNull Group group, double centerMHz) {
+        this(constellation, label, group, centerMHz, centerMHz, DEFAULT_TOLERANCE_MHZ);
+    }
+
+    GnssBand(int constellation, @Nullable String label, @NonNull Group group,
+             double startMHz, double stopMHz, double toleranceMHz) {
+        mConstellation = constellation;
+        mLabel = label;
+        mGroup = group;
+        mCenterMHz = (startMHz + stopMHz) / 2;
+        mLowMHz = startMHz - toleranceMHz;
+        mHighMHz = stopMHz + toleranceMHz;
+    }
+
+    public int getConstellation() {
+        return mConstellation;
+    }
+
+    /** Short signal name e.g. "L1", "E5a". null for {@link #UNKNOWN} */
+    @Nullable
+    public String getLabel() {
+        return mLabel;
+    }
+
+    @NonNull
+    public Group getGroup() {
+        return mGroup;
+    }
+
+    public double getCenterFrequencyHz() {
+        return mCenterMHz * MHZ;
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    @NonNull
+    public static GnssBand fromOrdinal(int ordinal) {
+        return (ordinal >= 0 && ordinal < VALUES.length) ? VALUES[ordinal] : UNKNOWN;
+    }
+
+    @NonNull
+    public static GnssBand classify(int constellation, double carrierFrequencyHz) {
+        if (constellation < 0 || constellation >= INDEX_BANDS.length
+                || Double.isNaN(carrierFrequencyHz)) {
+            return UNKNOWN;
+        }
+        double freqMHz = carrierFrequencyHz / MHZ;
+        double[] lows = INDEX_LOW_MHZ[constellation];
+        int i = Arrays.binarySearch(lows, freqMHz);
+        // exact hit or insertion point - 1, i.e. the last band starting below freq
+        i = i >= 0 ? i : -i - 2;
+        if (i >= 0 && freqMHz <= INDEX_HIGH_MHZ[constellation][i]) {
+            return INDEX_BANDS[constellation][i];
+        }
+        return UNKNOWN;
+    }
+}
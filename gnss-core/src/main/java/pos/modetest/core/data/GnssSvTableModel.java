@@ -0,0 +1,87 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Row model of the satellite table.
+ * <p>
+ * Every row is described by a key (constellation + svid + carrier frequency) and a content
+ * signature (C/N0 at display resolution + flags). Comparing both against the previous
+ * {@link SatelliteData} tells which rows actually need to be re-bound.
+ */
+public class GnssSvTableModel {
+    private static final int FLAG_ALMANAC = 1;
+    private static final int FLAG_EPHEMERIS = 1 << 1;
+    private static final int FLAG_USED = 1 << 2;
+    private static final int FLAG_CARRIER = 1 << 3;
+
+    private long[] mKeys = new long[0];
+    private long[] mContents = new long[0];
+    private boolean[] mDirty = new boolean[0];
+    private int mRowCount;
+    private int mDirtyCount;
+
+    public void update(@Nullable SatelliteData sats) {
+        int count = sats != null ? sats.getCount() : 0;
+        ensureCapacity(count);
+        mDirtyCount = 0;
+        for (int i = 0; i < count; i++) {
+            float carrier = sats.getCarrierFrequencyHz(i);
+            boolean hasCarrier = !Float.isNaN(carrier);
+            long key = makeKey(sats.getConstellation(i), sats.getSvid(i), hasCarrier ? carrier : 0d);
+            int svFlags = sats.getFlags(i);
+            int flags = ((svFlags & SatelliteData.FLAG_HAS_ALMANAC) != 0 ? FLAG_ALMANAC : 0)
+                    | ((svFlags & SatelliteData.FLAG_HAS_EPHEMERIS) != 0 ? FLAG_EPHEMERIS : 0)
+                    | ((svFlags & SatelliteData.FLAG_USED_IN_FIX) != 0 ? FLAG_USED : 0)
+                    | (hasCarrier ? FLAG_CARRIER : 0);
+            long content = makeContent(sats.getCn0DbHz(i), flags);
+            boolean dirty = i >= mRowCount || mKeys[i] != key || mContents[i] != content;
+            mKeys[i] = key;
+            mContents[i] = content;
+            mDirty[i] = dirty;
+            if (dirty) mDirtyCount++;
+        }
+        mRowCount = count;
+    }
+
+    public void clear() {
+        mRowCount = 0;
+        mDirtyCount = 0;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    public int getDirtyCount() {
+        return mDirtyCount;
+    }
+
+    public boolean isDirty(int row) {
+        return mDirty[row];
+    }
+
+    public long getKey(int row) {
+        return mKeys[row];
+    }
+
+    public static long makeKey(int constellation, int svid, double carrierFrequencyHz) {
+        long freqKHz = Math.round(carrierFrequencyHz / 1000d) & 0xFF_FFFF_FFFFL;
+        return ((long) (constellation & 0xFF) << 56) | ((long) (svid & 0xFFFF) << 40) | freqKHz;
+    }
+
+    public static long makeContent(float cn0DbHz, int flags) {
+        // C/N0 is displayed with 2 decimals, finer changes are invisible
+        return ((long) Math.round(cn0DbHz * 100f) << 8) | (flags & 0xFF);
+    }
+
+    private void ensureCapacity(int count) {
+        if (mKeys.length >= count) return;
+        int capacity = Math.max(count, mKeys.length * 2);
+        mKeys = Arrays.copyOf(mKeys, capacity);
+        mContents = Arrays.copyOf(mContents, capacity);
+        mDirty = Arrays.copyOf(mDirty, capacity);
+    }
+}
@@ -0,0 +1,350 @@
+package pos.modetest.core.data;
+
+import java.util.Arrays;
+
+/**
+ * Reusable holder of one GNSS measurement epoch: clock values and measurements stored as
+ * parallel primitive arrays. Optional values are NaN when not available.
+ */
+public class MeasurementData {
+    /** Same value as android.location.GnssMeasurement.MULTIPATH_INDICATOR_DETECTED */
+    public static final int MULTIPATH_INDICATOR_DETECTED = 1;
+
+    // Same values as android.location.GnssMeasurement.STATE_*
+    public static final int STATE_CODE_LOCK = 1;
+    public static final int STATE_BIT_SYNC = 1 << 1;
+    public static final int STATE_SUBFRAME_SYNC = 1 << 2;
+    public static final int STATE_TOW_DECODED = 1 << 3;
+    public static final int STATE_MSEC_AMBIGUOUS = 1 << 4;
+    public static final int STATE_SYMBOL_SYNC = 1 << 5;
+    public static final int STATE_GLO_STRING_SYNC = 1 << 6;
+    public static final int STATE_GLO_TOD_DECODED = 1 << 7;
+    public static final int STATE_BDS_D2_BIT_SYNC = 1 << 8;
+    public static final int STATE_BDS_D2_SUBFRAME_SYNC = 1 << 9;
+    public static final int STATE_GAL_E1BC_CODE_LOCK = 1 << 10;
+    public static final int STATE_GAL_E1C_2ND_CODE_LOCK = 1 << 11;
+    public static final int STATE_GAL_E1B_PAGE_SYNC = 1 << 12;
+    public static final int STATE_SBAS_SYNC = 1 << 13;
+    public static final int STATE_TOW_KNOWN = 1 << 14;
+    public static final int STATE_GLO_TOD_KNOWN = 1 << 15;
+    public static final int STATE_2ND_CODE_LOCK = 1 << 16;
+
+    // Same values as android.location.GnssMeasurement.ADR_STATE_*
+    public static final int ADR_STATE_VALID = 1;
+    public static final int ADR_STATE_RESET = 1 << 1;
+    public static final int ADR_STATE_CYCLE_SLIP = 1 << 2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long mTimeNanos;
+    private boolean mHasFullBiasNanos;
+    private long mFullBiasNanos;
+    private double mBiasNanos;
+    private double mBiasUncertaintyNanos;
+    private double mDriftNanosPerSecond;
+    private double mDriftUncertaintyNanosPerSecond;
+    private boolean mHasLeapSecond;
+    private int mLeapSecond;
+    private int mHardwareClockDiscontinuityCount;
+    private long mElapsedRealtimeNanos;
+    private boolean mFullTracking;
+
+    private int mCount;
+    private int[] mConstellations = new int[INITIAL_CAPACITY];
+    private int[] mSvids = new int[INITIAL_CAPACITY];
+    private int[] mStates = new int[INITIAL_CAPACITY];
+    private double[] mTimeOffsetNanos = new double[INITIAL_CAPACITY];
+    private long[] mReceivedSvTimeNanos = new long[INITIAL_CAPACITY];
+    private long[] mReceivedSvTimeUncertaintyNanos = new long[INITIAL_CAPACITY];
+    private double[] mCn0DbHz = new double[INITIAL_CAPACITY];
+    private double[] mPseudorangeRateMetersPerSecond = new double[INITIAL_CAPACITY];
+    private double[] mPseudorangeRateUncertaintyMetersPerSecond = new double[INITIAL_CAPACITY];
+    private int[] mAccumulatedDeltaRangeStates = new int[INITIAL_CAPACITY];
+    private double[] mAccumulatedDeltaRangeMeters = new double[INITIAL_CAPACITY];
+    private double[] mAccumulatedDeltaRangeUncertaintyMeters = new double[INITIAL_CAPACITY];
+    private float[] mCarrierFrequencyHz = new float[INITIAL_CAPACITY];
+    private int[] mMultipathIndicators = new int[INITIAL_CAPACITY];
+    private double[] mAutomaticGainControlLevelDb = new double[INITIAL_CAPACITY];
+    private double[] mBasebandCn0DbHz = new double[INITIAL_CAPACITY];
+
+    public MeasurementData() {
+        clear();
+    }
+
+    public void clear() {
+        mTimeNanos = 0;
+        mHasFullBiasNanos = false;
+        mFullBiasNanos = 0;
+        mBiasNanos = Double.NaN;
+        mBiasUncertaintyNanos = Double.NaN;
+        mDriftNanosPerSecond = Double.NaN;
+        mDriftUncertaintyNanosPerSecond = Double.NaN;
+        mHasLeapSecond = false;
+        mLeapSecond = 0;
+        mHardwareClockDiscontinuityCount = 0;
+        mElapsedRealtimeNanos = 0;
+        mFullTracking = true;
+        mCount = 0;
+    }
+
+    public long getTimeNanos() {
+        return mTimeNanos;
+    }
+
+    public void setTimeNanos(long timeNanos) {
+        mTimeNanos = timeNanos;
+    }
+
+    public boolean hasFullBiasNanos() {
+        return mHasFullBiasNanos;
+    }
+
+    public long getFullBiasNanos() {
+        return mFullBiasNanos;
+    }
+
+    public void setFullBiasNanos(long fullBiasNanos) {
+        mFullBiasNanos = fullBiasNanos;
+        mHasFullBiasNanos = true;
+    }
+
+    public double getBiasNanos() {
+        return mBiasNanos;
+    }
+
+    public void setBiasNanos(double biasNanos) {
+        mBiasNanos = biasNanos;
+    }
+
+    public double getBiasUncertaintyNanos() {
+        return mBiasUncertaintyNanos;
+    }
+
+    public void setBiasUncertaintyNanos(double biasUncertaintyNanos) {
+        mBiasUncertaintyNanos = biasUncertaintyNanos;
+    }
+
+    public double getDriftNanosPerSecond() {
+        return mDriftNanosPerSecond;
+    }
+
+    public void setDriftNanosPerSecond(double driftNanosPerSecond) {
+        mDriftNanosPerSecond = driftNanosPerSecond;
+    }
+
+    public double getDriftUncertaintyNanosPerSecond() {
+        return mDriftUncertaintyNanosPerSecond;
+    }
+
+    public void setDriftUncertaintyNanosPerSecond(double driftUncertaintyNanosPerSecond) {
+        mDriftUncertaintyNanosPerSecond = driftUncertaintyNanosPerSecond;
+    }
+
+    public boolean hasLeapSecond() {
+        return mHasLeapSecond;
+    }
+
+    public int getLeapSecond() {
+        return mLeapSecond;
+    }
+
+    public void setLeapSecond(int leapSecond) {
+        mLeapSecond = leapSecond;
+        mHasLeapSecond = true;
+    }
+
+    public int getHardwareClockDiscontinuityCount() {
+        return mHardwareClockDiscontinuityCount;
+    }
+
+    public void setHardwareClockDiscontinuityCount(int hardwareClockDiscontinuityCount) {
+        mHardwareClockDiscontinuityCount = hardwareClockDiscontinuityCount;
+    }
+
+    public long getElapsedRealtimeNanos() {
+        return mElapsedRealtimeNanos;
+    }
+
+    public void setElapsedRealtimeNanos(long elapsedRealtimeNanos) {
+        mElapsedRealtimeNanos = elapsedRealtimeNanos;
+    }
+
+    public boolean isFullTracking() {
+        return mFullTracking;
+    }
+
+    public void setFullTracking(boolean fullTracking) {
+        mFullTracking = fullTracking;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /** @return index of the added measurement, other values are set to defaults */
+    public int add(int constellation, int svid) {
+        if (mCount == mSvids.length) {
+            grow();
+        }
+        int i = mCount++;
+        mConstellations[i] = constellation;
+        mSvids[i] = svid;
+        mStates[i] = 0;
+        mTimeOffsetNanos[i] = 0;
+        mReceivedSvTimeNanos[i] = 0;
+        mReceivedSvTimeUncertaintyNanos[i] = 0;
+        mCn0DbHz[i] = 0;
+        mPseudorangeRateMetersPerSecond[i] = 0;
+        mPseudorangeRateUncertaintyMetersPerSecond[i] = 0;
+        mAccumulatedDeltaRangeStates[i] = 0;
+        mAccumulatedDeltaRangeMeters[i] = 0;
+        mAccumulatedDeltaRangeUncertaintyMeters[i] = 0;
+        mCarrierFrequencyHz[i] = Float.NaN;
+        mMultipathIndicators[i] = 0;
+        mAutomaticGainControlLevelDb[i] = Double.NaN;
+        mBasebandCn0DbHz[i] = Double.NaN;
+        return i;
+    }
+
+    public int getConstellation(int i) {
+        return mConstellations[i];
+    }
+
+    public int getSvid(int i) {
+        return mSvids[i];
+    }
+
+    public int getState(int i) {
+        return mStates[i];
+    }
+
+    public void setState(int i, int state) {
+        mStates[i] = state;
+    }
+
+    public double getTimeOffsetNanos(int i) {
+        return mTimeOffsetNanos[i];
+    }
+
+    public void setTimeOffsetNanos(int i, double timeOffsetNanos) {
+        mTimeOffsetNanos[i] = timeOffsetNanos;
+    }
+
+    public long getReceivedSvTimeNanos(int i) {
+        return mReceivedSvTimeNanos[i];
+    }
+
+    public void setReceivedSvTimeNanos(int i, long receivedSvTimeNanos) {
+        mReceivedSvTimeNanos[i] = receivedSvTimeNanos;
+    }
+
+    public long getReceivedSvTimeUncertaintyNanos(int i) {
+        return mReceivedSvTimeUncertaintyNanos[i];
+    }
+
+    public void setReceivedSvTimeUncertaintyNanos(int i, long receivedSvTimeUncertaintyNanos) {
+        mReceivedSvTimeUncertaintyNanos[i] = receivedSvTimeUncertaintyNanos;
+    }
+
+    public double getCn0DbHz(int i) {
+        return mCn0DbHz[i];
+    }
+
+    public void setCn0DbHz(int i, double cn0DbHz) {
+        mCn0DbHz[i] = cn0DbHz;
+    }
+
+    public double getPseudorangeRateMetersPerSecond(int i) {
+        return mPseudorangeRateMetersPerSecond[i];
+    }
+
+    public void setPseudorangeRateMetersPerSecond(int i, double pseudorangeRateMetersPerSecond) {
+        mPseudorangeRateMetersPerSecond[i] = pseudorangeRateMetersPerSecond;
+    }
+
+    public double getPseudorangeRateUncertaintyMetersPerSecond(int i) {
+        return mPseudorangeRateUncertaintyMetersPerSecond[i];
+    }
+
+    public void setPseudorangeRateUncertaintyMetersPerSecond(int i, double uncertainty) {
+        mPseudorangeRateUncertaintyMetersPerSecond[i] = uncertainty;
+    }
+
+    public int getAccumulatedDeltaRangeState(int i) {
+        return mAccumulatedDeltaRangeStates[i];
+    }
+
+    public void setAccumulatedDeltaRangeState(int i, int accumulatedDeltaRangeState) {
+        mAccumulatedDeltaRangeStates[i] = accumulatedDeltaRangeState;
+    }
+
+    public double getAccumulatedDeltaRangeMeters(int i) {
+        return mAccumulatedDeltaRangeMeters[i];
+    }
+
+    public void setAccumulatedDeltaRangeMeters(int i, double accumulatedDeltaRangeMeters) {
+        mAccumulatedDeltaRangeMeters[i] = accumulatedDeltaRangeMeters;
+    }
+
+    public double getAccumulatedDeltaRangeUncertaintyMeters(int i) {
+        return mAccumulatedDeltaRangeUncertaintyMeters[i];
+    }
+
+    public void setAccumulatedDeltaRangeUncertaintyMeters(int i, double uncertainty) {
+        mAccumulatedDeltaRangeUncertaintyMeters[i] = uncertainty;
+    }
+
+    public float getCarrierFrequencyHz(int i) {
+        return mCarrierFrequencyHz[i];
+    }
+
+    public void setCarrierFrequencyHz(int i, float carrierFrequencyHz) {
+        mCarrierFrequencyHz[i] = carrierFrequencyHz;
+    }
+
+    public int getMultipathIndicator(int i) {
+        return mMultipathIndicators[i];
+    }
+
+    public void setMultipathIndicator(int i, int multipathIndicator) {
+        mMultipathIndicators[i] = multipathIndicator;
+    }
+
+    public double getAutomaticGainControlLevelDb(int i) {
+        return mAutomaticGainControlLevelDb[i];
+    }
+
+    public void setAutomaticGainControlLevelDb(int i, double automaticGainControlLevelDb) {
+        mAutomaticGainControlLevelDb[i] = automaticGainControlLevelDb;
+    }
+
+    public double getBasebandCn0DbHz(int i) {
+        return mBasebandCn0DbHz[i];
+    }
+
+    public void setBasebandCn0DbHz(int i, double basebandCn0DbHz) {
+        mBasebandCn0DbHz[i] = basebandCn0DbHz;
+    }
+
+    private void grow() {
+        int capacity = mSvids.length * 2;
+        mConstellations = Arrays.copyOf(mConstellations, capacity);
+        mSvids = Arrays.copyOf(mSvids, capacity);
+        mStates = Arrays.copyOf(mStates, capacity);
+        mTimeOffsetNanos = Arrays.copyOf(mTimeOffsetNanos, capacity);
+        mReceivedSvTimeNanos = Arrays.copyOf(mReceivedSvTimeNanos, capacity);
+        mReceivedSvTimeUncertaintyNanos = Arrays.copyOf(mReceivedSvTimeUncertaintyNanos, capacity);
+        mCn0DbHz = Arrays.copyOf(mCn0DbHz, capacity);
+        mPseudorangeRateMetersPerSecond = Arrays.copyOf(mPseudorangeRateMetersPerSecond, capacity);
+        mPseudorangeRateUncertaintyMetersPerSecond =
+                Arrays.copyOf(mPseudorangeRateUncertaintyMetersPerSecond, capacity);
+        mAccumulatedDeltaRangeStates = Arrays.copyOf(mAccumulatedDeltaRangeStates, capacity);
+        mAccumulatedDeltaRangeMeters = Arrays.copyOf(mAccumulatedDeltaRangeMeters, capacity);
+        mAccumulatedDeltaRangeUncertaintyMeters =
+                Arrays.copyOf(mAccumulatedDeltaRangeUncertaintyMeters, capacity);
+        mCarrierFrequencyHz = Arrays.copyOf(mCarrierFrequencyHz, capacity);
+        mMultipathIndicators = Arrays.copyOf(mMultipathIndicators, capacity);
+        mAutomaticGainControlLevelDb = Arrays.copyOf(mAutomaticGainControlLevelDb, capacity);
+        mBasebandCn0DbHz = Arrays.copyOf(mBasebandCn0DbHz, capacity);
+    }
+}
@@ -0,0 +1,139 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass statistics of one GNSS measurement epoch.
+ * <p>
+ * Only primitive arrays are used and they are allocated once, so one instance can be
+ * {@link #reset()} and refilled for every epoch without producing garbage.
+ */
+public class MeasurementEpochStats {
+    public static final int CN0_BIN_WIDTH_DBHZ = 5;
+    public static final int CN0_BIN_COUNT = 12; // last bin collects everything above
+
+    private final double[] mBandAgcSum = new double[GnssBand.count()];
+    private final double[] mBandAgcMin = new double[GnssBand.count()];
+    private final double[] mBandAgcMax = new double[GnssBand.count()];
+    private final int[] mBandAgcCount = new int[GnssBand.count()];
+    private final int[] mCn0Histogram = new int[CN0_BIN_COUNT];
+
+    private double mAgcSum;
+    private double mAgcMin;
+    private double mAgcMax;
+    private int mAgcCount;
+    private int mMeasurementCount;
+    private int mMultipathCount;
+    private boolean mFullTracking;
+
+    public MeasurementEpochStats() {
+        reset();
+    }
+
+    public void reset() {
+        Arrays.fill(mBandAgcSum, 0d);
+        Arrays.fill(mBandAgcMin, Double.NaN);
+        Arrays.fill(mBandAgcMax, Double.NaN);
+        Arrays.fill(mBandAgcCount, 0);
+        Arrays.fill(mCn0Histogram, 0);
+        mAgcSum = 0d;
+        mAgcMin = Double.NaN;
+        mAgcMax = Double.NaN;
+        mAgcCount = 0;
+        mMeasurementCount = 0;
+        mMultipathCount = 0;
+        mFullTracking = true; // default
+    }
+
+    public void setFullTracking(boolean fullTracking) {
+        mFullTracking = fullTracking;
+    }
+
+    /**
+     * @param carrierFrequencyHz NaN if not available
+     * @param agcLevelDb NaN if not available
+     */
+    public void add(int constellation, double carrierFrequencyHz, double cn0DbHz,
+                    double agcLevelDb, boolean multipath) {
+        mMeasurementCount++;
+        if (multipath) {
+            mMultipathCount++;
+        }
+        if (cn0DbHz >= 0) {
+            int bin = Math.min((int) (cn0DbHz / CN0_BIN_WIDTH_DBHZ), CN0_BIN_COUNT - 1);
+            mCn0Histogram[bin]++;
+        }
+        if (!Double.isNaN(agcLevelDb)) {
+            mAgcSum += agcLevelDb;
+            mAgcMin = mAgcCount == 0 ? agcLevelDb : Math.min(mAgcMin, agcLevelDb);
+            mAgcMax = mAgcCount == 0 ? agcLevelDb : Math.max(mAgcMax, agcLevelDb);
+            mAgcCount++;
+
+            int b = GnssBand.classify(constellation, carrierFrequencyHz).ordinal();
+            mBandAgcSum[b] += agcLevelDb;
+            mBandAgcMin[b] = mBandAgcCount[b] == 0 ? agcLevelDb : Math.min(mBandAgcMin[b], agcLevelDb);
+            mBandAgcMax[b] = mBandAgcCount[b] == 0 ? agcLevelDb : Math.max(mBandAgcMax[b], agcLevelDb);
+            mBandAgcCount[b]++;
+        }
+    }
+
+    /** Resets and aggregates a whole epoch */
+    public void update(@NonNull MeasurementData data) {
+        reset();
+        setFullTracking(data.isFullTracking());
+        for (int i = 0; i < data.getCount(); i++) {
+            add(data.getConstellation(i), data.getCarrierFrequencyHz(i), data.getCn0DbHz(i),
+                    data.getAutomaticGainControlLevelDb(i),
+                    data.getMultipathIndicator(i) == MeasurementData.MULTIPATH_INDICATOR_DETECTED);
+        }
+    }
+
+    public boolean isFullTracking() {
+        return mFullTracking;
+    }
+
+    public int getMeasurementCount() {
+        return mMeasurementCount;
+    }
+
+    public int getMultipathCount() {
+        return mMultipathCount;
+    }
+
+    /** NaN if no measurement reported AGC */
+    public double getAgcMean() {
+        return mAgcCount == 0 ? Double.NaN : mAgcSum / mAgcCount;
+    }
+
+    public double getAgcMin() {
+        return mAgcMin;
+    }
+
+    public double getAgcMax() {
+        return mAgcMax;
+    }
+
+    public double getAgcMean(@NonNull GnssBand band) {
+        int b = band.ordinal();
+        return mBandAgcCount[b] == 0 ? Double.NaN : mBandAgcSum[b] / mBandAgcCount[b];
+    }
+
+    public double getAgcMin(@NonNull GnssBand band) {
+        return mBandAgcMin[band.ordinal()];
+    }
+
+    public double getAgcMax(@NonNull GnssBand band) {
+        return mBandAgcMax[band.ordinal()];
+    }
+
+    public int getAgcCount(@NonNull GnssBand band) {
+        return mBandAgcCount[band.ordinal()];
+    }
+
+    /** Count of measurements with C/N0 in [bin * width, (bin + 1) * width) */
+    public int getCn0HistogramBin(int bin) {
+        return mCn0Histogram[bin];
+    }
+}
@@ -0,0 +1,89 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Reusable holder of one GNSS navigation message, the data buffer grows as needed.
+ */
+public class NavMessageData {
+    // Same values as android.location.GnssNavigationMessage.TYPE_*
+    public static final int TYPE_UNKNOWN = 0;
+    public static final int TYPE_GPS_L1CA = 0x0101;
+    public static final int TYPE_GPS_L2CNAV = 0x0102;
+    public static final int TYPE_GPS_L5CNAV = 0x0103;
+    public static final int TYPE_GPS_CNAV2 = 0x0104;
+    public static final int TYPE_GLO_L1CA = 0x0301;
+    public static final int TYPE_QZS_L1CA = 0x0401;
+    public static final int TYPE_BDS_D1 = 0x0501;
+    public static final int TYPE_BDS_D2 = 0x0502;
+    public static final int TYPE_GAL_I = 0x0601;
+    public static final int TYPE_GAL_F = 0x0602;
+    public static final int TYPE_IRN_L5CA = 0x0701;
+
+    // Same values as android.location.GnssNavigationMessage.STATUS_*
+    public static final int STATUS_UNKNOWN = 0;
+    public static final int STATUS_PARITY_PASSED = 1;
+    public static final int STATUS_PARITY_REBUILT = 1 << 1;
+
+    private int mType;
+    private int mSvid;
+    private int mMessageId;
+    private int mSubmessageId;
+    private int mStatus;
+    private byte[] mData = new byte[64];
+    private int mDataLength;
+
+    public void set(int type, int svid, int messageId, int submessageId, int status) {
+        mType = type;
+        mSvid = svid;
+        mMessageId = messageId;
+        mSubmessageId = submessageId;
+        mStatus = status;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public int getSvid() {
+        return mSvid;
+    }
+
+    public int getMessageId() {
+        return mMessageId;
+    }
+
+    public int getSubmessageId() {
+        return mSubmessageId;
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public void setData(@NonNull byte[] data, int length) {
+        System.arraycopy(data, 0, ensureData(length), 0, length);
+    }
+
+    /** Resizes the data to {@code length} bytes and returns the buffer to fill */
+    @NonNull
+    public byte[] ensureData(int length) {
+        if (mData.length < length) {
+            mData = Arrays.copyOf(mData, Math.max(length, mData.length * 2));
+        }
+        mDataLength = length;
+        return mData;
+    }
+
+    /** Only the first {@link #getDataLength()} bytes are valid */
+    @NonNull
+    public byte[] getData() {
+        return mData;
+    }
+
+    public int getDataLength() {
+        return mDataLength;
+    }
+}
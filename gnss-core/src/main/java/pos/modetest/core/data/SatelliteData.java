@@ -0,0 +1,96 @@
+package pos.modetest.core.data;
+
+import java.util.Arrays;
+
+/**
+ * Reusable holder of one satellite status snapshot, stored as parallel primitive arrays.
+ * Optional values are NaN when not available.
+ */
+public class SatelliteData {
+    public static final int FLAG_USED_IN_FIX = 1;
+    public static final int FLAG_HAS_EPHEMERIS = 1 << 1;
+    public static final int FLAG_HAS_ALMANAC = 1 << 2;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int mCount;
+    private int[] mConstellations = new int[INITIAL_CAPACITY];
+    private int[] mSvids = new int[INITIAL_CAPACITY];
+    private int[] mFlags = new int[INITIAL_CAPACITY];
+    private float[] mCn0DbHz = new float[INITIAL_CAPACITY];
+    private float[] mElevations = new float[INITIAL_CAPACITY];
+    private float[] mAzimuths = new float[INITIAL_CAPACITY];
+    private float[] mCarrierFrequenciesHz = new float[INITIAL_CAPACITY];
+    private float[] mBasebandCn0DbHz = new float[INITIAL_CAPACITY];
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /** @return index of the added satellite */
+    public int add(int constellation, int svid, int flags, float cn0DbHz,
+                   float elevationDegrees, float azimuthDegrees,
+                   float carrierFrequencyHz, float basebandCn0DbHz) {
+        if (mCount == mSvids.length) {
+            grow();
+        }
+        int i = mCount++;
+        mConstellations[i] = constellation;
+        mSvids[i] = svid;
+        mFlags[i] = flags;
+        mCn0DbHz[i] = cn0DbHz;
+        mElevations[i] = elevationDegrees;
+        mAzimuths[i] = azimuthDegrees;
+        mCarrierFrequenciesHz[i] = carrierFrequencyHz;
+        mBasebandCn0DbHz[i] = basebandCn0DbHz;
+        return i;
+    }
+
+    public int getConstellation(int i) {
+        return mConstellations[i];
+    }
+
+    public int getSvid(int i) {
+        return mSvids[i];
+    }
+
+    public int getFlags(int i) {
+        return mFlags[i];
+    }
+
+    public float getCn0DbHz(int i) {
+        return mCn0DbHz[i];
+    }
+
+    public float getElevationDegrees(int i) {
+        return mElevations[i];
+    }
+
+    public float getAzimuthDegrees(int i) {
+        return mAzimuths[i];
+    }
+
+    public float getCarrierFrequencyHz(int i) {
+        return mCarrierFrequenciesHz[i];
+    }
+
+    public float getBasebandCn0DbHz(int i) {
+        return mBasebandCn0DbHz[i];
+    }
+
+    private void grow() {
+        int capacity = mSvids.length * 2;
+        mConstellations = Arrays.copyOf(mConstellations, capacity);
+        mSvids = Arrays.copyOf(mSvids, capacity);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+        mCn0DbHz = Arrays.copyOf(mCn0DbHz, capacity);
+        mElevations = Arrays.copyOf(mElevations, capacity);
+        mAzimuths = Arrays.copyOf(mAzimuths, capacity);
+        mCarrierFrequenciesHz = Arrays.copyOf(mCarrierFrequenciesHz, capacity);
+        mBasebandCn0DbHz = Arrays.copyOf(mBasebandCn0DbHz, capacity);
+    }
+}
@@ -0,0 +1,378 @@
+package pos.modetest.core.data;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Satellite signals kept across {@link SatelliteData} epochs, one slot per
+ * (constellation, svid, band) in parallel primitive arrays.
+ * <p>
+ * Each update only adds and removes the contribution of the reported signals and of those that
+ * disappeared, so used / in view / total counters per constellation, band and band group are
+ * read in O(1). Signals in view are kept ranked by C/N0 per constellation, which makes top-k
+ * queries O(k). In view means C/N0 above 0, like the status line of the main screen.
+ */
+public class SatelliteStateStore {
+    public static final long NEVER = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int GROUP_COUNT = GnssBand.Group.values().length;
+    // Counter indexes
+    private static final int TOTAL = 0;
+    private static final int IN_VIEW = 1;
+    private static final int USED = 2;
+
+    // Open addressing table of slot + 1, 0 is empty
+    private int[] mTable = new int[INITIAL_CAPACITY * 2];
+    private int mSlotCount;
+
+    private int[] mKeys = new int[INITIAL_CAPACITY];
+    private float[] mCn0DbHz = new float[INITIAL_CAPACITY];
+    private float[] mElevations = new float[INITIAL_CAPACITY];
+    private float[] mAzimuths = new float[INITIAL_CAPACITY];
+    private int[] mFlags = new int[INITIAL_CAPACITY];
+    private long[] mPresentEpoch = new long[INITIAL_CAPACITY];
+    private long[] mFirstSeenNanos = new long[INITIAL_CAPACITY];
+    private long[] mLastSeenNanos = new long[INITIAL_CAPACITY];
+    private long[] mFirstUsedNanos = new long[INITIAL_CAPACITY];
+
+    private long mEpoch;
+    private int[] mActive = new int[INITIAL_CAPACITY];
+    private int mActiveCount;
+    private int[] mNextActive = new int[INITIAL_CAPACITY];
+
+    // Counters of the last epoch, indexed by TOTAL, IN_VIEW, USED
+    private final int[] mCounts = new int[3];
+    private final int[][] mConstellationCounts = new int[Constellation.COUNT][3];
+    private final int[][] mBandCounts = new int[GnssBand.count()][3];
+    private final int[][] mGroupCounts = new int[GROUP_COUNT][3];
+    private final double[] mConstellationCn0Sum = new double[Constellation.COUNT];
+
+    // In view slots per constellation, C/N0 descending
+    private final int[][] mRanked = new int[Constellation.COUNT][INITIAL_CAPACITY];
+    private final int[] mRankedCount = new int[Constellation.COUNT];
+    private long[] mRankedEpoch = new long[INITIAL_CAPACITY];
+
+    public void clear() {
+        Arrays.fill(mTable, 0);
+        mSlotCount = 0;
+        mActiveCount = 0;
+        mEpoch = 0;
+        Arrays.fill(mCounts, 0);
+        for (int[] c : mConstellationCounts) Arrays.fill(c, 0);
+        for (int[] c : mBandCounts) Arrays.fill(c, 0);
+        for (int[] c : mGroupCounts) Arrays.fill(c, 0);
+        Arrays.fill(mConstellationCn0Sum, 0);
+        Arrays.fill(mRankedCount, 0);
+    }
+
+    /** Applies one status epoch, signals missing from sats are no longer in view */
+    public void update(@NonNull SatelliteData sats, long elapsedRealtimeNanos) {
+        long epoch = ++mEpoch;
+        int count = sats.getCount();
+        if (mNextActive.length < count) {
+            mNextActive = new int[Math.max(count, mNextActive.length * 2)];
+        }
+        int nextCount = 0;
+        for (int i = 0; i < count; i++) {
+            int constellation = sats.getConstellation(i);
+            if (constellation < 0 || constellation >= Constellation.COUNT) {
+                constellation = Constellation.UNKNOWN;
+            }
+            var band = GnssBand.classify(constellation, sats.getCarrierFrequencyHz(i));
+            int slot = slotOf(makeKey(constellation, sats.getSvid(i), band.ordinal()));
+            if (mPresentEpoch[slot] == epoch) continue; // reported twice
+            if (mPresentEpoch[slot] == epoch - 1) {
+                account(slot, -1);
+            }
+            mCn0DbHz[slot] = sats.getCn0DbHz(i);
+            mElevations[slot] = sats.getElevationDegrees(i);
+            mAzimuths[slot] = sats.getAzimuthDegrees(i);
+            mFlags[slot] = sats.getFlags(i);
+            mPresentEpoch[slot] = epoch;
+            if (mCn0DbHz[slot] > 0) {
+                if (mFirstSeenNanos[slot] == NEVER) mFirstSeenNanos[slot] = elapsedRealtimeNanos;
+                mLastSeenNanos[slot] = elapsedRealtimeNanos;
+            }
+            if (isUsed(slot) && mFirstUsedNanos[slot] == NEVER) {
+                mFirstUsedNanos[slot] = elapsedRealtimeNanos;
+            }
+            account(slot, 1);
+            mNextActive[nextCount++] = slot;
+        }
+        for (int i = 0; i < mActiveCount; i++) {
+            int slot = mActive[i];
+            if (mPresentEpoch[slot] != epoch) {
+                account(slot, -1);
+            }
+        }
+        int[] tmp = mActive;
+        mActive = mNextActive;
+        mNextActive = tmp;
+        mActiveCount = nextCount;
+        rank(epoch);
+    }
+
+    /** @return signals reported in the last epoch */
+    public int getTotalCount() {
+        return mCounts[TOTAL];
+    }
+
+    public int getInViewCount() {
+        return mCounts[IN_VIEW];
+    }
+
+    public int getUsedCount() {
+        return mCounts[USED];
+    }
+
+    public int getTotalCount(int constellation) {
+        return constellationCounts(constellation)[TOTAL];
+    }
+
+    public int getInViewCount(int constellation) {
+        return constellationCounts(constellation)[IN_VIEW];
+    }
+
+    public int getUsedCount(int constellation) {
+        return constellationCounts(constellation)[USED];
+    }
+
+    public int getTotalCount(@NonNull GnssBand band) {
+        return mBandCounts[band.ordinal()][TOTAL];
+    }
+
+    public int getInViewCount(@NonNull GnssBand band) {
+        return mBandCounts[band.ordinal()][IN_VIEW];
+    }
+
+    public int getUsedCount(@NonNull GnssBand band) {
+        return mBandCounts[band.ordinal()][USED];
+    }
+
+    /** @return signals of the group across constellations, e.g. all L5 / E5a / B2a */
+    public int getTotalCount(@NonNull GnssBand.Group group) {
+        return mGroupCounts[group.ordinal()][TOTAL];
+    }
+
+    public int getInViewCount(@NonNull GnssBand.Group group) {
+        return mGroupCounts[group.ordinal()][IN_VIEW];
+    }
+
+    public int getUsedCount(@NonNull GnssBand.Group group) {
+        return mGroupCounts[group.ordinal()][USED];
+    }
+
+    /** @return mean C/N0 of the signals in view, NaN if none */
+    public double getMeanCn0DbHz(int constellation) {
+        if (constellation < 0 || constellation >= Constellation.COUNT) return Double.NaN;
+        int inView = getInViewCount(constellation);
+        return inView == 0 ? Double.NaN : mConstellationCn0Sum[constellation] / inView;
+    }
+
+    /** @return mean C/N0 of the k strongest signals in view, fewer if less are in view */
+    public double getTopCn0MeanDbHz(int constellation, int k) {
+        if (constellation < 0 || constellation >= Constellation.COUNT) return Double.NaN;
+        int n = Math.min(k, mRankedCount[constellation]);
+        if (n <= 0) return Double.NaN;
+        int[] ranked = mRanked[constellation];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += mCn0DbHz[ranked[i]];
+        }
+        return sum / n;
+    }
+
+    /** @return slot of the rank-th strongest signal in view of the constellation */
+    public int getRankedSlot(int constellation, int rank) {
+        return mRanked[constellation][rank];
+    }
+
+    public int getRankedCount(int constellation) {
+        return constellation >= 0 && constellation < Constellation.COUNT
+                ? mRankedCount[constellation] : 0;
+    }
+
+    /** @return number of signals reported since the last clear, slots are 0 until this */
+    public int getSlotCount() {
+        return mSlotCount;
+    }
+
+    /** @return slot of the signal, -1 if it was never reported */
+    public int findSlot(int constellation, int svid, @NonNull GnssBand band) {
+        int key = makeKey(constellation, svid, band.ordinal());
+        int mask = mTable.length - 1;
+        for (int h = mix(key) & mask; mTable[h] != 0; h = (h + 1) & mask) {
+            if (mKeys[mTable[h] - 1] == key) return mTable[h] - 1;
+        }
+        return -1;
+    }
+
+    public int getConstellation(int slot) {
+        return mKeys[slot] >>> 24;
+    }
+
+    public int getSvid(int slot) {
+        return mKeys[slot] & 0xFFFF;
+    }
+
+    @NonNull
+    public GnssBand getBand(int slot) {
+        return GnssBand.fromOrdinal((mKeys[slot] >>> 16) & 0xFF);
+    }
+
+    /** @return true if the signal was reported in the last epoch */
+    public boolean isPresent(int slot) {
+        return mPresentEpoch[slot] == mEpoch;
+    }
+
+    public boolean isUsed(int slot) {
+        return (mFlags[slot] & SatelliteData.FLAG_USED_IN_FIX) != 0;
+    }
+
+    /** @return values of the last epoch the signal was reported */
+    public float getCn0DbHz(int slot) {
+        return mCn0DbHz[slot];
+    }
+
+    public float getElevationDegrees(int slot) {
+        return mElevations[slot];
+    }
+
+    public float getAzimuthDegrees(int slot) {
+        return mAzimuths[slot];
+    }
+
+    public int getFlags(int slot) {
+        return mFlags[slot];
+    }
+
+    /** @return elapsed realtime the signal was first in view, {@link #NEVER} if not yet */
+    public long getFirstSeenNanos(int slot) {
+        return mFirstSeenNanos[slot];
+    }
+
+    public long getLastSeenNanos(int slot) {
+        return mLastSeenNanos[slot];
+    }
+
+    public long getFirstUsedNanos(int slot) {
+        return mFirstUsedNanos[slot];
+    }
+
+    private void account(int slot, int delta) {
+        int constellation = getConstellation(slot);
+        var band = getBand(slot);
+        add(mCounts, slot, delta);
+        add(mConstellationCounts[constellation], slot, delta);
+        add(mBandCounts[band.ordinal()], slot, delta);
+        add(mGroupCounts[band.getGroup().ordinal()], slot, delta);
+        if (mCn0DbHz[slot] > 0) {
+            mConstellationCn0Sum[constellation] += delta * mCn0DbHz[slot];
+        }
+    }
+
+    private void add(int[] counts, int slot, int delta) {
+        counts[TOTAL] += delta;
+        if (mCn0DbHz[slot] > 0) counts[IN_VIEW] += delta;
+        if (isUsed(slot)) counts[USED] += delta;
+    }
+
+    /** Keeps the previous order, so the insertion sort only moves the signals that changed */
+    private void rank(long epoch) {
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            int[] ranked = mRanked[c];
+            int n = 0;
+            for (int i = 0; i < mRankedCount[c]; i++) {
+                int slot = ranked[i];
+                if (mPresentEpoch[slot] == epoch && mCn0DbHz[slot] > 0) {
+                    ranked[n++] = slot;
+                    mRankedEpoch[slot] = epoch;
+                }
+            }
+            mRankedCount[c] = n;
+        }
+        for (int i = 0; i < mActiveCount; i++) {
+            int slot = mActive[i];
+            if (mRankedEpoch[slot] == epoch || !(mCn0DbHz[slot] > 0)) continue;
+            int c = getConstellation(slot);
+            if (mRankedCount[c] == mRanked[c].length) {
+                mRanked[c] = Arrays.copyOf(mRanked[c], mRankedCount[c] * 2);
+            }
+            mRanked[c][mRankedCount[c]++] = slot;
+            mRankedEpoch[slot] = epoch;
+        }
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            int[] ranked = mRanked[c];
+            for (int i = 1; i < mRankedCount[c]; i++) {
+                int slot = ranked[i];
+                float cn0 = mCn0DbHz[slot];
+                int j = i - 1;
+                while (j >= 0 && mCn0DbHz[ranked[j]] < cn0) {
+                    ranked[j + 1] = ranked[j];
+                    j--;
+                }
+                ranked[j + 1] = slot;
+            }
+        }
+    }
+
+    private int[] constellationCounts(int constellation) {
+        return mConstellationCounts[constellation >= 0 && constellation < Constellation.COUNT
+                ? constellation : Constellation.UNKNOWN];
+    }
+
+    private int slotOf(int key) {
+        int mask = mTable.length - 1;
+        int h = mix(key) & mask;
+        for (; mTable[h] != 0; h = (h + 1) & mask) {
+            if (mKeys[mTable[h] - 1] == key) return mTable[h] - 1;
+        }
+        if (mSlotCount == mKeys.length) {
+            grow();
+            return slotOf(key);
+        }
+        int slot = mSlotCount++;
+        mTable[h] = slot + 1;
+        mKeys[slot] = key;
+        mPresentEpoch[slot] = -1;
+        mRankedEpoch[slot] = -1;
+        mFirstSeenNanos[slot] = NEVER;
+        mLastSeenNanos[slot] = NEVER;
+        mFirstUsedNanos[slot] = NEVER;
+        mFlags[slot] = 0;
+        mCn0DbHz[slot] = 0;
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = mKeys.length * 2;
+        mKeys = Arrays.copyOf(mKeys, capacity);
+        mCn0DbHz = Arrays.copyOf(mCn0DbHz, capacity);
+        mElevations = Arrays.copyOf(mElevations, capacity);
+        mAzimuths = Arrays.copyOf(mAzimuths, capacity);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+        mPresentEpoch = Arrays.copyOf(mPresentEpoch, capacity);
+        mRankedEpoch = Arrays.copyOf(mRankedEpoch, capacity);
+        mFirstSeenNanos = Arrays.copyOf(mFirstSeenNanos, capacity);
+        mLastSeenNanos = Arrays.copyOf(mLastSeenNanos, capacity);
+        mFirstUsedNanos = Arrays.copyOf(mFirstUsedNanos, capacity);
+        mTable = new int[capacity * 2];
+        int mask = mTable.length - 1;
+        for (int slot = 0; slot < mSlotCount; slot++) {
+            int h = mix(mKeys[slot]) & mask;
+            while (mTable[h] != 0) h = (h + 1) & mask;
+            mTable[h] = slot + 1;
+        }
+    }
+
+    private static int makeKey(int constellation, int svid, int band) {
+        return (constellation << 24) | ((band & 0xFF) << 16) | (svid & 0xFFFF);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,177 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Reduced precision orbit of one SV from the GPS LNAV almanac pages, angles in radians.
+ */
+public class Almanac {
+    private int mConstellation;
+    private int mSvid;
+    private int mWeek;
+    private double mToa;
+    private int mHealth;
+    private double mSqrtA;
+    private double mE;
+    private double mI;
+    private double mOmega0;
+    private double mOmega;
+    private double mM0;
+    private double mOmegaDot;
+    private double mAf0;
+    private double mAf1;
+
+    /** @return seconds since the GPS epoch of toa */
+    public double getToaGpsSeconds() {
+        return mWeek * GnssTime.WEEK_SECONDS + mToa;
+    }
+
+    public int getKey() {
+        return Ephemeris.key(mConstellation, mSvid);
+    }
+
+    public int getConstellation() {
+        return mConstellation;
+    }
+
+    public int getSvid() {
+        return mSvid;
+    }
+
+    void setSv(int constellation, int svid) {
+        mConstellation = constellation;
+        mSvid = svid;
+    }
+
+    public int getWeek() {
+        return mWeek;
+    }
+
+    void setWeek(int week) {
+        mWeek = week;
+    }
+
+    public double getToa() {
+        return mToa;
+    }
+
+    void setToa(double toa) {
+        mToa = toa;
+    }
+
+    public int getHealth() {
+        return mHealth;
+    }
+
+    void setHealth(int health) {
+        mHealth = health;
+    }
+
+    public double getSqrtA() {
+        return mSqrtA;
+    }
+
+    void setSqrtA(double sqrtA) {
+        mSqrtA = sqrtA;
+    }
+
+    public double getE() {
+        return mE;
+    }
+
+    void setE(double e) {
+        mE = e;
+    }
+
+    /** @return inclination, 0.3 semicircles plus the broadcast offset */
+    public double getI() {
+        return mI;
+    }
+
+    void setI(double i) {
+        mI = i;
+    }
+
+    public double getOmega0() {
+        return mOmega0;
+    }
+
+    void setOmega0(double omega0) {
+        mOmega0 = omega0;
+    }
+
+    public double getOmega() {
+        return mOmega;
+    }
+
+    void setOmega(double omega) {
+        mOmega = omega;
+    }
+
+    public double getM0() {
+        return mM0;
+    }
+
+    void setM0(double m0) {
+        mM0 = m0;
+    }
+
+    public double getOmegaDot() {
+        return mOmegaDot;
+    }
+
+    void setOmegaDot(double omegaDot) {
+        mOmegaDot = omegaDot;
+    }
+
+    public double getAf0() {
+        return mAf0;
+    }
+
+    void setAf0(double af0) {
+        mAf0 = af0;
+    }
+
+    public double getAf1() {
+        return mAf1;
+    }
+
+    void setAf1(double af1) {
+        mAf1 = af1;
+    }
+
+    void write(@NonNull DataOutput out) throws IOException {
+        out.writeByte(mConstellation);
+        out.writeShort(mSvid);
+        out.writeShort(mWeek);
+        out.writeInt(mHealth);
+        for (double v : new double[]{mToa, mSqrtA, mE, mI, mOmega0, mOmega, mM0, mOmegaDot,
+                mAf0, mAf1}) {
+            out.writeDouble(v);
+        }
+    }
+
+    @NonNull
+    static Almanac read(@NonNull DataInput in) throws IOException {
+        var alm = new Almanac();
+        alm.mConstellation = in.readUnsignedByte();
+        alm.mSvid = in.readUnsignedShort();
+        alm.mWeek = in.readUnsignedShort();
+        alm.mHealth = in.readInt();
+        alm.mToa = in.readDouble();
+        alm.mSqrtA = in.readDouble();
+        alm.mE = in.readDouble();
+        alm.mI = in.readDouble();
+        alm.mOmega0 = in.readDouble();
+        alm.mOmega = in.readDouble();
+        alm.mM0 = in.readDouble();
+        alm.mOmegaDot = in.readDouble();
+        alm.mAf0 = in.readDouble();
+        alm.mAf1 = in.readDouble();
+        return alm;
+    }
+}
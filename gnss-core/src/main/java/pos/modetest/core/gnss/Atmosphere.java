@@ -0,0 +1,60 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Broadcast ionosphere and standard atmosphere troposphere delays, angles in radians.
+ */
+public final class Atmosphere {
+    /** Relative humidity of the standard atmosphere */
+    static final double HUMIDITY = 0.7;
+
+    private Atmosphere() {
+    }
+
+    /**
+     * GPS Klobuchar model (IS-GPS-200 20.3.3.5.2.5).
+     *
+     * @param alphaBeta alpha0-3 and beta0-3, see {@link EphemerisCache#getKlobuchar}
+     * @return L1 delay in meters, scale by (f1 / f)^2 for other frequencies
+     */
+    public static double klobucharMeters(@NonNull double[] alphaBeta, double lat, double lon,
+                                         double azimuth, double elevation, double timeOfWeek) {
+        // In semicircles
+        double el = elevation / Math.PI;
+        double psi = 0.0137 / (el + 0.11) - 0.022;
+        double phiI = Math.max(-0.416, Math.min(0.416, lat / Math.PI + psi * Math.cos(azimuth)));
+        double lamI = lon / Math.PI + psi * Math.sin(azimuth) / Math.cos(phiI * Math.PI);
+        double phiM = phiI + 0.064 * Math.cos((lamI - 1.617) * Math.PI);
+        double t = 43_200 * lamI + timeOfWeek;
+        t -= Math.floor(t / 86_400) * 86_400;
+        double f = 1 + 16 * Math.pow(0.53 - el, 3);
+        double amp = alphaBeta[0]
+                + phiM * (alphaBeta[1] + phiM * (alphaBeta[2] + phiM * alphaBeta[3]));
+        double per = alphaBeta[4]
+                + phiM * (alphaBeta[5] + phiM * (alphaBeta[6] + phiM * alphaBeta[7]));
+        amp = Math.max(amp, 0);
+        per = Math.max(per, 72_000);
+        double x = 2 * Math.PI * (t - 50_400) / per;
+        double delay = Math.abs(x) < 1.57
+                ? f * (5e-9 + amp * (1 - x * x / 2 + x * x * x * x / 24)) : f * 5e-9;
+        return delay * PseudorangeEngine.SPEED_OF_LIGHT_M_S;
+    }
+
+    /**
+     * Saastamoinen zenith delays of the standard atmosphere, mapped with 1 / sin(elevation).
+     *
+     * @return meters, 0 below the horizon or out of the troposphere model range
+     */
+    public static double troposphereMeters(double lat, double alt, double elevation) {
+        if (elevation <= 0 || alt < -100 || alt > 10_000) return 0;
+        double h = Math.max(alt, 0);
+        double pressure = 1013.25 * Math.pow(1 - 2.2557e-5 * h, 5.2568);
+        double temp = 15 - 6.5e-3 * h + 273.16;
+        double e = 6.108 * HUMIDITY * Math.exp((17.15 * temp - 4684) / (temp - 38.45));
+        double sinEl = Math.sin(elevation);
+        double dry = 0.0022768 * pressure / (1 - 0.00266 * Math.cos(2 * lat) - 0.00028e-3 * h);
+        double wet = 0.002277 * (1255 / temp + 0.05) * e;
+        return (dry + wet) / sinEl;
+    }
+}
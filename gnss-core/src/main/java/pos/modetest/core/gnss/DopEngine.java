@@ -0,0 +1,264 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.SatelliteData;
+
+/**
+ * Dilution of precision of the SVs used in the fix, from the azimuth and elevation of a status.
+ * <p>
+ * Each SV adds its east, north, up, clock row to the normal matrix of its constellation once,
+ * whatever its number of signals. The matrix of a subset is the sum of its constellations, so
+ * the rows are only accumulated once for every subset. Each subset then takes a 4x4 Cholesky
+ * inversion, with a single receiver clock. Nothing is allocated per update.
+ * <p>
+ * Not thread safe, listeners are called on the updating thread.
+ */
+public class DopEngine {
+    public static final int SUBSET_GPS = 0;
+    public static final int SUBSET_GPS_GALILEO = 1;
+    public static final int SUBSET_ALL = 2;
+    public static final int SUBSET_COUNT = 3;
+
+    private static final int[] SUBSET_MASKS = {
+            1 << Constellation.GPS,
+            (1 << Constellation.GPS) | (1 << Constellation.GALILEO),
+            (1 << Constellation.COUNT) - 1,
+    };
+    private static final int MIN_SVS = 4;
+    private static final int MAX_SVID = 256;
+    // Upper triangle of the normal matrix of the e, n, u, 1 rows
+    private static final int EE = 0;
+    private static final int EN = 1;
+    private static final int EU = 2;
+    private static final int ET = 3;
+    private static final int NN = 4;
+    private static final int NU = 5;
+    private static final int NT = 6;
+    private static final int UU = 7;
+    private static final int UT = 8;
+    private static final int TT = 9;
+    private static final int TERMS = 10;
+
+    private final double[] mSums = new double[Constellation.COUNT * TERMS];
+    private final int[] mSvCounts = new int[Constellation.COUNT];
+    // One bit per SV already added this update
+    private final long[] mSeen = new long[Constellation.COUNT * MAX_SVID / 64];
+    private final double[] mMatrix = new double[16];
+    private final double[] mInverse = new double[16];
+
+    private final int[] mSubsetSvCounts = new int[SUBSET_COUNT];
+    private final double[] mHdop = new double[SUBSET_COUNT];
+    private final double[] mVdop = new double[SUBSET_COUNT];
+    private final double[] mTdop = new double[SUBSET_COUNT];
+    private double mElevationMaskDegrees;
+    private long mElapsedRealtimeNanos;
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    public DopEngine() {
+        clear();
+    }
+
+    public double getElevationMaskDegrees() {
+        return mElevationMaskDegrees;
+    }
+
+    /** Used SVs below the mask are left out, default 0 */
+    public void setElevationMaskDegrees(double elevationMaskDegrees) {
+        mElevationMaskDegrees = elevationMaskDegrees;
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    public void clear() {
+        Arrays.fill(mSubsetSvCounts, 0);
+        Arrays.fill(mHdop, Double.NaN);
+        Arrays.fill(mVdop, Double.NaN);
+        Arrays.fill(mTdop, Double.NaN);
+        mElapsedRealtimeNanos = 0;
+    }
+
+    /** Recomputes every subset from the signals flagged used in fix, then calls the listeners */
+    public void update(@NonNull SatelliteData sats, long elapsedRealtimeNanos) {
+        Arrays.fill(mSums, 0);
+        Arrays.fill(mSvCounts, 0);
+        Arrays.fill(mSeen, 0);
+        int count = sats.getCount();
+        for (int i = 0; i < count; i++) {
+            if ((sats.getFlags(i) & SatelliteData.FLAG_USED_IN_FIX) == 0) continue;
+            int constellation = sats.getConstellation(i);
+            int svid = sats.getSvid(i);
+            if (constellation < 0 || constellation >= Constellation.COUNT
+                    || svid < 0 || svid >= MAX_SVID) {
+                continue;
+            }
+            float el = sats.getElevationDegrees(i);
+            float az = sats.getAzimuthDegrees(i);
+            // 0, 0 is what the platform reports when the position is unknown
+            if (!(el >= mElevationMaskDegrees) || (el == 0f && az == 0f) || Float.isNaN(az)) {
+                continue;
+            }
+            int bit = constellation * MAX_SVID + svid;
+            if ((mSeen[bit >>> 6] & (1L << bit)) != 0) continue;
+            mSeen[bit >>> 6] |= 1L << bit;
+
+            double elRad = Math.toRadians(el);
+            double azRad = Math.toRadians(az);
+            double cosEl = Math.cos(elRad);
+            double e = cosEl * Math.sin(azRad);
+            double n = cosEl * Math.cos(azRad);
+            double u = Math.sin(elRad);
+            int base = constellation * TERMS;
+            mSums[base + EE] += e * e;
+            mSums[base + EN] += e * n;
+            mSums[base + EU] += e * u;
+            mSums[base + ET] += e;
+            mSums[base + NN] += n * n;
+            mSums[base + NU] += n * u;
+            mSums[base + NT] += n;
+            mSums[base + UU] += u * u;
+            mSums[base + UT] += u;
+            mSums[base + TT] += 1;
+            mSvCounts[constellation]++;
+        }
+        for (int s = 0; s < SUBSET_COUNT; s++) {
+            solve(s);
+        }
+        mElapsedRealtimeNanos = elapsedRealtimeNanos;
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).onDop(elapsedRealtimeNanos, this);
+        }
+    }
+
+    private void solve(int subset) {
+        int mask = SUBSET_MASKS[subset];
+        int svCount = 0;
+        double[] a = mMatrix;
+        Arrays.fill(a, 0);
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            if ((mask & (1 << c)) == 0 || mSvCounts[c] == 0) continue;
+            svCount += mSvCounts[c];
+            int base = c * TERMS;
+            a[0] += mSums[base + EE];
+            a[1] += mSums[base + EN];
+            a[2] += mSums[base + EU];
+            a[3] += mSums[base + ET];
+            a[5] += mSums[base + NN];
+            a[6] += mSums[base + NU];
+            a[7] += mSums[base + NT];
+            a[10] += mSums[base + UU];
+            a[11] += mSums[base + UT];
+            a[15] += mSums[base + TT];
+        }
+        mSubsetSvCounts[subset] = svCount;
+        if (svCount < MIN_SVS || !invertDiagonal(a, mInverse)) {
+            mHdop[subset] = Double.NaN;
+            mVdop[subset] = Double.NaN;
+            mTdop[subset] = Double.NaN;
+            return;
+        }
+        mHdop[subset] = Math.sqrt(mInverse[0] + mInverse[1]);
+        mVdop[subset] = Math.sqrt(mInverse[2]);
+        mTdop[subset] = Math.sqrt(mInverse[3]);
+    }
+
+    /**
+     * Diagonal of the inverse of a 4x4 symmetric positive definite matrix, from its upper
+     * triangle: with A = L L^T, (A^-1)_ii is the squared norm of column i of L^-1.
+     *
+     * @param a   row major, destroyed
+     * @param out diagonal in the first 4 values, the rest is scratch
+     * @return false if not positive definite, as with coplanar SVs
+     */
+    static boolean invertDiagonal(double[] a, double[] out) {
+        // Cholesky factor L in the lower triangle of a, read from the upper one
+        for (int j = 0; j < 4; j++) {
+            double d = a[j * 4 + j];
+            for (int k = 0; k < j; k++) {
+                d -= a[j * 4 + k] * a[j * 4 + k];
+            }
+            if (!(d > 1e-12)) return false;
+            d = Math.sqrt(d);
+            a[j * 4 + j] = d;
+            for (int i = j + 1; i < 4; i++) {
+                double s = a[j * 4 + i];
+                for (int k = 0; k < j; k++) {
+                    s -= a[i * 4 + k] * a[j * 4 + k];
+                }
+                a[i * 4 + j] = s / d;
+            }
+        }
+        // M = L^-1, lower triangular, kept in the upper triangle of out transposed
+        double[] m = out;
+        for (int i = 0; i < 4; i++) {
+            m[i * 4 + i] = 1 / a[i * 4 + i];
+            for (int j = 0; j < i; j++) {
+                double s = 0;
+                for (int k = j; k < i; k++) {
+                    s += a[i * 4 + k] * m[j * 4 + k];
+                }
+                m[j * 4 + i] = -s / a[i * 4 + i];
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            double s = 0;
+            for (int k = i; k < 4; k++) {
+                s += m[i * 4 + k] * m[i * 4 + k];
+            }
+            out[i] = s;
+        }
+        return true;
+    }
+
+    /** @return time of the last update, 0 if cleared */
+    public long getElapsedRealtimeNanos() {
+        return mElapsedRealtimeNanos;
+    }
+
+    /** @return SVs of the subset used in the last update */
+    public int getSvCount(int subset) {
+        return mSubsetSvCounts[subset];
+    }
+
+    public boolean hasDop(int subset) {
+        return !Double.isNaN(mHdop[subset]);
+    }
+
+    /** @return NaN with less than 4 SVs or a degenerate geometry */
+    public double getHdop(int subset) {
+        return mHdop[subset];
+    }
+
+    public double getVdop(int subset) {
+        return mVdop[subset];
+    }
+
+    public double getTdop(int subset) {
+        return mTdop[subset];
+    }
+
+    public double getPdop(int subset) {
+        return Math.sqrt(mHdop[subset] * mHdop[subset] + mVdop[subset] * mVdop[subset]);
+    }
+
+    public double getGdop(int subset) {
+        double pdop = getPdop(subset);
+        return Math.sqrt(pdop * pdop + mTdop[subset] * mTdop[subset]);
+    }
+
+    public interface Listener {
+        /** The engine is only valid during the call, copy what is kept */
+        void onDop(long elapsedRealtimeNanos, @NonNull DopEngine dop);
+    }
+}
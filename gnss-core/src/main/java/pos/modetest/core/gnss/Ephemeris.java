@@ -0,0 +1,387 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import pos.modetest.core.data.Constellation;
+
+/**
+ * Keplerian broadcast ephemeris and clock of one SV (GPS/QZSS LNAV, Galileo I/NAV).
+ * <p>
+ * Angles are in radians, times in seconds of the GPS week {@link #getWeek()}: Galileo weeks
+ * and times of week are converted on decode, GST being aligned with GPS time.
+ */
+public class Ephemeris {
+    /** Half of the GPS fit interval, ephemeris older or newer than this is not used */
+    public static final double GPS_VALIDITY_SECONDS = 2 * 3600;
+    public static final double GALILEO_VALIDITY_SECONDS = 4 * 3600;
+
+    private int mConstellation;
+    private int mSvid;
+    private int mWeek;
+    private double mToe;
+    private double mToc;
+    private int mIode;
+    private int mIodc;
+    private int mHealth;
+    /** URA index for GPS, SISA index for Galileo */
+    private int mAccuracyIndex;
+
+    private double mSqrtA;
+    private double mE;
+    private double mI0;
+    private double mOmega0;
+    private double mOmega;
+    private double mM0;
+    private double mDeltaN;
+    private double mOmegaDot;
+    private double mIdot;
+    private double mCuc;
+    private double mCus;
+    private double mCrc;
+    private double mCrs;
+    private double mCic;
+    private double mCis;
+
+    private double mAf0;
+    private double mAf1;
+    private double mAf2;
+    private double mTgd;
+
+    /** Keplerian elements of an almanac, without harmonic corrections, toe at toa */
+    @NonNull
+    static Ephemeris fromAlmanac(@NonNull Almanac alm) {
+        var eph = new Ephemeris();
+        eph.setSv(alm.getConstellation(), alm.getSvid());
+        eph.setWeek(alm.getWeek());
+        eph.setToe(alm.getToa());
+        eph.setToc(alm.getToa());
+        eph.setIode(-1);
+        eph.setHealth(alm.getHealth());
+        eph.setSqrtA(alm.getSqrtA());
+        eph.setE(alm.getE());
+        eph.setI0(alm.getI());
+        eph.setOmega0(alm.getOmega0());
+        eph.setOmega(alm.getOmega());
+        eph.setM0(alm.getM0());
+        eph.setOmegaDot(alm.getOmegaDot());
+        eph.setAf0(alm.getAf0());
+        eph.setAf1(alm.getAf1());
+        return eph;
+    }
+
+    /** @return key of the SV, same for every version of its ephemeris */
+    public static int key(int constellation, int svid) {
+        return (constellation << 16) | (svid & 0xFFFF);
+    }
+
+    public int getKey() {
+        return key(mConstellation, mSvid);
+    }
+
+    /** @return seconds since the GPS epoch of toe */
+    public double getToeGpsSeconds() {
+        return mWeek * GnssTime.WEEK_SECONDS + mToe;
+    }
+
+    public double getValiditySeconds() {
+        return mConstellation == Constellation.GALILEO
+                ? GALILEO_VALIDITY_SECONDS : GPS_VALIDITY_SECONDS;
+    }
+
+    /** @param gpsSeconds seconds since the GPS epoch */
+    public boolean isValidAt(double gpsSeconds) {
+        return mHealth == 0
+                && Math.abs(gpsSeconds - getToeGpsSeconds()) <= getValiditySeconds();
+    }
+
+    /** Same SV and issue of data, toe included as IODE values get reused */
+    public boolean isSameIssue(@NonNull Ephemeris other) {
+        return mConstellation == other.mConstellation && mSvid == other.mSvid
+                && mIode == other.mIode && mWeek == other.mWeek && mToe == other.mToe;
+    }
+
+    public int getConstellation() {
+        return mConstellation;
+    }
+
+    public int getSvid() {
+        return mSvid;
+    }
+
+    void setSv(int constellation, int svid) {
+        mConstellation = constellation;
+        mSvid = svid;
+    }
+
+    /** @return full GPS week of toe */
+    public int getWeek() {
+        return mWeek;
+    }
+
+    void setWeek(int week) {
+        mWeek = week;
+    }
+
+    public double getToe() {
+        return mToe;
+    }
+
+    void setToe(double toe) {
+        mToe = toe;
+    }
+
+    public double getToc() {
+        return mToc;
+    }
+
+    void setToc(double toc) {
+        mToc = toc;
+    }
+
+    /** @return IODE for GPS, IODnav for Galileo */
+    public int getIode() {
+        return mIode;
+    }
+
+    void setIode(int iode) {
+        mIode = iode;
+    }
+
+    public int getIodc() {
+        return mIodc;
+    }
+
+    void setIodc(int iodc) {
+        mIodc = iodc;
+    }
+
+    /** @return 0 if healthy */
+    public int getHealth() {
+        return mHealth;
+    }
+
+    void setHealth(int health) {
+        mHealth = health;
+    }
+
+    public int getAccuracyIndex() {
+        return mAccuracyIndex;
+    }
+
+    void setAccuracyIndex(int accuracyIndex) {
+        mAccuracyIndex = accuracyIndex;
+    }
+
+    public double getSqrtA() {
+        return mSqrtA;
+    }
+
+    void setSqrtA(double sqrtA) {
+        mSqrtA = sqrtA;
+    }
+
+    public double getE() {
+        return mE;
+    }
+
+    void setE(double e) {
+        mE = e;
+    }
+
+    public double getI0() {
+        return mI0;
+    }
+
+    void setI0(double i0) {
+        mI0 = i0;
+    }
+
+    public double getOmega0() {
+        return mOmega0;
+    }
+
+    void setOmega0(double omega0) {
+        mOmega0 = omega0;
+    }
+
+    public double getOmega() {
+        return mOmega;
+    }
+
+    void setOmega(double omega) {
+        mOmega = omega;
+    }
+
+    public double getM0() {
+        return mM0;
+    }
+
+    void setM0(double m0) {
+        mM0 = m0;
+    }
+
+    public double getDeltaN() {
+        return mDeltaN;
+    }
+
+    void setDeltaN(double deltaN) {
+        mDeltaN = deltaN;
+    }
+
+    public double getOmegaDot() {
+        return mOmegaDot;
+    }
+
+    void setOmegaDot(double omegaDot) {
+        mOmegaDot = omegaDot;
+    }
+
+    public double getIdot() {
+        return mIdot;
+    }
+
+    void setIdot(double idot) {
+        mIdot = idot;
+    }
+
+    public double getCuc() {
+        return mCuc;
+    }
+
+    void setCuc(double cuc) {
+        mCuc = cuc;
+    }
+
+    public double getCus() {
+        return mCus;
+    }
+
+    void setCus(double cus) {
+        mCus = cus;
+    }
+
+    public double getCrc() {
+        return mCrc;
+    }
+
+    void setCrc(double crc) {
+        mCrc = crc;
+    }
+
+    public double getCrs() {
+        return mCrs;
+    }
+
+    void setCrs(double crs) {
+        mCrs = crs;
+    }
+
+    public double getCic() {
+        return mCic;
+    }
+
+    void setCic(double cic) {
+        mCic = cic;
+    }
+
+    public double getCis() {
+        return mCis;
+    }
+
+    void setCis(double cis) {
+        mCis = cis;
+    }
+
+    public double getAf0() {
+        return mAf0;
+    }
+
+    void setAf0(double af0) {
+        mAf0 = af0;
+    }
+
+    public double getAf1() {
+        return mAf1;
+    }
+
+    void setAf1(double af1) {
+        mAf1 = af1;
+    }
+
+    public double getAf2() {
+        return mAf2;
+    }
+
+    void setAf2(double af2) {
+        mAf2 = af2;
+    }
+
+    /** @return TGD for GPS, BGD(E1,E5b) for Galileo, seconds */
+    public double getTgd() {
+        return mTgd;
+    }
+
+    void setTgd(double tgd) {
+        mTgd = tgd;
+    }
+
+    void write(@NonNull DataOutput out) throws IOException {
+        out.writeByte(mConstellation);
+        out.writeShort(mSvid);
+        out.writeShort(mWeek);
+        out.writeInt(mIode);
+        out.writeInt(mIodc);
+        out.writeInt(mHealth);
+        out.writeInt(mAccuracyIndex);
+        for (double v : new double[]{mToe, mToc, mSqrtA, mE, mI0, mOmega0, mOmega, mM0,
+                mDeltaN, mOmegaDot, mIdot, mCuc, mCus, mCrc, mCrs, mCic, mCis,
+                mAf0, mAf1, mAf2, mTgd}) {
+            out.writeDouble(v);
+        }
+    }
+
+    @NonNull
+    static Ephemeris read(@NonNull DataInput in) throws IOException {
+        var eph = new Ephemeris();
+        eph.mConstellation = in.readUnsignedByte();
+        eph.mSvid = in.readUnsignedShort();
+        eph.mWeek = in.readUnsignedShort();
+        eph.mIode = in.readInt();
+        eph.mIodc = in.readInt();
+        eph.mHealth = in.readInt();
+        eph.mAccuracyIndex = in.readInt();
+        eph.mToe = in.readDouble();
+        eph.mToc = in.readDouble();
+        eph.mSqrtA = in.readDouble();
+        eph.mE = in.readDouble();
+        eph.mI0 = in.readDouble();
+        eph.mOmega0 = in.readDouble();
+        eph.mOmega = in.readDouble();
+        eph.mM0 = in.readDouble();
+        eph.mDeltaN = in.readDouble();
+        eph.mOmegaDot = in.readDouble();
+        eph.mIdot = in.readDouble();
+        eph.mCuc = in.readDouble();
+        eph.mCus = in.readDouble();
+        eph.mCrc = in.readDouble();
+        eph.mCrs = in.readDouble();
+        eph.mCic = in.readDouble();
+        eph.mCis = in.readDouble();
+        eph.mAf0 = in.readDouble();
+        eph.mAf1 = in.readDouble();
+        eph.mAf2 = in.readDouble();
+        eph.mTgd = in.readDouble();
+        return eph;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return Constellation.getName(mConstellation) + " " + mSvid + " IODE " + mIode
+                + " week " + mWeek + " toe " + (long) mToe;
+    }
+}
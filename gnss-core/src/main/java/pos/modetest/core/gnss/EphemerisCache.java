@@ -0,0 +1,287 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Decoded ephemerides, almanacs and ionosphere parameters.
+ * <p>
+ * The last {@link #VERSIONS_PER_SV} issues of data are kept per SV, so measurements made
+ * just before an ephemeris cut-over still find theirs by IODE. Every change increments
+ * {@link #getVersion()}, which users compare to skip recomputing. The whole cache is written
+ * to a single binary file to survive restarts. All methods are synchronized.
+ */
+public class EphemerisCache {
+    public static final String FILE_NAME = "ephemeris.bin";
+    public static final int VERSIONS_PER_SV = 2;
+    private static final int MAGIC = 0x45504843; // EPHC
+    private static final int FORMAT_VERSION = 1;
+
+    // SV key -> newest first, null padded
+    private final Map<Integer, Ephemeris[]> mEphemerides = new HashMap<>();
+    private final Map<Integer, Almanac> mAlmanacs = new HashMap<>();
+    // GPS Klobuchar alpha0-3, beta0-3
+    private final double[] mKlobuchar = new double[8];
+    private boolean mHasKlobuchar;
+    // Galileo NeQuick ai0-2
+    private final double[] mNeQuick = new double[3];
+    private boolean mHasNeQuick;
+    private long mVersion;
+
+    /** @return false if the same issue of data was already there, or only newer ones */
+    public synchronized boolean put(@NonNull Ephemeris eph) {
+        Ephemeris[] versions = mEphemerides.computeIfAbsent(eph.getKey(),
+                k -> new Ephemeris[VERSIONS_PER_SV]);
+        int pos = 0;
+        for (Ephemeris v : versions) {
+            if (v == null) break;
+            if (v.isSameIssue(eph)) return false;
+            if (v.getToeGpsSeconds() <= eph.getToeGpsSeconds()) break;
+            pos++;
+        }
+        if (pos == versions.length) return false;
+        System.arraycopy(versions, pos, versions, pos + 1, versions.length - pos - 1);
+        versions[pos] = eph;
+        mVersion++;
+        return true;
+    }
+
+    /** @return newest ephemeris of the SV */
+    @Nullable
+    public synchronized Ephemeris get(int constellation, int svid) {
+        Ephemeris[] versions = mEphemerides.get(Ephemeris.key(constellation, svid));
+        return versions != null ? versions[0] : null;
+    }
+
+    @Nullable
+    public synchronized Ephemeris get(int constellation, int svid, int iode) {
+        Ephemeris[] versions = mEphemerides.get(Ephemeris.key(constellation, svid));
+        if (versions == null) return null;
+        for (Ephemeris v : versions) {
+            if (v != null && v.getIode() == iode) return v;
+        }
+        return null;
+    }
+
+    /** @return valid ephemeris with the closest toe, null if none */
+    @Nullable
+    public synchronized Ephemeris select(int constellation, int svid, double gpsSeconds) {
+        Ephemeris[] versions = mEphemerides.get(Ephemeris.key(constellation, svid));
+        return versions != null ? select(versions, gpsSeconds) : null;
+    }
+
+    @Nullable
+    private static Ephemeris select(Ephemeris[] versions, double gpsSeconds) {
+        Ephemeris best = null;
+        double bestDt = Double.MAX_VALUE;
+        for (Ephemeris v : versions) {
+            if (v == null || !v.isValidAt(gpsSeconds)) continue;
+            double dt = Math.abs(gpsSeconds - v.getToeGpsSeconds());
+            if (dt < bestDt) {
+                best = v;
+                bestDt = dt;
+            }
+        }
+        return best;
+    }
+
+    /** @return healthy ephemeris with the closest toe, valid at the time or not */
+    @Nullable
+    public synchronized Ephemeris getNearest(int constellation, int svid, double gpsSeconds) {
+        Ephemeris[] versions = mEphemerides.get(Ephemeris.key(constellation, svid));
+        if (versions == null) return null;
+        Ephemeris best = null;
+        for (Ephemeris v : versions) {
+            if (v == null || v.getHealth() != 0) continue;
+            if (best == null || Math.abs(gpsSeconds - v.getToeGpsSeconds())
+                    < Math.abs(gpsSeconds - best.getToeGpsSeconds())) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /** @return sorted keys of the SVs with an ephemeris or an almanac */
+    @NonNull
+    public synchronized int[] getSvKeys() {
+        var keys = new TreeSet<Integer>(mEphemerides.keySet());
+        keys.addAll(mAlmanacs.keySet());
+        int[] out = new int[keys.size()];
+        int i = 0;
+        for (int key : keys) out[i++] = key;
+        return out;
+    }
+
+    /** @return number of SVs with a healthy ephemeris valid at the time */
+    public synchronized int getValidCount(double gpsSeconds) {
+        int count = 0;
+        for (Ephemeris[] versions : mEphemerides.values()) {
+            if (select(versions, gpsSeconds) != null) count++;
+        }
+        return count;
+    }
+
+    /** @return ephemerides valid at the time, one per SV */
+    @NonNull
+    public synchronized List<Ephemeris> getValid(double gpsSeconds) {
+        var valid = new ArrayList<Ephemeris>();
+        for (Ephemeris[] versions : mEphemerides.values()) {
+            Ephemeris eph = select(versions, gpsSeconds);
+            if (eph != null) valid.add(eph);
+        }
+        return valid;
+    }
+
+    public synchronized int getSvCount() {
+        return mEphemerides.size();
+    }
+
+    /** @return false if an almanac with the same week and toa was already there */
+    public synchronized boolean putAlmanac(@NonNull Almanac alm) {
+        Almanac old = mAlmanacs.get(alm.getKey());
+        if (old != null && old.getWeek() == alm.getWeek() && old.getToa() == alm.getToa()
+                && old.getHealth() == alm.getHealth()) {
+            return false;
+        }
+        mAlmanacs.put(alm.getKey(), alm);
+        mVersion++;
+        return true;
+    }
+
+    @Nullable
+    public synchronized Almanac getAlmanac(int constellation, int svid) {
+        return mAlmanacs.get(Ephemeris.key(constellation, svid));
+    }
+
+    public synchronized int getAlmanacCount() {
+        return mAlmanacs.size();
+    }
+
+    /** @param alphaBeta alpha0-3 and beta0-3 of the GPS Klobuchar model */
+    public synchronized boolean setKlobuchar(@NonNull double[] alphaBeta) {
+        if (mHasKlobuchar && Arrays.equals(mKlobuchar, alphaBeta)) return false;
+        System.arraycopy(alphaBeta, 0, mKlobuchar, 0, mKlobuchar.length);
+        mHasKlobuchar = true;
+        mVersion++;
+        return true;
+    }
+
+    /** @return false and out untouched if not decoded yet */
+    public synchronized boolean getKlobuchar(@NonNull double[] out) {
+        if (!mHasKlobuchar) return false;
+        System.arraycopy(mKlobuchar, 0, out, 0, mKlobuchar.length);
+        return true;
+    }
+
+    /** @param ai ai0-2 of the Galileo NeQuick model */
+    public synchronized boolean setNeQuick(@NonNull double[] ai) {
+        if (mHasNeQuick && Arrays.equals(mNeQuick, ai)) return false;
+        System.arraycopy(ai, 0, mNeQuick, 0, mNeQuick.length);
+        mHasNeQuick = true;
+        mVersion++;
+        return true;
+    }
+
+    public synchronized boolean getNeQuick(@NonNull double[] out) {
+        if (!mHasNeQuick) return false;
+        System.arraycopy(mNeQuick, 0, out, 0, mNeQuick.length);
+        return true;
+    }
+
+    /** @return incremented on every change */
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    public synchronized void clear() {
+        mEphemerides.clear();
+        mAlmanacs.clear();
+        mHasKlobuchar = false;
+        mHasNeQuick = false;
+        mVersion++;
+    }
+
+    /** Writes everything to a temporary file moved over {@code file} */
+    public synchronized void save(@NonNull Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            int count = 0;
+            for (Ephemeris[] versions : mEphemerides.values()) {
+                for (Ephemeris v : versions) {
+                    if (v != null) count++;
+                }
+            }
+            out.writeInt(count);
+            for (Ephemeris[] versions : mEphemerides.values()) {
+                for (Ephemeris v : versions) {
+                    if (v != null) v.write(out);
+                }
+            }
+            out.writeInt(mAlmanacs.size());
+            for (Almanac alm : mAlmanacs.values()) {
+                alm.write(out);
+            }
+            out.writeBoolean(mHasKlobuchar);
+            for (double v : mKlobuchar) out.writeDouble(v);
+            out.writeBoolean(mHasNeQuick);
+            for (double v : mNeQuick) out.writeDouble(v);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the content of a file written by {@link #save}, a missing file is not an error.
+     *
+     * @return number of ephemerides read
+     */
+    public synchronized int load(@NonNull Path file) throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an ephemeris cache");
+            }
+            int formatVersion = in.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported version " + formatVersion);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                put(Ephemeris.read(in));
+            }
+            int almanacs = in.readInt();
+            for (int i = 0; i < almanacs; i++) {
+                putAlmanac(Almanac.read(in));
+            }
+            double[] values = new double[mKlobuchar.length];
+            boolean hasKlobuchar = in.readBoolean();
+            for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+            if (hasKlobuchar) setKlobuchar(values);
+            values = new double[mNeQuick.length];
+            boolean hasNeQuick = in.readBoolean();
+            for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+            if (hasNeQuick) setNeQuick(values);
+            return count;
+        }
+    }
+}
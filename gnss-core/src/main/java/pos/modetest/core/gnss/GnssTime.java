@@ -0,0 +1,53 @@
+package pos.modetest.core.gnss;
+
+/**
+ * GPS time helpers, times as seconds since the GPS epoch (1980-01-06 00:00:00 UTC).
+ */
+public class GnssTime {
+    public static final double WEEK_SECONDS = 604_800;
+    public static final double HALF_WEEK_SECONDS = WEEK_SECONDS / 2;
+    public static final long GPS_EPOCH_UNIX_MILLIS = 315_964_800_000L;
+    /** GST week 0 is GPS week 1024 */
+    public static final int GALILEO_WEEK_OFFSET = 1024;
+
+    private GnssTime() {
+    }
+
+    /** @param leapSeconds GPS - UTC, {@link PseudorangeEngine#DEFAULT_LEAP_SECONDS} if unknown */
+    public static double fromUnixMillis(long unixMillis, int leapSeconds) {
+        return (unixMillis - GPS_EPOCH_UNIX_MILLIS) / 1000d + leapSeconds;
+    }
+
+    public static int getWeek(double gpsSeconds) {
+        return (int) Math.floor(gpsSeconds / WEEK_SECONDS);
+    }
+
+    /**
+     * Full week of a truncated week number, the closest one to the reference week.
+     *
+     * @param modulus 1024 for the 10 bit GPS LNAV week number
+     */
+    public static int resolveWeek(int truncatedWeek, int modulus, int referenceWeek) {
+        int week = referenceWeek - Math.floorMod(referenceWeek - truncatedWeek, modulus);
+        return referenceWeek - week > modulus / 2 ? week + modulus : week;
+    }
+
+    /**
+     * Week of a time of week given the week and time of week of the message, e.g. a toe at
+     * the start of the next week broadcast at the end of this one.
+     */
+    public static int adjustWeek(int week, double timeOfWeek, double messageTimeOfWeek) {
+        double dt = timeOfWeek - messageTimeOfWeek;
+        if (dt > HALF_WEEK_SECONDS) return week - 1;
+        if (dt < -HALF_WEEK_SECONDS) return week + 1;
+        return week;
+    }
+
+    /** @return t - ref wrapped into +- half a week */
+    public static double diffWithinWeek(double t, double ref) {
+        double dt = t - ref;
+        if (dt > HALF_WEEK_SECONDS) return dt - WEEK_SECONDS;
+        if (dt < -HALF_WEEK_SECONDS) return dt + WEEK_SECONDS;
+        return dt;
+    }
+}
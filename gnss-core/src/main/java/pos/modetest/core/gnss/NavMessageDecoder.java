@@ -0,0 +1,427 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.NavMessageData;
+
+/**
+ * Decodes GPS/QZSS LNAV subframes and Galileo I/NAV pages into an {@link EphemerisCache}.
+ * <p>
+ * Subframes and words are kept per SV until a full issue of data is there, in buffers
+ * allocated once per SV; parsing works on the message bytes in place, so a message allocates
+ * nothing unless it completes a new ephemeris or almanac. LNAV words are parity checked and
+ * I/NAV pages CRC checked, failures only count as rejected. BeiDou D1/D2, GLONASS and the
+ * CNAV types are counted as ignored.
+ * <p>
+ * Not thread safe, messages must come from one thread.
+ */
+public class NavMessageDecoder {
+    static final int LNAV_PREAMBLE = 0x8B;
+    static final int LNAV_WORDS = 10;
+    static final int LNAV_BYTES = 4 * LNAV_WORDS;
+    static final int INAV_BYTES = 29;
+    static final int INAV_WORD_BYTES = 16;
+    static final int INAV_CRC_BITS = 196;
+    /** SV id of the subframe 4 page with ionosphere and UTC parameters */
+    static final int LNAV_IONO_SV_ID = 56;
+
+    // ICD-GPS-200 parity, D29* and D30* in the two top bits
+    private static final int[] LNAV_PARITY_MASKS = {
+            0xBB1F3480, 0x5D8F9A40, 0xAEC7CD00, 0x5763E680, 0x6BB1F340, 0x8B7A89C0};
+    private static final int CRC24Q_POLY = 0x864CFB;
+    private static final int MAX_GPS_SVID = 32;
+    private static final int QZSS_FIRST_SVID = 193;
+    private static final int MAX_QZSS_COUNT = 10;
+    private static final int MAX_GALILEO_SVID = 36;
+    private static final int INAV_EPHEMERIS_WORDS = 4;
+
+    private final EphemerisCache mCache;
+    private int mReferenceWeek;
+
+    private final Lnav[] mLnav = new Lnav[MAX_GPS_SVID + 1 + MAX_QZSS_COUNT];
+    private final Inav[] mInav = new Inav[MAX_GALILEO_SVID + 1];
+    private final int[] mWords = new int[LNAV_WORDS];
+    private final double[] mIono = new double[8];
+    private int mGpsWeek = -1;
+    private int mGalileoWeek = -1;
+    private double mGalileoTow;
+
+    private long mMessageCount;
+    private long mRejectedCount;
+    private long mIgnoredCount;
+
+    /** LNAV subframes 1-3 of one SV, 24 data bits per word */
+    private static class Lnav {
+        final int[][] subframes = new int[3][LNAV_WORDS];
+        final int[] tow = new int[3];
+        int present;
+        int lastIode = -1;
+        int lastToe = -1;
+    }
+
+    /** I/NAV words 1-5 of one SV */
+    private static class Inav {
+        final byte[][] words = new byte[5][INAV_WORD_BYTES];
+        int present;
+        int health;
+        int lastIod = -1;
+        int lastToe = -1;
+    }
+
+    public NavMessageDecoder(@NonNull EphemerisCache cache) {
+        mCache = cache;
+        mReferenceWeek = GnssTime.getWeek(GnssTime.fromUnixMillis(System.currentTimeMillis(),
+                PseudorangeEngine.DEFAULT_LEAP_SECONDS));
+    }
+
+    /** @param week full GPS week near now, resolves the 10 bit LNAV week number */
+    public void setReferenceWeek(int week) {
+        mReferenceWeek = week;
+    }
+
+    public long getMessageCount() {
+        return mMessageCount;
+    }
+
+    /** @return messages with parity, CRC or preamble errors */
+    public long getRejectedCount() {
+        return mRejectedCount;
+    }
+
+    /** @return messages of unsupported types or SVs */
+    public long getIgnoredCount() {
+        return mIgnoredCount;
+    }
+
+    /** Forgets partial subframes, not the cache */
+    public void reset() {
+        for (Lnav sv : mLnav) {
+            if (sv != null) sv.present = 0;
+        }
+        for (Inav sv : mInav) {
+            if (sv != null) sv.present = 0;
+        }
+    }
+
+    /** @return true if the cache changed */
+    public boolean decode(@NonNull NavMessageData msg) {
+        mMessageCount++;
+        return switch (msg.getType()) {
+            case NavMessageData.TYPE_GPS_L1CA -> decodeLnav(Constellation.GPS, msg);
+            case NavMessageData.TYPE_QZS_L1CA -> decodeLnav(Constellation.QZSS, msg);
+            case NavMessageData.TYPE_GAL_I -> decodeInav(msg);
+            default -> {
+                mIgnoredCount++;
+                yield false;
+            }
+        };
+    }
+
+    // region GPS LNAV
+
+    private static int lnavIndex(int constellation, int svid) {
+        if (constellation == Constellation.GPS) {
+            return svid >= 1 && svid <= MAX_GPS_SVID ? svid : -1;
+        }
+        int q = svid - QZSS_FIRST_SVID;
+        return q >= 0 && q < MAX_QZSS_COUNT ? MAX_GPS_SVID + 1 + q : -1;
+    }
+
+    private boolean decodeLnav(int constellation, NavMessageData msg) {
+        int index = lnavIndex(constellation, msg.getSvid());
+        if (index < 0 || msg.getDataLength() < LNAV_BYTES) {
+            mIgnoredCount++;
+            return false;
+        }
+        if (!checkLnavWords(msg.getData(), mWords)) {
+            mRejectedCount++;
+            return false;
+        }
+        int[] w = mWords;
+        // HOW: TOW count of the next subframe, in 6 s
+        int tow = (w[1] >>> 7) * 6 - 6;
+        int subframe = (w[1] >>> 2) & 7;
+        switch (subframe) {
+            case 1, 2, 3 -> {
+                Lnav sv = mLnav[index];
+                if (sv == null) sv = mLnav[index] = new Lnav();
+                System.arraycopy(w, 0, sv.subframes[subframe - 1], 0, LNAV_WORDS);
+                sv.tow[subframe - 1] = tow;
+                sv.present |= 1 << subframe;
+                return sv.present == 0b1110 && buildLnavEphemeris(constellation, msg.getSvid(), sv);
+            }
+            case 4, 5 -> {
+                return constellation == Constellation.GPS && decodeLnavPage(subframe, tow);
+            }
+            default -> {
+                mRejectedCount++;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Parity checks the 10 words of a subframe, 30 bits right aligned in 4 bytes each, and
+     * stores their 24 data bits with the D30* inversion removed.
+     */
+    static boolean checkLnavWords(byte[] data, int[] words) {
+        int prev = 0; // D29* D30*, always 0 after word 10
+        for (int i = 0; i < LNAV_WORDS; i++) {
+            int raw = (int) getBits(data, i * 32 + 2, 30);
+            int word = (prev << 30) | raw;
+            if ((word & 0x40000000) != 0) {
+                word ^= 0x3FFFFFC0;
+            }
+            int parity = 0;
+            for (int mask : LNAV_PARITY_MASKS) {
+                parity = (parity << 1) | (Integer.bitCount(word & mask) & 1);
+            }
+            if (parity != (word & 0x3F)) return false;
+            words[i] = (word >>> 6) & 0xFFFFFF;
+            prev = raw & 3;
+        }
+        return (words[0] >>> 16) == LNAV_PREAMBLE;
+    }
+
+    /** @param start 1 based bit number of the ICD, data bits of a single word */
+    private static int u(int[] words, int start, int length) {
+        int word = (start - 1) / 30;
+        int offset = (start - 1) % 30;
+        return (words[word] >>> (24 - offset - length)) & ((1 << length) - 1);
+    }
+
+    private static int s(int[] words, int start, int length) {
+        int shift = 32 - length;
+        return (u(words, start, length) << shift) >> shift;
+    }
+
+    /** 8 MSBs at msbStart and 24 LSBs at lsbStart */
+    private static int u32(int[] words, int msbStart, int lsbStart) {
+        return (u(words, msbStart, 8) << 24) | u(words, lsbStart, 24);
+    }
+
+    private boolean buildLnavEphemeris(int constellation, int svid, Lnav sv) {
+        int[] sf1 = sv.subframes[0];
+        int[] sf2 = sv.subframes[1];
+        int[] sf3 = sv.subframes[2];
+        int iode = u(sf2, 61, 8);
+        int iodc = (u(sf1, 83, 2) << 8) | u(sf1, 211, 8);
+        // Subframes from different issues, wait for the next ones
+        if (iode != u(sf3, 271, 8) || iode != (iodc & 0xFF)) return false;
+        int toe = u(sf2, 271, 16) * 16;
+        if (iode == sv.lastIode && toe == sv.lastToe) return false;
+
+        int week = GnssTime.resolveWeek(u(sf1, 61, 10), 1024, mReferenceWeek);
+        mGpsWeek = week;
+        var eph = new Ephemeris();
+        eph.setSv(constellation, svid);
+        eph.setWeek(GnssTime.adjustWeek(week, toe, sv.tow[1]));
+        eph.setToe(toe);
+        eph.setToc(u(sf1, 219, 16) * 16);
+        eph.setIode(iode);
+        eph.setIodc(iodc);
+        eph.setAccuracyIndex(u(sf1, 73, 4));
+        eph.setHealth(u(sf1, 77, 6));
+        eph.setTgd(s(sf1, 197, 8) * 0x1p-31);
+        eph.setAf2(s(sf1, 241, 8) * 0x1p-55);
+        eph.setAf1(s(sf1, 249, 16) * 0x1p-43);
+        eph.setAf0(s(sf1, 271, 22) * 0x1p-31);
+
+        eph.setCrs(s(sf2, 69, 16) * 0x1p-5);
+        eph.setDeltaN(s(sf2, 91, 16) * 0x1p-43 * Math.PI);
+        eph.setM0(u32(sf2, 107, 121) * 0x1p-31 * Math.PI);
+        eph.setCuc(s(sf2, 151, 16) * 0x1p-29);
+        eph.setE(Integer.toUnsignedLong(u32(sf2, 167, 181)) * 0x1p-33);
+        eph.setCus(s(sf2, 211, 16) * 0x1p-29);
+        eph.setSqrtA(Integer.toUnsignedLong(u32(sf2, 227, 241)) * 0x1p-19);
+
+        eph.setCic(s(sf3, 61, 16) * 0x1p-29);
+        eph.setOmega0(u32(sf3, 77, 91) * 0x1p-31 * Math.PI);
+        eph.setCis(s(sf3, 121, 16) * 0x1p-29);
+        eph.setI0(u32(sf3, 137, 151) * 0x1p-31 * Math.PI);
+        eph.setCrc(s(sf3, 181, 16) * 0x1p-5);
+        eph.setOmega(u32(sf3, 197, 211) * 0x1p-31 * Math.PI);
+        eph.setOmegaDot(s(sf3, 241, 24) * 0x1p-43 * Math.PI);
+        eph.setIdot(s(sf3, 279, 14) * 0x1p-43 * Math.PI);
+
+        sv.lastIode = iode;
+        sv.lastToe = toe;
+        return mCache.put(eph);
+    }
+
+    /** Subframe 4/5 pages in {@link #mWords}: almanacs and the ionosphere page */
+    private boolean decodeLnavPage(int subframe, int tow) {
+        int[] w = mWords;
+        int svId = u(w, 63, 6);
+        if (subframe == 4 && svId == LNAV_IONO_SV_ID) {
+            mIono[0] = s(w, 69, 8) * 0x1p-30;
+            mIono[1] = s(w, 77, 8) * 0x1p-27;
+            mIono[2] = s(w, 91, 8) * 0x1p-24;
+            mIono[3] = s(w, 99, 8) * 0x1p-24;
+            mIono[4] = s(w, 107, 8) * 0x1p11;
+            mIono[5] = s(w, 121, 8) * 0x1p14;
+            mIono[6] = s(w, 129, 8) * 0x1p16;
+            mIono[7] = s(w, 137, 8) * 0x1p16;
+            return mCache.setKlobuchar(mIono);
+        }
+        if (svId < 1 || svId > MAX_GPS_SVID) return false;
+        double toa = u(w, 91, 8) * 4096d;
+        int health = u(w, 137, 8);
+        var old = mCache.getAlmanac(Constellation.GPS, svId);
+        int week = GnssTime.adjustWeek(mGpsWeek >= 0 ? mGpsWeek : mReferenceWeek, toa, tow);
+        if (old != null && old.getWeek() == week && old.getToa() == toa
+                && old.getHealth() == health) {
+            return false;
+        }
+        var alm = new Almanac();
+        alm.setSv(Constellation.GPS, svId);
+        alm.setWeek(week);
+        alm.setToa(toa);
+        alm.setHealth(health);
+        alm.setE(u(w, 69, 16) * 0x1p-21);
+        alm.setI((0.3 + s(w, 99, 16) * 0x1p-19) * Math.PI);
+        alm.setOmegaDot(s(w, 121, 16) * 0x1p-38 * Math.PI);
+        alm.setSqrtA(u(w, 151, 24) * 0x1p-11);
+        alm.setOmega0(s(w, 181, 24) * 0x1p-23 * Math.PI);
+        alm.setOmega(s(w, 211, 24) * 0x1p-23 * Math.PI);
+        alm.setM0(s(w, 241, 24) * 0x1p-23 * Math.PI);
+        int af0 = (u(w, 271, 8) << 3) | u(w, 290, 3);
+        alm.setAf0(((af0 << 21) >> 21) * 0x1p-20);
+        alm.setAf1(s(w, 279, 11) * 0x1p-38);
+        return mCache.putAlmanac(alm);
+    }
+
+    // endregion
+
+    // region Galileo I/NAV
+
+    private boolean decodeInav(NavMessageData msg) {
+        int svid = msg.getSvid();
+        if (svid < 1 || svid > MAX_GALILEO_SVID || msg.getDataLength() < INAV_BYTES) {
+            mIgnoredCount++;
+            return false;
+        }
+        byte[] data = msg.getData();
+        // Even then odd part, both nominal pages
+        if (getBits(data, 0, 2) != 0 || getBits(data, 114, 2) != 0b10) {
+            mIgnoredCount++;
+            return false;
+        }
+        if (crc24q(data, INAV_CRC_BITS) != getBits(data, INAV_CRC_BITS, 24)) {
+            mRejectedCount++;
+            return false;
+        }
+        int type = (int) getBits(data, 2, 6);
+        if (type < 1 || type > 5) {
+            // Almanac, UTC and GST-GPS words are not used
+            return false;
+        }
+        Inav sv = mInav[svid];
+        if (sv == null) sv = mInav[svid] = new Inav();
+        // 112 bits of the even part and 16 of the odd part make the 128 bit word
+        byte[] word = sv.words[type - 1];
+        for (int i = 0; i < INAV_WORD_BYTES - 2; i++) {
+            word[i] = (byte) getBits(data, 2 + i * 8, 8);
+        }
+        word[INAV_WORD_BYTES - 2] = (byte) getBits(data, 116, 8);
+        word[INAV_WORD_BYTES - 1] = (byte) getBits(data, 124, 8);
+        sv.present |= 1 << type;
+
+        boolean changed = false;
+        if (type == 5) {
+            mIono[0] = getBits(word, 6, 11) * 0x1p-2;
+            mIono[1] = getSignedBits(word, 17, 11) * 0x1p-8;
+            mIono[2] = getSignedBits(word, 28, 14) * 0x1p-15;
+            changed = mCache.setNeQuick(mIono);
+            // E1-B signal health and data validity
+            sv.health = (int) ((getBits(word, 69, 2) << 1) | getBits(word, 72, 1));
+            mGalileoWeek = (int) getBits(word, 73, 12);
+            mGalileoTow = getBits(word, 85, 20);
+        }
+        return buildInavEphemeris(svid, sv) || changed;
+    }
+
+    private boolean buildInavEphemeris(int svid, Inav sv) {
+        int all = (1 << (INAV_EPHEMERIS_WORDS + 1)) - 2;
+        if ((sv.present & all) != all || mGalileoWeek < 0) return false;
+        byte[] w1 = sv.words[0];
+        byte[] w2 = sv.words[1];
+        byte[] w3 = sv.words[2];
+        byte[] w4 = sv.words[3];
+        int iod = (int) getBits(w1, 6, 10);
+        if (iod != getBits(w2, 6, 10) || iod != getBits(w3, 6, 10)
+                || iod != getBits(w4, 6, 10)) {
+            return false;
+        }
+        int toe = (int) getBits(w1, 16, 14) * 60;
+        if (iod == sv.lastIod && toe == sv.lastToe) return false;
+
+        var eph = new Ephemeris();
+        eph.setSv(Constellation.GALILEO, svid);
+        eph.setWeek(GnssTime.adjustWeek(mGalileoWeek + GnssTime.GALILEO_WEEK_OFFSET, toe,
+                mGalileoTow));
+        eph.setToe(toe);
+        eph.setIode(iod);
+        eph.setIodc(iod);
+        eph.setHealth(sv.health);
+        eph.setM0(getSignedBits(w1, 30, 32) * 0x1p-31 * Math.PI);
+        eph.setE(getBits(w1, 62, 32) * 0x1p-33);
+        eph.setSqrtA(getBits(w1, 94, 32) * 0x1p-19);
+
+        eph.setOmega0(getSignedBits(w2, 16, 32) * 0x1p-31 * Math.PI);
+        eph.setI0(getSignedBits(w2, 48, 32) * 0x1p-31 * Math.PI);
+        eph.setOmega(getSignedBits(w2, 80, 32) * 0x1p-31 * Math.PI);
+        eph.setIdot(getSignedBits(w2, 112, 14) * 0x1p-43 * Math.PI);
+
+        eph.setOmegaDot(getSignedBits(w3, 16, 24) * 0x1p-43 * Math.PI);
+        eph.setDeltaN(getSignedBits(w3, 40, 16) * 0x1p-43 * Math.PI);
+        eph.setCuc(getSignedBits(w3, 56, 16) * 0x1p-29);
+        eph.setCus(getSignedBits(w3, 72, 16) * 0x1p-29);
+        eph.setCrc(getSignedBits(w3, 88, 16) * 0x1p-5);
+        eph.setCrs(getSignedBits(w3, 104, 16) * 0x1p-5);
+        eph.setAccuracyIndex((int) getBits(w3, 120, 8));
+
+        eph.setCic(getSignedBits(w4, 22, 16) * 0x1p-29);
+        eph.setCis(getSignedBits(w4, 38, 16) * 0x1p-29);
+        eph.setToc(getBits(w4, 54, 14) * 60d);
+        eph.setAf0(getSignedBits(w4, 68, 31) * 0x1p-34);
+        eph.setAf1(getSignedBits(w4, 99, 21) * 0x1p-46);
+        eph.setAf2(getSignedBits(w4, 120, 6) * 0x1p-59);
+        if ((sv.present & (1 << 5)) != 0) {
+            eph.setTgd(getSignedBits(sv.words[4], 57, 10) * 0x1p-32);
+        }
+
+        sv.lastIod = iod;
+        sv.lastToe = toe;
+        return mCache.put(eph);
+    }
+
+    /** CRC-24Q of the first bitCount bits */
+    static int crc24q(byte[] data, int bitCount) {
+        int crc = 0;
+        for (int i = 0; i < bitCount; i++) {
+            int bit = (data[i >>> 3] >>> (7 - (i & 7))) & 1;
+            int top = ((crc >>> 23) & 1) ^ bit;
+            crc = (crc << 1) & 0xFFFFFF;
+            if (top != 0) crc ^= CRC24Q_POLY;
+        }
+        return crc;
+    }
+
+    // endregion
+
+    /** @return length bits, at most 63, from bit start of data, MSB first */
+    static long getBits(byte[] data, int start, int length) {
+        long value = 0;
+        for (int i = start; i < start + length; i++) {
+            value = (value << 1) | ((data[i >>> 3] >>> (7 - (i & 7))) & 1);
+        }
+        return value;
+    }
+
+    static long getSignedBits(byte[] data, int start, int length) {
+        int shift = 64 - length;
+        return (getBits(data, start, length) << shift) >> shift;
+    }
+}
@@ -0,0 +1,161 @@
+package pos.modetest.core.gnss;
+
+import java.util.Arrays;
+
+/**
+ * SV positions on a regular time grid, filled by {@link OrbitPropagator#propagate}.
+ * <p>
+ * Arrays only grow, so one instance refilled every time allocates nothing once big enough.
+ * Values of SV {@code s} at step {@code k} are at {@code s * getStepCount() + k}, NaN where
+ * no orbit was known. Elevation and azimuth need {@link #setReceiver} before propagating.
+ */
+public class OrbitGrid {
+    private int mSvCount;
+    private int mStepCount;
+    private double mStartGpsSeconds;
+    private double mStepSeconds;
+    private int[] mKeys = new int[0];
+    private double[] mX = new double[0];
+    private double[] mY = new double[0];
+    private double[] mZ = new double[0];
+    private double[] mElevations = new double[0];
+    private double[] mAzimuths = new double[0];
+
+    private boolean mHasReceiver;
+    private final double[] mReceiver = new double[3];
+    private double mSinLat;
+    private double mCosLat;
+    private double mSinLon;
+    private double mCosLon;
+
+    /** Position elevation and azimuth are computed from, angles in radians */
+    public void setReceiver(double latitude, double longitude, double altitudeMeters) {
+        Wgs84.toEcef(latitude, longitude, altitudeMeters, mReceiver);
+        mSinLat = Math.sin(latitude);
+        mCosLat = Math.cos(latitude);
+        mSinLon = Math.sin(longitude);
+        mCosLon = Math.cos(longitude);
+        mHasReceiver = true;
+    }
+
+    public void clearReceiver() {
+        mHasReceiver = false;
+    }
+
+    public boolean hasReceiver() {
+        return mHasReceiver;
+    }
+
+    void reset(int[] keys, int svCount, double startGpsSeconds, double stepSeconds, int steps) {
+        int size = svCount * steps;
+        if (mKeys.length < svCount) {
+            mKeys = new int[Math.max(svCount, mKeys.length * 2)];
+        }
+        if (mX.length < size) {
+            int capacity = Math.max(size, mX.length * 2);
+            mX = new double[capacity];
+            mY = new double[capacity];
+            mZ = new double[capacity];
+            mElevations = new double[capacity];
+            mAzimuths = new double[capacity];
+        }
+        System.arraycopy(keys, 0, mKeys, 0, svCount);
+        mSvCount = svCount;
+        mStepCount = steps;
+        mStartGpsSeconds = startGpsSeconds;
+        mStepSeconds = stepSeconds;
+        Arrays.fill(mElevations, 0, size, Double.NaN);
+        Arrays.fill(mAzimuths, 0, size, Double.NaN);
+    }
+
+    /** @param pos x, y, z in ECEF, null if no orbit */
+    void set(int sv, int step, double[] pos) {
+        int i = sv * mStepCount + step;
+        if (pos == null) {
+            mX[i] = Double.NaN;
+            mY[i] = Double.NaN;
+            mZ[i] = Double.NaN;
+            return;
+        }
+        mX[i] = pos[0];
+        mY[i] = pos[1];
+        mZ[i] = pos[2];
+        if (!mHasReceiver) return;
+        double dx = pos[0] - mReceiver[0];
+        double dy = pos[1] - mReceiver[1];
+        double dz = pos[2] - mReceiver[2];
+        double range = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        double ex = dx / range;
+        double ey = dy / range;
+        double ez = dz / range;
+        double horizontal = mCosLon * ex + mSinLon * ey;
+        double east = -mSinLon * ex + mCosLon * ey;
+        double north = -mSinLat * horizontal + mCosLat * ez;
+        double up = mCosLat * horizontal + mSinLat * ez;
+        mElevations[i] = Math.toDegrees(Math.asin(up));
+        double az = Math.toDegrees(Math.atan2(east, north));
+        mAzimuths[i] = az < 0 ? az + 360 : az;
+    }
+
+    public int getSvCount() {
+        return mSvCount;
+    }
+
+    public int getStepCount() {
+        return mStepCount;
+    }
+
+    public double getStartGpsSeconds() {
+        return mStartGpsSeconds;
+    }
+
+    public double getStepSeconds() {
+        return mStepSeconds;
+    }
+
+    public double getGpsSeconds(int step) {
+        return mStartGpsSeconds + step * mStepSeconds;
+    }
+
+    public int getConstellation(int sv) {
+        return mKeys[sv] >>> 16;
+    }
+
+    public int getSvid(int sv) {
+        return mKeys[sv] & 0xFFFF;
+    }
+
+    public boolean hasPosition(int sv, int step) {
+        return !Double.isNaN(mX[sv * mStepCount + step]);
+    }
+
+    public double getX(int sv, int step) {
+        return mX[sv * mStepCount + step];
+    }
+
+    public double getY(int sv, int step) {
+        return mY[sv * mStepCount + step];
+    }
+
+    public double getZ(int sv, int step) {
+        return mZ[sv * mStepCount + step];
+    }
+
+    public double getElevationDegrees(int sv, int step) {
+        return mElevations[sv * mStepCount + step];
+    }
+
+    /** @return clockwise from north, 0 to 360 */
+    public double getAzimuthDegrees(int sv, int step) {
+        return mAzimuths[sv * mStepCount + step];
+    }
+
+    /** @return number of SVs at or above the mask at the step */
+    public int getVisibleCount(int step, double maskDegrees) {
+        int count = 0;
+        for (int sv = 0; sv < mSvCount; sv++) {
+            if (mElevations[sv * mStepCount + step] >= maskDegrees) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,245 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import pos.modetest.core.data.Constellation;
+
+/**
+ * SV positions and clocks from an {@link EphemerisCache}, as Chebyshev fits.
+ * <p>
+ * Each SV orbit is fitted over fixed {@link #WINDOW_SECONDS} windows on GPS time, evaluating
+ * {@link SatelliteOrbit#compute} only at the {@link #NODES} nodes of a window. Later queries
+ * in the window cost a few multiplications, whatever the number of signals of the SV. Two
+ * windows are kept per SV so a look-ahead does not evict the current one. Windows get refitted
+ * when the cache brings a closer ephemeris.
+ * <p>
+ * Ephemerides are used up to {@link #MAX_EPHEMERIS_AGE_SECONDS} from toe, past their validity,
+ * then almanacs up to {@link #MAX_ALMANAC_AGE_SECONDS} from toa: good for a sky view, not for
+ * positioning. All public methods are synchronized.
+ */
+public class OrbitPropagator {
+    public static final double WINDOW_SECONDS = 1800;
+    /** Chebyshev nodes per window, degree is one less */
+    public static final int NODES = 10;
+    public static final double MAX_EPHEMERIS_AGE_SECONDS = 4 * 3600;
+    public static final double MAX_ALMANAC_AGE_SECONDS = 7 * 86400;
+    private static final int MAX_SVID = 256;
+    private static final int FITS_PER_SV = 2;
+    /** x, y, z and clock */
+    private static final int VALUES = 4;
+    /** Fewest SVs a fork-join task propagates itself */
+    private static final int SVS_PER_TASK = 4;
+    // cos(pi * j * (k + 0.5) / NODES) at [j * NODES + k]
+    private static final double[] COS = new double[NODES * NODES];
+
+    static {
+        for (int j = 0; j < NODES; j++) {
+            for (int k = 0; k < NODES; k++) {
+                COS[j * NODES + k] = Math.cos(Math.PI * j * (k + 0.5) / NODES);
+            }
+        }
+    }
+
+    private static class Fit {
+        long window = Long.MIN_VALUE;
+        long version = -1;
+        Ephemeris source;
+        Almanac almanac;
+        Ephemeris almanacOrbit;
+        final double[] coeffs = new double[VALUES * NODES];
+        final double[] samples = new double[VALUES * NODES];
+        final double[] orbit = new double[VALUES];
+    }
+
+    private final EphemerisCache mCache;
+    private final ForkJoinPool mPool;
+    private final Fit[] mFits = new Fit[Constellation.COUNT * MAX_SVID * FITS_PER_SV];
+    private int[] mKeys = new int[0];
+    private long mKeysVersion = -1;
+    private final AtomicInteger mFitCount = new AtomicInteger();
+
+    public OrbitPropagator(@NonNull EphemerisCache cache) {
+        this(cache, ForkJoinPool.commonPool());
+    }
+
+    public OrbitPropagator(@NonNull EphemerisCache cache, @NonNull ForkJoinPool pool) {
+        mCache = cache;
+        mPool = pool;
+    }
+
+    /**
+     * @param out x, y, z in the ECEF frame of that time, then the SV clock offset in seconds,
+     *            as {@link SatelliteOrbit#compute}
+     * @return false and out untouched if no orbit is known for the SV at the time
+     */
+    public synchronized boolean getPosition(int constellation, int svid, double gpsSeconds,
+                                            @NonNull double[] out) {
+        if (constellation < 0 || constellation >= Constellation.COUNT
+                || svid < 0 || svid >= MAX_SVID) {
+            return false;
+        }
+        Fit fit = getFit(constellation, svid, gpsSeconds, mCache.getVersion());
+        if (fit == null) return false;
+        evaluate(fit, gpsSeconds, out);
+        return true;
+    }
+
+    /**
+     * Positions of every SV of the cache at {@code steps} times from {@code startGpsSeconds},
+     * SVs split over the pool.
+     */
+    public synchronized void propagate(double startGpsSeconds, double stepSeconds, int steps,
+                                       @NonNull OrbitGrid out) {
+        long version = mCache.getVersion();
+        if (version != mKeysVersion) {
+            mKeys = mCache.getSvKeys();
+            mKeysVersion = version;
+        }
+        out.reset(mKeys, mKeys.length, startGpsSeconds, stepSeconds, steps);
+        var task = new PropagateTask(out, version, 0, mKeys.length);
+        if (mKeys.length <= SVS_PER_TASK) {
+            task.compute();
+        } else {
+            mPool.invoke(task);
+        }
+    }
+
+    /** @return number of window fits computed, for tests and benchmarks */
+    public synchronized int getFitCount() {
+        return mFitCount.get();
+    }
+
+    /** Forgets every fit, the next queries refit */
+    public synchronized void clear() {
+        for (Fit fit : mFits) {
+            if (fit != null) fit.window = Long.MIN_VALUE;
+        }
+        mKeysVersion = -1;
+    }
+
+    private class PropagateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final OrbitGrid mGrid;
+        private final long mVersion;
+        private final int mFrom;
+        private final int mTo;
+
+        PropagateTask(OrbitGrid grid, long version, int from, int to) {
+            mGrid = grid;
+            mVersion = version;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom > SVS_PER_TASK) {
+                int mid = (mFrom + mTo) >>> 1;
+                invokeAll(new PropagateTask(mGrid, mVersion, mFrom, mid),
+                        new PropagateTask(mGrid, mVersion, mid, mTo));
+                return;
+            }
+            // Each SV belongs to a single task, so its fits are never shared between threads
+            double[] pos = new double[VALUES];
+            int steps = mGrid.getStepCount();
+            for (int sv = mFrom; sv < mTo; sv++) {
+                int constellation = mGrid.getConstellation(sv);
+                int svid = mGrid.getSvid(sv);
+                boolean inRange = constellation < Constellation.COUNT && svid < MAX_SVID;
+                for (int k = 0; k < steps; k++) {
+                    double t = mGrid.getGpsSeconds(k);
+                    Fit fit = inRange ? getFit(constellation, svid, t, mVersion) : null;
+                    if (fit != null) evaluate(fit, t, pos);
+                    mGrid.set(sv, k, fit != null ? pos : null);
+                }
+            }
+        }
+    }
+
+    /** @return fit of the window holding the time, null if no orbit is known */
+    private Fit getFit(int constellation, int svid, double gpsSeconds, long version) {
+        long window = (long) Math.floor(gpsSeconds / WINDOW_SECONDS);
+        int slot = ((constellation * MAX_SVID) + svid) * FITS_PER_SV + (int) (window & 1);
+        Fit fit = mFits[slot];
+        if (fit == null) {
+            fit = new Fit();
+            mFits[slot] = fit;
+        }
+        if (fit.window == window && fit.version == version) {
+            return fit.source != null ? fit : null;
+        }
+        double start = window * WINDOW_SECONDS;
+        Ephemeris source = selectSource(fit, constellation, svid, start + WINDOW_SECONDS / 2);
+        if (source != null && (fit.window != window || fit.source != source)) {
+            fit(fit, source, start);
+        }
+        fit.window = window;
+        fit.version = version;
+        fit.source = source;
+        return source != null ? fit : null;
+    }
+
+    private Ephemeris selectSource(Fit fit, int constellation, int svid, double gpsSeconds) {
+        Ephemeris eph = mCache.getNearest(constellation, svid, gpsSeconds);
+        if (eph != null
+                && Math.abs(gpsSeconds - eph.getToeGpsSeconds()) <= MAX_EPHEMERIS_AGE_SECONDS) {
+            return eph;
+        }
+        Almanac alm = mCache.getAlmanac(constellation, svid);
+        if (alm == null || alm.getHealth() != 0
+                || Math.abs(gpsSeconds - alm.getToaGpsSeconds()) > MAX_ALMANAC_AGE_SECONDS) {
+            return null;
+        }
+        if (fit.almanac != alm) {
+            fit.almanac = alm;
+            fit.almanacOrbit = Ephemeris.fromAlmanac(alm);
+        }
+        return fit.almanacOrbit;
+    }
+
+    private void fit(Fit fit, Ephemeris eph, double start) {
+        double half = WINDOW_SECONDS / 2;
+        for (int k = 0; k < NODES; k++) {
+            // Node x_k = cos(pi * (k + 0.5) / N) mapped on the window
+            double t = start + half * (1 + COS[NODES + k]);
+            int week = GnssTime.getWeek(t);
+            SatelliteOrbit.compute(eph, week, t - week * GnssTime.WEEK_SECONDS, fit.orbit);
+            for (int v = 0; v < VALUES; v++) {
+                fit.samples[v * NODES + k] = fit.orbit[v];
+            }
+        }
+        for (int v = 0; v < VALUES; v++) {
+            for (int j = 0; j < NODES; j++) {
+                double sum = 0;
+                for (int k = 0; k < NODES; k++) {
+                    sum += fit.samples[v * NODES + k] * COS[j * NODES + k];
+                }
+                fit.coeffs[v * NODES + j] = (j == 0 ? 1.0 : 2.0) * sum / NODES;
+            }
+        }
+        mFitCount.incrementAndGet();
+    }
+
+    /** Clenshaw recurrence of the fitted series */
+    private static void evaluate(Fit fit, double gpsSeconds, double[] out) {
+        double x = 2 * (gpsSeconds - fit.window * WINDOW_SECONDS) / WINDOW_SECONDS - 1;
+        double x2 = 2 * x;
+        double[] c = fit.coeffs;
+        for (int v = 0; v < VALUES; v++) {
+            int base = v * NODES;
+            double b1 = 0;
+            double b2 = 0;
+            for (int j = NODES - 1; j > 0; j--) {
+                double b0 = x2 * b1 - b2 + c[base + j];
+                b2 = b1;
+                b1 = b0;
+            }
+            out[v] = x * b1 - b2 + c[base];
+        }
+    }
+}
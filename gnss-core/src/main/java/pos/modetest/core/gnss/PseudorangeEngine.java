@@ -0,0 +1,262 @@
+package pos.modetest.core.gnss;
+
+import static pos.modetest.core.data.MeasurementData.ADR_STATE_CYCLE_SLIP;
+import static pos.modetest.core.data.MeasurementData.ADR_STATE_RESET;
+import static pos.modetest.core.data.MeasurementData.ADR_STATE_VALID;
+import static pos.modetest.core.data.MeasurementData.STATE_BDS_D2_SUBFRAME_SYNC;
+import static pos.modetest.core.data.MeasurementData.STATE_CODE_LOCK;
+import static pos.modetest.core.data.MeasurementData.STATE_GAL_E1BC_CODE_LOCK;
+import static pos.modetest.core.data.MeasurementData.STATE_GAL_E1B_PAGE_SYNC;
+import static pos.modetest.core.data.MeasurementData.STATE_GAL_E1C_2ND_CODE_LOCK;
+import static pos.modetest.core.data.MeasurementData.STATE_GLO_STRING_SYNC;
+import static pos.modetest.core.data.MeasurementData.STATE_GLO_TOD_DECODED;
+import static pos.modetest.core.data.MeasurementData.STATE_GLO_TOD_KNOWN;
+import static pos.modetest.core.data.MeasurementData.STATE_MSEC_AMBIGUOUS;
+import static pos.modetest.core.data.MeasurementData.STATE_SBAS_SYNC;
+import static pos.modetest.core.data.MeasurementData.STATE_SUBFRAME_SYNC;
+import static pos.modetest.core.data.MeasurementData.STATE_TOW_DECODED;
+import static pos.modetest.core.data.MeasurementData.STATE_TOW_KNOWN;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.MeasurementData;
+
+/**
+ * Pseudoranges, pseudorange rates and accumulated delta ranges of one {@link MeasurementData}
+ * epoch.
+ * <p>
+ * The receive time comes from the GNSS clock (TimeNanos - FullBiasNanos - BiasNanos), shifted
+ * to the time scale of each constellation, and the travel time is taken modulo the
+ * ReceivedSvTimeNanos range the tracking state allows, which also covers week and day
+ * rollovers. Whole nanoseconds are kept in longs, only the sub-nanosecond parts are doubles.
+ * <p>
+ * Outputs are parallel primitive arrays indexed like the input, grown once and reused, so
+ * {@link #compute} produces no garbage.
+ */
+public class PseudorangeEngine {
+    public static final double SPEED_OF_LIGHT_M_S = 299_792_458d;
+    public static final long SECOND_NANOS = 1_000_000_000L;
+    public static final long WEEK_NANOS = 604_800L * SECOND_NANOS;
+    public static final long DAY_NANOS = 86_400L * SECOND_NANOS;
+    /** BDT = GPST - 14 s */
+    public static final long BDS_OFFSET_NANOS = 14L * SECOND_NANOS;
+    /** GLONASS time = UTC + 3 h */
+    public static final long GLONASS_OFFSET_NANOS = 3 * 3_600L * SECOND_NANOS;
+    /** GPS - UTC since 2017, used when the clock has no leap second */
+    public static final int DEFAULT_LEAP_SECONDS = 18;
+
+    /** Travel times outside this range are receive time errors, not geometry */
+    static final long MIN_TRAVEL_NANOS = 50_000_000L;
+    static final long MAX_TRAVEL_NANOS = 200_000_000L;
+
+    public static final int FLAG_PSEUDORANGE = 1;
+    public static final int FLAG_RATE = 1 << 1;
+    public static final int FLAG_ADR = 1 << 2;
+    /** ADR reset, cycle slip or clock discontinuity since the previous epoch */
+    public static final int FLAG_ADR_RESET = 1 << 3;
+    /** Code tracked, but the received time range is too short to resolve the pseudorange */
+    public static final int FLAG_AMBIGUOUS = 1 << 4;
+
+    private static final double METERS_PER_NANO = SPEED_OF_LIGHT_M_S * 1e-9;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int mCount;
+    private int mValidCount;
+    private int mGpsWeek = -1;
+    private long mReceiveTimeOfWeekNanos;
+    private int mDiscontinuityCount = Integer.MIN_VALUE;
+
+    private int[] mFlags = new int[INITIAL_CAPACITY];
+    private double[] mTravelNanos = new double[INITIAL_CAPACITY];
+    private double[] mPseudorangeMeters = new double[INITIAL_CAPACITY];
+    private double[] mPseudorangeUncertaintyMeters = new double[INITIAL_CAPACITY];
+    private double[] mTransmitTimeOfWeekSeconds = new double[INITIAL_CAPACITY];
+    private double[] mPseudorangeRateMetersPerSecond = new double[INITIAL_CAPACITY];
+    private double[] mAccumulatedDeltaRangeMeters = new double[INITIAL_CAPACITY];
+
+    /** Forgets the previous epoch, the next one starts new ADR arcs */
+    public void clear() {
+        mCount = 0;
+        mValidCount = 0;
+        mGpsWeek = -1;
+        mReceiveTimeOfWeekNanos = 0;
+        mDiscontinuityCount = Integer.MIN_VALUE;
+    }
+
+    /** @return number of valid pseudoranges */
+    public int compute(@NonNull MeasurementData data) {
+        final int count = data.getCount();
+        if (count > mFlags.length) {
+            grow(count);
+        }
+        mCount = count;
+        mValidCount = 0;
+
+        boolean hasTime = data.hasFullBiasNanos();
+        long rxGpsNanos = data.getTimeNanos() - data.getFullBiasNanos();
+        double biasNanos = Double.isNaN(data.getBiasNanos()) ? 0 : data.getBiasNanos();
+        int leapSeconds = data.hasLeapSecond() ? data.getLeapSecond() : DEFAULT_LEAP_SECONDS;
+        long gloOffsetNanos = GLONASS_OFFSET_NANOS - leapSeconds * SECOND_NANOS;
+        mGpsWeek = hasTime ? (int) Math.floorDiv(rxGpsNanos, WEEK_NANOS) : -1;
+        mReceiveTimeOfWeekNanos = hasTime ? Math.floorMod(rxGpsNanos, WEEK_NANOS) : 0;
+        boolean discontinuity = data.getHardwareClockDiscontinuityCount() != mDiscontinuityCount;
+        mDiscontinuityCount = data.getHardwareClockDiscontinuityCount();
+
+        // Time resolution and flags, branchy
+        for (int i = 0; i < count; i++) {
+            int constellation = data.getConstellation(i);
+            int state = data.getState(i);
+            long range = hasTime ? getReceivedTimeRangeNanos(constellation, state) : 0;
+            int flags = 0;
+            double travelNanos = Double.NaN;
+            double transmitSeconds = Double.NaN;
+            if (range > 0) {
+                long rxNanos = rxGpsNanos + switch (constellation) {
+                    case Constellation.BEIDOU -> -BDS_OFFSET_NANOS;
+                    case Constellation.GLONASS -> gloOffsetNanos;
+                    default -> 0;
+                };
+                long travel = Math.floorMod(rxNanos - data.getReceivedSvTimeNanos(i), range);
+                if (travel >= MIN_TRAVEL_NANOS && travel <= MAX_TRAVEL_NANOS) {
+                    travelNanos = travel + (data.getTimeOffsetNanos(i) - biasNanos);
+                    // Sub-nanosecond parts cancel out, GPS time of week of the signal
+                    transmitSeconds = Math.floorMod(rxGpsNanos - travel, WEEK_NANOS) * 1e-9;
+                    flags = FLAG_PSEUDORANGE;
+                    mValidCount++;
+                }
+            } else if ((state & (STATE_CODE_LOCK | STATE_GAL_E1BC_CODE_LOCK)) != 0) {
+                flags = FLAG_AMBIGUOUS;
+            }
+
+            double rate = data.getPseudorangeRateMetersPerSecond(i);
+            if (state != 0 && Double.isFinite(rate)) {
+                flags |= FLAG_RATE;
+            }
+            int adrState = data.getAccumulatedDeltaRangeState(i);
+            if ((adrState & ADR_STATE_VALID) != 0) {
+                flags |= FLAG_ADR;
+                if (discontinuity || (adrState & (ADR_STATE_RESET | ADR_STATE_CYCLE_SLIP)) != 0) {
+                    flags |= FLAG_ADR_RESET;
+                }
+                mAccumulatedDeltaRangeMeters[i] = data.getAccumulatedDeltaRangeMeters(i);
+            } else {
+                mAccumulatedDeltaRangeMeters[i] = Double.NaN;
+            }
+            mFlags[i] = flags;
+            mTravelNanos[i] = travelNanos;
+            mTransmitTimeOfWeekSeconds[i] = transmitSeconds;
+            mPseudorangeRateMetersPerSecond[i] = (flags & FLAG_RATE) != 0 ? rate : Double.NaN;
+            mPseudorangeUncertaintyMeters[i] = data.getReceivedSvTimeUncertaintyNanos(i);
+        }
+
+        // Scaling, straight loops over doubles the JIT can unroll and vectorize
+        final double[] travel = mTravelNanos;
+        final double[] pr = mPseudorangeMeters;
+        final double[] uncertainty = mPseudorangeUncertaintyMeters;
+        for (int i = 0; i < count; i++) {
+            pr[i] = travel[i] * METERS_PER_NANO;
+        }
+        for (int i = 0; i < count; i++) {
+            uncertainty[i] *= METERS_PER_NANO;
+        }
+        return mValidCount;
+    }
+
+    /**
+     * @return range of ReceivedSvTimeNanos given the tracking state, 0 if it is too short to
+     *         resolve a pseudorange without an a priori position
+     */
+    public static long getReceivedTimeRangeNanos(int constellation, int state) {
+        if ((state & STATE_MSEC_AMBIGUOUS) != 0) return 0;
+        return switch (constellation) {
+            case Constellation.GPS, Constellation.QZSS, Constellation.IRNSS -> {
+                if ((state & (STATE_TOW_DECODED | STATE_TOW_KNOWN)) != 0) yield WEEK_NANOS;
+                if ((state & STATE_SUBFRAME_SYNC) != 0) yield 6 * SECOND_NANOS;
+                yield 0;
+            }
+            case Constellation.BEIDOU -> {
+                if ((state & (STATE_TOW_DECODED | STATE_TOW_KNOWN)) != 0) yield WEEK_NANOS;
+                if ((state & STATE_SUBFRAME_SYNC) != 0) yield 6 * SECOND_NANOS;
+                if ((state & STATE_BDS_D2_SUBFRAME_SYNC) != 0) yield 600_000_000L;
+                yield 0;
+            }
+            case Constellation.GALILEO -> {
+                if ((state & (STATE_TOW_DECODED | STATE_TOW_KNOWN)) != 0) yield WEEK_NANOS;
+                if ((state & STATE_GAL_E1B_PAGE_SYNC) != 0) yield 2 * SECOND_NANOS;
+                if ((state & STATE_GAL_E1C_2ND_CODE_LOCK) != 0) yield 100_000_000L;
+                yield 0;
+            }
+            case Constellation.GLONASS -> {
+                if ((state & (STATE_GLO_TOD_DECODED | STATE_GLO_TOD_KNOWN)) != 0) yield DAY_NANOS;
+                if ((state & STATE_GLO_STRING_SYNC) != 0) yield 2 * SECOND_NANOS;
+                yield 0;
+            }
+            case Constellation.SBAS -> (state & STATE_SBAS_SYNC) != 0 ? SECOND_NANOS : 0;
+            default -> 0;
+        };
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getValidCount() {
+        return mValidCount;
+    }
+
+    /** @return GPS week of the epoch, -1 without FullBiasNanos */
+    public int getGpsWeek() {
+        return mGpsWeek;
+    }
+
+    /** @return whole nanoseconds of the GPS time of week, without BiasNanos */
+    public long getReceiveTimeOfWeekNanos() {
+        return mReceiveTimeOfWeekNanos;
+    }
+
+    public int getFlags(int i) {
+        return mFlags[i];
+    }
+
+    public boolean hasPseudorange(int i) {
+        return (mFlags[i] & FLAG_PSEUDORANGE) != 0;
+    }
+
+    /** @return meters, NaN if not valid */
+    public double getPseudorangeMeters(int i) {
+        return mPseudorangeMeters[i];
+    }
+
+    public double getPseudorangeUncertaintyMeters(int i) {
+        return mPseudorangeUncertaintyMeters[i];
+    }
+
+    /** @return GPS time of week when the signal left the satellite, NaN if not valid */
+    public double getTransmitTimeOfWeekSeconds(int i) {
+        return mTransmitTimeOfWeekSeconds[i];
+    }
+
+    /** @return NaN if not valid */
+    public double getPseudorangeRateMetersPerSecond(int i) {
+        return mPseudorangeRateMetersPerSecond[i];
+    }
+
+    /** @return NaN if not valid, continuous only without {@link #FLAG_ADR_RESET} */
+    public double getAccumulatedDeltaRangeMeters(int i) {
+        return mAccumulatedDeltaRangeMeters[i];
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, mFlags.length * 2);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+        mTravelNanos = Arrays.copyOf(mTravelNanos, capacity);
+        mPseudorangeMeters = Arrays.copyOf(mPseudorangeMeters, capacity);
+        mPseudorangeUncertaintyMeters = Arrays.copyOf(mPseudorangeUncertaintyMeters, capacity);
+        mTransmitTimeOfWeekSeconds = Arrays.copyOf(mTransmitTimeOfWeekSeconds, capacity);
+        mPseudorangeRateMetersPerSecond = Arrays.copyOf(mPseudorangeRateMetersPerSecond, capacity);
+        mAccumulatedDeltaRangeMeters = Arrays.copyOf(mAccumulatedDeltaRangeMeters, capacity);
+    }
+}
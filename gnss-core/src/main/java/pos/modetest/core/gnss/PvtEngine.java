@@ -0,0 +1,615 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.MeasurementData;
+
+/**
+ * Weighted least squares position from the pseudoranges of one epoch and broadcast
+ * ephemerides, independent of the chipset fix.
+ * <p>
+ * GPS/QZSS and Galileo signals on L1/E1 and L5/E5a are used, each band and system with its
+ * own receiver clock state. Pseudoranges are corrected for the SV clock and group delay,
+ * Earth rotation, Saastamoinen troposphere and Klobuchar ionosphere, and weighted by
+ * elevation and C/N0. After convergence the weighted residuals go through a chi-square test;
+ * on failure the signal with the largest normalized residual is excluded and the epoch
+ * solved again, up to {@link #MAX_EXCLUSIONS} times.
+ * <p>
+ * The normal equations have a fixed size of {@link #MAX_STATES}, unused clock states are held
+ * at zero. Per signal arrays grow once and are reused, {@link #solve} produces no garbage
+ * unless the ephemeris cache changed.
+ */
+public class PvtEngine {
+    public static final int STATUS_NONE = 0;
+    public static final int STATUS_OK = 1;
+    /** Fewer usable signals than states, or no GPS time */
+    public static final int STATUS_NOT_ENOUGH = 2;
+    public static final int STATUS_NOT_CONVERGED = 3;
+    /** Solved, but the residual test still fails after every exclusion allowed */
+    public static final int STATUS_RAIM_FAILED = 4;
+
+    public static final int FLAG_USED = 1;
+    /** Excluded by the residual test */
+    public static final int FLAG_EXCLUDED = 1 << 1;
+    public static final int FLAG_NO_EPHEMERIS = 1 << 2;
+    public static final int FLAG_LOW_ELEVATION = 1 << 3;
+
+    public static final double L1_HZ = 1_575.42e6;
+    public static final double L5_HZ = 1_176.45e6;
+    public static final int MAX_EXCLUSIONS = 3;
+    /** x, y, z and one clock per system and band */
+    static final int CLOCK_STATES = 4;
+    static final int MAX_STATES = 3 + CLOCK_STATES;
+    static final int MAX_ITERATIONS = 12;
+    static final double CONVERGENCE_METERS = 1e-4;
+    /** Receivers closer to the center of the Earth have no meaningful elevation yet */
+    static final double MIN_SURFACE_RADIUS = 6.0e6;
+    /** Standard normal quantile of the 1e-3 false alarm probability of the residual test */
+    static final double RAIM_Z = 3.090;
+    static final double CN0_REFERENCE_DB_HZ = 40;
+    static final double MIN_WEIGHT_ELEVATION = Math.toRadians(5);
+    /** GPS time between ephemeris table refreshes without a cache change */
+    static final double REFRESH_SECONDS = 60;
+
+    private static final double C = PseudorangeEngine.SPEED_OF_LIGHT_M_S;
+    private static final double BAND_TOLERANCE_HZ = 10e6;
+    private static final int GPS_SLOTS = 33;
+    private static final int QZSS_FIRST_SVID = 193;
+    private static final int QZSS_SLOTS = 10;
+    private static final int GALILEO_SLOTS = 37;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double mElevationMask = Math.toRadians(10);
+    private double mSigmaMeters = 3;
+    private boolean mRaimEnabled = true;
+
+    // Valid ephemeris per SV slot
+    private final Ephemeris[] mEphemerides = new Ephemeris[GPS_SLOTS + QZSS_SLOTS + GALILEO_SLOTS];
+    private long mCacheVersion = -1;
+    private double mTableGpsSeconds = Double.NaN;
+    private final double[] mKlobuchar = new double[8];
+    private boolean mHasKlobuchar;
+
+    // Per signal outputs
+    private int mCount;
+    private int[] mFlags = new int[INITIAL_CAPACITY];
+    private double[] mResiduals = new double[INITIAL_CAPACITY];
+    private double[] mElevations = new double[INITIAL_CAPACITY];
+
+    // Rows, one per usable signal
+    private int mRows;
+    private int[] mRowSignal = new int[INITIAL_CAPACITY];
+    private int[] mRowClock = new int[INITIAL_CAPACITY];
+    private boolean[] mRowExcluded = new boolean[INITIAL_CAPACITY];
+    private boolean[] mRowLow = new boolean[INITIAL_CAPACITY];
+    private double[] mRowPseudorange = new double[INITIAL_CAPACITY];
+    private double[] mRowSatX = new double[INITIAL_CAPACITY];
+    private double[] mRowSatY = new double[INITIAL_CAPACITY];
+    private double[] mRowSatZ = new double[INITIAL_CAPACITY];
+    private double[] mRowSatClock = new double[INITIAL_CAPACITY];
+    private double[] mRowIonoScale = new double[INITIAL_CAPACITY];
+    private double[] mRowCn0 = new double[INITIAL_CAPACITY];
+    private double[] mRowWeight = new double[INITIAL_CAPACITY];
+    private double[] mRowResidual = new double[INITIAL_CAPACITY];
+    private double[] mRowElevation = new double[INITIAL_CAPACITY];
+
+    // Solution
+    private int mStatus = STATUS_NONE;
+    private final double[] mPos = new double[3];
+    private final double[] mClock = new double[CLOCK_STATES];
+    private final double[] mGeodetic = new double[3];
+    private boolean mHasPrior;
+    private int mUsedCount;
+    private int mExcludedCount;
+    private int mIterations;
+    private int mDegreesOfFreedom;
+    private double mTestStatistic;
+    private double mRxTimeOfWeek;
+
+    // Scratch
+    private final double[] mN = new double[MAX_STATES * MAX_STATES];
+    private final double[] mB = new double[MAX_STATES];
+    private final double[] mH = new double[MAX_STATES];
+    private final double[] mOrbit = new double[4];
+    private final int[] mClockRows = new int[CLOCK_STATES];
+
+    public void setElevationMaskDegrees(double degrees) {
+        mElevationMask = Math.toRadians(degrees);
+    }
+
+    /** @param sigma pseudorange sigma at zenith and {@link #CN0_REFERENCE_DB_HZ} */
+    public void setSigmaMeters(double sigma) {
+        mSigmaMeters = sigma;
+    }
+
+    public void setRaimEnabled(boolean enabled) {
+        mRaimEnabled = enabled;
+    }
+
+    /** Forgets the previous solution, the next epoch starts from the center of the Earth */
+    public void clear() {
+        mCount = 0;
+        mStatus = STATUS_NONE;
+        mHasPrior = false;
+        mUsedCount = 0;
+        mExcludedCount = 0;
+    }
+
+    /**
+     * @param pr pseudoranges already computed from data
+     * @return true with a position, see {@link #getStatus()}
+     */
+    public boolean solve(@NonNull MeasurementData data, @NonNull PseudorangeEngine pr,
+                         @NonNull EphemerisCache cache) {
+        final int count = pr.getCount();
+        if (count > mFlags.length) {
+            grow(count);
+        }
+        mCount = count;
+        Arrays.fill(mFlags, 0, count, 0);
+        Arrays.fill(mResiduals, 0, count, Double.NaN);
+        Arrays.fill(mElevations, 0, count, Double.NaN);
+        mUsedCount = 0;
+        mExcludedCount = 0;
+        mIterations = 0;
+        mDegreesOfFreedom = 0;
+        mTestStatistic = Double.NaN;
+
+        int week = pr.getGpsWeek();
+        if (week < 0) {
+            return fail(STATUS_NOT_ENOUGH);
+        }
+        mRxTimeOfWeek = pr.getReceiveTimeOfWeekNanos() * 1e-9;
+        double gpsSeconds = week * GnssTime.WEEK_SECONDS + mRxTimeOfWeek;
+        refreshEphemerides(cache, gpsSeconds);
+
+        mRows = 0;
+        for (int i = 0; i < count; i++) {
+            if (!pr.hasPseudorange(i)) continue;
+            int constellation = data.getConstellation(i);
+            double freq = data.getCarrierFrequencyHz(i);
+            int clock = getClockState(constellation, freq);
+            int slot = getSlot(constellation, data.getSvid(i));
+            if (clock < 0 || slot < 0) continue;
+            Ephemeris eph = mEphemerides[slot];
+            if (eph == null || !eph.isValidAt(gpsSeconds)) {
+                mFlags[i] = FLAG_NO_EPHEMERIS;
+                continue;
+            }
+            addRow(i, clock, eph, week, pr.getTransmitTimeOfWeekSeconds(i),
+                    pr.getPseudorangeMeters(i), freq > 0 ? freq : L1_HZ, data.getCn0DbHz(i));
+        }
+
+        if (!mHasPrior) {
+            Arrays.fill(mPos, 0);
+            Arrays.fill(mClock, 0);
+        }
+        int status;
+        while (true) {
+            if (!iterate()) {
+                return fail(mStatus);
+            }
+            status = STATUS_OK;
+            if (!mRaimEnabled || mDegreesOfFreedom < 1) break;
+            if (mTestStatistic <= getChiSquareThreshold(mDegreesOfFreedom)) break;
+            if (mDegreesOfFreedom < 2 || mExcludedCount >= MAX_EXCLUSIONS) {
+                status = STATUS_RAIM_FAILED;
+                break;
+            }
+            excludeWorstRow();
+        }
+
+        for (int r = 0; r < mRows; r++) {
+            int i = mRowSignal[r];
+            mFlags[i] = mRowExcluded[r] ? FLAG_EXCLUDED
+                    : mRowLow[r] ? FLAG_LOW_ELEVATION : FLAG_USED;
+            mResiduals[i] = mRowResidual[r];
+            mElevations[i] = Math.toDegrees(mRowElevation[r]);
+        }
+        mStatus = status;
+        mHasPrior = true;
+        return true;
+    }
+
+    private boolean fail(int status) {
+        mStatus = status;
+        mHasPrior = false;
+        return false;
+    }
+
+    private void addRow(int signal, int clock, Ephemeris eph, int week, double txTow,
+                        double pseudorange, double freq, double cn0) {
+        // Transmitted last week
+        int txWeek = txTow > mRxTimeOfWeek + GnssTime.HALF_WEEK_SECONDS ? week - 1 : week;
+        double t = txTow - SatelliteOrbit.clockSeconds(eph, txTow);
+        SatelliteOrbit.compute(eph, txWeek, t, mOrbit);
+        double gamma = (L1_HZ / freq) * (L1_HZ / freq);
+        int r = mRows++;
+        mRowSignal[r] = signal;
+        mRowClock[r] = clock;
+        mRowExcluded[r] = false;
+        mRowLow[r] = false;
+        mRowPseudorange[r] = pseudorange;
+        mRowSatX[r] = mOrbit[0];
+        mRowSatY[r] = mOrbit[1];
+        mRowSatZ[r] = mOrbit[2];
+        // Group delays of other bands approximated by scaling the L1 one
+        mRowSatClock[r] = (mOrbit[3] - gamma * eph.getTgd()) * C;
+        mRowIonoScale[r] = gamma;
+        mRowCn0[r] = cn0 > 0 ? cn0 : CN0_REFERENCE_DB_HZ;
+        mRowResidual[r] = Double.NaN;
+        mRowElevation[r] = Double.NaN;
+    }
+
+    /** Gauss-Newton iterations to convergence, then the residuals of the solution */
+    private boolean iterate() {
+        for (int it = 0; it < MAX_ITERATIONS; it++) {
+            mIterations++;
+            int used = linearize(true);
+            int clocks = 0;
+            for (int c = 0; c < CLOCK_STATES; c++) {
+                if (mClockRows[c] > 0) {
+                    clocks++;
+                } else {
+                    // Not observed, hold at zero
+                    mN[(3 + c) * MAX_STATES + 3 + c] = 1;
+                    mB[3 + c] = 0;
+                    mClock[c] = 0;
+                }
+            }
+            if (used < 3 + clocks) {
+                mStatus = STATUS_NOT_ENOUGH;
+                return false;
+            }
+            if (!solveCholesky(mN, mB, MAX_STATES)) {
+                mStatus = STATUS_NOT_ENOUGH;
+                return false;
+            }
+            mPos[0] += mB[0];
+            mPos[1] += mB[1];
+            mPos[2] += mB[2];
+            for (int c = 0; c < CLOCK_STATES; c++) {
+                mClock[c] += mB[3 + c];
+            }
+            double step = Math.sqrt(mB[0] * mB[0] + mB[1] * mB[1] + mB[2] * mB[2]);
+            if (!Double.isFinite(step)) break;
+            if (step < CONVERGENCE_METERS) {
+                mUsedCount = linearize(false);
+                mDegreesOfFreedom = mUsedCount - 3 - clocks;
+                double sum = 0;
+                for (int r = 0; r < mRows; r++) {
+                    if (mRowExcluded[r] || mRowLow[r]) continue;
+                    sum += mRowWeight[r] * mRowResidual[r] * mRowResidual[r];
+                }
+                mTestStatistic = sum;
+                Wgs84.toGeodetic(mPos[0], mPos[1], mPos[2], mGeodetic);
+                return true;
+            }
+        }
+        mStatus = STATUS_NOT_CONVERGED;
+        return false;
+    }
+
+    /**
+     * Residuals and weights of every row at the current state, optionally accumulated into
+     * the normal equations.
+     *
+     * @return number of rows used
+     */
+    private int linearize(boolean accumulate) {
+        final double x = mPos[0];
+        final double y = mPos[1];
+        final double z = mPos[2];
+        final boolean surface = x * x + y * y + z * z > MIN_SURFACE_RADIUS * MIN_SURFACE_RADIUS;
+        double lat = 0;
+        double lon = 0;
+        double alt = 0;
+        double sinLat = 0;
+        double cosLat = 0;
+        double sinLon = 0;
+        double cosLon = 0;
+        if (surface) {
+            Wgs84.toGeodetic(x, y, z, mGeodetic);
+            lat = mGeodetic[0];
+            lon = mGeodetic[1];
+            alt = mGeodetic[2];
+            sinLat = Math.sin(lat);
+            cosLat = Math.cos(lat);
+            sinLon = Math.sin(lon);
+            cosLon = Math.cos(lon);
+        }
+        if (accumulate) {
+            Arrays.fill(mN, 0);
+            Arrays.fill(mB, 0);
+        }
+        Arrays.fill(mClockRows, 0);
+        final double sigma2 = mSigmaMeters * mSigmaMeters;
+        final double[] h = mH;
+        int used = 0;
+        for (int r = 0; r < mRows; r++) {
+            if (mRowExcluded[r]) continue;
+            double sx = mRowSatX[r];
+            double sy = mRowSatY[r];
+            double dz = mRowSatZ[r] - z;
+            // Earth rotation during the travel time
+            double theta = Wgs84.OMEGA_E * Math.sqrt(
+                    (sx - x) * (sx - x) + (sy - y) * (sy - y) + dz * dz) / C;
+            double dx = sx + theta * sy - x;
+            double dy = sy - theta * sx - y;
+            double range = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            double ex = dx / range;
+            double ey = dy / range;
+            double ez = dz / range;
+
+            double el = Math.PI / 2;
+            double corrections = 0;
+            if (surface) {
+                double up = cosLat * (cosLon * ex + sinLon * ey) + sinLat * ez;
+                el = Math.asin(up);
+                mRowElevation[r] = el;
+                mRowLow[r] = el < mElevationMask;
+                if (mRowLow[r]) {
+                    mRowResidual[r] = Double.NaN;
+                    continue;
+                }
+                corrections = Atmosphere.troposphereMeters(lat, alt, el);
+                if (mHasKlobuchar) {
+                    double east = -sinLon * ex + cosLon * ey;
+                    double north = -sinLat * (cosLon * ex + sinLon * ey) + cosLat * ez;
+                    corrections += mRowIonoScale[r] * Atmosphere.klobucharMeters(mKlobuchar,
+                            lat, lon, Math.atan2(east, north), el, mRxTimeOfWeek);
+                }
+            } else {
+                mRowLow[r] = false;
+            }
+            int clock = mRowClock[r];
+            double v = mRowPseudorange[r]
+                    - (range + mClock[clock] - mRowSatClock[r] + corrections);
+            double sinEl = Math.sin(Math.max(el, MIN_WEIGHT_ELEVATION));
+            double w = sinEl * sinEl
+                    / (sigma2 * Math.pow(10, (CN0_REFERENCE_DB_HZ - mRowCn0[r]) / 10));
+            mRowResidual[r] = v;
+            mRowWeight[r] = w;
+            mClockRows[clock]++;
+            used++;
+            if (!accumulate) continue;
+
+            Arrays.fill(h, 0);
+            h[0] = -ex;
+            h[1] = -ey;
+            h[2] = -ez;
+            h[3 + clock] = 1;
+            for (int a = 0; a < MAX_STATES; a++) {
+                if (h[a] == 0) continue;
+                double wa = w * h[a];
+                mB[a] += wa * v;
+                for (int b = 0; b < MAX_STATES; b++) {
+                    mN[a * MAX_STATES + b] += wa * h[b];
+                }
+            }
+        }
+        return used;
+    }
+
+    private void excludeWorstRow() {
+        int worst = -1;
+        double max = -1;
+        for (int r = 0; r < mRows; r++) {
+            if (mRowExcluded[r] || mRowLow[r]) continue;
+            double normalized = Math.abs(mRowResidual[r]) * Math.sqrt(mRowWeight[r]);
+            if (normalized > max) {
+                max = normalized;
+                worst = r;
+            }
+        }
+        mRowExcluded[worst] = true;
+        mExcludedCount++;
+    }
+
+    /** Wilson-Hilferty approximation of the chi-square quantile */
+    static double getChiSquareThreshold(int dof) {
+        double k = 2d / (9 * dof);
+        double t = 1 - k + RAIM_Z * Math.sqrt(k);
+        return dof * t * t * t;
+    }
+
+    /** Solves a x = b in place of b, a symmetric positive definite, overwritten */
+    static boolean solveCholesky(double[] a, double[] b, int n) {
+        for (int j = 0; j < n; j++) {
+            double d = a[j * n + j];
+            for (int k = 0; k < j; k++) {
+                d -= a[j * n + k] * a[j * n + k];
+            }
+            if (!(d > 0)) return false;
+            d = Math.sqrt(d);
+            a[j * n + j] = d;
+            for (int i = j + 1; i < n; i++) {
+                double s = a[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    s -= a[i * n + k] * a[j * n + k];
+                }
+                a[i * n + j] = s / d;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            double s = b[i];
+            for (int k = 0; k < i; k++) {
+                s -= a[i * n + k] * b[k];
+            }
+            b[i] = s / a[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double s = b[i];
+            for (int k = i + 1; k < n; k++) {
+                s -= a[k * n + i] * b[k];
+            }
+            b[i] = s / a[i * n + i];
+        }
+        return true;
+    }
+
+    private void refreshEphemerides(EphemerisCache cache, double gpsSeconds) {
+        long version = cache.getVersion();
+        if (version == mCacheVersion
+                && Math.abs(gpsSeconds - mTableGpsSeconds) < REFRESH_SECONDS) {
+            return;
+        }
+        mCacheVersion = version;
+        mTableGpsSeconds = gpsSeconds;
+        Arrays.fill(mEphemerides, null);
+        for (Ephemeris eph : cache.getValid(gpsSeconds)) {
+            int slot = getSlot(eph.getConstellation(), eph.getSvid());
+            if (slot >= 0) mEphemerides[slot] = eph;
+        }
+        mHasKlobuchar = cache.getKlobuchar(mKlobuchar);
+    }
+
+    private static int getSlot(int constellation, int svid) {
+        return switch (constellation) {
+            case Constellation.GPS -> svid > 0 && svid < GPS_SLOTS ? svid : -1;
+            case Constellation.QZSS -> {
+                int q = svid - QZSS_FIRST_SVID;
+                yield q >= 0 && q < QZSS_SLOTS ? GPS_SLOTS + q : -1;
+            }
+            case Constellation.GALILEO -> svid > 0 && svid < GALILEO_SLOTS
+                    ? GPS_SLOTS + QZSS_SLOTS + svid : -1;
+            default -> -1;
+        };
+    }
+
+    /** @return receiver clock state of the system and band, -1 if not supported */
+    static int getClockState(int constellation, double carrierFrequencyHz) {
+        int band;
+        if (!(carrierFrequencyHz > 0) || Math.abs(carrierFrequencyHz - L1_HZ) < BAND_TOLERANCE_HZ) {
+            band = 0;
+        } else if (Math.abs(carrierFrequencyHz - L5_HZ) < BAND_TOLERANCE_HZ) {
+            band = 1;
+        } else {
+            return -1;
+        }
+        return switch (constellation) {
+            case Constellation.GPS, Constellation.QZSS -> band;
+            case Constellation.GALILEO -> 2 + band;
+            default -> -1;
+        };
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public boolean hasSolution() {
+        return mStatus == STATUS_OK || mStatus == STATUS_RAIM_FAILED;
+    }
+
+    /** @return ECEF meters */
+    public double getX() {
+        return mPos[0];
+    }
+
+    public double getY() {
+        return mPos[1];
+    }
+
+    public double getZ() {
+        return mPos[2];
+    }
+
+    public double getLatitudeDegrees() {
+        return Math.toDegrees(mGeodetic[0]);
+    }
+
+    public double getLongitudeDegrees() {
+        return Math.toDegrees(mGeodetic[1]);
+    }
+
+    /** @return height above the WGS 84 ellipsoid */
+    public double getAltitudeMeters() {
+        return mGeodetic[2];
+    }
+
+    /** @return horizontal distance to a position, e.g. the chipset fix */
+    public double getHorizontalDistanceMeters(double latDegrees, double lonDegrees) {
+        // Chord at the altitude of the solution
+        Wgs84.toEcef(Math.toRadians(latDegrees), Math.toRadians(lonDegrees), mGeodetic[2],
+                mOrbit);
+        double dx = mOrbit[0] - mPos[0];
+        double dy = mOrbit[1] - mPos[1];
+        double dz = mOrbit[2] - mPos[2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /** @return GPS L1 receiver clock bias, meters */
+    public double getClockBiasMeters() {
+        return mClock[0];
+    }
+
+    /** @param state 0-3: GPS L1, GPS L5, Galileo E1, Galileo E5a */
+    public double getClockBiasMeters(int state) {
+        return mClock[state];
+    }
+
+    public int getUsedCount() {
+        return mUsedCount;
+    }
+
+    public int getExcludedCount() {
+        return mExcludedCount;
+    }
+
+    /** @return Gauss-Newton iterations of the last epoch, over every exclusion */
+    public int getIterationCount() {
+        return mIterations;
+    }
+
+    public int getDegreesOfFreedom() {
+        return mDegreesOfFreedom;
+    }
+
+    /** @return weighted sum of squared residuals, NaN without a solution */
+    public double getTestStatistic() {
+        return mTestStatistic;
+    }
+
+    /** @return number of signals of the epoch, indexed like the measurements */
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getFlags(int i) {
+        return mFlags[i];
+    }
+
+    /** @return measured minus modeled pseudorange, NaN if the signal was not used */
+    public double getResidualMeters(int i) {
+        return mResiduals[i];
+    }
+
+    public double getElevationDegrees(int i) {
+        return mElevations[i];
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, mFlags.length * 2);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+        mResiduals = Arrays.copyOf(mResiduals, capacity);
+        mElevations = Arrays.copyOf(mElevations, capacity);
+        mRowSignal = Arrays.copyOf(mRowSignal, capacity);
+        mRowClock = Arrays.copyOf(mRowClock, capacity);
+        mRowExcluded = Arrays.copyOf(mRowExcluded, capacity);
+        mRowLow = Arrays.copyOf(mRowLow, capacity);
+        mRowPseudorange = Arrays.copyOf(mRowPseudorange, capacity);
+        mRowSatX = Arrays.copyOf(mRowSatX, capacity);
+        mRowSatY = Arrays.copyOf(mRowSatY, capacity);
+        mRowSatZ = Arrays.copyOf(mRowSatZ, capacity);
+        mRowSatClock = Arrays.copyOf(mRowSatClock, capacity);
+        mRowIonoScale = Arrays.copyOf(mRowIonoScale, capacity);
+        mRowCn0 = Arrays.copyOf(mRowCn0, capacity);
+        mRowWeight = Arrays.copyOf(mRowWeight, capacity);
+        mRowResidual = Arrays.copyOf(mRowResidual, capacity);
+        mRowElevation = Arrays.copyOf(mRowElevation, capacity);
+    }
+}
@@ -0,0 +1,69 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+import pos.modetest.core.data.Constellation;
+
+/**
+ * Satellite position and clock from a broadcast {@link Ephemeris} (IS-GPS-200 table 20-IV).
+ */
+public final class SatelliteOrbit {
+    public static final double GM_GPS = 3.986_005e14;
+    public static final double GM_GALILEO = 3.986_004_418e14;
+    /** Relativistic clock correction constant, s/sqrt(m) */
+    static final double RELATIVITY_F = -4.442_807_633e-10;
+    private static final int MAX_KEPLER_ITERATIONS = 10;
+
+    private SatelliteOrbit() {
+    }
+
+    /**
+     * @param week      GPS week of the time
+     * @param timeOfWeek GPS time the signal left the SV
+     * @param out       x, y, z in the ECEF frame of that time, then the SV clock offset in
+     *                  seconds with the relativistic term, without group delays
+     */
+    public static void compute(@NonNull Ephemeris eph, int week, double timeOfWeek,
+                               @NonNull double[] out) {
+        double gm = eph.getConstellation() == Constellation.GALILEO ? GM_GALILEO : GM_GPS;
+        double tk = (week - eph.getWeek()) * GnssTime.WEEK_SECONDS + timeOfWeek - eph.getToe();
+        double a = eph.getSqrtA() * eph.getSqrtA();
+        double n = Math.sqrt(gm / (a * a * a)) + eph.getDeltaN();
+        double m = eph.getM0() + n * tk;
+        double e = eph.getE();
+        double ek = m;
+        for (int i = 0; i < MAX_KEPLER_ITERATIONS; i++) {
+            double d = (ek - e * Math.sin(ek) - m) / (1 - e * Math.cos(ek));
+            ek -= d;
+            if (Math.abs(d) < 1e-14) break;
+        }
+        double sinE = Math.sin(ek);
+        double cosE = Math.cos(ek);
+        double phi = Math.atan2(Math.sqrt(1 - e * e) * sinE, cosE - e) + eph.getOmega();
+        double sin2 = Math.sin(2 * phi);
+        double cos2 = Math.cos(2 * phi);
+        double u = phi + eph.getCus() * sin2 + eph.getCuc() * cos2;
+        double r = a * (1 - e * cosE) + eph.getCrs() * sin2 + eph.getCrc() * cos2;
+        double i = eph.getI0() + eph.getIdot() * tk + eph.getCis() * sin2 + eph.getCic() * cos2;
+        double xp = r * Math.cos(u);
+        double yp = r * Math.sin(u);
+        double omega = eph.getOmega0() + (eph.getOmegaDot() - Wgs84.OMEGA_E) * tk
+                - Wgs84.OMEGA_E * eph.getToe();
+        double sinO = Math.sin(omega);
+        double cosO = Math.cos(omega);
+        double cosI = Math.cos(i);
+        out[0] = xp * cosO - yp * cosI * sinO;
+        out[1] = xp * sinO + yp * cosI * cosO;
+        out[2] = yp * Math.sin(i);
+
+        double tc = GnssTime.diffWithinWeek(timeOfWeek, eph.getToc());
+        out[3] = eph.getAf0() + tc * (eph.getAf1() + tc * eph.getAf2())
+                + RELATIVITY_F * e * eph.getSqrtA() * sinE;
+    }
+
+    /** @return SV clock offset without the relativistic term, good enough to get GPS time */
+    public static double clockSeconds(@NonNull Ephemeris eph, double timeOfWeek) {
+        double tc = GnssTime.diffWithinWeek(timeOfWeek, eph.getToc());
+        return eph.getAf0() + tc * (eph.getAf1() + tc * eph.getAf2());
+    }
+}
@@ -0,0 +1,45 @@
+package pos.modetest.core.gnss;
+
+import androidx.annotation.NonNull;
+
+/**
+ * WGS 84 ellipsoid, geodetic coordinates in radians and meters.
+ */
+public final class Wgs84 {
+    public static final double A = 6_378_137d;
+    public static final double F = 1 / 298.257_223_563;
+    public static final double E2 = F * (2 - F);
+    /** Earth rotation rate, rad/s */
+    public static final double OMEGA_E = 7.292_115_146_7e-5;
+
+    private Wgs84() {
+    }
+
+    /** @param out x, y, z */
+    public static void toEcef(double lat, double lon, double alt, @NonNull double[] out) {
+        double sinLat = Math.sin(lat);
+        double cosLat = Math.cos(lat);
+        double n = A / Math.sqrt(1 - E2 * sinLat * sinLat);
+        out[0] = (n + alt) * cosLat * Math.cos(lon);
+        out[1] = (n + alt) * cosLat * Math.sin(lon);
+        out[2] = (n * (1 - E2) + alt) * sinLat;
+    }
+
+    /** @param out latitude, longitude, altitude */
+    public static void toGeodetic(double x, double y, double z, @NonNull double[] out) {
+        double p = Math.hypot(x, y);
+        double lat = Math.atan2(z, p * (1 - E2));
+        double alt = 0;
+        for (int i = 0; i < 6; i++) {
+            double sinLat = Math.sin(lat);
+            double n = A / Math.sqrt(1 - E2 * sinLat * sinLat);
+            // Altitude from z near the poles, where p / cos(lat) is ill conditioned
+            alt = Math.abs(lat) < Math.PI / 4 ? p / Math.cos(lat) - n
+                    : z / sinLat - n * (1 - E2);
+            lat = Math.atan2(z, p * (1 - E2 * n / (n + alt)));
+        }
+        out[0] = lat;
+        out[1] = Math.atan2(y, x);
+        out[2] = alt;
+    }
+}
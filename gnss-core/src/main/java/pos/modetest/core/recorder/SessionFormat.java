@@ -0,0 +1,102 @@
+package pos.modetest.core.recorder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of recorded session files.
+ * <pre>
+ * header : magic(int) version(byte) startWallTimeMillis(long) startElapsedRealtimeNanos(long)
+ * record : type(byte) length(varint) payload(length bytes)
+ * payload: STRING records hold UTF-8 bytes only, any other payload starts with the
+ *          timestamp as zigzag varint delta in microseconds to the previous record
+ * </pre>
+ * Strings are written once per session in a STRING record and referenced by
+ * varint index + 1, 0 being null. Unknown record types can be skipped with their length.
+ * <p>
+ * Payloads after the timestamp, see {@link SessionWriter} for GNSS records:
+ * <pre>
+ * GNSS_EVENT    : kind(varint) value(zigzag)
+ * LOCATION_MODE : enabled(byte)
+ * PROVIDERS     : count(varint) {provider(string)}
+ * CAPABILITIES  : hwModel(string) yearOfHw(zigzag) capabilities(string)
+ * SUBSCRIPTION  : slot(zigzag) subId(zigzag) plmn(string) name(string)
+ * CELLS         : slot(zigzag) count(varint)
+ *                 {type(string) registered(byte) plmn(string) phyId(string) freq(string) dbm(zigzag)}
+ * DISPLAY_INFO  : slot(zigzag) networkType(string)
+ * DATA_ACTIVITY : slot(zigzag) direction(zigzag)
+ * DATA_NETWORKS : count(varint) {network(string) slot(zigzag)}
+ * WIFI          : count(varint) {ssid(string) bssid(string) rssi(zigzag) freqMHz(zigzag) standard(zigzag)}
+ * DOP           : count(varint) {svCount(varint) hdop(float) vdop(float) tdop(float)}
+ * </pre>
+ */
+public final class SessionFormat {
+    public static final int MAGIC = 0x474E5352; // "GNSR"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = Integer.BYTES + 1 + Long.BYTES * 2;
+    public static final String FILE_EXTENSION = ".gnsr";
+
+    public static final int TYPE_STRING = 1;
+    public static final int TYPE_FIX = 2;
+    public static final int TYPE_SATELLITES = 3;
+    public static final int TYPE_MEASUREMENTS = 4;
+    public static final int TYPE_NAV_MESSAGE = 5;
+    public static final int TYPE_GNSS_EVENT = 6;
+    public static final int TYPE_LOCATION_MODE = 7;
+    public static final int TYPE_PROVIDERS = 8;
+    public static final int TYPE_CAPABILITIES = 9;
+    public static final int TYPE_SUBSCRIPTION = 10;
+    public static final int TYPE_CELLS = 11;
+    public static final int TYPE_DISPLAY_INFO = 12;
+    public static final int TYPE_DATA_ACTIVITY = 13;
+    public static final int TYPE_DATA_NETWORKS = 14;
+    public static final int TYPE_WIFI = 15;
+    /** Per DopEngine subset, NaN without a solution */
+    public static final int TYPE_DOP = 16;
+
+    // GNSS_EVENT kinds
+    public static final int GNSS_STARTED = 0;
+    public static final int GNSS_STOPPED = 1;
+    public static final int GNSS_FIRST_FIX = 2;
+    public static final int GNSS_FULL_TRACKING = 3;
+
+    private SessionFormat() {
+    }
+
+    public static void putVarint(ByteBuffer buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    public static long getVarint(ByteBuffer buf) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    public static void putZigZag(ByteBuffer buf, long value) {
+        putVarint(buf, (value << 1) ^ (value >> 63));
+    }
+
+    public static long getZigZag(ByteBuffer buf) {
+        long v = getVarint(buf);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,164 @@
+package pos.modetest.core.recorder;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+
+/**
+ * Replays a recorded session on the calling thread, with the original timing scaled by
+ * {@link #setSpeed(double)} or as fast as possible.
+ * <p>
+ * Timing only depends on recorded timestamps and the {@link Clock}, so replays with a
+ * fake clock are deterministic.
+ */
+public class SessionPlayer {
+    public static final double SPEED_ORIGINAL = 1d;
+    public static final double SPEED_ASAP = Double.POSITIVE_INFINITY;
+
+    private final Path mPath;
+    private final Listener mListener;
+    private double mSpeed = SPEED_ORIGINAL;
+    private Clock mClock = Clock.SYSTEM;
+    private volatile boolean mCancelled;
+
+    private final FixData mFix = new FixData();
+    private final SatelliteData mSatellites = new SatelliteData();
+    private final MeasurementData mMeasurements = new MeasurementData();
+    private final NavMessageData mNavMessage = new NavMessageData();
+
+    public SessionPlayer(@NonNull Path path, @NonNull Listener listener) {
+        mPath = path;
+        mListener = listener;
+    }
+
+    /** @param speed time scale, {@link #SPEED_ASAP} to skip waiting */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Invalid speed " + speed);
+        }
+        mSpeed = speed;
+    }
+
+    public void setClock(@NonNull Clock clock) {
+        mClock = clock;
+    }
+
+    /** Stops {@link #play()} before the next record */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /** @return number of records delivered */
+    public long play() throws IOException, InterruptedException {
+        mCancelled = false;
+        long count = 0;
+        try (var reader = new SessionReader(mPath)) {
+            long firstNanos = Long.MIN_VALUE;
+            long startNanos = mClock.nanoTime();
+            while (!mCancelled && reader.next()) {
+                long t = reader.getElapsedRealtimeNanos();
+                if (firstNanos == Long.MIN_VALUE) {
+                    firstNanos = t;
+                }
+                if (mSpeed != SPEED_ASAP) {
+                    long due = startNanos + (long) ((t - firstNanos) / mSpeed);
+                    long wait = due - mClock.nanoTime();
+                    if (wait > 0) {
+                        mClock.sleepNanos(wait);
+                    }
+                }
+                dispatch(reader, t);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void dispatch(SessionReader reader, long t) {
+        switch (reader.getType()) {
+            case SessionFormat.TYPE_FIX -> {
+                reader.readFix(mFix);
+                mListener.onFix(t, mFix);
+            }
+            case SessionFormat.TYPE_SATELLITES -> {
+                reader.readSatellites(mSatellites);
+                mListener.onSatellites(t, mSatellites);
+            }
+            case SessionFormat.TYPE_MEASUREMENTS -> {
+                reader.readMeasurements(mMeasurements);
+                mListener.onMeasurements(t, mMeasurements);
+            }
+            case SessionFormat.TYPE_NAV_MESSAGE -> {
+                reader.readNavMessage(mNavMessage);
+                mListener.onNavMessage(t, mNavMessage);
+            }
+            case SessionFormat.TYPE_GNSS_EVENT -> {
+                int kind = (int) reader.readVarint();
+                mListener.onGnssEvent(t, kind, reader.readZigZag());
+            }
+            default -> mListener.onRecord(t, reader.getType(), reader);
+        }
+    }
+
+    /** Holders are reused, they are only valid during the call */
+    public interface Listener {
+        void onFix(long elapsedRealtimeNanos, @NonNull FixData fix);
+        void onSatellites(long elapsedRealtimeNanos, @NonNull SatelliteData satellites);
+        void onMeasurements(long elapsedRealtimeNanos, @NonNull MeasurementData measurements);
+        void onNavMessage(long elapsedRealtimeNanos, @NonNull NavMessageData message);
+        void onGnssEvent(long elapsedRealtimeNanos, int kind, long value);
+
+        /** Other record types, payload can be read from the reader following SessionFormat */
+        void onRecord(long elapsedRealtimeNanos, int type, @NonNull SessionReader reader);
+    }
+
+    public abstract static class DefaultListener implements Listener {
+        @Override
+        public void onFix(long elapsedRealtimeNanos, @NonNull FixData fix) {
+        }
+
+        @Override
+        public void onSatellites(long elapsedRealtimeNanos, @NonNull SatelliteData satellites) {
+        }
+
+        @Override
+        public void onMeasurements(long elapsedRealtimeNanos,
+                                   @NonNull MeasurementData measurements) {
+        }
+
+        @Override
+        public void onNavMessage(long elapsedRealtimeNanos, @NonNull NavMessageData message) {
+        }
+
+        @Override
+        public void onGnssEvent(long elapsedRealtimeNanos, int kind, long value) {
+        }
+
+        @Override
+        public void onRecord(long elapsedRealtimeNanos, int type, @NonNull SessionReader reader) {
+        }
+    }
+
+    public interface Clock {
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public void sleepNanos(long nanos) throws InterruptedException {
+                Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+            }
+        };
+
+        long nanoTime();
+        void sleepNanos(long nanos) throws InterruptedException;
+    }
+}
@@ -0,0 +1,281 @@
+package pos.modetest.core.recorder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+
+/**
+ * Reads records written by {@link SessionWriter}.
+ * <pre>
+ * while (reader.next()) {
+ *     switch (reader.getType()) {
+ *         case SessionFormat.TYPE_FIX -> reader.readFix(fix);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * STRING records are resolved internally. A record cut by a crash ends the session,
+ * see {@link #isTruncated()}.
+ */
+public class SessionReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final double CENTI = 100d;
+
+    private final FileChannel mChannel;
+    private ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<String> mStrings = new ArrayList<>();
+    private boolean mEof;
+    private boolean mTruncated;
+
+    private final long mStartWallTimeMillis;
+    private final long mStartElapsedRealtimeNanos;
+    private long mMicros;
+    private int mType;
+    private int mPayloadEnd;
+    private long mRecordCount;
+
+    public SessionReader(@NonNull Path path) throws IOException {
+        mChannel = FileChannel.open(path, StandardOpenOption.READ);
+        mBuffer.flip();
+        if (!ensure(SessionFormat.HEADER_SIZE)
+                || mBuffer.getInt() != SessionFormat.MAGIC) {
+            mChannel.close();
+            throw new IOException("Not a session file: " + path);
+        }
+        int version = mBuffer.get();
+        if (version != SessionFormat.VERSION) {
+            mChannel.close();
+            throw new IOException("Unsupported session version " + version);
+        }
+        mStartWallTimeMillis = mBuffer.getLong();
+        mStartElapsedRealtimeNanos = mBuffer.getLong();
+        mPayloadEnd = mBuffer.position();
+    }
+
+    public long getStartWallTimeMillis() {
+        return mStartWallTimeMillis;
+    }
+
+    public long getStartElapsedRealtimeNanos() {
+        return mStartElapsedRealtimeNanos;
+    }
+
+    /** @return false at the end of the session */
+    public boolean next() throws IOException {
+        while (true) {
+            mBuffer.position(mPayloadEnd);
+            if (!ensure(1)) {
+                return false;
+            }
+            // type and length are at most 6 bytes, less only at the end of file
+            ensure(6);
+            int type = mBuffer.get() & 0xFF;
+            int length;
+            try {
+                length = (int) SessionFormat.getVarint(mBuffer);
+            } catch (RuntimeException e) {
+                mTruncated = true;
+                return false;
+            }
+            if (!ensure(length)) {
+                mTruncated = true;
+                return false;
+            }
+            mPayloadEnd = mBuffer.position() + length;
+            if (type == SessionFormat.TYPE_STRING) {
+                mStrings.add(new String(mBuffer.array(), mBuffer.arrayOffset() + mBuffer.position(),
+                        length, StandardCharsets.UTF_8));
+                continue;
+            }
+            mType = type;
+            mMicros += SessionFormat.getZigZag(mBuffer);
+            mRecordCount++;
+            return true;
+        }
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    /** Timestamp of the current record, in microsecond resolution */
+    public long getElapsedRealtimeNanos() {
+        return mStartElapsedRealtimeNanos + mMicros * 1000;
+    }
+
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /** The last record was incomplete */
+    public boolean isTruncated() {
+        return mTruncated;
+    }
+
+    public long readVarint() {
+        return SessionFormat.getVarint(mBuffer);
+    }
+
+    public long readZigZag() {
+        return SessionFormat.getZigZag(mBuffer);
+    }
+
+    public int readByte() {
+        return mBuffer.get() & 0xFF;
+    }
+
+    public float readFloat() {
+        return mBuffer.getFloat();
+    }
+
+    public double readDouble() {
+        return mBuffer.getDouble();
+    }
+
+    @Nullable
+    public String readString() {
+        int id = (int) readVarint();
+        return id == 0 ? null : mStrings.get(id - 1);
+    }
+
+    /** @return the data length */
+    public int readBytes(@NonNull NavMessageData into) {
+        int length = (int) readVarint();
+        mBuffer.get(into.ensureData(length), 0, length);
+        return length;
+    }
+
+    public void readFix(@NonNull FixData fix) {
+        fix.clear();
+        int present = (int) readVarint();
+        fix.setProvider(readString());
+        fix.setTimeMillis(mStartWallTimeMillis + readZigZag());
+        fix.setElapsedRealtimeNanos(mStartElapsedRealtimeNanos + readZigZag());
+        fix.setLatitude(readDouble());
+        fix.setLongitude(readDouble());
+        if ((present & SessionWriter.FIX_ALTITUDE) != 0) fix.setAltitude(readDouble());
+        if ((present & SessionWriter.FIX_SPEED) != 0) fix.setSpeed(readFloat());
+        if ((present & SessionWriter.FIX_BEARING) != 0) fix.setBearing(readFloat());
+        if ((present & SessionWriter.FIX_ACCURACY) != 0) fix.setAccuracy(readFloat());
+        if ((present & SessionWriter.FIX_VERTICAL_ACCURACY) != 0) {
+            fix.setVerticalAccuracy(readFloat());
+        }
+        if ((present & SessionWriter.FIX_SPEED_ACCURACY) != 0) fix.setSpeedAccuracy(readFloat());
+        if ((present & SessionWriter.FIX_BEARING_ACCURACY) != 0) {
+            fix.setBearingAccuracy(readFloat());
+        }
+    }
+
+    public void readSatellites(@NonNull SatelliteData sats) {
+        sats.clear();
+        int count = (int) readVarint();
+        for (int i = 0; i < count; i++) {
+            int constellation = readByte();
+            int svid = (int) readVarint();
+            int flags = readByte();
+            float cn0 = (float) (readVarint() / CENTI);
+            float elevation = (float) (readZigZag() / CENTI);
+            float azimuth = (float) (readVarint() / CENTI);
+            float carrier = (flags & SessionWriter.SV_CARRIER) != 0 ? readFloat() : Float.NaN;
+            float baseband = (flags & SessionWriter.SV_BASEBAND) != 0
+                    ? (float) (readVarint() / CENTI) : Float.NaN;
+            sats.add(constellation, svid,
+                    flags & ~(SessionWriter.SV_CARRIER | SessionWriter.SV_BASEBAND),
+                    cn0, elevation, azimuth, carrier, baseband);
+        }
+    }
+
+    public void readMeasurements(@NonNull MeasurementData data) {
+        data.clear();
+        int clockFlags = readByte();
+        data.setFullTracking((clockFlags & SessionWriter.CLOCK_FULL_TRACKING) != 0);
+        data.setTimeNanos(readZigZag());
+        if ((clockFlags & SessionWriter.CLOCK_FULL_BIAS) != 0) data.setFullBiasNanos(readZigZag());
+        data.setBiasNanos(readDouble());
+        data.setBiasUncertaintyNanos(readDouble());
+        data.setDriftNanosPerSecond(readDouble());
+        data.setDriftUncertaintyNanosPerSecond(readDouble());
+        if ((clockFlags & SessionWriter.CLOCK_LEAP_SECOND) != 0) {
+            data.setLeapSecond((int) readZigZag());
+        }
+        data.setHardwareClockDiscontinuityCount((int) readVarint());
+        data.setElapsedRealtimeNanos(mStartElapsedRealtimeNanos + readZigZag());
+
+        int count = (int) readVarint();
+        for (int n = 0; n < count; n++) {
+            int constellation = readByte();
+            int i = data.add(constellation, (int) readVarint());
+            int present = readByte();
+            data.setState(i, (int) readVarint());
+            data.setReceivedSvTimeNanos(i, readZigZag());
+            data.setReceivedSvTimeUncertaintyNanos(i, readZigZag());
+            data.setCn0DbHz(i, readFloat());
+            data.setPseudorangeRateMetersPerSecond(i, readDouble());
+            data.setPseudorangeRateUncertaintyMetersPerSecond(i, readFloat());
+            data.setAccumulatedDeltaRangeState(i, (int) readVarint());
+            data.setAccumulatedDeltaRangeMeters(i, readDouble());
+            data.setAccumulatedDeltaRangeUncertaintyMeters(i, readFloat());
+            data.setMultipathIndicator(i, readByte());
+            if ((present & SessionWriter.MEAS_TIME_OFFSET) != 0) {
+                data.setTimeOffsetNanos(i, readDouble());
+            }
+            if ((present & SessionWriter.MEAS_CARRIER) != 0) {
+                data.setCarrierFrequencyHz(i, readFloat());
+            }
+            if ((present & SessionWriter.MEAS_AGC) != 0) {
+                data.setAutomaticGainControlLevelDb(i, readFloat());
+            }
+            if ((present & SessionWriter.MEAS_BASEBAND) != 0) {
+                data.setBasebandCn0DbHz(i, readFloat());
+            }
+        }
+    }
+
+    public void readNavMessage(@NonNull NavMessageData msg) {
+        msg.set((int) readVarint(), (int) readVarint(), (int) readZigZag(),
+                (int) readZigZag(), (int) readVarint());
+        readBytes(msg);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+
+    // Makes at least n bytes available after the position, false at end of file
+    private boolean ensure(int n) throws IOException {
+        if (mBuffer.remaining() >= n) {
+            return true;
+        }
+        if (mBuffer.capacity() < n) {
+            var larger = ByteBuffer.allocate(Math.max(n, mBuffer.capacity() * 2))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            larger.put(mBuffer);
+            larger.flip();
+            mBuffer = larger;
+        }
+        mBuffer.compact();
+        while (!mEof && mBuffer.position() < n) {
+            if (mChannel.read(mBuffer) < 0) {
+                mEof = true;
+            }
+        }
+        mBuffer.flip();
+        return mBuffer.remaining() >= n;
+    }
+}
@@ -0,0 +1,348 @@
+package pos.modetest.core.recorder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+
+/**
+ * Appends records of {@link SessionFormat} to a file through a direct buffer.
+ * <p>
+ * GNSS records after the timestamp:
+ * <pre>
+ * FIX          : present(varint) provider(string) time(zigzag ms from start) elapsed(zigzag ns
+ *                from start) lat(double) lon(double) [alt(double)] [speed, bearing, accuracy,
+ *                vAccuracy, speedAccuracy, bearingAccuracy (float)]
+ * SATELLITES   : count(varint) {constellation(byte) svid(varint) flags(byte) cn0(varint 0.01)
+ *                elevation(zigzag 0.01) azimuth(varint 0.01) [carrier(float)] [baseband(varint 0.01)]}
+ * MEASUREMENTS : flags(byte) timeNanos(zigzag) [fullBias(zigzag)] bias, biasUnc, drift,
+ *                driftUnc(double) [leap(zigzag)] discontinuity(varint) elapsed(zigzag ns from start)
+ *                count(varint) {constellation(byte) svid(varint) present(byte) state(varint)
+ *                svTime(zigzag) svTimeUnc(zigzag) cn0(float) prr(double) prrUnc(float)
+ *                adrState(varint) adr(double) adrUnc(float) multipath(byte) [timeOffset(double)]
+ *                [carrier(float)] [agc(float)] [baseband(float)]}
+ * NAV_MESSAGE  : type(varint) svid(varint) messageId(zigzag) submessageId(zigzag) status(varint)
+ *                length(varint) data(bytes)
+ * </pre>
+ * Not thread safe, all calls are expected from one writer thread.
+ */
+public class SessionWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RECORD_HEADER = 1 + 5;
+    private static final double CENTI = 100d;
+
+    // FIX present flags
+    static final int FIX_ALTITUDE = 1;
+    static final int FIX_SPEED = 1 << 1;
+    static final int FIX_BEARING = 1 << 2;
+    static final int FIX_ACCURACY = 1 << 3;
+    static final int FIX_VERTICAL_ACCURACY = 1 << 4;
+    static final int FIX_SPEED_ACCURACY = 1 << 5;
+    static final int FIX_BEARING_ACCURACY = 1 << 6;
+
+    // SATELLITES flags, above SatelliteData flags
+    static final int SV_CARRIER = 1 << 6;
+    static final int SV_BASEBAND = 1 << 7;
+
+    // MEASUREMENTS clock flags
+    static final int CLOCK_FULL_BIAS = 1;
+    static final int CLOCK_LEAP_SECOND = 1 << 1;
+    static final int CLOCK_FULL_TRACKING = 1 << 2;
+
+    // MEASUREMENTS present flags
+    static final int MEAS_TIME_OFFSET = 1;
+    static final int MEAS_CARRIER = 1 << 1;
+    static final int MEAS_AGC = 1 << 2;
+    static final int MEAS_BASEBAND = 1 << 3;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer =
+            ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer mPayload = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final Map<String, Integer> mStrings = new HashMap<>();
+
+    private final long mStartWallTimeMillis;
+    private final long mStartElapsedRealtimeNanos;
+    private long mLastMicros;
+    private long mRecordPrevMicros;
+    private int mRecordType;
+    private long mRecordCount;
+    private long mBytesWritten;
+
+    public SessionWriter(@NonNull Path path, long startWallTimeMillis,
+                         long startElapsedRealtimeNanos) throws IOException {
+        mChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        mStartWallTimeMillis = startWallTimeMillis;
+        mStartElapsedRealtimeNanos = startElapsedRealtimeNanos;
+        mRecordType = 0;
+        mBuffer.putInt(SessionFormat.MAGIC)
+                .put((byte) SessionFormat.VERSION)
+                .putLong(startWallTimeMillis)
+                .putLong(startElapsedRealtimeNanos);
+    }
+
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /** Bytes written to the file and pending in the buffer */
+    public long getSize() {
+        return mBytesWritten + mBuffer.position();
+    }
+
+    /** Starts a record, followed by put calls and {@link #end()} */
+    public void begin(int type, long elapsedRealtimeNanos) {
+        if (mRecordType != 0) {
+            throw new IllegalStateException("Record " + mRecordType + " not ended");
+        }
+        mRecordType = type;
+        mRecordPrevMicros = mLastMicros;
+        mPayload.clear();
+        long micros = (elapsedRealtimeNanos - mStartElapsedRealtimeNanos) / 1000;
+        SessionFormat.putZigZag(ensure(10), micros - mLastMicros);
+        mLastMicros = micros;
+    }
+
+    public void end() throws IOException {
+        mPayload.flip();
+        try {
+            appendRecord(mRecordType, mPayload);
+        } finally {
+            mRecordType = 0;
+        }
+        mRecordCount++;
+    }
+
+    /**
+     * Drops the record started with {@link #begin(int, long)}, e.g. after a put call failed.
+     * Records written before stay readable.
+     */
+    public void abort() {
+        if (mRecordType == 0) return;
+        mRecordType = 0;
+        mLastMicros = mRecordPrevMicros;
+        mPayload.clear();
+    }
+
+    public void putVarint(long value) {
+        SessionFormat.putVarint(ensure(10), value);
+    }
+
+    public void putZigZag(long value) {
+        SessionFormat.putZigZag(ensure(10), value);
+    }
+
+    public void putByte(int value) {
+        ensure(1).put((byte) value);
+    }
+
+    public void putFloat(float value) {
+        ensure(Float.BYTES).putFloat(value);
+    }
+
+    public void putDouble(double value) {
+        ensure(Double.BYTES).putDouble(value);
+    }
+
+    public void putBytes(@NonNull byte[] data, int offset, int length) {
+        putVarint(length);
+        ensure(length).put(data, offset, length);
+    }
+
+    /** Writes the string reference, the string itself only on first use in the session */
+    public void putString(@Nullable String value) throws IOException {
+        if (value == null) {
+            putVarint(0);
+            return;
+        }
+        Integer id = mStrings.get(value);
+        if (id == null) {
+            id = mStrings.size();
+            mStrings.put(value, id);
+            appendRecord(SessionFormat.TYPE_STRING,
+                    ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        putVarint(id + 1);
+    }
+
+    public void writeFix(long elapsedRealtimeNanos, @NonNull FixData fix) throws IOException {
+        int present = (Double.isNaN(fix.getAltitude()) ? 0 : FIX_ALTITUDE)
+                | (Float.isNaN(fix.getSpeed()) ? 0 : FIX_SPEED)
+                | (Float.isNaN(fix.getBearing()) ? 0 : FIX_BEARING)
+                | (Float.isNaN(fix.getAccuracy()) ? 0 : FIX_ACCURACY)
+                | (Float.isNaN(fix.getVerticalAccuracy()) ? 0 : FIX_VERTICAL_ACCURACY)
+                | (Float.isNaN(fix.getSpeedAccuracy()) ? 0 : FIX_SPEED_ACCURACY)
+                | (Float.isNaN(fix.getBearingAccuracy()) ? 0 : FIX_BEARING_ACCURACY);
+        begin(SessionFormat.TYPE_FIX, elapsedRealtimeNanos);
+        putVarint(present);
+        putString(fix.getProvider());
+        putZigZag(fix.getTimeMillis() - mStartWallTimeMillis);
+        putZigZag(fix.getElapsedRealtimeNanos() - mStartElapsedRealtimeNanos);
+        putDouble(fix.getLatitude());
+        putDouble(fix.getLongitude());
+        if ((present & FIX_ALTITUDE) != 0) putDouble(fix.getAltitude());
+        if ((present & FIX_SPEED) != 0) putFloat(fix.getSpeed());
+        if ((present & FIX_BEARING) != 0) putFloat(fix.getBearing());
+        if ((present & FIX_ACCURACY) != 0) putFloat(fix.getAccuracy());
+        if ((present & FIX_VERTICAL_ACCURACY) != 0) putFloat(fix.getVerticalAccuracy());
+        if ((present & FIX_SPEED_ACCURACY) != 0) putFloat(fix.getSpeedAccuracy());
+        if ((present & FIX_BEARING_ACCURACY) != 0) putFloat(fix.getBearingAccuracy());
+        end();
+    }
+
+    public void writeSatellites(long elapsedRealtimeNanos, @NonNull SatelliteData sats)
+            throws IOException {
+        begin(SessionFormat.TYPE_SATELLITES, elapsedRealtimeNanos);
+        int count = sats.getCount();
+        putVarint(count);
+        for (int i = 0; i < count; i++) {
+            float carrier = sats.getCarrierFrequencyHz(i);
+            float baseband = sats.getBasebandCn0DbHz(i);
+            int flags = sats.getFlags(i)
+                    | (Float.isNaN(carrier) ? 0 : SV_CARRIER)
+                    | (Float.isNaN(baseband) ? 0 : SV_BASEBAND);
+            putByte(sats.getConstellation(i));
+            putVarint(sats.getSvid(i));
+            putByte(flags);
+            putVarint(Math.round(Math.max(sats.getCn0DbHz(i), 0f) * CENTI));
+            putZigZag(Math.round(sats.getElevationDegrees(i) * CENTI));
+            putVarint(Math.round(Math.max(sats.getAzimuthDegrees(i), 0f) * CENTI));
+            if (!Float.isNaN(carrier)) putFloat(carrier);
+            if (!Float.isNaN(baseband)) putVarint(Math.round(Math.max(baseband, 0f) * CENTI));
+        }
+        end();
+    }
+
+    public void writeMeasurements(long elapsedRealtimeNanos, @NonNull MeasurementData data)
+            throws IOException {
+        begin(SessionFormat.TYPE_MEASUREMENTS, elapsedRealtimeNanos);
+        int clockFlags = (data.hasFullBiasNanos() ? CLOCK_FULL_BIAS : 0)
+                | (data.hasLeapSecond() ? CLOCK_LEAP_SECOND : 0)
+                | (data.isFullTracking() ? CLOCK_FULL_TRACKING : 0);
+        putByte(clockFlags);
+        putZigZag(data.getTimeNanos());
+        if (data.hasFullBiasNanos()) putZigZag(data.getFullBiasNanos());
+        putDouble(data.getBiasNanos());
+        putDouble(data.getBiasUncertaintyNanos());
+        putDouble(data.getDriftNanosPerSecond());
+        putDouble(data.getDriftUncertaintyNanosPerSecond());
+        if (data.hasLeapSecond()) putZigZag(data.getLeapSecond());
+        putVarint(data.getHardwareClockDiscontinuityCount());
+        putZigZag(data.getElapsedRealtimeNanos() - mStartElapsedRealtimeNanos);
+
+        int count = data.getCount();
+        putVarint(count);
+        for (int i = 0; i < count; i++) {
+            int present = (data.getTimeOffsetNanos(i) != 0 ? MEAS_TIME_OFFSET : 0)
+                    | (Float.isNaN(data.getCarrierFrequencyHz(i)) ? 0 : MEAS_CARRIER)
+                    | (Double.isNaN(data.getAutomaticGainControlLevelDb(i)) ? 0 : MEAS_AGC)
+                    | (Double.isNaN(data.getBasebandCn0DbHz(i)) ? 0 : MEAS_BASEBAND);
+            putByte(data.getConstellation(i));
+            putVarint(data.getSvid(i));
+            putByte(present);
+            putVarint(data.getState(i));
+            putZigZag(data.getReceivedSvTimeNanos(i));
+            putZigZag(data.getReceivedSvTimeUncertaintyNanos(i));
+            putFloat((float) data.getCn0DbHz(i));
+            putDouble(data.getPseudorangeRateMetersPerSecond(i));
+            putFloat((float) data.getPseudorangeRateUncertaintyMetersPerSecond(i));
+            putVarint(data.getAccumulatedDeltaRangeState(i));
+            putDouble(data.getAccumulatedDeltaRangeMeters(i));
+            putFloat((float) data.getAccumulatedDeltaRangeUncertaintyMeters(i));
+            putByte(data.getMultipathIndicator(i));
+            if ((present & MEAS_TIME_OFFSET) != 0) putDouble(data.getTimeOffsetNanos(i));
+            if ((present & MEAS_CARRIER) != 0) putFloat(data.getCarrierFrequencyHz(i));
+            if ((present & MEAS_AGC) != 0) putFloat((float) data.getAutomaticGainControlLevelDb(i));
+            if ((present & MEAS_BASEBAND) != 0) putFloat((float) data.getBasebandCn0DbHz(i));
+        }
+        end();
+    }
+
+    public void writeNavMessage(long elapsedRealtimeNanos, @NonNull NavMessageData msg)
+            throws IOException {
+        begin(SessionFormat.TYPE_NAV_MESSAGE, elapsedRealtimeNanos);
+        putVarint(msg.getType());
+        putVarint(msg.getSvid());
+        putZigZag(msg.getMessageId());
+        putZigZag(msg.getSubmessageId());
+        putVarint(msg.getStatus());
+        putBytes(msg.getData(), 0, msg.getDataLength());
+        end();
+    }
+
+    public void writeGnssEvent(long elapsedRealtimeNanos, int kind, long value)
+            throws IOException {
+        begin(SessionFormat.TYPE_GNSS_EVENT, elapsedRealtimeNanos);
+        putVarint(kind);
+        putZigZag(value);
+        end();
+    }
+
+    /** Writes buffered records to the file */
+    public void flush() throws IOException {
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mBytesWritten += mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+
+    /** Writes buffered records and forces them to the storage device */
+    public void sync() throws IOException {
+        flush();
+        mChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            mChannel.close();
+        }
+    }
+
+    private void appendRecord(int type, ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        if (mBuffer.remaining() < MAX_RECORD_HEADER + length) {
+            flush();
+        }
+        mBuffer.put((byte) type);
+        SessionFormat.putVarint(mBuffer, length);
+        if (mBuffer.remaining() < length) {
+            // Larger than the buffer, write through
+            flush();
+            while (payload.hasRemaining()) {
+                mBytesWritten += mChannel.write(payload);
+            }
+        } else {
+            mBuffer.put(payload);
+        }
+    }
+
+    private ByteBuffer ensure(int bytes) {
+        if (mPayload.remaining() < bytes) {
+            var larger = ByteBuffer.allocate(Math.max(mPayload.capacity() * 2,
+                    mPayload.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+            mPayload.flip();
+            larger.put(mPayload);
+            mPayload = larger;
+        }
+        return mPayload;
+    }
+}
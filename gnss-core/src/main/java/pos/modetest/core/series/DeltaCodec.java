@@ -0,0 +1,74 @@
+package pos.modetest.core.series;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Int column to long words: first value, smallest delta, then each delta minus the smallest
+ * one bit packed at the width of the largest. Slowly changing columns like C/N0 at 0.01 dB-Hz
+ * take a few bits per value, a constant step like consecutive bucket indexes takes 0 bits.
+ */
+final class DeltaCodec {
+    private static final int HEADER_WORDS = 2;
+
+    private DeltaCodec() {
+    }
+
+    @NonNull
+    static long[] encode(@NonNull int[] values, int count) {
+        if (count == 0) {
+            return new long[HEADER_WORDS];
+        }
+        long minDelta = Long.MAX_VALUE;
+        long maxDelta = Long.MIN_VALUE;
+        for (int i = 1; i < count; i++) {
+            long delta = (long) values[i] - values[i - 1];
+            minDelta = Math.min(minDelta, delta);
+            maxDelta = Math.max(maxDelta, delta);
+        }
+        if (count == 1) {
+            minDelta = maxDelta = 0;
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(maxDelta - minDelta);
+        long[] words = new long[HEADER_WORDS + (int) (((long) (count - 1) * bits + 63) / 64)];
+        words[0] = ((long) values[0] << 32) | bits;
+        words[1] = minDelta;
+        long bitPos = 0;
+        for (int i = 1; i < count && bits > 0; i++) {
+            long packed = (long) values[i] - values[i - 1] - minDelta;
+            int word = HEADER_WORDS + (int) (bitPos >>> 6);
+            int shift = (int) (bitPos & 63);
+            words[word] |= packed << shift;
+            if (shift + bits > 64) {
+                words[word + 1] |= packed >>> (64 - shift);
+            }
+            bitPos += bits;
+        }
+        return words;
+    }
+
+    /** Decodes the first count values of words into out */
+    static void decode(@NonNull long[] words, int count, @NonNull int[] out) {
+        if (count == 0) return;
+        int bits = (int) (words[0] & 0xFF);
+        long mask = bits == 64 ? -1L : (1L << bits) - 1;
+        long minDelta = words[1];
+        long value = (int) (words[0] >> 32);
+        out[0] = (int) value;
+        long bitPos = 0;
+        for (int i = 1; i < count; i++) {
+            long packed = 0;
+            if (bits > 0) {
+                int word = HEADER_WORDS + (int) (bitPos >>> 6);
+                int shift = (int) (bitPos & 63);
+                packed = words[word] >>> shift;
+                if (shift + bits > 64) {
+                    packed |= words[word + 1] << (64 - shift);
+                }
+                packed &= mask;
+                bitPos += bits;
+            }
+            value += packed + minDelta;
+            out[i] = (int) value;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package pos.modetest.core.series;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * One value of one signal over time, bucketed at every tier width.
+ * <p>
+ * Buckets hold min, max and mean as ints in 1/{@link #SCALE} units. Closed buckets go to the
+ * open chunk of their tier, a full open chunk is sealed with {@link DeltaCodec}. Angles in
+ * degrees get a circular mean, so 359 and 1 average to 0 instead of 180.
+ */
+class Series {
+    static final int CHUNK_SIZE = 128;
+    static final float SCALE = 100f;
+
+    final int mSignalKey;
+    final int mField;
+    final boolean mCircular;
+    final Tier[] mTiers;
+
+    /** @param circular values are angles in degrees, [0, 360) */
+    Series(int signalKey, int field, @NonNull long[] tierWidthsMs, boolean circular) {
+        mSignalKey = signalKey;
+        mField = field;
+        mCircular = circular;
+        mTiers = new Tier[tierWidthsMs.length];
+        for (int t = 0; t < tierWidthsMs.length; t++) {
+            mTiers[t] = new Tier(tierWidthsMs[t], circular);
+        }
+    }
+
+    /** @return mean angle in [0, 360) degrees of the summed unit vectors */
+    static float circularMean(double sumSin, double sumCos) {
+        double degrees = Math.toDegrees(Math.atan2(sumSin, sumCos));
+        return (float) (degrees < 0 ? degrees + 360 : degrees);
+    }
+
+    /** Immutable block of {@link #CHUNK_SIZE} buckets, columns encoded by {@link DeltaCodec} */
+    static class Chunk {
+        final Tier mOwner;
+        final int mFirstBucket;
+        final int mLastBucket;
+        final int mCount;
+        final long[] mBuckets;
+        final long[] mMin;
+        final long[] mMax;
+        final long[] mMean;
+
+        Chunk(Tier owner, int[] buckets, int[] min, int[] max, int[] mean, int count) {
+            mOwner = owner;
+            mFirstBucket = buckets[0];
+            mLastBucket = buckets[count - 1];
+            mCount = count;
+            mBuckets = DeltaCodec.encode(buckets, count);
+            mMin = DeltaCodec.encode(min, count);
+            mMax = DeltaCodec.encode(max, count);
+            mMean = DeltaCodec.encode(mean, count);
+        }
+
+        long getBytes() {
+            // Object and array headers included roughly
+            return 64 + 8L * (mBuckets.length + mMin.length + mMax.length + mMean.length);
+        }
+    }
+
+    static class Tier {
+        final long mWidthMs;
+        final boolean mCircular;
+        final ArrayDeque<Chunk> mSealed = new ArrayDeque<>();
+        // Bucket being accumulated, mCount 0 if none
+        private int mBucket;
+        private float mMin;
+        private float mMax;
+        // Sum of the values, or of their sines and cosines when circular
+        private double mSum;
+        private double mSumCos;
+        private int mCount;
+        // Open chunk, grown up to CHUNK_SIZE
+        private int[] mOpenBuckets = new int[0];
+        private int[] mOpenMin = new int[0];
+        private int[] mOpenMax = new int[0];
+        private int[] mOpenMean = new int[0];
+        private int mOpenCount;
+        private long mBytes;
+
+        Tier(long widthMs, boolean circular) {
+            mWidthMs = widthMs;
+            mCircular = circular;
+        }
+
+        /** @return chunk sealed by this sample, null if none */
+        @Nullable
+        Chunk add(long offsetMillis, float value) {
+            int bucket = (int) (offsetMillis / mWidthMs);
+            Chunk sealed = null;
+            if (mCount > 0 && bucket > mBucket) {
+                sealed = closeBucket();
+            }
+            if (mCount == 0) {
+                mBucket = bucket;
+                mMin = value;
+                mMax = value;
+                mSum = 0;
+                mSumCos = 0;
+            }
+            // A late sample counts to the bucket being accumulated
+            mMin = Math.min(mMin, value);
+            mMax = Math.max(mMax, value);
+            if (mCircular) {
+                double radians = Math.toRadians(value);
+                mSum += Math.sin(radians);
+                mSumCos += Math.cos(radians);
+            } else {
+                mSum += value;
+            }
+            mCount++;
+            return sealed;
+        }
+
+        long getBytes() {
+            return mBytes;
+        }
+
+        /** @return first bucket still held, Integer.MAX_VALUE if empty */
+        int getFirstBucket() {
+            if (!mSealed.isEmpty()) return mSealed.peekFirst().mFirstBucket;
+            if (mOpenCount > 0) return mOpenBuckets[0];
+            return mCount > 0 ? mBucket : Integer.MAX_VALUE;
+        }
+
+        void evict(@NonNull Chunk chunk) {
+            if (mSealed.peekFirst() != chunk) {
+                throw new IllegalStateException("Chunks must be evicted oldest first");
+            }
+            mSealed.pollFirst();
+            mBytes -= chunk.getBytes();
+        }
+
+        /** Appends the buckets of [fromBucket, toBucket] to out, times relative to originMillis */
+        void query(int fromBucket, int toBucket, long originMillis, @NonNull int[][] scratch,
+                   @NonNull SeriesPoints out) {
+            for (Chunk chunk : mSealed) {
+                if (chunk.mLastBucket < fromBucket) continue;
+                if (chunk.mFirstBucket > toBucket) return;
+                DeltaCodec.decode(chunk.mBuckets, chunk.mCount, scratch[0]);
+                DeltaCodec.decode(chunk.mMin, chunk.mCount, scratch[1]);
+                DeltaCodec.decode(chunk.mMax, chunk.mCount, scratch[2]);
+                DeltaCodec.decode(chunk.mMean, chunk.mCount, scratch[3]);
+                append(scratch[0], scratch[1], scratch[2], scratch[3], chunk.mCount,
+                        fromBucket, toBucket, originMillis, out);
+            }
+            append(mOpenBuckets, mOpenMin, mOpenMax, mOpenMean, mOpenCount,
+                    fromBucket, toBucket, originMillis, out);
+            if (mCount > 0 && mBucket >= fromBucket && mBucket <= toBucket) {
+                out.add(originMillis + mBucket * mWidthMs, mMin, mMax, getMean());
+            }
+        }
+
+        private void append(int[] buckets, int[] min, int[] max, int[] mean, int count,
+                            int fromBucket, int toBucket, long originMillis,
+                            SeriesPoints out) {
+            for (int i = 0; i < count; i++) {
+                if (buckets[i] < fromBucket) continue;
+                if (buckets[i] > toBucket) return;
+                out.add(originMillis + buckets[i] * mWidthMs,
+                        min[i] / SCALE, max[i] / SCALE, mean[i] / SCALE);
+            }
+        }
+
+        private Chunk closeBucket() {
+            if (mOpenCount == mOpenBuckets.length) {
+                int capacity = Math.min(CHUNK_SIZE, Math.max(8, mOpenCount * 2));
+                mBytes += 16L * (capacity - mOpenBuckets.length);
+                mOpenBuckets = Arrays.copyOf(mOpenBuckets, capacity);
+                mOpenMin = Arrays.copyOf(mOpenMin, capacity);
+                mOpenMax = Arrays.copyOf(mOpenMax, capacity);
+                mOpenMean = Arrays.copyOf(mOpenMean, capacity);
+            }
+            int i = mOpenCount++;
+            mOpenBuckets[i] = mBucket;
+            mOpenMin[i] = quantize(mMin);
+            mOpenMax[i] = quantize(mMax);
+            mOpenMean[i] = quantize(getMean());
+            mCount = 0;
+            if (mOpenCount < CHUNK_SIZE) {
+                return null;
+            }
+            var chunk = new Chunk(this, mOpenBuckets, mOpenMin, mOpenMax, mOpenMean, mOpenCount);
+            mSealed.addLast(chunk);
+            mBytes += chunk.getBytes();
+            mOpenCount = 0;
+            return chunk;
+        }
+
+        private float getMean() {
+            return mCircular ? circularMean(mSum, mSumCos) : (float) (mSum / mCount);
+        }
+
+        private static int quantize(float value) {
+            return Math.round(value * SCALE);
+        }
+    }
+}
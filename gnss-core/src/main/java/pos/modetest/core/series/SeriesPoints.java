@@ -0,0 +1,102 @@
+package pos.modetest.core.series;
+
+import java.util.Arrays;
+
+/**
+ * Reusable result of {@link TimeSeriesStore#query}, one point per bucket with its min, max
+ * and mean value.
+ */
+public class SeriesPoints {
+    private int mCount;
+    private int mTier = -1;
+    private long[] mTimesMillis = new long[64];
+    private float[] mMin = new float[64];
+    private float[] mMax = new float[64];
+    private float[] mMean = new float[64];
+
+    public void clear() {
+        mCount = 0;
+        mTier = -1;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /** @return tier the points were read from, -1 if none */
+    public int getTier() {
+        return mTier;
+    }
+
+    /** @return start of the bucket, same clock as the added samples */
+    public long getTimeMillis(int i) {
+        return mTimesMillis[i];
+    }
+
+    public float getMin(int i) {
+        return mMin[i];
+    }
+
+    public float getMax(int i) {
+        return mMax[i];
+    }
+
+    public float getMean(int i) {
+        return mMean[i];
+    }
+
+    void setTier(int tier) {
+        mTier = tier;
+    }
+
+    void add(long timeMillis, float min, float max, float mean) {
+        if (mCount == mTimesMillis.length) {
+            int capacity = mCount * 2;
+            mTimesMillis = Arrays.copyOf(mTimesMillis, capacity);
+            mMin = Arrays.copyOf(mMin, capacity);
+            mMax = Arrays.copyOf(mMax, capacity);
+            mMean = Arrays.copyOf(mMean, capacity);
+        }
+        mTimesMillis[mCount] = timeMillis;
+        mMin[mCount] = min;
+        mMax[mCount] = max;
+        mMean[mCount] = mean;
+        mCount++;
+    }
+
+    /**
+     * Merges groups of adjacent points so at most maxPoints remain, means are averaged
+     *
+     * @param circular means are angles in degrees and get a circular mean
+     */
+    void reduce(int maxPoints, boolean circular) {
+        if (mCount <= maxPoints || maxPoints <= 0) return;
+        int group = (mCount + maxPoints - 1) / maxPoints;
+        int n = 0;
+        for (int start = 0; start < mCount; start += group) {
+            int end = Math.min(start + group, mCount);
+            float min = mMin[start];
+            float max = mMax[start];
+            double sum = 0;
+            double sumCos = 0;
+            for (int i = start; i < end; i++) {
+                min = Math.min(min, mMin[i]);
+                max = Math.max(max, mMax[i]);
+                if (circular) {
+                    double radians = Math.toRadians(mMean[i]);
+                    sum += Math.sin(radians);
+                    sumCos += Math.cos(radians);
+                } else {
+                    sum += mMean[i];
+                }
+            }
+            mTimesMillis[n] = mTimesMillis[start];
+            mMin[n] = min;
+            mMax[n] = max;
+            mMean[n] = circular
+                    ? Series.circularMean(sum, sumCos) : (float) (sum / (end - start));
+            n++;
+        }
+        mCount = n;
+    }
+}
@@ -0,0 +1,115 @@
+package pos.modetest.core.series;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.FixFormat;
+import pos.modetest.core.data.GnssBand;
+
+/**
+ * Display strings of a {@link TimeSeriesStore}, missing values are shown as
+ * {@link FixFormat#EMPTY_TEXT}.
+ */
+public class SignalHistoryFormat {
+    private static final long MINUTE_MS = 60_000;
+    // C/N0 windows of the report, ending at the report time
+    private static final long[] WINDOWS_MS = {MINUTE_MS, 10 * MINUTE_MS, 60 * MINUTE_MS};
+    // Buckets read per window before they are merged into one, picks the finest tier held
+    private static final int WINDOW_POINTS = 600;
+
+    private SignalHistoryFormat() {
+    }
+
+    /**
+     * One line per signal with status C/N0 history, for a monospace dialog: mean C/N0 over
+     * the last 1, 10 and 60 minutes with the range of the last hour, elevation and azimuth of
+     * the last minute and the multipath ratio of the last 10 minutes.
+     *
+     * @param nowMillis same clock as the samples added to the store
+     */
+    @NonNull
+    public static String formatReport(@NonNull TimeSeriesStore store, long nowMillis,
+                                      @NonNull SeriesPoints scratch) {
+        List<Integer> signals = new ArrayList<>();
+        for (int series = 0; series < store.getSeriesCount(); series++) {
+            if (store.getField(series) == TimeSeriesStore.FIELD_CN0) signals.add(series);
+        }
+        if (signals.isEmpty()) return FixFormat.EMPTY_TEXT + "\n";
+        signals.sort(Comparator.<Integer>comparingInt(store::getConstellation)
+                .thenComparingInt(store::getSvid)
+                .thenComparing(store::getBand));
+
+        var sb = new StringBuilder(String.format(Locale.getDefault(),
+                "%-15s %5s %5s %5s %11s %4s %5s %4s\n",
+                "Signal", "1m", "10m", "1h", "1h range", "El", "Az", "MP%"));
+        for (int series : signals) {
+            int constellation = store.getConstellation(series);
+            int svid = store.getSvid(series);
+            var band = store.getBand(series);
+            String label = band.getLabel();
+            sb.append(String.format(Locale.getDefault(), "%-7s %-7s",
+                    Constellation.getName(constellation),
+                    svid + (label != null ? " " + label : "")));
+            for (long window : WINDOWS_MS) {
+                queryMean(store, series, nowMillis - window, nowMillis, scratch);
+                sb.append(' ').append(format(scratch, 5, false));
+            }
+            // scratch still holds the last, longest window
+            sb.append(' ').append(scratch.getCount() == 0 ? pad(FixFormat.EMPTY_TEXT, 11)
+                    : String.format(Locale.getDefault(), "%5.1f-%5.1f", scratch.getMin(0),
+                    scratch.getMax(0)));
+            sb.append(' ').append(formatField(store, constellation, svid, band,
+                    TimeSeriesStore.FIELD_ELEVATION, nowMillis - MINUTE_MS, nowMillis, 4,
+                    scratch));
+            sb.append(' ').append(formatField(store, constellation, svid, band,
+                    TimeSeriesStore.FIELD_AZIMUTH, nowMillis - MINUTE_MS, nowMillis, 5,
+                    scratch));
+            sb.append(' ').append(formatMultipath(store, constellation, svid, band,
+                    nowMillis - 10 * MINUTE_MS, nowMillis, scratch));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String formatField(TimeSeriesStore store, int constellation, int svid,
+                                      GnssBand band, int field, long fromMillis,
+                                      long toMillis, int width, SeriesPoints scratch) {
+        int series = store.findSeries(constellation, svid, band, field);
+        if (series < 0) return pad(FixFormat.EMPTY_TEXT, width);
+        queryMean(store, series, fromMillis, toMillis, scratch);
+        return format(scratch, width, true);
+    }
+
+    private static String formatMultipath(TimeSeriesStore store, int constellation, int svid,
+                                          GnssBand band, long fromMillis, long toMillis,
+                                          SeriesPoints scratch) {
+        int series = store.findSeries(constellation, svid, band,
+                TimeSeriesStore.FIELD_MULTIPATH);
+        if (series < 0) return pad(FixFormat.EMPTY_TEXT, 4);
+        queryMean(store, series, fromMillis, toMillis, scratch);
+        if (scratch.getCount() == 0) return pad(FixFormat.EMPTY_TEXT, 4);
+        return String.format(Locale.getDefault(), "%4d", Math.round(scratch.getMean(0) * 100));
+    }
+
+    /** Leaves one point in out, or none, covering the range at the finest tier held */
+    private static void queryMean(TimeSeriesStore store, int series, long fromMillis,
+                                  long toMillis, SeriesPoints out) {
+        store.query(series, fromMillis, toMillis, WINDOW_POINTS, out);
+        out.reduce(1, store.isCircular(series));
+    }
+
+    private static String format(SeriesPoints points, int width, boolean whole) {
+        if (points.getCount() == 0) return pad(FixFormat.EMPTY_TEXT, width);
+        String pattern = "%" + width + (whole ? ".0f" : ".1f");
+        return String.format(Locale.getDefault(), pattern, points.getMean(0));
+    }
+
+    private static String pad(String text, int width) {
+        return String.format(Locale.getDefault(), "%" + width + "s", text);
+    }
+}
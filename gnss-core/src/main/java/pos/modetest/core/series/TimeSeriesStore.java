@@ -0,0 +1,277 @@
+package pos.modetest.core.series;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.GnssBand;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.SatelliteData;
+
+/**
+ * In-memory history of per-signal values, one series per (constellation, svid, band, field).
+ * <p>
+ * Every sample is bucketed at 1 s, 10 s and 1 min. Buckets keep min, max and mean at 0.01
+ * resolution and are sealed in delta + bit packed chunks of {@link Series#CHUNK_SIZE}. When the
+ * memory estimate exceeds the budget the oldest sealed chunks of the finest tier go first, so a
+ * long session keeps its coarse history. Azimuth means are circular, a bucket crossing north
+ * averages to north.
+ * <p>
+ * Not thread safe.
+ */
+public class TimeSeriesStore {
+    public static final int FIELD_CN0 = 0;
+    public static final int FIELD_ELEVATION = 1;
+    public static final int FIELD_AZIMUTH = 2;
+    public static final int FIELD_MEAS_CN0 = 3;
+    public static final int FIELD_AGC = 4;
+    /** 1 when multipath was detected, 0 when not, the mean is the detected ratio */
+    public static final int FIELD_MULTIPATH = 5;
+    public static final int FIELD_COUNT = 6;
+
+    public static final int TIER_1S = 0;
+    public static final int TIER_10S = 1;
+    public static final int TIER_1MIN = 2;
+    public static final int TIER_COUNT = 3;
+
+    public static final long DEFAULT_BUDGET_BYTES = 8L << 20;
+
+    private static final long[] TIER_WIDTHS_MS = {1_000, 10_000, 60_000};
+    private static final int MULTIPATH_NOT_DETECTED = 2;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final List<Series> mSeries = new ArrayList<>();
+    // Open addressing table of series index + 1, 0 is empty
+    private int[] mTable = new int[INITIAL_CAPACITY * 2];
+    private long[] mKeys = new long[INITIAL_CAPACITY];
+    // Sealed chunks per tier, oldest first
+    private final List<ArrayDeque<Series.Chunk>> mSealed = new ArrayList<>(TIER_COUNT);
+    private final int[][] mScratch = new int[4][Series.CHUNK_SIZE];
+    private long mBudgetBytes;
+    private long mBytes;
+    private long mOriginMillis = Long.MIN_VALUE;
+
+    public TimeSeriesStore() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public TimeSeriesStore(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+        for (int t = 0; t < TIER_COUNT; t++) {
+            mSealed.add(new ArrayDeque<>());
+        }
+    }
+
+    public void clear() {
+        mSeries.clear();
+        Arrays.fill(mTable, 0);
+        for (var sealed : mSealed) sealed.clear();
+        mBytes = 0;
+        mOriginMillis = Long.MIN_VALUE;
+    }
+
+    public long getBudgetBytes() {
+        return mBudgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+        evict();
+    }
+
+    /** @return estimated heap held by the buckets */
+    public long getMemoryBytes() {
+        return mBytes;
+    }
+
+    public int getSealedChunkCount(int tier) {
+        return mSealed.get(tier).size();
+    }
+
+    /** Adds C/N0, elevation and azimuth of every satellite */
+    public void addStatus(@NonNull SatelliteData sats, long timeMillis) {
+        for (int i = 0; i < sats.getCount(); i++) {
+            int constellation = sats.getConstellation(i);
+            var band = GnssBand.classify(constellation, sats.getCarrierFrequencyHz(i));
+            int svid = sats.getSvid(i);
+            add(constellation, svid, band, FIELD_CN0, timeMillis, sats.getCn0DbHz(i));
+            add(constellation, svid, band, FIELD_ELEVATION, timeMillis,
+                    sats.getElevationDegrees(i));
+            add(constellation, svid, band, FIELD_AZIMUTH, timeMillis, sats.getAzimuthDegrees(i));
+        }
+    }
+
+    /** Adds C/N0, AGC and multipath of every measurement */
+    public void addMeasurements(@NonNull MeasurementData data, long timeMillis) {
+        for (int i = 0; i < data.getCount(); i++) {
+            int constellation = data.getConstellation(i);
+            var band = GnssBand.classify(constellation, data.getCarrierFrequencyHz(i));
+            int svid = data.getSvid(i);
+            add(constellation, svid, band, FIELD_MEAS_CN0, timeMillis,
+                    (float) data.getCn0DbHz(i));
+            add(constellation, svid, band, FIELD_AGC, timeMillis,
+                    (float) data.getAutomaticGainControlLevelDb(i));
+            int multipath = data.getMultipathIndicator(i);
+            if (multipath == MeasurementData.MULTIPATH_INDICATOR_DETECTED
+                    || multipath == MULTIPATH_NOT_DETECTED) {
+                add(constellation, svid, band, FIELD_MULTIPATH, timeMillis,
+                        multipath == MeasurementData.MULTIPATH_INDICATOR_DETECTED ? 1f : 0f);
+            }
+        }
+    }
+
+    /** NaN values are skipped, times must not go backwards by more than a bucket */
+    public void add(int constellation, int svid, @NonNull GnssBand band, int field,
+                    long timeMillis, float value) {
+        if (Float.isNaN(value)) return;
+        if (mOriginMillis == Long.MIN_VALUE) {
+            // Aligned so buckets start on whole minutes of the sample clock
+            mOriginMillis = Math.floorDiv(timeMillis, TIER_WIDTHS_MS[TIER_1MIN])
+                    * TIER_WIDTHS_MS[TIER_1MIN];
+        }
+        long offset = Math.max(0, timeMillis - mOriginMillis);
+        var series = mSeries.get(seriesOf(constellation, svid, band, field));
+        for (int t = 0; t < TIER_COUNT; t++) {
+            var tier = series.mTiers[t];
+            long before = tier.getBytes();
+            var sealed = tier.add(offset, value);
+            mBytes += tier.getBytes() - before;
+            if (sealed != null) mSealed.get(t).addLast(sealed);
+        }
+        if (mBytes > mBudgetBytes) evict();
+    }
+
+    public int getSeriesCount() {
+        return mSeries.size();
+    }
+
+    /** @return series index, -1 if nothing was added for it */
+    public int findSeries(int constellation, int svid, @NonNull GnssBand band, int field) {
+        return indexOf(makeKey(constellation, svid, band, field));
+    }
+
+    public int getConstellation(int series) {
+        return mSeries.get(series).mSignalKey >>> 24;
+    }
+
+    public int getSvid(int series) {
+        return mSeries.get(series).mSignalKey & 0xFFFF;
+    }
+
+    @NonNull
+    public GnssBand getBand(int series) {
+        return GnssBand.fromOrdinal((mSeries.get(series).mSignalKey >>> 16) & 0xFF);
+    }
+
+    public int getField(int series) {
+        return mSeries.get(series).mField;
+    }
+
+    /** @return true if the values are angles and get a circular mean */
+    boolean isCircular(int series) {
+        return mSeries.get(series).mCircular;
+    }
+
+    /**
+     * Reads [fromMillis, toMillis] from the finest tier that still holds the range and needs
+     * at most maxPoints buckets. If even 1 min buckets are too many, adjacent ones are merged.
+     */
+    public void query(int series, long fromMillis, long toMillis, int maxPoints,
+                      @NonNull SeriesPoints out) {
+        out.clear();
+        if (mOriginMillis == Long.MIN_VALUE || toMillis < fromMillis) return;
+        var tiers = mSeries.get(series).mTiers;
+        var coarsest = tiers[TIER_COUNT - 1];
+        long coarsestStart = startMillis(coarsest) + coarsest.mWidthMs;
+        int tier = TIER_COUNT - 1;
+        for (int t = 0; t < TIER_COUNT - 1; t++) {
+            long width = tiers[t].mWidthMs;
+            if ((toMillis - fromMillis) / width + 1 <= maxPoints
+                    && startMillis(tiers[t]) <= Math.max(fromMillis, coarsestStart)) {
+                tier = t;
+                break;
+            }
+        }
+        long width = tiers[tier].mWidthMs;
+        long from = Math.max(0, fromMillis - mOriginMillis) / width;
+        long to = Math.floorDiv(toMillis - mOriginMillis, width);
+        if (to < 0) return;
+        out.setTier(tier);
+        tiers[tier].query((int) Math.min(from, Integer.MAX_VALUE),
+                (int) Math.min(to, Integer.MAX_VALUE), mOriginMillis, mScratch, out);
+        out.reduce(maxPoints, isCircular(series));
+    }
+
+    private long startMillis(Series.Tier tier) {
+        int first = tier.getFirstBucket();
+        return first == Integer.MAX_VALUE ? Long.MAX_VALUE : mOriginMillis + first * tier.mWidthMs;
+    }
+
+    /** Drops the oldest sealed chunks, finest tier first, until the budget is met */
+    private void evict() {
+        int t = 0;
+        while (mBytes > mBudgetBytes && t < TIER_COUNT) {
+            var chunk = mSealed.get(t).pollFirst();
+            if (chunk == null) {
+                t++;
+                continue;
+            }
+            chunk.mOwner.evict(chunk);
+            mBytes -= chunk.getBytes();
+        }
+    }
+
+    private int seriesOf(int constellation, int svid, GnssBand band, int field) {
+        long key = makeKey(constellation, svid, band, field);
+        int index = indexOf(key);
+        if (index >= 0) return index;
+        index = mSeries.size();
+        if (index == mKeys.length) grow();
+        mSeries.add(new Series((int) (key >>> 8), field, TIER_WIDTHS_MS,
+                field == FIELD_AZIMUTH));
+        mKeys[index] = key;
+        insert(index);
+        return index;
+    }
+
+    private int indexOf(long key) {
+        int mask = mTable.length - 1;
+        for (int h = mix(key) & mask; mTable[h] != 0; h = (h + 1) & mask) {
+            if (mKeys[mTable[h] - 1] == key) return mTable[h] - 1;
+        }
+        return -1;
+    }
+
+    private void insert(int index) {
+        int mask = mTable.length - 1;
+        int h = mix(mKeys[index]) & mask;
+        while (mTable[h] != 0) h = (h + 1) & mask;
+        mTable[h] = index + 1;
+    }
+
+    private void grow() {
+        mKeys = Arrays.copyOf(mKeys, mKeys.length * 2);
+        mTable = new int[mKeys.length * 2];
+        for (int i = 0; i < mSeries.size(); i++) {
+            insert(i);
+        }
+    }
+
+    private static long makeKey(int constellation, int svid, GnssBand band, int field) {
+        if (constellation < 0 || constellation >= Constellation.COUNT) {
+            constellation = Constellation.UNKNOWN;
+        }
+        int signal = (constellation << 24) | (band.ordinal() << 16) | (svid & 0xFFFF);
+        return ((long) signal << 8) | field;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
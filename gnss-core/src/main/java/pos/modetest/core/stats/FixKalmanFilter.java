@@ -0,0 +1,538 @@
+package pos.modetest.core.stats;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import pos.modetest.core.data.FixData;
+
+/**
+ * Extended Kalman filter smoothing delivered fixes, with innovation statistics to spot jumps.
+ * <p>
+ * The state is east, north, up position and velocity, plus acceleration with
+ * {@link #MODEL_CONSTANT_ACCELERATION}, in meters around a local origin projected like
+ * {@link FixStatistics}. The origin follows the track every {@link #REANCHOR_METERS}. Process
+ * noise is white acceleration, or white jerk, of the set spectral densities.
+ * <p>
+ * Positions are measured with the fix accuracies as noise; speed and bearing through their
+ * non-linear functions of the velocity, linearized at the current state. Measurements are
+ * applied one scalar at a time, so matrices stay fixed-size primitive arrays and nothing is
+ * allocated per fix.
+ * <p>
+ * The position innovation is gated on its squared Mahalanobis distance at
+ * {@link #GATE_PROBABILITY}: outliers only advance the prediction, and
+ * {@link #MAX_CONSECUTIVE_OUTLIERS} in a row restart the filter on the fix, taken as a real
+ * jump. Not thread safe, listeners are called on the updating thread.
+ */
+public class FixKalmanFilter {
+    public static final int MODEL_CONSTANT_VELOCITY = 0;
+    public static final int MODEL_CONSTANT_ACCELERATION = 1;
+
+    public static final int STATUS_NONE = 0;
+    /** First fix, or after a gap or a clear */
+    public static final int STATUS_INITIALIZED = 1;
+    public static final int STATUS_UPDATED = 2;
+    /** Rejected by the gate, the filtered fix is the prediction */
+    public static final int STATUS_OUTLIER = 3;
+    /** Too many outliers in a row, restarted on the fix */
+    public static final int STATUS_RESET = 4;
+
+    public static final String PROVIDER = "kalman";
+    public static final double GATE_PROBABILITY = 0.999;
+    public static final int MAX_CONSECUTIVE_OUTLIERS = 3;
+    public static final double MAX_GAP_SECONDS = 30;
+    public static final double REANCHOR_METERS = 10_000;
+    public static final double DEFAULT_HORIZONTAL_NOISE = 2;
+    public static final double DEFAULT_VERTICAL_NOISE = 0.2;
+
+    // Chi-square quantiles at GATE_PROBABILITY for 2 and 3 degrees of freedom
+    private static final double GATE_2D = 13.816;
+    private static final double GATE_3D = 16.266;
+    /** Radius of a circular 2D Gaussian holding 68% of it, in sigmas */
+    private static final double RADIUS_68_SIGMAS = 1.5096;
+    private static final double DEFAULT_ACCURACY_M = 10;
+    private static final double DEFAULT_SPEED_SIGMA = 1;
+    private static final double INITIAL_VELOCITY_SIGMA = 10;
+    private static final double INITIAL_ACCELERATION_SIGMA = 3;
+    /** Slowest speed bearings and the speed Jacobian are used at */
+    private static final double MIN_SPEED = 1;
+    private static final int MAX_STATES = 9;
+    // Position, velocity, acceleration of east, north, up
+    private static final int VEL = 3;
+    private static final int ACC = 6;
+
+    private int mModel;
+    private int mStates;
+    private double mHorizontalNoise = DEFAULT_HORIZONTAL_NOISE;
+    private double mVerticalNoise = DEFAULT_VERTICAL_NOISE;
+    private boolean mGateEnabled = true;
+
+    private final double[] mX = new double[MAX_STATES];
+    private final double[] mP = new double[MAX_STATES * MAX_STATES];
+    private final double[] mF = new double[MAX_STATES * MAX_STATES];
+    private final double[] mTmp = new double[MAX_STATES * MAX_STATES];
+    private final double[] mH = new double[MAX_STATES];
+    private final double[] mPht = new double[MAX_STATES];
+    private final double[] mS = new double[9];
+    private final double[] mInnovation = new double[3];
+
+    private boolean mInitialized;
+    private boolean mHasAltitude;
+    private long mLastNanos;
+    private double mOriginLatitude;
+    private double mOriginLongitude;
+    private double mOriginAltitude;
+    private double mCosLatitude;
+    private int mConsecutiveOutliers;
+    private int mStatus = STATUS_NONE;
+    private double mLastMahalanobis = Double.NaN;
+
+    private long mUpdateCount;
+    private long mOutlierCount;
+    private long mResetCount;
+    // Normalized innovation squared of accepted fixes, its mean is the degrees of freedom
+    private final RunningStats mNis = new RunningStats();
+    private final P2Quantile mInnovation95 = new P2Quantile(0.95);
+    private final FixData mFiltered = new FixData();
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    public FixKalmanFilter() {
+        this(MODEL_CONSTANT_VELOCITY);
+    }
+
+    public FixKalmanFilter(int model) {
+        setModel(model);
+    }
+
+    public int getModel() {
+        return mModel;
+    }
+
+    /** Restarts the filter on the next fix */
+    public void setModel(int model) {
+        mModel = model;
+        mStates = model == MODEL_CONSTANT_ACCELERATION ? 9 : 6;
+        mInitialized = false;
+    }
+
+    /**
+     * @param horizontal spectral density of the acceleration, or of the jerk with
+     *                   {@link #MODEL_CONSTANT_ACCELERATION}, east and north
+     * @param vertical   same for up
+     */
+    public void setProcessNoise(double horizontal, double vertical) {
+        mHorizontalNoise = horizontal;
+        mVerticalNoise = vertical;
+    }
+
+    public void setGateEnabled(boolean gateEnabled) {
+        mGateEnabled = gateEnabled;
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /** Restarts on the next fix and clears the statistics */
+    public void clear() {
+        mInitialized = false;
+        mStatus = STATUS_NONE;
+        mLastMahalanobis = Double.NaN;
+        mUpdateCount = 0;
+        mOutlierCount = 0;
+        mResetCount = 0;
+        mNis.clear();
+        mInnovation95.clear();
+        mFiltered.clear();
+    }
+
+    /** @return one of STATUS_* */
+    public int update(@NonNull FixData fix) {
+        long nanos = fix.getElapsedRealtimeNanos() != 0 ? fix.getElapsedRealtimeNanos()
+                : fix.getTimeMillis() * 1_000_000L;
+        double dt = (nanos - mLastNanos) * 1e-9;
+        if (!mInitialized || dt > MAX_GAP_SECONDS || dt < 0) {
+            initialize(fix);
+            mStatus = STATUS_INITIALIZED;
+        } else {
+            predict(dt);
+            mStatus = correct(fix);
+        }
+        mLastNanos = nanos;
+        mUpdateCount++;
+        reanchor();
+        fillFiltered(fix);
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).onFilteredFix(fix, mFiltered, mStatus);
+        }
+        return mStatus;
+    }
+
+    private void initialize(FixData fix) {
+        mInitialized = true;
+        mConsecutiveOutliers = 0;
+        mOriginLatitude = fix.getLatitude();
+        mOriginLongitude = fix.getLongitude();
+        mCosLatitude = Math.cos(Math.toRadians(mOriginLatitude));
+        mHasAltitude = !Double.isNaN(fix.getAltitude());
+        mOriginAltitude = mHasAltitude ? fix.getAltitude() : 0;
+        Arrays.fill(mX, 0);
+        Arrays.fill(mP, 0);
+        double h = horizontalSigma(fix);
+        double v = verticalSigma(fix);
+        setVariance(0, h * h);
+        setVariance(1, h * h);
+        setVariance(2, v * v);
+        double speed = fix.getSpeed();
+        double bearing = fix.getBearing();
+        double speedSigma = Float.isNaN(fix.getSpeedAccuracy()) ? DEFAULT_SPEED_SIGMA
+                : fix.getSpeedAccuracy();
+        boolean hasVelocity = !Double.isNaN(speed) && !Double.isNaN(bearing);
+        if (hasVelocity) {
+            mX[VEL] = speed * Math.sin(Math.toRadians(bearing));
+            mX[VEL + 1] = speed * Math.cos(Math.toRadians(bearing));
+        }
+        double vs = hasVelocity ? Math.max(speedSigma, 0.1 * speed) : INITIAL_VELOCITY_SIGMA;
+        for (int axis = 0; axis < 3; axis++) {
+            setVariance(VEL + axis, axis == 2 ? 1 : vs * vs);
+            if (mStates > ACC) {
+                setVariance(ACC + axis, INITIAL_ACCELERATION_SIGMA * INITIAL_ACCELERATION_SIGMA);
+            }
+        }
+    }
+
+    private void setVariance(int i, double variance) {
+        for (int j = 0; j < MAX_STATES; j++) {
+            mP[i * MAX_STATES + j] = 0;
+            mP[j * MAX_STATES + i] = 0;
+        }
+        mP[i * MAX_STATES + i] = variance;
+    }
+
+    /** x = F x, P = F P F^T + Q */
+    private void predict(double dt) {
+        int n = mStates;
+        double[] f = mF;
+        Arrays.fill(f, 0);
+        for (int i = 0; i < n; i++) f[i * MAX_STATES + i] = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            f[axis * MAX_STATES + VEL + axis] = dt;
+            if (n > ACC) {
+                f[axis * MAX_STATES + ACC + axis] = dt * dt / 2;
+                f[(VEL + axis) * MAX_STATES + ACC + axis] = dt;
+            }
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            mX[axis] += dt * mX[VEL + axis];
+            if (n > ACC) {
+                mX[axis] += dt * dt / 2 * mX[ACC + axis];
+                mX[VEL + axis] += dt * mX[ACC + axis];
+            }
+        }
+        // T = F P, then P = T F^T
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double s = 0;
+                for (int k = 0; k < n; k++) {
+                    s += f[i * MAX_STATES + k] * mP[k * MAX_STATES + j];
+                }
+                mTmp[i * MAX_STATES + j] = s;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double s = 0;
+                for (int k = 0; k < n; k++) {
+                    s += mTmp[i * MAX_STATES + k] * f[j * MAX_STATES + k];
+                }
+                mP[i * MAX_STATES + j] = s;
+            }
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            double q = axis == 2 ? mVerticalNoise : mHorizontalNoise;
+            int p = axis;
+            int v = VEL + axis;
+            if (n > ACC) {
+                int a = ACC + axis;
+                double dt2 = dt * dt;
+                double dt3 = dt2 * dt;
+                addNoise(p, p, q * dt3 * dt2 / 20);
+                addNoise(p, v, q * dt2 * dt2 / 8);
+                addNoise(p, a, q * dt3 / 6);
+                addNoise(v, v, q * dt3 / 3);
+                addNoise(v, a, q * dt2 / 2);
+                addNoise(a, a, q * dt);
+            } else {
+                addNoise(p, p, q * dt * dt * dt / 3);
+                addNoise(p, v, q * dt * dt / 2);
+                addNoise(v, v, q * dt);
+            }
+        }
+    }
+
+    private void addNoise(int i, int j, double value) {
+        mP[i * MAX_STATES + j] += value;
+        if (i != j) mP[j * MAX_STATES + i] += value;
+    }
+
+    private int correct(FixData fix) {
+        double dLon = fix.getLongitude() - mOriginLongitude;
+        if (dLon > 180d) dLon -= 360d;
+        else if (dLon < -180d) dLon += 360d;
+        double east = Math.toRadians(dLon) * mCosLatitude * FixStatistics.EARTH_RADIUS_M;
+        double north = Math.toRadians(fix.getLatitude() - mOriginLatitude)
+                * FixStatistics.EARTH_RADIUS_M;
+        double h = horizontalSigma(fix);
+        double v = verticalSigma(fix);
+        boolean hasAltitude = !Double.isNaN(fix.getAltitude());
+        if (hasAltitude && !mHasAltitude) {
+            // First altitude, the up axis starts from it
+            mHasAltitude = true;
+            mOriginAltitude = fix.getAltitude();
+            mX[2] = 0;
+            mX[VEL + 2] = 0;
+            setVariance(2, v * v);
+            setVariance(VEL + 2, 1);
+            if (mStates > ACC) setVariance(ACC + 2, 1);
+        }
+        double up = hasAltitude ? fix.getAltitude() - mOriginAltitude : 0;
+
+        int m = hasAltitude ? 3 : 2;
+        mInnovation[0] = east - mX[0];
+        mInnovation[1] = north - mX[1];
+        mInnovation[2] = up - mX[2];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                mS[i * m + j] = mP[i * MAX_STATES + j];
+            }
+            mS[i * m + i] += i < 2 ? h * h : v * v;
+        }
+        double d2 = mahalanobis(mS, mInnovation, m);
+        mLastMahalanobis = d2;
+        mInnovation95.add(Math.sqrt(mInnovation[0] * mInnovation[0]
+                + mInnovation[1] * mInnovation[1]));
+        if (mGateEnabled && !(d2 <= (m == 3 ? GATE_3D : GATE_2D))) {
+            mOutlierCount++;
+            if (++mConsecutiveOutliers >= MAX_CONSECUTIVE_OUTLIERS) {
+                initialize(fix);
+                mResetCount++;
+                return STATUS_RESET;
+            }
+            return STATUS_OUTLIER;
+        }
+        mConsecutiveOutliers = 0;
+        mNis.add(d2);
+
+        updatePosition(0, east, h * h);
+        updatePosition(1, north, h * h);
+        if (hasAltitude) updatePosition(2, up, v * v);
+        updateVelocity(fix);
+        return STATUS_UPDATED;
+    }
+
+    private void updatePosition(int axis, double z, double r) {
+        Arrays.fill(mH, 0);
+        mH[axis] = 1;
+        update(z - mX[axis], r);
+    }
+
+    /** Speed and bearing as functions of the east and north velocities */
+    private void updateVelocity(FixData fix) {
+        double speed = fix.getSpeed();
+        if (Double.isNaN(speed)) return;
+        double ve = mX[VEL];
+        double vn = mX[VEL + 1];
+        double hs = Math.sqrt(ve * ve + vn * vn);
+        if (hs < MIN_SPEED) return;
+        double speedSigma = Float.isNaN(fix.getSpeedAccuracy()) ? DEFAULT_SPEED_SIGMA
+                : Math.max(fix.getSpeedAccuracy(), 0.1);
+        Arrays.fill(mH, 0);
+        mH[VEL] = ve / hs;
+        mH[VEL + 1] = vn / hs;
+        update(speed - hs, speedSigma * speedSigma);
+
+        double bearing = fix.getBearing();
+        float bearingAccuracy = fix.getBearingAccuracy();
+        if (Double.isNaN(bearing) || Float.isNaN(bearingAccuracy) || speed < MIN_SPEED) return;
+        ve = mX[VEL];
+        vn = mX[VEL + 1];
+        double h2 = ve * ve + vn * vn;
+        if (h2 < MIN_SPEED * MIN_SPEED) return;
+        double innovation = Math.toRadians(bearing) - Math.atan2(ve, vn);
+        innovation = Math.IEEEremainder(innovation, 2 * Math.PI);
+        double sigma = Math.toRadians(Math.max(bearingAccuracy, 1f));
+        Arrays.fill(mH, 0);
+        mH[VEL] = vn / h2;
+        mH[VEL + 1] = -ve / h2;
+        update(innovation, sigma * sigma);
+    }
+
+    /** Scalar update with the row in mH */
+    private void update(double innovation, double r) {
+        int n = mStates;
+        double s = r;
+        for (int i = 0; i < n; i++) {
+            double v = 0;
+            for (int k = 0; k < n; k++) {
+                v += mP[i * MAX_STATES + k] * mH[k];
+            }
+            mPht[i] = v;
+            s += mH[i] * v;
+        }
+        for (int i = 0; i < n; i++) {
+            mX[i] += mPht[i] / s * innovation;
+        }
+        for (int i = 0; i < n; i++) {
+            double k = mPht[i] / s;
+            for (int j = 0; j < n; j++) {
+                mP[i * MAX_STATES + j] -= k * mPht[j];
+            }
+        }
+    }
+
+    /** @return v^T S^-1 v through the Cholesky factor of S, NaN if not positive definite */
+    static double mahalanobis(double[] s, double[] v, int m) {
+        for (int j = 0; j < m; j++) {
+            double d = s[j * m + j];
+            for (int k = 0; k < j; k++) d -= s[j * m + k] * s[j * m + k];
+            if (!(d > 0)) return Double.NaN;
+            d = Math.sqrt(d);
+            s[j * m + j] = d;
+            for (int i = j + 1; i < m; i++) {
+                double x = s[i * m + j];
+                for (int k = 0; k < j; k++) x -= s[i * m + k] * s[j * m + k];
+                s[i * m + j] = x / d;
+            }
+        }
+        // |L^-1 v|^2, v left untouched
+        double y0 = v[0] / s[0];
+        double y1 = (v[1] - s[m] * y0) / s[m + 1];
+        double sum = y0 * y0 + y1 * y1;
+        if (m == 3) {
+            double y2 = (v[2] - s[6] * y0 - s[7] * y1) / s[8];
+            sum += y2 * y2;
+        }
+        return sum;
+    }
+
+    private void reanchor() {
+        if (mX[0] * mX[0] + mX[1] * mX[1] < REANCHOR_METERS * REANCHOR_METERS) return;
+        mOriginLatitude = getLatitude();
+        mOriginLongitude = getLongitude();
+        mCosLatitude = Math.cos(Math.toRadians(mOriginLatitude));
+        mX[0] = 0;
+        mX[1] = 0;
+    }
+
+    private void fillFiltered(FixData fix) {
+        var out = mFiltered;
+        out.setProvider(PROVIDER);
+        out.setTimeMillis(fix.getTimeMillis());
+        out.setElapsedRealtimeNanos(fix.getElapsedRealtimeNanos());
+        out.setLatitude(getLatitude());
+        out.setLongitude(getLongitude());
+        out.setAltitude(mHasAltitude ? mOriginAltitude + mX[2] : Double.NaN);
+        double speed = getSpeed();
+        out.setSpeed((float) speed);
+        out.setBearing(speed >= MIN_SPEED ? (float) getBearing() : Float.NaN);
+        out.setAccuracy((float) (RADIUS_68_SIGMAS * Math.sqrt((variance(0) + variance(1)) / 2)));
+        out.setVerticalAccuracy(mHasAltitude ? (float) Math.sqrt(variance(2)) : Float.NaN);
+        out.setSpeedAccuracy((float) Math.sqrt((variance(VEL) + variance(VEL + 1)) / 2));
+        out.setBearingAccuracy(Float.NaN);
+    }
+
+    private double variance(int i) {
+        return mP[i * MAX_STATES + i];
+    }
+
+    private static double horizontalSigma(FixData fix) {
+        float accuracy = fix.getAccuracy();
+        return (accuracy > 0 ? accuracy : DEFAULT_ACCURACY_M) / RADIUS_68_SIGMAS;
+    }
+
+    private static double verticalSigma(FixData fix) {
+        float accuracy = fix.getVerticalAccuracy();
+        return accuracy > 0 ? accuracy : 2 * DEFAULT_ACCURACY_M;
+    }
+
+    /** @return filtered fix of the last update, reused by the next one */
+    @NonNull
+    public FixData getFiltered() {
+        return mFiltered;
+    }
+
+    /** @return STATUS_* of the last update */
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public double getLatitude() {
+        return mOriginLatitude + Math.toDegrees(mX[1] / FixStatistics.EARTH_RADIUS_M);
+    }
+
+    public double getLongitude() {
+        double longitude = mOriginLongitude
+                + Math.toDegrees(mX[0] / FixStatistics.EARTH_RADIUS_M / mCosLatitude);
+        return longitude > 180d ? longitude - 360d : longitude < -180d ? longitude + 360d : longitude;
+    }
+
+    public double getEastVelocity() {
+        return mX[VEL];
+    }
+
+    public double getNorthVelocity() {
+        return mX[VEL + 1];
+    }
+
+    public double getUpVelocity() {
+        return mX[VEL + 2];
+    }
+
+    public double getSpeed() {
+        return Math.sqrt(mX[VEL] * mX[VEL] + mX[VEL + 1] * mX[VEL + 1]);
+    }
+
+    /** @return degrees clockwise from north, 0 to 360 */
+    public double getBearing() {
+        double bearing = Math.toDegrees(Math.atan2(mX[VEL], mX[VEL + 1]));
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
+
+    /** @return squared Mahalanobis distance of the last position innovation, NaN if none */
+    public double getLastMahalanobis() {
+        return mLastMahalanobis;
+    }
+
+    public long getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    public long getOutlierCount() {
+        return mOutlierCount;
+    }
+
+    public long getResetCount() {
+        return mResetCount;
+    }
+
+    /** @return mean normalized innovation squared of accepted fixes, about 2 or 3 if tuned */
+    public double getMeanNis() {
+        return mNis.getCount() == 0 ? Double.NaN : mNis.getMean();
+    }
+
+    /** @return 95th percentile of the horizontal innovation, meters */
+    public double getInnovation95Meters() {
+        return mInnovation95.getValue();
+    }
+
+    public interface Listener {
+        /** Both holders are only valid during the call */
+        void onFilteredFix(@NonNull FixData raw, @NonNull FixData filtered, int status);
+    }
+}
@@ -0,0 +1,254 @@
+package pos.modetest.core.stats;
+
+import androidx.annotation.NonNull;
+
+import pos.modetest.core.data.FixData;
+
+/**
+ * Streaming accuracy statistics of position fixes and TTFF over repeated runs.
+ * <p>
+ * Fixes are projected to local east/north/up meters around the reference point, or around the
+ * first fix when none is set, in which case errors are taken against the running mean. Every
+ * metric is a {@link RunningStats}, {@link P2Quantile} or {@link Histogram}, so memory and
+ * update cost don't grow with the number of fixes.
+ * <ul>
+ * <li>CEP50 / CEP95: median and 95th percentile of the horizontal error</li>
+ * <li>2DRMS: twice the root mean square horizontal error, exact from the running variances</li>
+ * </ul>
+ * Against the running mean the quantiles see the mean as it was at each fix, so they are only
+ * meaningful once the mean settles.
+ */
+public class FixStatistics {
+    public static final double EARTH_RADIUS_M = 6_371_008.8;
+
+    private final RunningStats mEast = new RunningStats();
+    private final RunningStats mNorth = new RunningStats();
+    private final RunningStats mUp = new RunningStats();
+    private final P2Quantile mCep50 = new P2Quantile(0.50);
+    private final P2Quantile mCep95 = new P2Quantile(0.95);
+    private final P2Quantile mVerticalError50 = new P2Quantile(0.50);
+    private final P2Quantile mVerticalError95 = new P2Quantile(0.95);
+    private final P2Quantile mAccuracy50 = new P2Quantile(0.50);
+    private final P2Quantile mAccuracy95 = new P2Quantile(0.95);
+    private final P2Quantile mVerticalAccuracy50 = new P2Quantile(0.50);
+    private final P2Quantile mVerticalAccuracy95 = new P2Quantile(0.95);
+    // 1 m bins up to 50 m
+    private final Histogram mErrorHistogram = new Histogram(0, 50, 50);
+    private final Histogram mAccuracyHistogram = new Histogram(0, 50, 50);
+
+    private final RunningStats mTtff = new RunningStats();
+    private final P2Quantile mTtff50 = new P2Quantile(0.50);
+    private final P2Quantile mTtff95 = new P2Quantile(0.95);
+    // 5 s bins up to 2 min
+    private final Histogram mTtffHistogram = new Histogram(0, 120, 24);
+
+    private boolean mHasOrigin;
+    private boolean mHasReference;
+    private boolean mHasReferenceAltitude;
+    private double mOriginLatitude;
+    private double mOriginLongitude;
+    private double mOriginAltitude;
+    private double mCosLatitude;
+
+    public void clear() {
+        clearFixes();
+        mTtff.clear();
+        mTtff50.clear();
+        mTtff95.clear();
+        mTtffHistogram.clear();
+    }
+
+    /** Clears the position and accuracy metrics, TTFF and the reference are kept */
+    public void clearFixes() {
+        mEast.clear();
+        mNorth.clear();
+        mUp.clear();
+        mCep50.clear();
+        mCep95.clear();
+        mVerticalError50.clear();
+        mVerticalError95.clear();
+        mAccuracy50.clear();
+        mAccuracy95.clear();
+        mVerticalAccuracy50.clear();
+        mVerticalAccuracy95.clear();
+        mErrorHistogram.clear();
+        mAccuracyHistogram.clear();
+        if (!mHasReference) mHasOrigin = false;
+    }
+
+    /**
+     * Errors are taken against this point from now on, position metrics are cleared.
+     *
+     * @param altitude NaN to take vertical errors against the running mean
+     */
+    public void setReference(double latitude, double longitude, double altitude) {
+        mHasReference = true;
+        mHasReferenceAltitude = !Double.isNaN(altitude);
+        setOrigin(latitude, longitude, altitude);
+        clearFixes();
+    }
+
+    /** Errors are taken against the running mean from now on, position metrics are cleared */
+    public void clearReference() {
+        mHasReference = false;
+        mHasReferenceAltitude = false;
+        clearFixes();
+    }
+
+    public boolean hasReference() {
+        return mHasReference;
+    }
+
+    public void addFix(@NonNull FixData fix) {
+        if (!mHasOrigin) {
+            setOrigin(fix.getLatitude(), fix.getLongitude(), fix.getAltitude());
+        }
+        double dLon = fix.getLongitude() - mOriginLongitude;
+        // Across the antimeridian
+        if (dLon > 180d) dLon -= 360d;
+        else if (dLon < -180d) dLon += 360d;
+        double east = Math.toRadians(dLon) * mCosLatitude * EARTH_RADIUS_M;
+        double north = Math.toRadians(fix.getLatitude() - mOriginLatitude) * EARTH_RADIUS_M;
+        mEast.add(east);
+        mNorth.add(north);
+        if (!mHasReference) {
+            east -= mEast.getMean();
+            north -= mNorth.getMean();
+        }
+        double error = Math.hypot(east, north);
+        mCep50.add(error);
+        mCep95.add(error);
+        mErrorHistogram.add(error);
+
+        double altitude = fix.getAltitude();
+        if (!Double.isNaN(altitude)) {
+            if (Double.isNaN(mOriginAltitude)) mOriginAltitude = altitude;
+            double up = altitude - mOriginAltitude;
+            mUp.add(up);
+            if (!mHasReferenceAltitude) up -= mUp.getMean();
+            mVerticalError50.add(Math.abs(up));
+            mVerticalError95.add(Math.abs(up));
+        }
+
+        mAccuracy50.add(fix.getAccuracy());
+        mAccuracy95.add(fix.getAccuracy());
+        mAccuracyHistogram.add(fix.getAccuracy());
+        mVerticalAccuracy50.add(fix.getVerticalAccuracy());
+        mVerticalAccuracy95.add(fix.getVerticalAccuracy());
+    }
+
+    public void addTtff(long ttffMillis) {
+        double seconds = ttffMillis / 1000d;
+        mTtff.add(seconds);
+        mTtff50.add(seconds);
+        mTtff95.add(seconds);
+        mTtffHistogram.add(seconds);
+    }
+
+    public long getFixCount() {
+        return mEast.getCount();
+    }
+
+    public double getCep50Meters() {
+        return mCep50.getValue();
+    }
+
+    public double getCep95Meters() {
+        return mCep95.getValue();
+    }
+
+    /** @return NaN if no fix */
+    public double get2DrmsMeters() {
+        if (mEast.getCount() == 0) return Double.NaN;
+        double meanSquare = mEast.getVariance() + mNorth.getVariance();
+        if (mHasReference) {
+            double east = mEast.getMean();
+            double north = mNorth.getMean();
+            meanSquare += east * east + north * north;
+        }
+        return 2d * Math.sqrt(meanSquare);
+    }
+
+    public double getVerticalError50Meters() {
+        return mVerticalError50.getValue();
+    }
+
+    public double getVerticalError95Meters() {
+        return mVerticalError95.getValue();
+    }
+
+    /** @return horizontal standard deviation around the mean, NaN if no fix */
+    public double getHorizontalStdDevMeters() {
+        return Math.sqrt(mEast.getVariance() + mNorth.getVariance());
+    }
+
+    public double getMeanLatitude() {
+        return mOriginLatitude + Math.toDegrees(mNorth.getMean() / EARTH_RADIUS_M);
+    }
+
+    public double getMeanLongitude() {
+        double longitude = mOriginLongitude
+                + Math.toDegrees(mEast.getMean() / EARTH_RADIUS_M / mCosLatitude);
+        return longitude > 180d ? longitude - 360d : longitude < -180d ? longitude + 360d : longitude;
+    }
+
+    public double getMeanAltitude() {
+        return mOriginAltitude + mUp.getMean();
+    }
+
+    public double getAccuracy50Meters() {
+        return mAccuracy50.getValue();
+    }
+
+    public double getAccuracy95Meters() {
+        return mAccuracy95.getValue();
+    }
+
+    public double getVerticalAccuracy50Meters() {
+        return mVerticalAccuracy50.getValue();
+    }
+
+    public double getVerticalAccuracy95Meters() {
+        return mVerticalAccuracy95.getValue();
+    }
+
+    @NonNull
+    public Histogram getErrorHistogram() {
+        return mErrorHistogram;
+    }
+
+    @NonNull
+    public Histogram getAccuracyHistogram() {
+        return mAccuracyHistogram;
+    }
+
+    public long getTtffCount() {
+        return mTtff.getCount();
+    }
+
+    @NonNull
+    public RunningStats getTtffSeconds() {
+        return mTtff;
+    }
+
+    public double getTtff50Seconds() {
+        return mTtff50.getValue();
+    }
+
+    public double getTtff95Seconds() {
+        return mTtff95.getValue();
+    }
+
+    @NonNull
+    public Histogram getTtffHistogram() {
+        return mTtffHistogram;
+    }
+
+    private void setOrigin(double latitude, double longitude, double altitude) {
+        mHasOrigin = true;
+        mOriginLatitude = latitude;
+        mOriginLongitude = longitude;
+        mOriginAltitude = altitude;
+        mCosLatitude = Math.cos(Math.toRadians(latitude));
+    }
+}
@@ -0,0 +1,107 @@
+package pos.modetest.core.stats;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+import pos.modetest.core.data.FixFormat;
+
+/**
+ * Display strings of {@link FixStatistics}, missing values are shown as
+ * {@link FixFormat#EMPTY_TEXT}.
+ */
+public class FixStatsFormat {
+    private static final int HISTOGRAM_BAR_WIDTH = 20;
+
+    private FixStatsFormat() {
+    }
+
+    /** Few lines for the stats panel */
+    @NonNull
+    public static String formatSummary(@NonNull FixStatistics stats) {
+        return String.format(Locale.getDefault(), "Fixes: %d (vs %s)",
+                stats.getFixCount(), stats.hasReference() ? "reference" : "mean")
+                + "\nCEP50/95: " + format(stats.getCep50Meters()) + " / "
+                + format(stats.getCep95Meters()) + " m, 2DRMS: "
+                + format(stats.get2DrmsMeters()) + " m"
+                + "\nVert. err 50/95: " + format(stats.getVerticalError50Meters()) + " / "
+                + format(stats.getVerticalError95Meters()) + " m"
+                + "\nAcc. H 50/95: " + format(stats.getAccuracy50Meters()) + " / "
+                + format(stats.getAccuracy95Meters()) + " m, V 50/95: "
+                + format(stats.getVerticalAccuracy50Meters()) + " / "
+                + format(stats.getVerticalAccuracy95Meters()) + " m"
+                + String.format(Locale.getDefault(), "\nTTFF 50/95: %s / %s s (%d runs)",
+                format(stats.getTtff50Seconds()), format(stats.getTtff95Seconds()),
+                stats.getTtffCount());
+    }
+
+    /** Summary, mean position and the histograms, for a monospace dialog */
+    @NonNull
+    public static String formatReport(@NonNull FixStatistics stats) {
+        var ttff = stats.getTtffSeconds();
+        var sb = new StringBuilder(formatSummary(stats));
+        if (stats.getFixCount() > 0) {
+            sb.append(String.format(Locale.getDefault(), "\nMean: %.08f, %.08f, %s m",
+                    stats.getMeanLatitude(), stats.getMeanLongitude(),
+                    format(stats.getMeanAltitude())));
+            sb.append("\nH std dev: ").append(format(stats.getHorizontalStdDevMeters()))
+                    .append(" m");
+        }
+        if (ttff.getCount() > 0) {
+            sb.append("\nTTFF mean/min/max: ").append(format(ttff.getMean())).append(" / ")
+                    .append(format(ttff.getMin())).append(" / ").append(format(ttff.getMax()))
+                    .append(" s");
+        }
+        sb.append("\n\nHorizontal error (m)\n").append(formatHistogram(stats.getErrorHistogram()));
+        sb.append("\nHorizontal accuracy (m)\n")
+                .append(formatHistogram(stats.getAccuracyHistogram()));
+        sb.append("\nTTFF (s)\n").append(formatHistogram(stats.getTtffHistogram()));
+        return sb.toString();
+    }
+
+    /** One line per non-empty bin with a bar scaled to the largest one */
+    @NonNull
+    public static String formatHistogram(@NonNull Histogram histogram) {
+        long max = Math.max(histogram.getUnderflowCount(), histogram.getOverflowCount());
+        for (int i = 0; i < histogram.getBinCount(); i++) {
+            max = Math.max(max, histogram.getCount(i));
+        }
+        if (max == 0) return FixFormat.EMPTY_TEXT + "\n";
+        var sb = new StringBuilder();
+        double width = histogram.getBinWidth();
+        if (histogram.getUnderflowCount() > 0) {
+            appendBin(sb, String.format(Locale.getDefault(), "%7s", "<" + trim(
+                    histogram.getBinStart(0))), histogram.getUnderflowCount(), max);
+        }
+        for (int i = 0; i < histogram.getBinCount(); i++) {
+            long count = histogram.getCount(i);
+            if (count == 0) continue;
+            double start = histogram.getBinStart(i);
+            appendBin(sb, String.format(Locale.getDefault(), "%3s-%-3s", trim(start),
+                    trim(start + width)), count, max);
+        }
+        if (histogram.getOverflowCount() > 0) {
+            appendBin(sb, String.format(Locale.getDefault(), "%7s", ">=" + trim(
+                    histogram.getBinStart(histogram.getBinCount()))),
+                    histogram.getOverflowCount(), max);
+        }
+        return sb.toString();
+    }
+
+    private static void appendBin(StringBuilder sb, String label, long count, long max) {
+        int bar = (int) Math.max(1, Math.round(HISTOGRAM_BAR_WIDTH * (double) count / max));
+        sb.append(label).append(' ').append("#".repeat(bar)).append(' ').append(count)
+                .append('\n');
+    }
+
+    private static String trim(double value) {
+        return value == Math.rint(value)
+                ? String.format(Locale.getDefault(), "%d", (long) value)
+                : String.format(Locale.getDefault(), "%.1f", value);
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) return FixFormat.EMPTY_TEXT;
+        return String.format(Locale.getDefault(), "%.02f", value);
+    }
+}
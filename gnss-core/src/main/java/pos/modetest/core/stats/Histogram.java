@@ -0,0 +1,77 @@
+package pos.modetest.core.stats;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-width bins over [min, max), values outside go to the underflow and overflow counts.
+ * NaN values are ignored.
+ */
+public class Histogram {
+    private final double mMin;
+    private final double mBinWidth;
+    private final long[] mCounts;
+    private long mUnderflow;
+    private long mOverflow;
+    private long mTotal;
+
+    public Histogram(double min, double max, int binCount) {
+        if (!(max > min) || binCount <= 0) {
+            throw new IllegalArgumentException("Bad histogram range: " + min + ".." + max
+                    + " / " + binCount);
+        }
+        mMin = min;
+        mBinWidth = (max - min) / binCount;
+        mCounts = new long[binCount];
+    }
+
+    public void clear() {
+        Arrays.fill(mCounts, 0);
+        mUnderflow = 0;
+        mOverflow = 0;
+        mTotal = 0;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        mTotal++;
+        if (value < mMin) {
+            mUnderflow++;
+            return;
+        }
+        double bin = (value - mMin) / mBinWidth;
+        if (bin >= mCounts.length) {
+            mOverflow++;
+        } else {
+            mCounts[(int) bin]++;
+        }
+    }
+
+    public int getBinCount() {
+        return mCounts.length;
+    }
+
+    public double getBinStart(int bin) {
+        return mMin + bin * mBinWidth;
+    }
+
+    public double getBinWidth() {
+        return mBinWidth;
+    }
+
+    public long getCount(int bin) {
+        return mCounts[bin];
+    }
+
+    public long getUnderflowCount() {
+        return mUnderflow;
+    }
+
+    public long getOverflowCount() {
+        return mOverflow;
+    }
+
+    /** @return all values added, including under and overflow */
+    public long getTotalCount() {
+        return mTotal;
+    }
+}
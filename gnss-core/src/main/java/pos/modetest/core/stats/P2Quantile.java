@@ -0,0 +1,122 @@
+package pos.modetest.core.stats;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of one quantile with the P² algorithm (Jain and Chlamtac, 1985).
+ * <p>
+ * Five markers track the minimum, the quantile, the maximum and two midpoints, and are moved
+ * with a piecewise parabolic fit as values arrive, so memory and update cost are constant.
+ * Up to five values the result is exact. NaN values are ignored.
+ */
+public class P2Quantile {
+    private static final int MARKERS = 5;
+
+    private final double mQuantile;
+    private final double[] mHeights = new double[MARKERS];
+    private final double[] mPositions = new double[MARKERS];
+    private final double[] mDesired = new double[MARKERS];
+    private final double[] mIncrements;
+    private final double[] mScratch = new double[MARKERS];
+    private long mCount;
+
+    /** @param quantile in (0, 1), e.g. 0.95 */
+    public P2Quantile(double quantile) {
+        if (!(quantile > 0d && quantile < 1d)) {
+            throw new IllegalArgumentException("Quantile out of (0, 1): " + quantile);
+        }
+        mQuantile = quantile;
+        mIncrements = new double[]{0d, quantile / 2d, quantile, (1d + quantile) / 2d, 1d};
+        clear();
+    }
+
+    public void clear() {
+        mCount = 0;
+        for (int i = 0; i < MARKERS; i++) {
+            mPositions[i] = i + 1;
+        }
+        mDesired[0] = 1d;
+        mDesired[1] = 1d + 2d * mQuantile;
+        mDesired[2] = 1d + 4d * mQuantile;
+        mDesired[3] = 3d + 2d * mQuantile;
+        mDesired[4] = 5d;
+    }
+
+    public double getQuantile() {
+        return mQuantile;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (mCount < MARKERS) {
+            mHeights[(int) mCount++] = value;
+            if (mCount == MARKERS) Arrays.sort(mHeights);
+            return;
+        }
+        mCount++;
+
+        int cell;
+        if (value < mHeights[0]) {
+            mHeights[0] = value;
+            cell = 0;
+        } else if (value >= mHeights[4]) {
+            mHeights[4] = value;
+            cell = 3;
+        } else {
+            cell = 0;
+            while (cell < 3 && value >= mHeights[cell + 1]) cell++;
+        }
+        for (int i = cell + 1; i < MARKERS; i++) {
+            mPositions[i]++;
+        }
+        for (int i = 0; i < MARKERS; i++) {
+            mDesired[i] += mIncrements[i];
+        }
+
+        for (int i = 1; i < MARKERS - 1; i++) {
+            double d = mDesired[i] - mPositions[i];
+            if ((d >= 1d && mPositions[i + 1] - mPositions[i] > 1d)
+                    || (d <= -1d && mPositions[i - 1] - mPositions[i] < -1d)) {
+                int s = d > 0 ? 1 : -1;
+                double height = parabolic(i, s);
+                if (mHeights[i - 1] < height && height < mHeights[i + 1]) {
+                    mHeights[i] = height;
+                } else {
+                    mHeights[i] = linear(i, s);
+                }
+                mPositions[i] += s;
+            }
+        }
+    }
+
+    /** @return the estimate, NaN if empty */
+    public double getValue() {
+        if (mCount == 0) return Double.NaN;
+        if (mCount >= MARKERS) return mHeights[2];
+        // Too few for the markers, interpolated between the sorted values
+        int n = (int) mCount;
+        System.arraycopy(mHeights, 0, mScratch, 0, n);
+        Arrays.sort(mScratch, 0, n);
+        double rank = mQuantile * (n - 1);
+        int low = (int) rank;
+        int high = Math.min(low + 1, n - 1);
+        return mScratch[low] + (mScratch[high] - mScratch[low]) * (rank - low);
+    }
+
+    private double parabolic(int i, int s) {
+        double n0 = mPositions[i - 1];
+        double n1 = mPositions[i];
+        double n2 = mPositions[i + 1];
+        return mHeights[i] + s / (n2 - n0)
+                * ((n1 - n0 + s) * (mHeights[i + 1] - mHeights[i]) / (n2 - n1)
+                + (n2 - n1 - s) * (mHeights[i] - mHeights[i - 1]) / (n1 - n0));
+    }
+
+    private double linear(int i, int s) {
+        return mHeights[i] + s * (mHeights[i + s] - mHeights[i]) / (mPositions[i + s] - mPositions[i]);
+    }
+}
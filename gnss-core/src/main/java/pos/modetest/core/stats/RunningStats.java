@@ -0,0 +1,66 @@
+package pos.modetest.core.stats;
+
+/**
+ * Count, mean, variance, min and max of a stream, updated in O(1) with Welford's algorithm.
+ * NaN values are ignored.
+ */
+public class RunningStats {
+    private long mCount;
+    private double mMean;
+    private double mM2;
+    private double mMin;
+    private double mMax;
+
+    public RunningStats() {
+        clear();
+    }
+
+    public void clear() {
+        mCount = 0;
+        mMean = 0d;
+        mM2 = 0d;
+        mMin = Double.NaN;
+        mMax = Double.NaN;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        mCount++;
+        double delta = value - mMean;
+        mMean += delta / mCount;
+        mM2 += delta * (value - mMean);
+        mMin = mCount == 1 ? value : Math.min(mMin, value);
+        mMax = mCount == 1 ? value : Math.max(mMax, value);
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    /** @return NaN if empty */
+    public double getMean() {
+        return mCount > 0 ? mMean : Double.NaN;
+    }
+
+    /** @return population variance, NaN if empty */
+    public double getVariance() {
+        return mCount > 0 ? mM2 / mCount : Double.NaN;
+    }
+
+    /** @return sample variance, NaN below 2 values */
+    public double getSampleVariance() {
+        return mCount > 1 ? mM2 / (mCount - 1) : Double.NaN;
+    }
+
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return mMin;
+    }
+
+    public double getMax() {
+        return mMax;
+    }
+}
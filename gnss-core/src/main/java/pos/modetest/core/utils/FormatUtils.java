@@ -1,4 +1,4 @@
-package pos.modetest.utils;
+package pos.modetest.core.utils;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
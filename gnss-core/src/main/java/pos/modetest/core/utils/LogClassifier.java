@@ -0,0 +1,89 @@
+package pos.modetest.core.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies log lines against an ordered list of regular expressions, the first matching
+ * expression wins and its index is the category of the line.
+ * <p>
+ * Expressions use {@link String#matches(String)} semantics. They are compiled once, a leading
+ * or trailing {@code .*} is turned into an unanchored search and {@code .*literal.*} is
+ * reduced to {@link String#indexOf(String)}, so each line is checked once per expression
+ * instead of being matched from scratch.
+ * <p>
+ * Not thread safe, matchers are reused between calls.
+ */
+public class LogClassifier {
+    public static final int NO_MATCH = -1;
+
+    private static final String WILDCARD = ".*";
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+    // Per expression either a literal to search or a matcher
+    private final String[] mLiterals;
+    private final Matcher[] mMatchers;
+
+    /**
+     * @param regexes in order of priority, top level alternations should be grouped
+     */
+    public LogClassifier(@NonNull List<String> regexes) {
+        if (regexes.isEmpty()) {
+            throw new IllegalArgumentException("no regexes");
+        }
+        int count = regexes.size();
+        mLiterals = new String[count];
+        mMatchers = new Matcher[count];
+        for (int i = 0; i < count; i++) {
+            String regex = regexes.get(i);
+            boolean leading = regex.startsWith(WILDCARD);
+            boolean trailing = regex.endsWith(WILDCARD) && regex.length() >= (leading ? 4 : 2)
+                    && !isEscaped(regex, regex.length() - WILDCARD.length());
+            String body = regex.substring(leading ? WILDCARD.length() : 0,
+                    trailing ? regex.length() - WILDCARD.length() : regex.length());
+            if (leading && trailing && isLiteral(body)) {
+                mLiterals[i] = body;
+            } else {
+                mMatchers[i] = Pattern.compile((leading ? "" : "^") + "(?:" + body + ")"
+                        + (trailing ? "" : "\\z")).matcher("");
+            }
+        }
+    }
+
+    public int getCategoryCount() {
+        return mMatchers.length;
+    }
+
+    /** @return index of the first matching regex or {@link #NO_MATCH} */
+    public int classify(@NonNull String line) {
+        for (int i = 0; i < mMatchers.length; i++) {
+            boolean found = mLiterals[i] != null
+                    ? line.contains(mLiterals[i])
+                    : mMatchers[i].reset(line).find();
+            if (found) {
+                return i;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private static boolean isLiteral(String body) {
+        for (int i = 0; i < body.length(); i++) {
+            if (META_CHARS.indexOf(body.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEscaped(String regex, int index) {
+        int slashes = 0;
+        for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+            slashes++;
+        }
+        return slashes % 2 == 1;
+    }
+}
@@ -0,0 +1,146 @@
+package pos.modetest.core.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed capacity buffer of log lines for a single writer thread and any number of readers.
+ * <p>
+ * Every appended line gets a sequence number (starting from 0) and is stored once in a shared
+ * ring. Each category keeps its own ring of sequence numbers pointing into the shared one, so
+ * filtered views don't duplicate lines. Once the buffer is full the oldest lines are overwritten.
+ * <p>
+ * Readers never block the writer: lines overwritten while being read are skipped.
+ */
+public class LogRingBuffer {
+    private final int mCapacity;
+    private final Entry[] mEntries;
+    private final CategoryIndex[] mCategories;
+
+    // Next sequence number, published after the entry is stored
+    private volatile long mHead;
+
+    public LogRingBuffer(int capacity, int categoryCount) {
+        if (capacity <= 0 || categoryCount <= 0) {
+            throw new IllegalArgumentException("capacity and categoryCount should be positive");
+        }
+        mCapacity = capacity;
+        mEntries = new Entry[capacity];
+        mCategories = new CategoryIndex[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            mCategories[i] = new CategoryIndex(capacity);
+        }
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /** Must only be called from the writer thread */
+    public long append(int category, @NonNull String line) {
+        long seq = mHead;
+        mEntries[index(seq)] = new Entry(seq, line);
+        mCategories[category].append(seq);
+        mHead = seq + 1;
+        return seq;
+    }
+
+    /** Total number of lines appended, which is also the sequence number of the next line */
+    public long getCount() {
+        return mHead;
+    }
+
+    /** Total number of lines appended for the category */
+    public long getCount(int category) {
+        return mCategories[category].mCount;
+    }
+
+    /**
+     * Adds lines with sequence number >= {@code since} that are still buffered to {@code out}.
+     *
+     * @return the sequence number to pass to the next call
+     */
+    public long readSince(long since, @NonNull List<String> out) {
+        long head = mHead;
+        long from = Math.max(Math.max(since, head - mCapacity), 0);
+        for (long seq = from; seq < head; seq++) {
+            Entry e = mEntries[index(seq)];
+            if (e == null || e.mSeq != seq) continue; // overwritten meanwhile
+            out.add(e.mLine);
+        }
+        return head;
+    }
+
+    /**
+     * Same as {@link #readSince(long, List)} but only for lines of the category.
+     * {@code since} is a sequence number of the shared buffer.
+     */
+    public long readSince(int category, long since, @NonNull List<String> out) {
+        long head = mHead;
+        CategoryIndex index = mCategories[category];
+        long count = index.mCount;
+        long lowest = Math.max(count - mCapacity, 0);
+        long k = count;
+        // walk back to the first index entry at or after since
+        while (k > lowest && index.mSeqs.get(index(k - 1)) >= since) {
+            k--;
+        }
+        long last = since - 1;
+        for (; k < count; k++) {
+            long seq = index.mSeqs.get(index(k));
+            // skip index entries overwritten meanwhile or newer than head
+            if (seq <= last || seq >= head) continue;
+            Entry e = mEntries[index(seq)];
+            if (e == null || e.mSeq != seq) continue;
+            out.add(e.mLine);
+            last = seq;
+        }
+        return head;
+    }
+
+    @NonNull
+    public List<String> snapshot() {
+        List<String> out = new ArrayList<>(mCapacity);
+        readSince(0, out);
+        return out;
+    }
+
+    @NonNull
+    public List<String> snapshot(int category) {
+        List<String> out = new ArrayList<>();
+        readSince(category, 0, out);
+        return out;
+    }
+
+    private int index(long seq) {
+        return (int) (seq % mCapacity);
+    }
+
+    private static final class Entry {
+        final long mSeq;
+        final String mLine;
+
+        Entry(long seq, String line) {
+            mSeq = seq;
+            mLine = line;
+        }
+    }
+
+    private static final class CategoryIndex {
+        final AtomicLongArray mSeqs;
+        volatile long mCount;
+
+        CategoryIndex(int capacity) {
+            mSeqs = new AtomicLongArray(capacity);
+        }
+
+        void append(long seq) {
+            long k = mCount;
+            mSeqs.set((int) (k % mSeqs.length()), seq);
+            mCount = k + 1;
+        }
+    }
+}
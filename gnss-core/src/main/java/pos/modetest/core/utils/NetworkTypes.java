@@ -0,0 +1,87 @@
+package pos.modetest.core.utils;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Display strings of telephony network types.
+ * <p>
+ * Values are the ones of android.telephony.TelephonyManager.NETWORK_TYPE_*,
+ * TelephonyDisplayInfo.OVERRIDE_NETWORK_TYPE_* and TelephonyManager.DATA_ACTIVITY_*.
+ */
+public class NetworkTypes {
+    public static final int NETWORK_TYPE_GPRS = 1;
+    public static final int NETWORK_TYPE_EDGE = 2;
+    public static final int NETWORK_TYPE_UMTS = 3;
+    public static final int NETWORK_TYPE_CDMA = 4;
+    public static final int NETWORK_TYPE_EVDO_0 = 5;
+    public static final int NETWORK_TYPE_EVDO_A = 6;
+    public static final int NETWORK_TYPE_1xRTT = 7;
+    public static final int NETWORK_TYPE_HSDPA = 8;
+    public static final int NETWORK_TYPE_HSUPA = 9;
+    public static final int NETWORK_TYPE_HSPA = 10;
+    public static final int NETWORK_TYPE_IDEN = 11;
+    public static final int NETWORK_TYPE_EVDO_B = 12;
+    public static final int NETWORK_TYPE_LTE = 13;
+    public static final int NETWORK_TYPE_EHRPD = 14;
+    public static final int NETWORK_TYPE_HSPAP = 15;
+    public static final int NETWORK_TYPE_GSM = 16;
+    public static final int NETWORK_TYPE_TD_SCDMA = 17;
+    public static final int NETWORK_TYPE_IWLAN = 18;
+    public static final int NETWORK_TYPE_NR = 20;
+
+    public static final int OVERRIDE_NETWORK_TYPE_LTE_CA = 1;
+    public static final int OVERRIDE_NETWORK_TYPE_LTE_ADVANCED_PRO = 2;
+    public static final int OVERRIDE_NETWORK_TYPE_NR_NSA = 3;
+    public static final int OVERRIDE_NETWORK_TYPE_NR_ADVANCED = 5;
+
+    public static final int DATA_ACTIVITY_IN = 1;
+    public static final int DATA_ACTIVITY_OUT = 2;
+    public static final int DATA_ACTIVITY_INOUT = 3;
+    public static final int DATA_ACTIVITY_DORMANT = 4;
+
+    private NetworkTypes() {
+    }
+
+    @NonNull
+    public static String getNetworkTypeString(int networkType, int overrideNetworkType) {
+        return switch (networkType) {
+            case NETWORK_TYPE_GPRS -> "GPRS";
+            case NETWORK_TYPE_EDGE -> "EDGE";
+            case NETWORK_TYPE_UMTS -> "UMTS";
+            case NETWORK_TYPE_CDMA -> "CDMA";
+            case NETWORK_TYPE_EVDO_0 -> "EVDO_0";
+            case NETWORK_TYPE_EVDO_A -> "EVDO_A";
+            case NETWORK_TYPE_1xRTT -> "1xRTT";
+            case NETWORK_TYPE_HSDPA -> "HSDPA";
+            case NETWORK_TYPE_HSUPA -> "HSUPA";
+            case NETWORK_TYPE_HSPA -> "HSPA";
+            case NETWORK_TYPE_IDEN -> "IDEN";
+            case NETWORK_TYPE_EVDO_B -> "EVDO_B";
+            case NETWORK_TYPE_LTE -> switch (overrideNetworkType) {
+                case OVERRIDE_NETWORK_TYPE_LTE_CA -> "LTE_CA";
+                case OVERRIDE_NETWORK_TYPE_LTE_ADVANCED_PRO -> "LTE_ADV_PRO";
+                case OVERRIDE_NETWORK_TYPE_NR_NSA -> "NR_NSA";
+                case OVERRIDE_NETWORK_TYPE_NR_ADVANCED -> "NR_ADVANCED";
+                default -> "LTE";
+            };
+            case NETWORK_TYPE_EHRPD -> "EHRPD";
+            case NETWORK_TYPE_HSPAP -> "HSPAP";
+            case NETWORK_TYPE_GSM -> "GSM";
+            case NETWORK_TYPE_TD_SCDMA -> "TD_SCDMA";
+            case NETWORK_TYPE_IWLAN -> "IWLAN";
+            case NETWORK_TYPE_NR -> "NR";
+            default -> "UNKNOWN";
+        };
+    }
+
+    @NonNull
+    public static String getDataActivityString(int direction) {
+        return switch (direction) {
+            case DATA_ACTIVITY_IN -> " ↓";
+            case DATA_ACTIVITY_OUT -> "↑ ";
+            case DATA_ACTIVITY_INOUT -> "⇅";
+            case DATA_ACTIVITY_DORMANT -> "~";
+            default -> "-"; // -
+        };
+    }
+}
@@ -0,0 +1,208 @@
+package pos.modetest.core.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs external commands without blocking the caller.
+ * <p>
+ * stdout and stderr are drained concurrently while the process runs, so large outputs such as
+ * dumpsys never stall on a full pipe. The timeout is a wall-clock deadline from start: the
+ * process is killed and the result completes with what was read so far.
+ */
+public class ProcessRunner {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final ProcessRunner DEFAULT = new ProcessRunner();
+
+    private final ExecutorService mDrainExecutor;
+    private final ScheduledExecutorService mDeadlineExecutor;
+
+    public ProcessRunner() {
+        var threadCount = new AtomicInteger();
+        mDrainExecutor = Executors.newCachedThreadPool(r -> {
+            var t = new Thread(r, "ProcessRunner-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        mDeadlineExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var t = new Thread(r, "ProcessRunner-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Shared runner for one-shot commands */
+    @NonNull
+    public static ProcessRunner getDefault() {
+        return DEFAULT;
+    }
+
+    @NonNull
+    public CompletableFuture<Result> run(@NonNull String[] args, long timeoutMs) {
+        return run(args, timeoutMs, null);
+    }
+
+    /**
+     * @param consumer receives stdout as it arrives, on a drain thread
+     * @return completes with the result, or exceptionally if the process can't be started
+     */
+    @NonNull
+    public CompletableFuture<Result> run(@NonNull String[] args, long timeoutMs,
+                                         @Nullable ChunkConsumer consumer) {
+        var future = new CompletableFuture<Result>();
+        long startNanos = System.nanoTime();
+        Process p;
+        try {
+            p = new ProcessBuilder(args).start();
+            p.getOutputStream().close();
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        var out = new ByteSink();
+        var err = new ByteSink();
+        // Claimed by the first of the deadline and the drains, the kill makes the drains end
+        var settled = new AtomicBoolean();
+        ScheduledFuture<?> deadline = mDeadlineExecutor.schedule(() -> {
+            if (!settled.compareAndSet(false, true)) return;
+            p.destroyForcibly();
+            future.complete(new Result(args, Result.EXIT_TIMEOUT, out.toByteArray(),
+                    err.toByteArray(), true, System.nanoTime() - startNanos));
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        var outDrain = CompletableFuture.runAsync(
+                () -> drain(p.getInputStream(), out, consumer), mDrainExecutor);
+        var errDrain = CompletableFuture.runAsync(
+                () -> drain(p.getErrorStream(), err, null), mDrainExecutor);
+        CompletableFuture.allOf(outDrain, errDrain).whenCompleteAsync((v, e) -> {
+            if (future.isDone()) return;
+            try {
+                // Both pipes are closed so the process is exiting
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs)
+                        - (System.nanoTime() - startNanos);
+                if (!p.waitFor(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS)) {
+                    return; // left to the deadline
+                }
+                if (!settled.compareAndSet(false, true)) return; // killed at the deadline
+                deadline.cancel(false);
+                if (e != null) {
+                    future.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+                    return;
+                }
+                future.complete(new Result(args, p.exitValue(), out.toByteArray(),
+                        err.toByteArray(), false, System.nanoTime() - startNanos));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(ie);
+            }
+        }, mDrainExecutor);
+        return future;
+    }
+
+    private static void drain(InputStream in, ByteSink sink, @Nullable ChunkConsumer consumer) {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try (in) {
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                sink.write(chunk, n);
+                if (consumer != null) {
+                    consumer.onChunk(chunk, n);
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed by destroyForcibly(), keep what was read
+        }
+    }
+
+    public interface ChunkConsumer {
+        /** chunk is reused after return */
+        void onChunk(@NonNull byte[] chunk, int length);
+    }
+
+    /** Growable byte array, written by one drain thread and read by the completing thread */
+    private static class ByteSink {
+        private byte[] mData = new byte[CHUNK_SIZE];
+        private int mSize;
+
+        synchronized void write(byte[] buf, int length) {
+            if (mSize + length > mData.length) {
+                mData = Arrays.copyOf(mData, Math.max(mData.length * 2, mSize + length));
+            }
+            System.arraycopy(buf, 0, mData, mSize, length);
+            mSize += length;
+        }
+
+        synchronized byte[] toByteArray() {
+            return Arrays.copyOf(mData, mSize);
+        }
+    }
+
+    public static class Result {
+        public static final int EXIT_TIMEOUT = -1;
+
+        private final String[] mArgs;
+        private final int mExitCode;
+        private final byte[] mStdout;
+        private final byte[] mStderr;
+        private final boolean mTimedOut;
+        private final long mElapsedNanos;
+
+        Result(String[] args, int exitCode, byte[] stdout, byte[] stderr, boolean timedOut,
+               long elapsedNanos) {
+            mArgs = args;
+            mExitCode = exitCode;
+            mStdout = stdout;
+            mStderr = stderr;
+            mTimedOut = timedOut;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        @NonNull
+        public String getCommand() {
+            return String.join(" ", mArgs);
+        }
+
+        /** @return process exit code, {@link #EXIT_TIMEOUT} if killed at the deadline */
+        public int getExitCode() {
+            return mExitCode;
+        }
+
+        public boolean isTimedOut() {
+            return mTimedOut;
+        }
+
+        public boolean isSuccess() {
+            return !mTimedOut && mExitCode == 0 && mStderr.length == 0;
+        }
+
+        public long getElapsedNanos() {
+            return mElapsedNanos;
+        }
+
+        public int getStdoutSize() {
+            return mStdout.length;
+        }
+
+        @NonNull
+        public String getStdout() {
+            return new String(mStdout, StandardCharsets.UTF_8);
+        }
+
+        @NonNull
+        public String getStderr() {
+            return new String(mStderr, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package pos.modetest.core.campaign;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import pos.modetest.core.data.FixData;
+
+public class TtffCampaignTest {
+    private static final String[] COLD = {"all"};
+
+    /** Stand-in of LocationObserver and the service handler, with a manual clock */
+    private static class FakeHost implements TtffCampaign.Host {
+        final List<String> calls = new ArrayList<>();
+        long nowMillis;
+        long timerAtMillis = -1;
+        boolean locating;
+
+        @Override
+        public void deleteAidingData(@NonNull String[] items) {
+            calls.add("delete:" + String.join("|", items));
+        }
+
+        @Override
+        public void startLocating(boolean single) {
+            assertFalse("Started twice", locating);
+            locating = true;
+            calls.add(single ? "start:single" : "start:track");
+        }
+
+        @Override
+        public void stopLocating() {
+            locating = false;
+            calls.add("stop");
+        }
+
+        @Override
+        public void scheduleTimer(long delayMillis) {
+            timerAtMillis = nowMillis + delayMillis;
+        }
+
+        @Override
+        public void cancelTimer() {
+            timerAtMillis = -1;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return nowMillis;
+        }
+
+        /** Advances the clock, firing the timer if it is due */
+        void advance(TtffCampaign campaign, long millis) {
+            long target = nowMillis + millis;
+            while (timerAtMillis >= 0 && timerAtMillis <= target) {
+                nowMillis = timerAtMillis;
+                timerAtMillis = -1;
+                campaign.onTimer();
+            }
+            nowMillis = target;
+        }
+    }
+
+    private static class RecordingListener implements TtffCampaign.Listener {
+        final List<TtffCampaign.State> states = new ArrayList<>();
+        final List<TtffCampaign.Result> results = new ArrayList<>();
+
+        @Override
+        public void onStateChanged(@NonNull TtffCampaign.State state) {
+            states.add(state);
+        }
+
+        @Override
+        public void onIterationDone(@NonNull TtffCampaign.Result result) {
+            results.add(result);
+        }
+    }
+
+    private static FixData fix(float accuracy) {
+        var fix = new FixData();
+        fix.setLatitude(35.6812);
+        fix.setLongitude(139.7671);
+        fix.setAccuracy(accuracy);
+        return fix;
+    }
+
+    private static TtffCampaign newCampaign(FakeHost host, RecordingListener listener,
+                                            int iterations) {
+        var campaign = new TtffCampaign(host, listener);
+        campaign.setIterations(iterations);
+        campaign.setAidingData(COLD);
+        campaign.setSettleMillis(5_000);
+        campaign.setTimeoutMillis(60_000);
+        campaign.setCoolDownMillis(10_000);
+        return campaign;
+    }
+
+    @Test
+    public void test_iterations() {
+        var host = new FakeHost();
+        var listener = new RecordingListener();
+        var campaign = newCampaign(host, listener, 3);
+        campaign.start();
+        assertEquals(TtffCampaign.State.SETTLING, campaign.getState());
+        assertEquals(List.of("delete:all"), host.calls);
+
+        // 1: fix after 30 s
+        host.advance(campaign, 5_000);
+        assertEquals(TtffCampaign.State.WAITING_FIX, campaign.getState());
+        assertTrue(host.locating);
+        host.advance(campaign, 30_000);
+        campaign.onFirstFix(30_000);
+        assertEquals(TtffCampaign.State.WAITING_FIX, campaign.getState());
+        campaign.onLocation(fix(4f));
+        assertEquals(TtffCampaign.State.COOL_DOWN, campaign.getState());
+        assertFalse(host.locating);
+
+        // 2: no fix within the timeout, the late fix is ignored
+        host.advance(campaign, 10_000 + 5_000);
+        assertEquals(2, campaign.getIteration());
+        host.advance(campaign, 60_000);
+        assertEquals(TtffCampaign.State.COOL_DOWN, campaign.getState());
+        campaign.onFirstFix(61_000);
+        campaign.onLocation(fix(8f));
+
+        // 3: location before the TTFF callback
+        host.advance(campaign, 10_000 + 5_000 + 20_000);
+        campaign.onLocation(fix(6f));
+        campaign.onFirstFix(20_000);
+        // Finished right away, no cool-down after the last iteration
+        assertEquals(TtffCampaign.State.FINISHED, campaign.getState());
+        assertFalse(campaign.isRunning());
+        assertEquals(-1, host.timerAtMillis);
+
+        assertEquals(List.of("delete:all", "start:track", "stop", "delete:all", "start:track",
+                "stop", "delete:all", "start:track", "stop"), host.calls);
+        var results = campaign.getResults();
+        assertEquals(3, results.size());
+        assertEquals(results, listener.results);
+        assertEquals(30_000, results.get(0).getTtffMillis());
+        assertEquals(5_000, results.get(0).getStartMillis());
+        assertFalse(results.get(1).isFixed());
+        assertTrue(Float.isNaN(results.get(1).getAccuracy()));
+        assertEquals(6f, results.get(2).getAccuracy(), 0);
+        assertEquals(1, campaign.getTimeoutCount());
+        assertEquals(2, campaign.getStatistics().getTtffCount());
+        assertEquals(25, campaign.getStatistics().getTtffSeconds().getMean(), 1e-9);
+        assertEquals(5f, campaign.getStatistics().getAccuracy50Meters(), 1e-6);
+
+        assertEquals("1,5000,30000,35.68120000,139.76710000,4.00,", results.get(0).toCsvLine());
+        assertEquals("2,50000,,,,,", results.get(1).toCsvLine());
+        assertEquals(TtffCampaign.CSV_HEADER.split(",").length,
+                results.get(1).toCsvLine().split(",", -1).length);
+    }
+
+    @Test
+    public void test_hotStartAndCancel() {
+        var host = new FakeHost();
+        var listener = new RecordingListener();
+        var campaign = newCampaign(host, listener, 10);
+        campaign.setAidingData(new String[0]);
+        campaign.setSingle(true);
+        campaign.start();
+        // Nothing to delete, locating starts at once
+        assertEquals(TtffCampaign.State.WAITING_FIX, campaign.getState());
+        assertEquals(List.of("start:single"), host.calls);
+        assertThrows(IllegalStateException.class, campaign::start);
+
+        host.advance(campaign, 1_000);
+        campaign.cancel();
+        assertEquals(TtffCampaign.State.CANCELLED, campaign.getState());
+        assertFalse(host.locating);
+        assertEquals(-1, host.timerAtMillis);
+        // Late events after the cancel
+        campaign.onTimer();
+        campaign.onFirstFix(1_000);
+        assertEquals(TtffCampaign.State.CANCELLED, campaign.getState());
+        assertEquals(0, campaign.getResults().size());
+        assertEquals(List.of(TtffCampaign.State.WAITING_FIX, TtffCampaign.State.CANCELLED),
+                listener.states);
+
+        // Restartable
+        campaign.setIterations(1);
+        campaign.start();
+        campaign.onFirstFix(2_000);
+        host.advance(campaign, 60_000);
+        assertEquals(TtffCampaign.State.FINISHED, campaign.getState());
+        // TTFF kept even without the location
+        assertEquals(2_000, campaign.getResults().get(0).getTtffMillis());
+        assertEquals(0, campaign.getTimeoutCount());
+    }
+
+    @Test
+    public void test_overnight() {
+        final int iterations = 500;
+        var random = new Random(4);
+        var host = new FakeHost();
+        var listener = new RecordingListener();
+        var campaign = newCampaign(host, listener, iterations);
+        campaign.start();
+        while (campaign.isRunning()) {
+            if (campaign.getState() == TtffCampaign.State.WAITING_FIX) {
+                // Log-normal TTFF around 30 s, some beyond the timeout
+                int ttff = (int) (30_000 * Math.exp(random.nextGaussian() * 0.3));
+                host.advance(campaign, Math.min(ttff, 60_001));
+                if (campaign.getState() == TtffCampaign.State.WAITING_FIX) {
+                    campaign.onFirstFix(ttff);
+                    campaign.onLocation(fix(3f + random.nextFloat() * 5f));
+                }
+            } else {
+                host.advance(campaign, 1_000);
+            }
+        }
+        var stats = campaign.getStatistics();
+        assertEquals(iterations, campaign.getResults().size());
+        assertEquals(iterations, stats.getTtffCount() + campaign.getTimeoutCount());
+        assertEquals(30, stats.getTtff50Seconds(), 2);
+    }
+}
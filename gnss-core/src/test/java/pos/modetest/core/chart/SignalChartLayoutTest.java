@@ -0,0 +1,144 @@
+package pos.modetest.core.chart;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.GnssBand;
+import pos.modetest.core.data.SatelliteData;
+
+public class SignalChartLayoutTest {
+    private static final float L1_HZ = 1575.42e6f;
+    private static final float L5_HZ = 1176.45e6f;
+    private static final float EPSILON = 1e-3f;
+
+    @Test
+    public void test_projection() {
+        var layout = new SignalChartLayout();
+        var sats = new SatelliteData();
+        sats.add(Constellation.GPS, 1, 0, 25f, 90f, 0f, L1_HZ, Float.NaN);
+        sats.add(Constellation.GPS, 2, 0, 50f, 0f, 90f, L1_HZ, Float.NaN);
+        sats.add(Constellation.GPS, 3, 0, 60f, 0f, 0f, L1_HZ, Float.NaN);
+        sats.add(Constellation.GPS, 4, 0, 0f, 45f, 180f, L1_HZ, Float.NaN);
+        // Landscape 400x200, sky square 200 on the left, bars in [210, 390] x [10, 190]
+        layout.setSize(400, 200, 10);
+        layout.update(sats);
+        layout.setProgress(1f);
+        assertFalse(layout.isAnimating());
+
+        assertEquals(100f, layout.getSkyCenterX(), EPSILON);
+        assertEquals(90f, layout.getSkyRadius(), EPSILON);
+        // Zenith at the center, east on the horizon right, north on top, south half way down
+        assertEquals(100f, layout.getX(0), EPSILON);
+        assertEquals(100f, layout.getY(0), EPSILON);
+        assertEquals(190f, layout.getX(1), EPSILON);
+        assertEquals(100f, layout.getY(1), EPSILON);
+        assertEquals(100f, layout.getX(2), EPSILON);
+        assertEquals(10f, layout.getY(2), EPSILON);
+        assertEquals(145f, layout.getY(3), EPSILON);
+
+        assertEquals(210f, layout.getBarAreaLeft(), EPSILON);
+        assertEquals(36f, layout.getBarWidth(), EPSILON);
+        assertEquals(214.5f, layout.getBarLeft(0), EPSILON);
+        assertEquals(100f, layout.getBarTop(0), EPSILON);
+        assertEquals(10f, layout.getBarTop(1), EPSILON);
+        // Clamped to the chart range
+        assertEquals(10f, layout.getBarTop(2), EPSILON);
+        assertEquals(190f, layout.getBarTop(3), EPSILON);
+
+        // Portrait puts the sky on top
+        layout.setSize(200, 500, 10);
+        assertEquals(90f, layout.getSkyRadius(), EPSILON);
+        assertEquals(210f, layout.getBarAreaTop(), EPSILON);
+        assertEquals(10f, layout.getBarAreaLeft(), EPSILON);
+    }
+
+    @Test
+    public void test_animation() {
+        var layout = new SignalChartLayout();
+        layout.setSize(400, 200, 0);
+        var sats = new SatelliteData();
+        sats.add(Constellation.GALILEO, 11, 0, 30f, 10f, 350f, L1_HZ, Float.NaN);
+        sats.add(Constellation.GPS, 7, 0, 40f, 20f, 100f, L1_HZ, Float.NaN);
+        layout.update(sats);
+        // New signals appear in place with the bar growing from 0
+        assertTrue(layout.isAnimating());
+        assertEquals(Constellation.GPS, layout.getConstellation(0));
+        assertEquals(0f, layout.getCn0DbHz(0), EPSILON);
+        assertEquals(20f, layout.getElevationDegrees(0), EPSILON);
+        layout.setProgress(1f);
+
+        sats.clear();
+        sats.add(Constellation.GPS, 7, SatelliteData.FLAG_USED_IN_FIX, 44f, 30f, 100f, L1_HZ,
+                Float.NaN);
+        sats.add(Constellation.GPS, 7, 0, 35f, 30f, 100f, L5_HZ, Float.NaN);
+        sats.add(Constellation.GALILEO, 11, 0, 30f, 10f, 10f, L1_HZ, Float.NaN);
+        layout.update(sats);
+        assertEquals(3, layout.getCount());
+        // Sorted by constellation, band then svid
+        assertEquals(GnssBand.GPS_L1, layout.getBand(0));
+        assertEquals(GnssBand.GPS_L5, layout.getBand(1));
+        assertEquals(11, layout.getSvid(2));
+        assertTrue(layout.isUsed(0));
+        assertEquals(40f, layout.getCn0DbHz(0), EPSILON);
+
+        layout.setProgress(0.5f);
+        assertEquals(42f, layout.getCn0DbHz(0), EPSILON);
+        assertEquals(25f, layout.getElevationDegrees(0), EPSILON);
+        // 350 -> 10 goes through north, not through south
+        assertEquals(0f, layout.getAzimuthDegrees(2), EPSILON);
+
+        // Update in the middle of the animation continues from what is shown
+        sats.clear();
+        sats.add(Constellation.GPS, 7, 0, 44f, 30f, 100f, L1_HZ, Float.NaN);
+        layout.update(sats);
+        assertEquals(1, layout.getCount());
+        assertEquals(42f, layout.getCn0DbHz(0), EPSILON);
+        layout.setProgress(2f);
+        assertEquals(44f, layout.getCn0DbHz(0), EPSILON);
+        assertFalse(layout.isAnimating());
+
+        layout.clear();
+        assertEquals(0, layout.getCount());
+    }
+
+    @Test
+    public void test_frames_allocation() {
+        final int signalCount = 120;
+        final int epochs = 200;
+        final int framesPerEpoch = 60;
+        var random = new Random(3);
+        var epochData = new SatelliteData[2];
+        for (int e = 0; e < epochData.length; e++) {
+            epochData[e] = new SatelliteData();
+            for (int i = 0; i < signalCount; i++) {
+                int constellation = 1 + i % (Constellation.COUNT - 1);
+                epochData[e].add(constellation, 1 + i / 4, random.nextInt(2),
+                        20f + random.nextFloat() * 30f, random.nextFloat() * 90f,
+                        random.nextFloat() * 360f, i % 2 == 0 ? L1_HZ : L5_HZ, Float.NaN);
+            }
+        }
+        var layout = new SignalChartLayout();
+        layout.setSize(1080, 1400, 16);
+        double sink = 0;
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0;
+        for (int e = 0; e < epochs; e++) {
+            // The first epochs size the buffers
+            if (e == 2) bytes = threads.getCurrentThreadAllocatedBytes();
+            layout.update(epochData[e % 2]);
+            for (int f = 1; f <= framesPerEpoch; f++) {
+                layout.setProgress(f / (float) framesPerEpoch);
+                sink += layout.getX(f % layout.getCount());
+            }
+        }
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        assertTrue(sink != 0);
+        assertEquals(signalCount, layout.getCount());
+        assertTrue("allocated " + bytes, bytes < 16 * 1024);
+    }
+}
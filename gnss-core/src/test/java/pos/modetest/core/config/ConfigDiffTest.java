@@ -0,0 +1,89 @@
+package pos.modetest.core.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+public class ConfigDiffTest {
+    private static final String GPS_CONF = "SUPL_HOST=supl.google.com\n"
+            + "SUPL_PORT=7275\n"
+            + "LPP_PROFILE=2\n"
+            + "# comment=ignored\n"
+            + "\n"
+            + "NFW_CLIENT_CP=com.example.cp\n";
+
+    static DeviceConfig config(String id, String gpsConf, String sysprop) {
+        return new DeviceConfig(id, "device", "build", 0, List.of(
+                ConfigSection.parse("GPS_VENDOR", gpsConf),
+                ConfigSection.parse("SYSPROP", sysprop)));
+    }
+
+    @Test
+    public void test_parse() {
+        var section = ConfigSection.parse("GPS_VENDOR", GPS_CONF + "LPP_PROFILE = 3 \nnot a pair\n");
+        assertEquals(List.of("SUPL_HOST", "SUPL_PORT", "NFW_CLIENT_CP", "LPP_PROFILE"),
+                List.copyOf(section.getEntries().keySet()));
+        assertEquals("3", section.get("LPP_PROFILE"));
+        assertNull(section.get("# comment"));
+    }
+
+    @Test
+    public void test_hash() {
+        var a = ConfigSection.parse("A", GPS_CONF);
+        assertEquals(a.getHash(), ConfigSection.parse("B", GPS_CONF).getHash());
+        assertNotEquals(a.getHash(), ConfigSection.parse("A", GPS_CONF + "X=1\n").getHash());
+        assertNotEquals(ConfigSection.parse("A", "ab=c\n").getHash(),
+                ConfigSection.parse("A", "a=bc\n").getHash());
+    }
+
+    @Test
+    public void test_compare() {
+        var from = config("a", GPS_CONF, "LPP_PROFILE=2\n");
+        var to = config("b", GPS_CONF.replace("LPP_PROFILE=2", "LPP_PROFILE=3")
+                .replace("SUPL_PORT=7275\n", "") + "SUPL_ES=1\n", "LPP_PROFILE=2\n");
+        var diff = ConfigDiff.compare(from, to);
+        assertEquals("a", diff.getFromId());
+        assertEquals("b", diff.getToId());
+        assertEquals(1, diff.getSkippedSections());
+        var changes = diff.getChanges();
+        assertEquals(3, changes.size());
+        assertEquals(ConfigDiff.Kind.REMOVED, changes.get(0).getKind());
+        assertEquals("SUPL_PORT", changes.get(0).getKey());
+        assertEquals("7275", changes.get(0).getOldValue());
+        assertEquals(ConfigDiff.Kind.CHANGED, changes.get(1).getKind());
+        assertEquals("LPP_PROFILE", changes.get(1).getKey());
+        assertEquals("3", changes.get(1).getNewValue());
+        assertEquals(ConfigDiff.Kind.ADDED, changes.get(2).getKind());
+        assertEquals("SUPL_ES", changes.get(2).getKey());
+        assertEquals("[GPS_VENDOR]\n"
+                + "  - SUPL_PORT=7275\n"
+                + "  ~ LPP_PROFILE=2 -> 3\n"
+                + "  + SUPL_ES=1\n", diff.format());
+    }
+
+    @Test
+    public void test_compare_missingSection() {
+        var from = config("a", GPS_CONF, "LPP_PROFILE=2\n");
+        var to = new DeviceConfig("b", "device", "build", 0,
+                List.of(ConfigSection.parse("GPS_VENDOR", GPS_CONF)));
+        var diff = ConfigDiff.compare(from, to);
+        assertEquals(1, diff.getChanges().size());
+        assertEquals("SYSPROP", diff.getChanges().get(0).getSection());
+        assertEquals(ConfigDiff.Kind.REMOVED, diff.getChanges().get(0).getKind());
+
+        var reverse = ConfigDiff.compare(to, from);
+        assertEquals(ConfigDiff.Kind.ADDED, reverse.getChanges().get(0).getKind());
+    }
+
+    @Test
+    public void test_compare_equal() {
+        var diff = ConfigDiff.compare(config("a", GPS_CONF, ""), config("b", GPS_CONF, ""));
+        assertTrue(diff.isEmpty());
+        assertEquals(2, diff.getSkippedSections());
+        assertEquals("", diff.format());
+        assertEquals(Map.of(), ConfigSection.parse("X", "").getEntries());
+    }
+}
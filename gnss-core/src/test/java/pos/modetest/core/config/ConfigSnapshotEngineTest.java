@@ -0,0 +1,192 @@
+package pos.modetest.core.config;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConfigSnapshotEngineTest {
+    private static final long LOAD_MS = 50;
+
+    private final AtomicInteger mLoads = new AtomicInteger();
+    private final AtomicLong mNow = new AtomicLong(1_000);
+    private final List<ExecutorService> mPools = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        mPools.forEach(ExecutorService::shutdownNow);
+    }
+
+    private ExecutorService newPool(int threads) {
+        var pool = Executors.newFixedThreadPool(threads);
+        mPools.add(pool);
+        return pool;
+    }
+
+    private ConfigSnapshotEngine<String> newEngine(int threads) {
+        var engine = new ConfigSnapshotEngine<String>(key -> {
+            mLoads.incrementAndGet();
+            if (key.startsWith("fail")) throw new IllegalStateException(key);
+            if (key.startsWith("slow")) Thread.sleep(LOAD_MS);
+            return key + "=" + mLoads.get();
+        }, newPool(threads));
+        engine.setClock(mNow::get);
+        engine.setDefaultTtl(ConfigSnapshotEngine.TTL_FOREVER);
+        return engine;
+    }
+
+    @Test
+    public void test_snapshot_parallel() throws Exception {
+        var engine = newEngine(4);
+        var keys = List.of("slow1", "slow2", "slow3", "slow4");
+        long start = System.nanoTime();
+        Map<String, String> sections = engine.snapshot(keys, null).get(5, TimeUnit.SECONDS);
+        long coldMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(keys, new ArrayList<>(sections.keySet()));
+        // sequential reads would take 4 * LOAD_MS
+        assertTrue("cold " + coldMs, coldMs < 3 * LOAD_MS);
+
+        var warm = engine.snapshot(keys, null).get(5, TimeUnit.SECONDS);
+        assertEquals(sections, warm);
+        assertEquals(4, mLoads.get());
+    }
+
+    @Test
+    public void test_snapshot_incremental() throws Exception {
+        var engine = newEngine(2);
+        engine.read("fast").get();
+        var delivered = Collections.synchronizedList(new ArrayList<String>());
+        var cachedFlags = Collections.synchronizedList(new ArrayList<Boolean>());
+        var sections = engine.snapshot(List.of("slow", "fast", "fail"), (key, content, cached) -> {
+            delivered.add(key);
+            cachedFlags.add(cached);
+        }).get(5, TimeUnit.SECONDS);
+        // cached section first, failed section left out
+        assertEquals(List.of("fast", "slow"), delivered);
+        assertEquals(List.of(true, false), cachedFlags);
+        assertEquals(List.of("slow", "fast"), new ArrayList<>(sections.keySet()));
+    }
+
+    @Test
+    public void test_ttl() throws Exception {
+        var engine = newEngine(1);
+        engine.setPolicy("a", 1000, null);
+        assertEquals("a=1", engine.read("a").get());
+        mNow.addAndGet(999);
+        assertEquals("a=1", engine.read("a").get());
+        assertEquals("a=1", engine.getCached("a"));
+        mNow.addAndGet(1);
+        assertNull(engine.getCached("a"));
+        assertEquals("a=2", engine.read("a").get());
+    }
+
+    @Test
+    public void test_version() throws Exception {
+        var engine = newEngine(1);
+        var mtime = new AtomicLong(100);
+        engine.setPolicy("gps.conf", ConfigSnapshotEngine.TTL_FOREVER, mtime::get);
+        assertEquals("gps.conf=1", engine.read("gps.conf").get());
+        mNow.addAndGet(1_000_000);
+        assertEquals("gps.conf=1", engine.read("gps.conf").get());
+        mtime.set(200);
+        assertEquals("gps.conf=2", engine.read("gps.conf").get());
+        assertEquals("gps.conf=2", engine.read("gps.conf").get());
+    }
+
+    @Test
+    public void test_invalidate() throws Exception {
+        var engine = newEngine(1);
+        engine.read("a").get();
+        engine.read("b").get();
+        engine.invalidate("a");
+        assertNull(engine.getCached("a"));
+        assertEquals("b=2", engine.getCached("b"));
+        assertEquals("a=3", engine.read("a").get());
+        engine.invalidateAll();
+        assertNull(engine.getCached("a"));
+        assertNull(engine.getCached("b"));
+    }
+
+    @Test
+    public void test_put() throws Exception {
+        var engine = newEngine(1);
+        engine.setPolicy("dump", 1000, null);
+        engine.put("dump", "streamed");
+        assertEquals("streamed", engine.read("dump").get());
+        assertEquals(0, mLoads.get());
+        mNow.addAndGet(1000);
+        assertEquals("dump=1", engine.read("dump").get());
+    }
+
+    @Test
+    public void test_sharedLoad() throws Exception {
+        var release = new CountDownLatch(1);
+        var engine = new ConfigSnapshotEngine<String>(key -> {
+            mLoads.incrementAndGet();
+            release.await();
+            return key;
+        }, newPool(2));
+        engine.setDefaultTtl(ConfigSnapshotEngine.TTL_FOREVER);
+        CompletableFuture<String> first = engine.read("dump");
+        CompletableFuture<String> second = engine.read("dump");
+        release.countDown();
+        assertEquals("dump", first.get(5, TimeUnit.SECONDS));
+        assertEquals("dump", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, mLoads.get());
+    }
+
+    @Test
+    public void test_invalidateDuringLoad() throws Exception {
+        var release = new CountDownLatch(1);
+        var engine = new ConfigSnapshotEngine<String>(key -> {
+            release.await();
+            return key + mLoads.incrementAndGet();
+        }, newPool(2));
+        engine.setDefaultTtl(ConfigSnapshotEngine.TTL_FOREVER);
+        var stale = engine.read("cc");
+        engine.invalidate("cc");
+        release.countDown();
+        assertEquals("cc1", stale.get(5, TimeUnit.SECONDS));
+        assertNull(engine.getCached("cc"));
+        assertEquals("cc2", engine.read("cc").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_failureNotCached() throws Exception {
+        var engine = newEngine(1);
+        try {
+            engine.read("fail").get();
+            fail("expected failure");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertNull(engine.getCached("fail"));
+        assertTrue(engine.read("fail").handle((v, e) -> e != null).get());
+        assertEquals(2, mLoads.get());
+    }
+
+    @Test
+    public void test_uncacheable() throws Exception {
+        var engine = newEngine(1);
+        engine.setUncacheable(content -> content.startsWith("error"));
+        assertEquals("error=1", engine.read("error").get());
+        assertNull(engine.getCached("error"));
+        assertEquals("error=2", engine.read("error").get());
+        engine.put("error", "error: denied");
+        assertNull(engine.getCached("error"));
+        assertEquals("ok=3", engine.read("ok").get());
+        assertEquals("ok=3", engine.getCached("ok"));
+    }
+}
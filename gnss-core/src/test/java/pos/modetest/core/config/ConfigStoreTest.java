@@ -0,0 +1,175 @@
+package pos.modetest.core.config;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ConfigStoreTest {
+    private static final String TAG = ConfigStoreTest.class.getSimpleName();
+
+    private Path mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory(TAG);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(mDir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static DeviceConfig device(int n, int lppProfile) {
+        Map<String, String> gps = new LinkedHashMap<>();
+        gps.put("SUPL_HOST", "supl.google.com");
+        gps.put("LPP_PROFILE", Integer.toString(lppProfile));
+        for (int k = 0; k < 100; k++) {
+            gps.put("KEY_" + k, Integer.toString(k * n % 7));
+        }
+        return new DeviceConfig("dev" + n, "device" + n, "build" + n % 3, 1000L * n,
+                List.of(new ConfigSection("GPS_VENDOR", gps),
+                        ConfigSection.parse("SYSPROP", "LPP_PROFILE=" + lppProfile + "\n")));
+    }
+
+    @Test
+    public void test_roundTrip() throws IOException {
+        Map<String, String> odd = new LinkedHashMap<>();
+        odd.put("a=b", "x=y");
+        odd.put("[not a section]", "multi\nline\\ \r");
+        odd.put("#not a comment", "");
+        var config = new DeviceConfig("id", "dev", "", 42,
+                List.of(new ConfigSection("odd", odd), new ConfigSection("empty", Map.of())));
+        var out = new StringWriter();
+        ConfigStore.write(config, out);
+        var read = ConfigStore.read(new StringReader(out.toString()));
+        assertEquals("id", read.getId());
+        assertEquals("dev", read.getDevice());
+        assertEquals("", read.getBuild());
+        assertEquals(42, read.getTimeMillis());
+        assertEquals(List.of("odd", "empty"), List.copyOf(read.getSections().keySet()));
+        assertEquals(odd, read.getSection("odd").getEntries());
+        assertEquals(config.getSection("odd").getHash(), read.getSection("odd").getHash());
+        assertTrue(ConfigDiff.compare(config, read).isEmpty());
+
+        assertThrows(IOException.class, () -> ConfigStore.read(new StringReader("x=y\n")));
+    }
+
+    @Test
+    public void test_persist() throws IOException {
+        var store = new ConfigStore(mDir);
+        store.put(device(1, 2));
+        store.put(device(2, 3));
+        store.put(device(2, 4)); // replaces dev2
+        Files.writeString(mDir.resolve("broken" + ConfigStore.FILE_EXTENSION), "garbage");
+        assertEquals(2, store.size());
+
+        var reloaded = new ConfigStore(mDir);
+        assertEquals(1, reloaded.load());
+        assertEquals(2, reloaded.size());
+        assertEquals("4", reloaded.get("dev2").get("SYSPROP", "LPP_PROFILE"));
+        assertTrue(ConfigDiff.compare(store.get("dev1"), reloaded.get("dev1")).isEmpty());
+
+        assertTrue(reloaded.remove("dev1"));
+        assertFalse(reloaded.remove("dev1"));
+        assertNull(reloaded.get("dev1"));
+        assertEquals(1, new ConfigStore(mDir).load()); // still the broken file only
+        assertThrows(IllegalArgumentException.class, () -> store.remove("../x"));
+    }
+
+    @Test
+    public void test_index() throws IOException {
+        var store = new ConfigStore(mDir);
+        for (int n = 0; n < 10; n++) {
+            store.put(device(n, n < 7 ? 2 : 3));
+        }
+        var values = store.getValues("GPS_VENDOR", "LPP_PROFILE");
+        assertEquals(Set.of("2", "3"), values.keySet());
+        assertEquals(7, values.get("2").size());
+        assertEquals(List.of("dev7", "dev8", "dev9"), ids(values.get("3")));
+        assertEquals(List.of("dev7", "dev8", "dev9"), ids(store.findDiffering("SYSPROP", "LPP_PROFILE", "2")));
+        assertEquals(10, store.findDiffering("SYSPROP", "LPP_PROFILE", "5").size());
+        assertEquals(10, store.findDiffering("SYSPROP", "LPP_PROFILE", null).size());
+        assertEquals(0, store.findDiffering("SYSPROP", "MISSING", null).size());
+        assertTrue(store.getValues("SYSPROP", "MISSING").isEmpty());
+
+        store.put(device(8, 2));
+        store.remove("dev9");
+        assertEquals(List.of("dev7"), ids(store.findDiffering("SYSPROP", "LPP_PROFILE", "2")));
+        assertEquals("dev3", store.getLatest("device3").getId());
+        assertNull(store.getLatest("device9"));
+    }
+
+    @Test
+    public void test_ordinalReuse() throws IOException {
+        var store = new ConfigStore(mDir);
+        for (int n = 0; n < 5; n++) {
+            store.put(device(n, 2));
+        }
+        for (int round = 0; round < 20; round++) {
+            store.put(device(round % 5, 3 + round)); // replace in place
+            store.remove("dev" + (round + 1) % 5);
+            store.put(device((round + 1) % 5, 2));
+        }
+        assertEquals(5, store.size());
+        assertEquals(5, store.getOrdinalCount());
+        assertEquals(List.of("dev0", "dev1", "dev2", "dev3", "dev4"), ids(store.getAll()));
+        assertEquals(List.of("dev4"), ids(store.getValues("SYSPROP", "LPP_PROFILE").get("22")));
+        assertEquals(4, store.findDiffering("SYSPROP", "LPP_PROFILE", "2").size());
+
+        store.remove("dev1");
+        store.remove("dev3");
+        store.put(device(7, 2));
+        assertEquals(List.of("dev0", "dev7", "dev2", "dev4"), ids(store.getAll()));
+        assertEquals(5, store.getOrdinalCount());
+    }
+
+    @Test
+    public void test_index_matchesScan() throws IOException {
+        final int count = 2000;
+        var store = new ConfigStore(mDir.resolve("lib"));
+        List<DeviceConfig> all = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            var config = device(n, n % 5);
+            all.add(config);
+            store.put(config);
+        }
+        var reloaded = new ConfigStore(mDir.resolve("lib"));
+        assertEquals(0, reloaded.load());
+
+        final int queries = 1000;
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            found += reloaded.findDiffering("GPS_VENDOR", "KEY_" + q % 100, "0").size();
+        }
+        int scanned = 0;
+        for (int q = 0; q < queries; q++) {
+            String key = "KEY_" + q % 100;
+            scanned += (int) all.stream().filter(c -> !"0".equals(c.get("GPS_VENDOR", key))).count();
+        }
+        assertEquals(scanned, found);
+    }
+
+    private static List<String> ids(List<DeviceConfig> configs) {
+        return configs.stream().map(DeviceConfig::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,139 @@
+package pos.modetest.core.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+public class DumpDocumentTest {
+    private static DumpDocument document(String... lines) {
+        var doc = new DumpDocument();
+        for (String line : lines) {
+            doc.addLine(line);
+        }
+        return doc;
+    }
+
+    @Test
+    public void test_tree() {
+        var doc = document(
+                "A:",         // 0
+                "  a1",       // 1
+                "  a2:",      // 2
+                "    a21",    // 3
+                "",           // 4 blank stays inside a2
+                "    a22",    // 5
+                "B",          // 6
+                "\tb1");      // 7 tab is 8 wide
+        doc.finish();
+        assertEquals(8, doc.getLineCount());
+        assertEquals(-1, doc.getParent(0));
+        assertEquals(0, doc.getParent(1));
+        assertEquals(0, doc.getParent(2));
+        assertEquals(2, doc.getParent(3));
+        assertEquals(2, doc.getParent(4));
+        assertEquals(2, doc.getParent(5));
+        assertEquals(-1, doc.getParent(6));
+        assertEquals(6, doc.getParent(7));
+        assertEquals(5, doc.getSubtreeEnd(0));
+        assertEquals(1, doc.getSubtreeEnd(1));
+        assertEquals(5, doc.getSubtreeEnd(2));
+        assertEquals(7, doc.getSubtreeEnd(6));
+        assertTrue(doc.hasChildren(2));
+        assertFalse(doc.hasChildren(4));
+        assertEquals(4, doc.getIndent(3));
+        assertEquals(8, doc.getIndent(7));
+        assertEquals(0, doc.getIndent(4));
+        assertEquals("  a2:", doc.getLine(2));
+        assertEquals("", doc.getLine(4));
+        assertEquals("  a2:\n    a21\n\n    a22\n", doc.getSectionText(2));
+    }
+
+    @Test
+    public void test_openSections() {
+        var doc = document("A:", "  a1");
+        // open sections extend to the last line read so far
+        assertEquals(1, doc.getSubtreeEnd(0));
+        doc.addLine("  a2");
+        assertEquals(2, doc.getSubtreeEnd(0));
+        assertFalse(doc.isComplete());
+        doc.finish();
+        assertTrue(doc.isComplete());
+        assertEquals(2, doc.getSubtreeEnd(0));
+    }
+
+    @Test
+    public void test_visibleLines() {
+        var doc = document("A:", "  a1", "  a2:", "    a21", "B", "  b1");
+        doc.finish();
+        var collapsed = new BitSet();
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, doc.getVisibleLines(collapsed));
+        collapsed.set(2);
+        assertArrayEquals(new int[]{0, 1, 2, 4, 5}, doc.getVisibleLines(collapsed));
+        assertTrue(doc.isHidden(3, collapsed));
+        assertFalse(doc.isHidden(2, collapsed));
+        collapsed.set(0);
+        assertArrayEquals(new int[]{0, 4, 5}, doc.getVisibleLines(collapsed));
+        collapsed.set(5); // leaf, nothing to fold
+        assertArrayEquals(new int[]{0, 4, 5}, doc.getVisibleLines(collapsed));
+    }
+
+    @Test
+    public void test_search() {
+        var doc = document(
+                "gps provider:",
+                "  last location=Location[gps 35.68,139.76 hAcc=3.5]",
+                "network provider:",
+                "  GPS_KPI_START",
+                "  mIsHalStarted=true gps gps");
+        assertArrayEquals(new int[]{0, 1, 3, 4}, doc.search("gps"));
+        assertArrayEquals(new int[]{0, 2}, doc.search("Provider"));
+        assertArrayEquals(new int[]{0}, doc.search("gps prov"));
+        assertArrayEquals(new int[]{1}, doc.search("hacc=3"));
+        assertArrayEquals(new int[]{3}, doc.search("kpi_start"));
+        assertArrayEquals(new int[]{4}, doc.search("mishal"));
+        assertArrayEquals(new int[0], doc.search("glonass"));
+        assertArrayEquals(new int[0], doc.search(" .. "));
+        // lines added later are searchable right away
+        doc.addLine("  glonass");
+        assertArrayEquals(new int[]{5}, doc.search("glo"));
+    }
+
+    @Test
+    public void test_search_locale() {
+        Locale saved = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            var doc = document("GPS_DISABLED", "İstanbul");
+            assertArrayEquals(new int[]{0}, doc.search("disabled"));
+            assertArrayEquals(new int[]{0}, doc.search("DISABLED"));
+            // İ lower cases to two chars, still the same word on both paths
+            assertArrayEquals(new int[]{1}, doc.search("İstanbul"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    @Test
+    public void test_search_matchesScan() {
+        var doc = new DumpDocument();
+        String[] words = {"gnss", "gps", "location", "provider", "request", "fused", "kpi"};
+        String[] lines = new String[2000];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "  ".repeat(i % 4) + words[i % 7] + "=" + i + " " + words[(i * 3) % 7];
+            doc.addLine(lines[i]);
+        }
+        for (String query : new String[]{"gps", "loc", "kpi fused", "1", "req 12"}) {
+            var queryWords = query.split(" ");
+            int[] expected = java.util.stream.IntStream.range(0, lines.length)
+                    .filter(i -> Arrays.stream(queryWords).allMatch(w ->
+                            Arrays.stream(lines[i].trim().split("[= ]"))
+                                    .anyMatch(t -> t.startsWith(w))))
+                    .toArray();
+            assertArrayEquals(query, expected, doc.search(query));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package pos.modetest.core.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Objects;
+
+public class DumpsysParserTest {
+    private static final String DUMP_LOCATION = "/dumpsys/location.txt";
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = Objects.requireNonNull(
+                DumpsysParserTest.class.getResourceAsStream(name), name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void assertSameDocument(DumpDocument expected, DumpDocument actual) {
+        assertEquals(expected.getLineCount(), actual.getLineCount());
+        for (int i = 0; i < expected.getLineCount(); i++) {
+            assertEquals(expected.getLine(i), actual.getLine(i));
+            assertEquals(expected.getParent(i), actual.getParent(i));
+            assertEquals(expected.getSubtreeEnd(i), actual.getSubtreeEnd(i));
+        }
+    }
+
+    @Test
+    public void test_parse_dumpLocation() throws IOException {
+        var doc = DumpsysParser.parse(readResource(DUMP_LOCATION));
+        assertTrue(doc.isComplete());
+        assertEquals(38, doc.getLineCount());
+        assertEquals("Location Manager State:", doc.getLine(0));
+        assertEquals(34, doc.getSubtreeEnd(0));
+        assertEquals("Event Log:", doc.getLine(35));
+        assertEquals(-1, doc.getParent(35));
+        // the blank line belongs to the next section
+        assertEquals("", doc.getLine(13));
+        assertEquals(0, doc.getParent(13));
+        assertEquals(12, doc.getSubtreeEnd(9));
+
+        int[] hits = doc.search("gps provider");
+        assertEquals("    gps provider:", doc.getLine(hits[0]));
+        int gps = hits[0];
+        // the tab indented proxy block is deeper than the line before it
+        int proxy = doc.search("proxy")[0];
+        assertEquals("      enabled=true", doc.getLine(doc.getParent(proxy)));
+        assertEquals(proxy + 1, doc.getSubtreeEnd(doc.search("network provider")[0]));
+        int kpi = doc.search("ttff")[0];
+        assertEquals("      GNSS_KPI_START", doc.getLine(doc.getParent(kpi)));
+        assertEquals(gps, doc.getParent(doc.getParent(kpi)));
+
+        var collapsed = new BitSet();
+        collapsed.set(gps);
+        int[] visible = doc.getVisibleLines(collapsed);
+        assertEquals(doc.getLineCount() - (doc.getSubtreeEnd(gps) - gps), visible.length);
+        assertTrue(doc.isHidden(kpi, collapsed));
+    }
+
+    @Test
+    public void test_streamedChunks() throws IOException {
+        // non-ASCII and CRLF content split at every possible chunk size
+        String text = readResource(DUMP_LOCATION)
+                + "Déjà vu:\r\n  Beidou 北斗 €\r\n  ok\r\n\r\n  tail";
+        var expected = DumpsysParser.parse(text);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int chunk = 1; chunk <= 17; chunk++) {
+            var parser = new DumpsysParser(new DumpDocument());
+            for (int off = 0; off < bytes.length; off += chunk) {
+                int n = Math.min(chunk, bytes.length - off);
+                byte[] buf = new byte[n];
+                System.arraycopy(bytes, off, buf, 0, n);
+                parser.onChunk(buf, n);
+            }
+            parser.finish();
+            assertSameDocument(expected, parser.getDocument());
+        }
+        int line = expected.search("beidou")[0];
+        assertEquals("  Beidou 北斗 €", expected.getLine(line));
+        assertEquals("Déjà vu:", expected.getLine(expected.getParent(line)));
+        assertEquals("  tail", expected.getLine(expected.getLineCount() - 1));
+    }
+
+    @Test
+    public void test_parse_largeDump() throws IOException {
+        String section = readResource(DUMP_LOCATION);
+        var buf = new StringBuilder();
+        while (buf.length() < 2 * 1024 * 1024) {
+            buf.append(section);
+        }
+        byte[] bytes = buf.toString().getBytes(StandardCharsets.UTF_8);
+        var parser = new DumpsysParser(new DumpDocument());
+        for (int off = 0; off < bytes.length; off += 16 * 1024) {
+            int n = Math.min(16 * 1024, bytes.length - off);
+            byte[] chunk = new byte[n];
+            System.arraycopy(bytes, off, chunk, 0, n);
+            parser.onChunk(chunk, n);
+        }
+        parser.finish();
+        var doc = parser.getDocument();
+        assertTrue(doc.isComplete());
+        assertEquals(0, doc.getLineCount() % 38);
+        assertEquals(doc.getLineCount() / 38, doc.search("ttff min").length);
+    }
+}
@@ -0,0 +1,37 @@
+package pos.modetest.core.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SysPropParserTest {
+    @Test
+    public void test_parse() {
+        var props = SysPropParser.parse("[persist.sys.gps.lpp]: [3]\n"
+                + "[persist.sys.gps.emergencypdn]: []\n"
+                + "[ro.build.fingerprint]: [google/raven/raven:15/AP4A/123:user/release-keys]\n"
+                + "[ro.product.name]: [raven [eu]]\r\n"
+                + "[last]: [x]");
+        assertEquals(5, props.size());
+        assertEquals("3", props.get("persist.sys.gps.lpp"));
+        assertEquals("", props.get("persist.sys.gps.emergencypdn"));
+        assertEquals("google/raven/raven:15/AP4A/123:user/release-keys",
+                props.get("ro.build.fingerprint"));
+        assertEquals("raven [eu]", props.get("ro.product.name"));
+        assertEquals("x", props.get("last"));
+    }
+
+    @Test
+    public void test_parse_multiLine() {
+        var props = SysPropParser.parse("[a]: [line1\nline2]\n[b]: [2]\n");
+        assertEquals("line1\nline2", props.get("a"));
+        assertEquals("2", props.get("b"));
+    }
+
+    @Test
+    public void test_parse_empty() {
+        assertTrue(SysPropParser.parse("").isEmpty());
+        assertTrue(SysPropParser.parse("Error: permission denied\n").isEmpty());
+        assertTrue(SysPropParser.parse("[broken]: [no end").isEmpty());
+    }
+}
@@ -0,0 +1,22 @@
+package pos.modetest.core.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConstellationTest {
+    @Test
+    public void test_qxdmPrn() {
+        assertEquals(5, Constellation.getQxdmPrn(Constellation.GPS, 5));
+        assertEquals(65, Constellation.getQxdmPrn(Constellation.GLONASS, 1));
+        assertEquals(219, Constellation.getQxdmPrn(Constellation.BEIDOU, 19));
+        assertEquals(311, Constellation.getQxdmPrn(Constellation.GALILEO, 11));
+        assertEquals(193, Constellation.getQxdmPrn(Constellation.QZSS, 193));
+    }
+
+    @Test
+    public void test_name() {
+        assertEquals("GALILEO", Constellation.getName(Constellation.GALILEO));
+        assertEquals("UNKNOWN", Constellation.getName(42));
+    }
+}
@@ -0,0 +1,46 @@
+package pos.modetest.core.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+
+public class FixFormatTest {
+    @Test
+    public void test_missingFields() {
+        var fix = new FixData();
+        fix.setLatitude(35.681236);
+        fix.setLongitude(139.767125);
+        assertNotEquals(FixFormat.EMPTY_TEXT, FixFormat.formatLatitude(fix));
+        assertEquals(FixFormat.EMPTY_TEXT, FixFormat.formatAltitude(fix));
+        assertEquals(FixFormat.EMPTY_TEXT, FixFormat.formatAccuracy(fix));
+        assertEquals(FixFormat.EMPTY_TEXT, FixFormat.formatVerticalAccuracy(fix));
+        assertEquals(FixFormat.EMPTY_TEXT, FixFormat.formatSpeed(fix));
+        assertEquals(FixFormat.EMPTY_TEXT, FixFormat.formatBearing(fix));
+        assertEquals(FixFormat.EMPTY_TEXT, FixFormat.formatBearingAccuracy(fix));
+    }
+
+    @Test
+    public void test_decimals() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.ROOT);
+        try {
+            var fix = new FixData();
+            fix.setLatitude(35.681236);
+            fix.setLongitude(-139.767125);
+            fix.setAltitude(40.123);
+            fix.setAccuracy(3.5f);
+            fix.setBearing(271.25f);
+            fix.setElapsedRealtimeNanos(3_723_004_000_000L);
+            assertEquals("35.68123600", FixFormat.formatLatitude(fix));
+            assertEquals("-139.76712500", FixFormat.formatLongitude(fix));
+            assertEquals("40.12", FixFormat.formatAltitude(fix));
+            assertEquals("3.5000", FixFormat.formatAccuracy(fix));
+            assertEquals("271.25", FixFormat.formatBearing(fix));
+            assertEquals("1h 2m 3s 4ms", FixFormat.formatRealTime(fix));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
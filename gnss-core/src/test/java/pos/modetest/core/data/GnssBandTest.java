@@ -0,0 +1,138 @@
+package pos.modetest.core.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+public class GnssBandTest {
+    // Realistic multi-band status: {constellation, carrier frequency Hz}
+    private static final int[] FIXTURE_TYPES;
+    private static final double[] FIXTURE_FREQS;
+
+    static {
+        int n = 0;
+        int[] types = new int[128];
+        double[] freqs = new double[128];
+        for (int sv = 0; sv < 12; sv++) {
+            types[n] = Constellation.GPS; freqs[n++] = 1575.42e6;
+            types[n] = Constellation.GPS; freqs[n++] = 1176.45e6;
+            if (sv % 3 == 0) { types[n] = Constellation.GPS; freqs[n++] = 1227.60e6; }
+        }
+        for (int sv = 0; sv < 9; sv++) {
+            types[n] = Constellation.GALILEO; freqs[n++] = 1575.42e6;
+            types[n] = Constellation.GALILEO; freqs[n++] = 1176.45e6;
+            if (sv % 2 == 0) { types[n] = Constellation.GALILEO; freqs[n++] = 1207.14e6; }
+        }
+        for (int sv = 0; sv < 10; sv++) {
+            types[n] = Constellation.BEIDOU; freqs[n++] = 1561.098e6;
+            types[n] = Constellation.BEIDOU; freqs[n++] = sv % 2 == 0 ? 1575.42e6 : 1176.45e6;
+        }
+        for (int k = -7; k <= 1; k++) {
+            types[n] = Constellation.GLONASS; freqs[n++] = (1602 + k * 0.5625) * 1e6;
+        }
+        for (int sv = 0; sv < 3; sv++) {
+            types[n] = Constellation.QZSS; freqs[n++] = 1575.42e6;
+            types[n] = Constellation.QZSS; freqs[n++] = 1176.45e6;
+        }
+        types[n] = Constellation.SBAS; freqs[n++] = 1575.42e6;
+        types[n] = Constellation.SBAS; freqs[n++] = 1575.42e6;
+        types[n] = Constellation.IRNSS; freqs[n++] = 1176.45e6;
+        types[n] = Constellation.GPS; freqs[n++] = 1381.05e6; // unknown
+        FIXTURE_TYPES = Arrays.copyOf(types, n);
+        FIXTURE_FREQS = Arrays.copyOf(freqs, n);
+    }
+
+    @Test
+    public void test_classify_matchesLegacyChain() {
+        assertTrue(FIXTURE_TYPES.length >= 90);
+        for (int i = 0; i < FIXTURE_TYPES.length; i++) {
+            assertEquals("signal " + i,
+                    legacyLabel(FIXTURE_TYPES[i], FIXTURE_FREQS[i]),
+                    GnssBand.classify(FIXTURE_TYPES[i], FIXTURE_FREQS[i]).getLabel());
+        }
+        for (var band : GnssBand.values()) {
+            if (band == GnssBand.UNKNOWN) continue;
+            assertSame(band, GnssBand.classify(band.getConstellation(),
+                    band.getCenterFrequencyHz()));
+            assertEquals(legacyLabel(band.getConstellation(), band.getCenterFrequencyHz()),
+                    band.getLabel());
+        }
+    }
+
+    @Test
+    public void test_classify_unknown() {
+        assertSame(GnssBand.UNKNOWN, GnssBand.classify(Constellation.GPS, Double.NaN));
+        assertSame(GnssBand.UNKNOWN, GnssBand.classify(-1, 1575.42e6));
+        assertSame(GnssBand.UNKNOWN, GnssBand.classify(99, 1575.42e6));
+        assertSame(GnssBand.UNKNOWN, GnssBand.classify(Constellation.UNKNOWN, 1575.42e6));
+        assertSame(GnssBand.UNKNOWN, GnssBand.classify(Constellation.GPS, 1000e6));
+        assertSame(GnssBand.UNKNOWN, GnssBand.classify(Constellation.GPS, 3000e6));
+    }
+
+    // if/else chain of GnssSvStatusHolder.getFrequency() before the band index
+    private static String legacyLabel(int type, double freqHz) {
+        double freqMHz = freqHz / 1_000_000d;
+        return switch (type) {
+            case Constellation.GPS -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1227.60, 1d)) yield "L2";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else yield null;
+            }
+            case Constellation.GLONASS -> {
+                if (checkFreqBand(freqMHz, 1598.0625, 1607.0625, 0.1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1242.9375, 1249.9375, 0.1d)) yield "L2";
+                else if (checkFreqBand(freqMHz, 1201.743, 1208.511, 0.1d)) yield "L3";
+                else yield null;
+            }
+            case Constellation.GALILEO -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "E1";
+                else if (checkFreqBand(freqMHz, 1278.75, 1d)) yield "E6";
+                else if (checkFreqBand(freqMHz, 1191.795, 1d)) yield "E5";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "E5a";
+                else if (checkFreqBand(freqMHz, 1207.14, 1d)) yield "E5b";
+                else yield null;
+            }
+            case Constellation.BEIDOU -> {
+                if (checkFreqBand(freqMHz, 1561.098, 1d)) yield "B1I";
+                else if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "B1C";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "B2a";
+                else if (checkFreqBand(freqMHz, 1207.14, 1d)) yield "B2b";
+                else if (checkFreqBand(freqMHz, 1268.52, 1d)) yield "B3";
+                else yield null;
+            }
+            case Constellation.QZSS -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1227.6, 1d)) yield "L2";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else if (checkFreqBand(freqMHz, 1278.75, 1d)) yield "L6";
+                else yield null;
+            }
+            case Constellation.IRNSS -> {
+                if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else if (checkFreqBand(freqMHz, 2492.028, 1d)) yield "S";
+                else yield null;
+            }
+            case Constellation.SBAS -> {
+                if (checkFreqBand(freqMHz, 1575.42, 1d)) yield "L1";
+                else if (checkFreqBand(freqMHz, 1176.45, 1d)) yield "L5";
+                else yield null;
+            }
+            default -> null;
+        };
+    }
+
+    // HelperUtils.checkFreqBand() of the app, kept here for the legacy chain
+    private static boolean checkFreqBand(double freqHz, double startFreqHz, double stopFreqHz,
+                                         double tolerance) {
+        return freqHz >= (startFreqHz - tolerance) && freqHz <= (stopFreqHz + tolerance);
+    }
+
+    private static boolean checkFreqBand(double freqHz, double centerFreqHz, double tolerance) {
+        return Math.copySign(freqHz - centerFreqHz, 1.0) <= tolerance
+                || (freqHz == centerFreqHz)
+                || (Double.isNaN(freqHz) && Double.isNaN(centerFreqHz));
+    }
+}
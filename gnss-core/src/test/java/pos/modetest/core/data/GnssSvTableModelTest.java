@@ -0,0 +1,70 @@
+package pos.modetest.core.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GnssSvTableModelTest {
+    private static final float L1_HZ = 1575.42e6f;
+    private static final float L5_HZ = 1176.45e6f;
+
+    @Test
+    public void test_firstUpdateAllDirty() {
+        var model = new GnssSvTableModel();
+        model.update(status(40.0f, 0));
+        assertEquals(3, model.getRowCount());
+        assertEquals(3, model.getDirtyCount());
+    }
+
+    @Test
+    public void test_onlyChangedRowsDirty() {
+        var model = new GnssSvTableModel();
+        model.update(status(40.0f, 0));
+        // below display resolution
+        model.update(status(40.001f, 0));
+        assertEquals(0, model.getDirtyCount());
+
+        model.update(status(41.0f, 0));
+        assertEquals(1, model.getDirtyCount());
+        assertFalse(model.isDirty(0));
+        assertTrue(model.isDirty(1));
+        assertFalse(model.isDirty(2));
+
+        model.update(status(41.0f, SatelliteData.FLAG_USED_IN_FIX));
+        assertEquals(1, model.getDirtyCount());
+        assertTrue(model.isDirty(1));
+    }
+
+    @Test
+    public void test_keyIncludesBand() {
+        assertNotEquals(GnssSvTableModel.makeKey(Constellation.GPS, 1, L1_HZ),
+                GnssSvTableModel.makeKey(Constellation.GPS, 1, L5_HZ));
+        assertNotEquals(GnssSvTableModel.makeKey(Constellation.GPS, 1, L1_HZ),
+                GnssSvTableModel.makeKey(Constellation.GALILEO, 1, L1_HZ));
+    }
+
+    @Test
+    public void test_shrinkAndClear() {
+        var model = new GnssSvTableModel();
+        model.update(status(40.0f, 0));
+        var sats = new SatelliteData();
+        sats.add(Constellation.GPS, 1, 0, 30f, 45f, 90f, L1_HZ, Float.NaN);
+        model.update(sats);
+        assertEquals(1, model.getRowCount());
+        assertEquals(0, model.getDirtyCount());
+
+        model.clear();
+        model.update(sats);
+        assertEquals(1, model.getDirtyCount());
+        model.update(null);
+        assertEquals(0, model.getRowCount());
+    }
+
+    private static SatelliteData status(float cn0DbHz, int flags) {
+        var sats = new SatelliteData();
+        sats.add(Constellation.GPS, 1, 0, 30f, 45f, 90f, L1_HZ, Float.NaN);
+        sats.add(Constellation.GPS, 1, flags, cn0DbHz, 45f, 90f, L5_HZ, Float.NaN);
+        sats.add(Constellation.GLONASS, 7, 0, 25f, 10f, 180f, Float.NaN, Float.NaN);
+        return sats;
+    }
+}
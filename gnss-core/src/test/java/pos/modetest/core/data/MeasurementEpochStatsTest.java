@@ -0,0 +1,88 @@
+package pos.modetest.core.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MeasurementEpochStatsTest {
+    private static final double L1_HZ = 1575.42e6;
+    private static final double L5_HZ = 1176.45e6;
+
+    @Test
+    public void test_emptyEpoch() {
+        var stats = new MeasurementEpochStats();
+        assertTrue(stats.isFullTracking());
+        assertEquals(0, stats.getMeasurementCount());
+        assertEquals(0, stats.getMultipathCount());
+        assertTrue(Double.isNaN(stats.getAgcMean()));
+        assertTrue(Double.isNaN(stats.getAgcMean(GnssBand.GPS_L1)));
+    }
+
+    @Test
+    public void test_aggregates() {
+        var stats = new MeasurementEpochStats();
+        stats.setFullTracking(false);
+        stats.add(Constellation.GPS, L1_HZ, 42.5, 1.0, false);
+        stats.add(Constellation.GPS, L1_HZ, 30.0, 3.0, true);
+        stats.add(Constellation.GPS, L5_HZ, 12.0, -2.0, false);
+        stats.add(Constellation.GALILEO, Double.NaN, 75.0, Double.NaN, true);
+
+        assertFalse(stats.isFullTracking());
+        assertEquals(4, stats.getMeasurementCount());
+        assertEquals(2, stats.getMultipathCount());
+        assertEquals(2d / 3, stats.getAgcMean(), 1e-9);
+        assertEquals(-2.0, stats.getAgcMin(), 0);
+        assertEquals(3.0, stats.getAgcMax(), 0);
+
+        assertEquals(2, stats.getAgcCount(GnssBand.GPS_L1));
+        assertEquals(2.0, stats.getAgcMean(GnssBand.GPS_L1), 1e-9);
+        assertEquals(1.0, stats.getAgcMin(GnssBand.GPS_L1), 0);
+        assertEquals(3.0, stats.getAgcMax(GnssBand.GPS_L1), 0);
+        assertEquals(-2.0, stats.getAgcMean(GnssBand.GPS_L5), 1e-9);
+        assertEquals(0, stats.getAgcCount(GnssBand.GALILEO_E1));
+
+        assertEquals(1, stats.getCn0HistogramBin(2));  // 12
+        assertEquals(1, stats.getCn0HistogramBin(6));  // 30
+        assertEquals(1, stats.getCn0HistogramBin(8));  // 42.5
+        assertEquals(1, stats.getCn0HistogramBin(MeasurementEpochStats.CN0_BIN_COUNT - 1));
+    }
+
+    @Test
+    public void test_updateFromEpoch() {
+        var data = new MeasurementData();
+        data.setFullTracking(false);
+        int i = data.add(Constellation.GPS, 3);
+        data.setCn0DbHz(i, 42.5);
+        data.setCarrierFrequencyHz(i, (float) L1_HZ);
+        data.setAutomaticGainControlLevelDb(i, 1.0);
+        i = data.add(Constellation.GPS, 3);
+        data.setCn0DbHz(i, 12.0);
+        data.setCarrierFrequencyHz(i, (float) L5_HZ);
+        data.setMultipathIndicator(i, MeasurementData.MULTIPATH_INDICATOR_DETECTED);
+
+        var stats = new MeasurementEpochStats();
+        stats.add(Constellation.GALILEO, L1_HZ, 30.0, 5.0, true);
+        stats.update(data);
+        assertFalse(stats.isFullTracking());
+        assertEquals(2, stats.getMeasurementCount());
+        assertEquals(1, stats.getMultipathCount());
+        assertEquals(1.0, stats.getAgcMean(), 0);
+        assertEquals(1, stats.getAgcCount(GnssBand.GPS_L1));
+        assertEquals(0, stats.getAgcCount(GnssBand.GALILEO_E1));
+        assertEquals(1, stats.getCn0HistogramBin(2));
+    }
+
+    @Test
+    public void test_resetReusesInstance() {
+        var stats = new MeasurementEpochStats();
+        stats.setFullTracking(false);
+        stats.add(Constellation.GPS, L1_HZ, 42.5, 1.0, true);
+        stats.reset();
+        assertTrue(stats.isFullTracking());
+        assertEquals(0, stats.getMeasurementCount());
+        assertEquals(0, stats.getMultipathCount());
+        assertEquals(0, stats.getAgcCount(GnssBand.GPS_L1));
+        assertEquals(0, stats.getCn0HistogramBin(8));
+        assertTrue(Double.isNaN(stats.getAgcMin()));
+    }
+}
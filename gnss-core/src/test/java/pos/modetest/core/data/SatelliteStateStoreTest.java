@@ -0,0 +1,161 @@
+package pos.modetest.core.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class SatelliteStateStoreTest {
+    private static final float L1_HZ = 1575.42e6f;
+    private static final float L5_HZ = 1176.45e6f;
+    private static final float E5A_HZ = 1176.45e6f;
+    private static final long SECOND_NS = 1_000_000_000L;
+
+    private static void add(SatelliteData sats, int constellation, int svid, float cn0,
+                            boolean used, float carrierHz) {
+        sats.add(constellation, svid, used ? SatelliteData.FLAG_USED_IN_FIX : 0, cn0,
+                45f, 90f, carrierHz, Float.NaN);
+    }
+
+    @Test
+    public void test_counters() {
+        var store = new SatelliteStateStore();
+        var sats = new SatelliteData();
+        add(sats, Constellation.GPS, 3, 40f, true, L1_HZ);
+        add(sats, Constellation.GPS, 3, 35f, true, L5_HZ);
+        add(sats, Constellation.GPS, 7, 0f, false, L1_HZ);
+        add(sats, Constellation.GALILEO, 11, 30f, false, E5A_HZ);
+        add(sats, Constellation.GLONASS, 2, 25f, true, Float.NaN);
+        store.update(sats, SECOND_NS);
+
+        assertEquals(5, store.getTotalCount());
+        assertEquals(4, store.getInViewCount());
+        assertEquals(3, store.getUsedCount());
+        assertEquals(3, store.getTotalCount(Constellation.GPS));
+        assertEquals(2, store.getInViewCount(Constellation.GPS));
+        assertEquals(1, store.getUsedCount(GnssBand.GPS_L5));
+        assertEquals(2, store.getInViewCount(GnssBand.Group.L5));
+        assertEquals(1, store.getUsedCount(GnssBand.Group.L5));
+        assertEquals(1, store.getUsedCount(GnssBand.UNKNOWN));
+        assertEquals(37.5, store.getMeanCn0DbHz(Constellation.GPS), 1e-6);
+        assertEquals(40, store.getTopCn0MeanDbHz(Constellation.GPS, 1), 1e-6);
+        assertEquals(37.5, store.getTopCn0MeanDbHz(Constellation.GPS, 4), 1e-6);
+        assertTrue(Double.isNaN(store.getTopCn0MeanDbHz(Constellation.BEIDOU, 4)));
+
+        // GPS 3 L5 lost, GPS 7 acquired and used
+        sats.clear();
+        add(sats, Constellation.GPS, 3, 41f, true, L1_HZ);
+        add(sats, Constellation.GPS, 7, 45f, true, L1_HZ);
+        store.update(sats, 2 * SECOND_NS);
+        assertEquals(2, store.getTotalCount());
+        assertEquals(2, store.getUsedCount(Constellation.GPS));
+        assertEquals(0, store.getUsedCount(GnssBand.Group.L5));
+        assertEquals(0, store.getTotalCount(Constellation.GALILEO));
+        assertEquals(45, store.getTopCn0MeanDbHz(Constellation.GPS, 1), 1e-6);
+
+        int slot = store.findSlot(Constellation.GPS, 7, GnssBand.GPS_L1);
+        assertEquals(2 * SECOND_NS, store.getFirstSeenNanos(slot));
+        assertEquals(2 * SECOND_NS, store.getFirstUsedNanos(slot));
+        assertEquals(slot, store.getRankedSlot(Constellation.GPS, 0));
+        slot = store.findSlot(Constellation.GPS, 3, GnssBand.GPS_L5);
+        assertFalse(store.isPresent(slot));
+        assertEquals(SECOND_NS, store.getLastSeenNanos(slot));
+        assertEquals(GnssBand.GPS_L5, store.getBand(slot));
+        assertEquals(3, store.getSvid(slot));
+        assertEquals(5, store.getSlotCount());
+        assertEquals(-1, store.findSlot(Constellation.GPS, 8, GnssBand.GPS_L1));
+
+        store.clear();
+        assertEquals(0, store.getSlotCount());
+        assertEquals(0, store.getTotalCount());
+        assertEquals(SatelliteStateStore.NEVER,
+                store.getFirstSeenNanos(slotAfterUpdate(store, sats)));
+    }
+
+    private static int slotAfterUpdate(SatelliteStateStore store, SatelliteData sats) {
+        sats.clear();
+        add(sats, Constellation.GPS, 9, 0f, false, L1_HZ);
+        store.update(sats, 3 * SECOND_NS);
+        return store.findSlot(Constellation.GPS, 9, GnssBand.GPS_L1);
+    }
+
+    @Test
+    public void test_update_matchesRecompute() {
+        var random = new Random(7);
+        var store = new SatelliteStateStore();
+        var sats = new SatelliteData();
+        int[] constellations = {Constellation.GPS, Constellation.GALILEO, Constellation.BEIDOU,
+                Constellation.GLONASS};
+        for (int epoch = 0; epoch < 500; epoch++) {
+            sats.clear();
+            for (int c : constellations) {
+                for (int svid = 1; svid <= 40; svid++) {
+                    if (random.nextInt(3) != 0) continue;
+                    float cn0 = random.nextInt(5) == 0 ? 0f : 10f + random.nextInt(400) / 10f;
+                    add(sats, c, svid, cn0, cn0 > 30, random.nextBoolean() ? L1_HZ : L5_HZ);
+                }
+            }
+            store.update(sats, epoch * SECOND_NS);
+
+            int inView = 0;
+            int used = 0;
+            int usedL5 = 0;
+            for (int i = 0; i < sats.getCount(); i++) {
+                if (sats.getCn0DbHz(i) > 0) inView++;
+                if ((sats.getFlags(i) & SatelliteData.FLAG_USED_IN_FIX) != 0) {
+                    used++;
+                    var band = GnssBand.classify(sats.getConstellation(i),
+                            sats.getCarrierFrequencyHz(i));
+                    if (band.getGroup() == GnssBand.Group.L5) usedL5++;
+                }
+            }
+            assertEquals(sats.getCount(), store.getTotalCount());
+            assertEquals(inView, store.getInViewCount());
+            assertEquals(used, store.getUsedCount());
+            assertEquals(usedL5, store.getUsedCount(GnssBand.Group.L5));
+
+            for (int c : constellations) {
+                List<Float> cn0s = new ArrayList<>();
+                for (int i = 0; i < sats.getCount(); i++) {
+                    if (sats.getConstellation(i) == c && sats.getCn0DbHz(i) > 0) {
+                        cn0s.add(sats.getCn0DbHz(i));
+                    }
+                }
+                cn0s.sort(Comparator.reverseOrder());
+                assertEquals(cn0s.size(), store.getRankedCount(c));
+                double top4 = cn0s.stream().limit(4).mapToDouble(f -> f).average().orElse(Double.NaN);
+                assertEquals(top4, store.getTopCn0MeanDbHz(c, 4), 1e-4);
+                double mean = cn0s.stream().mapToDouble(f -> f).average().orElse(Double.NaN);
+                assertEquals(mean, store.getMeanCn0DbHz(c), 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void test_update_allocation() {
+        var store = new SatelliteStateStore();
+        var sats = new SatelliteData();
+        var random = new Random(3);
+        final int epochs = 2_000;
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0;
+        for (int epoch = 0; epoch < epochs * 2; epoch++) {
+            if (epoch == epochs) bytes = threads.getCurrentThreadAllocatedBytes();
+            sats.clear();
+            for (int svid = 1; svid <= 64; svid++) {
+                add(sats, 1 + svid % 6, svid, 20f + random.nextInt(30), svid % 3 == 0,
+                        svid % 2 == 0 ? L1_HZ : L5_HZ);
+            }
+            store.update(sats, epoch * SECOND_NS);
+        }
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        assertEquals(64, store.getTotalCount());
+        // The same signals every epoch, nothing grows once seen
+        assertTrue("allocated " + bytes, bytes < 16 * 1024);
+    }
+}
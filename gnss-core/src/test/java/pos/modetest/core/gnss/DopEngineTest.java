@@ -0,0 +1,197 @@
+package pos.modetest.core.gnss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.SatelliteData;
+
+public class DopEngineTest {
+    private static final float L1_HZ = 1_575.42e6f;
+    private static final float L5_HZ = 1_176.45e6f;
+    private static final int USED = SatelliteData.FLAG_USED_IN_FIX
+            | SatelliteData.FLAG_HAS_EPHEMERIS;
+
+    private static void add(SatelliteData sats, int constellation, int svid, int flags,
+                             float el, float az, float carrierHz) {
+        sats.add(constellation, svid, flags, 40f, el, az, carrierHz, 38f);
+    }
+
+    /** Q = (H^T H)^-1 by Gauss-Jordan on the used SVs of the constellations, one row per SV */
+    private static double[] referenceQ(SatelliteData sats, int mask) {
+        double[] a = new double[16];
+        boolean[] seen = new boolean[Constellation.COUNT * 256];
+        for (int i = 0; i < sats.getCount(); i++) {
+            if ((sats.getFlags(i) & SatelliteData.FLAG_USED_IN_FIX) == 0) continue;
+            if ((mask & (1 << sats.getConstellation(i))) == 0) continue;
+            int key = sats.getConstellation(i) * 256 + sats.getSvid(i);
+            if (seen[key]) continue;
+            seen[key] = true;
+            double el = Math.toRadians(sats.getElevationDegrees(i));
+            double az = Math.toRadians(sats.getAzimuthDegrees(i));
+            double[] row = {Math.cos(el) * Math.sin(az), Math.cos(el) * Math.cos(az),
+                    Math.sin(el), 1};
+            for (int r = 0; r < 4; r++) {
+                for (int c = 0; c < 4; c++) a[r * 4 + c] += row[r] * row[c];
+            }
+        }
+        double[] inv = new double[16];
+        for (int i = 0; i < 4; i++) inv[i * 4 + i] = 1;
+        for (int p = 0; p < 4; p++) {
+            double d = a[p * 4 + p];
+            for (int c = 0; c < 4; c++) {
+                a[p * 4 + c] /= d;
+                inv[p * 4 + c] /= d;
+            }
+            for (int r = 0; r < 4; r++) {
+                if (r == p) continue;
+                double f = a[r * 4 + p];
+                for (int c = 0; c < 4; c++) {
+                    a[r * 4 + c] -= f * a[p * 4 + c];
+                    inv[r * 4 + c] -= f * inv[p * 4 + c];
+                }
+            }
+        }
+        return inv;
+    }
+
+    private static void assertDop(DopEngine dop, int subset, double[] q) {
+        assertEquals(Math.sqrt(q[0] + q[5]), dop.getHdop(subset), 1e-9);
+        assertEquals(Math.sqrt(q[10]), dop.getVdop(subset), 1e-9);
+        assertEquals(Math.sqrt(q[15]), dop.getTdop(subset), 1e-9);
+        assertEquals(Math.sqrt(q[0] + q[5] + q[10]), dop.getPdop(subset), 1e-9);
+        assertEquals(Math.sqrt(q[0] + q[5] + q[10] + q[15]), dop.getGdop(subset), 1e-9);
+    }
+
+    /** Dual-band sky of the given size per constellation, some SVs not used */
+    private static SatelliteData newSky(long seed, int perConstellation) {
+        var sats = new SatelliteData();
+        var random = new Random(seed);
+        int[] constellations = {Constellation.GPS, Constellation.GALILEO,
+                Constellation.BEIDOU, Constellation.GLONASS};
+        for (int c : constellations) {
+            for (int sv = 1; sv <= perConstellation; sv++) {
+                float el = 5f + random.nextFloat() * 85f;
+                float az = random.nextFloat() * 360f;
+                int flags = sv % 5 == 0 ? SatelliteData.FLAG_HAS_EPHEMERIS : USED;
+                add(sats, c, sv, flags, el, az, L1_HZ);
+                if (c != Constellation.GLONASS) add(sats, c, sv, flags, el, az, L5_HZ);
+            }
+        }
+        return sats;
+    }
+
+    @Test
+    public void test_subsets() {
+        var sats = newSky(7, 10);
+        var dop = new DopEngine();
+        dop.update(sats, 1_000);
+        int gps = 1 << Constellation.GPS;
+        int gal = 1 << Constellation.GALILEO;
+        assertDop(dop, DopEngine.SUBSET_GPS, referenceQ(sats, gps));
+        assertDop(dop, DopEngine.SUBSET_GPS_GALILEO, referenceQ(sats, gps | gal));
+        assertDop(dop, DopEngine.SUBSET_ALL, referenceQ(sats, 0xFF));
+        // Dual-band SVs counted once, every fifth SV not used
+        assertEquals(8, dop.getSvCount(DopEngine.SUBSET_GPS));
+        assertEquals(16, dop.getSvCount(DopEngine.SUBSET_GPS_GALILEO));
+        assertEquals(32, dop.getSvCount(DopEngine.SUBSET_ALL));
+        assertTrue(dop.getPdop(DopEngine.SUBSET_ALL) < dop.getPdop(DopEngine.SUBSET_GPS));
+        assertEquals(1_000, dop.getElapsedRealtimeNanos());
+    }
+
+    @Test
+    public void test_knownGeometry() {
+        // Zenith and three SVs on the horizon 120 degrees apart
+        var sats = new SatelliteData();
+        add(sats, Constellation.GPS, 1, USED, 90f, 10f, L1_HZ);
+        add(sats, Constellation.GPS, 2, USED, 0.001f, 0f, L1_HZ);
+        add(sats, Constellation.GPS, 3, USED, 0.001f, 120f, L1_HZ);
+        add(sats, Constellation.GPS, 4, USED, 0.001f, 240f, L1_HZ);
+        var dop = new DopEngine();
+        dop.update(sats, 0);
+        // H^T H = diag(1.5, 1.5, 1, 4) + off diagonal u, t terms of the zenith SV
+        assertEquals(Math.sqrt(4 / 3.0), dop.getHdop(DopEngine.SUBSET_GPS), 1e-3);
+        assertEquals(Math.sqrt(4 / 3.0), dop.getVdop(DopEngine.SUBSET_GPS), 1e-3);
+        assertEquals(Math.sqrt(1 / 3.0), dop.getTdop(DopEngine.SUBSET_GPS), 1e-3);
+    }
+
+    @Test
+    public void test_notEnough() {
+        var sats = new SatelliteData();
+        add(sats, Constellation.GPS, 1, USED, 60f, 10f, L1_HZ);
+        add(sats, Constellation.GPS, 1, USED, 60f, 10f, L5_HZ);
+        add(sats, Constellation.GPS, 2, USED, 30f, 100f, L1_HZ);
+        add(sats, Constellation.GPS, 3, USED, 30f, 200f, L1_HZ);
+        add(sats, Constellation.GPS, 4, SatelliteData.FLAG_HAS_EPHEMERIS, 40f, 300f, L1_HZ);
+        // Unknown position
+        add(sats, Constellation.GPS, 5, USED, 0f, 0f, L1_HZ);
+        add(sats, Constellation.GALILEO, 11, USED, 45f, 300f, L1_HZ);
+        var dop = new DopEngine();
+        dop.update(sats, 0);
+        assertEquals(3, dop.getSvCount(DopEngine.SUBSET_GPS));
+        assertFalse(dop.hasDop(DopEngine.SUBSET_GPS));
+        assertTrue(Double.isNaN(dop.getPdop(DopEngine.SUBSET_GPS)));
+        assertTrue(dop.hasDop(DopEngine.SUBSET_GPS_GALILEO));
+
+        // Same direction twice, singular
+        sats.clear();
+        for (int sv = 1; sv <= 5; sv++) {
+            add(sats, Constellation.GPS, sv, USED, 45f, 90f, L1_HZ);
+        }
+        dop.update(sats, 0);
+        assertEquals(5, dop.getSvCount(DopEngine.SUBSET_GPS));
+        assertFalse(dop.hasDop(DopEngine.SUBSET_GPS));
+
+        dop.setElevationMaskDegrees(50);
+        var sky = newSky(3, 10);
+        dop.update(sky, 0);
+        for (int s = 0; s < DopEngine.SUBSET_COUNT; s++) {
+            assertTrue(dop.getSvCount(s) < 32);
+        }
+        dop.clear();
+        assertFalse(dop.hasDop(DopEngine.SUBSET_ALL));
+        assertEquals(0, dop.getSvCount(DopEngine.SUBSET_ALL));
+    }
+
+    @Test
+    public void test_listeners() {
+        var dop = new DopEngine();
+        long[] calls = new long[2];
+        DopEngine.Listener first = (t, d) -> calls[0] = t;
+        DopEngine.Listener second = (t, d) -> {
+            calls[1] = t;
+            assertSame(dop, d);
+            assertTrue(d.hasDop(DopEngine.SUBSET_ALL));
+        };
+        dop.addListener(first);
+        dop.addListener(second);
+        dop.update(newSky(1, 8), 42);
+        assertArrayEquals(new long[]{42, 42}, calls);
+        dop.removeListener(first);
+        dop.update(newSky(1, 8), 43);
+        assertArrayEquals(new long[]{42, 43}, calls);
+    }
+
+    @Test
+    public void test_update_allocation() {
+        final int epochs = 10_000;
+        // 4 constellations of 12 SVs, 84 signals
+        var sats = newSky(11, 12);
+        var dop = new DopEngine();
+        for (int e = 0; e < epochs / 10; e++) {
+            dop.update(sats, e);
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        for (int e = 0; e < epochs; e++) {
+            dop.update(sats, e);
+        }
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        assertTrue(dop.hasDop(DopEngine.SUBSET_ALL));
+        assertTrue("allocated " + bytes, bytes < 16 * 1024);
+    }
+}
@@ -0,0 +1,461 @@
+package pos.modetest.core.gnss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.NavMessageData;
+
+public class NavMessageDecoderTest {
+    private static final String TAG = NavMessageDecoderTest.class.getSimpleName();
+    private static final int WEEK = 2400;
+    private static final int SVID = 5;
+    private static final int IODE = 0xA5;
+    private static final int TOE_RAW = 450; // x16 s
+    private static final double TOE = TOE_RAW * 16;
+    private static final int[] PARITY_MASKS = {
+            0xBB1F3480, 0x5D8F9A40, 0xAEC7CD00, 0x5763E680, 0x6BB1F340, 0x8B7A89C0};
+
+    // region LNAV encoding
+
+    /** Sets ICD bits (1 based) in the 24 data bits of the words */
+    private static void set(int[] words, int start, int length, long value) {
+        for (int k = 0; k < length; k++) {
+            int p = start - 1 + k;
+            int bit = (int) (value >>> (length - 1 - k)) & 1;
+            int shift = 23 - p % 30;
+            words[p / 30] = (words[p / 30] & ~(1 << shift)) | (bit << shift);
+        }
+    }
+
+    private static void set32(int[] words, int msbStart, int lsbStart, int value) {
+        set(words, msbStart, 8, value >>> 24);
+        set(words, lsbStart, 24, value & 0xFFFFFF);
+    }
+
+    /** TLM and HOW of a subframe starting at the given time of week */
+    private static int[] subframe(int id, int tow) {
+        int[] words = new int[NavMessageDecoder.LNAV_WORDS];
+        words[0] = NavMessageDecoder.LNAV_PREAMBLE << 16;
+        words[1] = ((tow / 6 + 1) << 7) | (id << 2);
+        return words;
+    }
+
+    /** Adds parity and the D30* inversion, as the SV does */
+    private static void encode(int[] words, NavMessageData msg, int svid) {
+        msg.set(NavMessageData.TYPE_GPS_L1CA, svid, 1, (words[1] >>> 2) & 7,
+                NavMessageData.STATUS_PARITY_PASSED);
+        byte[] out = msg.ensureData(NavMessageDecoder.LNAV_BYTES);
+        int prev = 0;
+        for (int i = 0; i < words.length; i++) {
+            int word = (prev << 30) | (words[i] << 6);
+            int parity = 0;
+            for (int mask : PARITY_MASKS) {
+                parity = (parity << 1) | (Integer.bitCount(word & mask) & 1);
+            }
+            word |= parity;
+            if ((prev & 1) != 0) word ^= 0x3FFFFFC0;
+            int raw = word & 0x3FFFFFFF;
+            for (int b = 0; b < 4; b++) {
+                out[4 * i + b] = (byte) (raw >>> (24 - 8 * b));
+            }
+            prev = raw & 3;
+        }
+    }
+
+    private static int[][] ephemerisSubframes(int iode, int toeRaw, int tow) {
+        int[] sf1 = subframe(1, tow);
+        set(sf1, 61, 10, WEEK % 1024);
+        set(sf1, 73, 4, 2);
+        set(sf1, 83, 2, 1);
+        set(sf1, 197, 8, -12);
+        set(sf1, 211, 8, iode);
+        set(sf1, 219, 16, toeRaw);
+        set(sf1, 249, 16, -300);
+        set(sf1, 271, 22, 123456);
+
+        int[] sf2 = subframe(2, tow + 6);
+        set(sf2, 61, 8, iode);
+        set(sf2, 69, 16, -1000);
+        set(sf2, 91, 16, 12345);
+        set32(sf2, 107, 121, 0x9ABCDEF0);
+        set(sf2, 151, 16, -2000);
+        set32(sf2, 167, 181, 0x00A00000);
+        set(sf2, 211, 16, 3000);
+        set32(sf2, 227, 241, 0xA10D1234);
+        set(sf2, 271, 16, toeRaw);
+
+        int[] sf3 = subframe(3, tow + 12);
+        set(sf3, 61, 16, -50);
+        set32(sf3, 77, 91, 0x40000000);
+        set(sf3, 121, 16, 60);
+        set32(sf3, 137, 151, 0x28000000);
+        set(sf3, 181, 16, 7000);
+        set32(sf3, 197, 211, -0x12345678);
+        set(sf3, 241, 24, -20000);
+        set(sf3, 271, 8, iode);
+        set(sf3, 279, 14, -100);
+        return new int[][]{sf1, sf2, sf3};
+    }
+
+    private static boolean decodeAll(NavMessageDecoder decoder, int[][] subframes) {
+        var msg = new NavMessageData();
+        boolean changed = false;
+        for (int[] sf : subframes) {
+            encode(sf, msg, SVID);
+            changed = decoder.decode(msg);
+        }
+        return changed;
+    }
+
+    private static NavMessageDecoder newDecoder(EphemerisCache cache) {
+        var decoder = new NavMessageDecoder(cache);
+        decoder.setReferenceWeek(WEEK + 3);
+        return decoder;
+    }
+
+    // endregion
+
+    @Test
+    public void test_lnavEphemeris() {
+        var cache = new EphemerisCache();
+        var decoder = newDecoder(cache);
+        int[][] sfs = ephemerisSubframes(IODE, TOE_RAW, 7000);
+        var msg = new NavMessageData();
+        encode(sfs[0], msg, SVID);
+        assertFalse(decoder.decode(msg));
+        encode(sfs[1], msg, SVID);
+        assertFalse(decoder.decode(msg));
+        encode(sfs[2], msg, SVID);
+        assertTrue(decoder.decode(msg));
+        assertEquals(0, decoder.getRejectedCount());
+
+        Ephemeris eph = cache.get(Constellation.GPS, SVID);
+        assertNotNull(eph);
+        assertEquals(WEEK, eph.getWeek());
+        assertEquals(TOE, eph.getToe(), 0);
+        assertEquals(TOE, eph.getToc(), 0);
+        assertEquals(IODE, eph.getIode());
+        assertEquals(0x100 | IODE, eph.getIodc());
+        assertEquals(2, eph.getAccuracyIndex());
+        assertEquals(0, eph.getHealth());
+        assertEquals(-12 * 0x1p-31, eph.getTgd(), 0);
+        assertEquals(-300 * 0x1p-43, eph.getAf1(), 0);
+        assertEquals(123456 * 0x1p-31, eph.getAf0(), 0);
+        assertEquals(-1000 * 0x1p-5, eph.getCrs(), 0);
+        assertEquals(12345 * 0x1p-43 * Math.PI, eph.getDeltaN(), 0);
+        assertEquals(0x9ABCDEF0 * 0x1p-31 * Math.PI, eph.getM0(), 0);
+        assertTrue(eph.getM0() < 0);
+        assertEquals(0x00A00000 * 0x1p-33, eph.getE(), 0);
+        assertEquals(0xA10D1234L * 0x1p-19, eph.getSqrtA(), 0);
+        assertEquals(3000 * 0x1p-29, eph.getCus(), 0);
+        assertEquals(-50 * 0x1p-29, eph.getCic(), 0);
+        assertEquals(Math.PI / 2, eph.getOmega0(), 0);
+        assertEquals(0x28000000 * 0x1p-31 * Math.PI, eph.getI0(), 0);
+        assertEquals(7000 * 0x1p-5, eph.getCrc(), 0);
+        assertEquals(-0x12345678 * 0x1p-31 * Math.PI, eph.getOmega(), 0);
+        assertEquals(-20000 * 0x1p-43 * Math.PI, eph.getOmegaDot(), 0);
+        assertEquals(-100 * 0x1p-43 * Math.PI, eph.getIdot(), 0);
+
+        double toe = WEEK * GnssTime.WEEK_SECONDS + TOE;
+        assertEquals(1, cache.getValidCount(toe + 3600));
+        assertEquals(0, cache.getValidCount(toe + 3 * 3600));
+    }
+
+    @Test
+    public void test_lnavParity() {
+        var cache = new EphemerisCache();
+        var decoder = newDecoder(cache);
+        int[][] sfs = ephemerisSubframes(IODE, TOE_RAW, 7000);
+        var msg = new NavMessageData();
+        encode(sfs[0], msg, SVID);
+        decoder.decode(msg);
+        encode(sfs[1], msg, SVID);
+        decoder.decode(msg);
+        encode(sfs[2], msg, SVID);
+        msg.getData()[13] ^= 0x10;
+        assertFalse(decoder.decode(msg));
+        assertEquals(1, decoder.getRejectedCount());
+        assertNull(cache.get(Constellation.GPS, SVID));
+
+        // Unsupported types are only counted
+        msg.set(NavMessageData.TYPE_BDS_D1, 10, 1, 1, NavMessageData.STATUS_PARITY_PASSED);
+        assertFalse(decoder.decode(msg));
+        assertEquals(1, decoder.getIgnoredCount());
+        assertEquals(4, decoder.getMessageCount());
+    }
+
+    @Test
+    public void test_lnavNewIssue() {
+        var cache = new EphemerisCache();
+        var decoder = newDecoder(cache);
+        assertTrue(decodeAll(decoder, ephemerisSubframes(IODE, TOE_RAW, 7000)));
+        long version = cache.getVersion();
+        // Repeated frame, nothing new
+        assertFalse(decodeAll(decoder, ephemerisSubframes(IODE, TOE_RAW, 7030)));
+        assertEquals(version, cache.getVersion());
+
+        // Cut-over in the middle of a frame waits for consistent subframes
+        int[][] next = ephemerisSubframes(IODE + 1, TOE_RAW + 450, 7060);
+        int[][] old = ephemerisSubframes(IODE, TOE_RAW, 7060);
+        assertFalse(decodeAll(decoder, new int[][]{next[0], next[1], old[2]}));
+        assertTrue(decodeAll(decoder, new int[][]{next[2]}));
+
+        assertEquals(IODE + 1, cache.get(Constellation.GPS, SVID).getIode());
+        assertEquals(TOE + 7200, cache.get(Constellation.GPS, SVID).getToe(), 0);
+        assertNotNull(cache.get(Constellation.GPS, SVID, IODE));
+        assertEquals(1, cache.getSvCount());
+    }
+
+    @Test
+    public void test_lnavIonoAndAlmanac() {
+        var cache = new EphemerisCache();
+        var decoder = newDecoder(cache);
+        var msg = new NavMessageData();
+
+        int[] iono = subframe(4, 7000);
+        set(iono, 63, 6, NavMessageDecoder.LNAV_IONO_SV_ID);
+        set(iono, 69, 8, 12);
+        set(iono, 77, 8, -3);
+        set(iono, 91, 8, -60);
+        set(iono, 99, 8, 100);
+        set(iono, 107, 8, 50);
+        set(iono, 121, 8, -2);
+        set(iono, 129, 8, 4);
+        set(iono, 137, 8, -1);
+        encode(iono, msg, SVID);
+        assertTrue(decoder.decode(msg));
+        double[] k = new double[8];
+        assertTrue(cache.getKlobuchar(k));
+        assertArrayEquals(new double[]{12 * 0x1p-30, -3 * 0x1p-27, -60 * 0x1p-24,
+                100 * 0x1p-24, 50 * 0x1p11, -2 * 0x1p14, 4 * 0x1p16, -1 * 0x1p16}, k, 0);
+
+        int[] alm = subframe(5, 7006);
+        set(alm, 63, 6, 7);
+        set(alm, 69, 16, 20000);
+        set(alm, 91, 8, 2);
+        set(alm, 99, 16, -1000);
+        set(alm, 121, 16, -300);
+        set(alm, 151, 24, 10554000);
+        set(alm, 181, 24, 0x200000);
+        set(alm, 211, 24, -0x100000);
+        set(alm, 241, 24, 12345);
+        set(alm, 271, 8, (-5 >> 3) & 0xFF);
+        set(alm, 279, 11, -2);
+        set(alm, 290, 3, -5 & 7);
+        encode(alm, msg, SVID);
+        assertTrue(decoder.decode(msg));
+        assertFalse(decoder.decode(msg));
+
+        Almanac a = cache.getAlmanac(Constellation.GPS, 7);
+        assertNotNull(a);
+        assertEquals(8192, a.getToa(), 0);
+        assertEquals(20000 * 0x1p-21, a.getE(), 0);
+        assertEquals((0.3 - 1000 * 0x1p-19) * Math.PI, a.getI(), 0);
+        assertEquals(-300 * 0x1p-38 * Math.PI, a.getOmegaDot(), 0);
+        assertEquals(10554000 * 0x1p-11, a.getSqrtA(), 0);
+        assertEquals(0.25 * Math.PI, a.getOmega0(), 0);
+        assertEquals(-0.125 * Math.PI, a.getOmega(), 0);
+        assertEquals(12345 * 0x1p-23 * Math.PI, a.getM0(), 0);
+        assertEquals(-5 * 0x1p-20, a.getAf0(), 0);
+        assertEquals(-2 * 0x1p-38, a.getAf1(), 0);
+        assertEquals(1, cache.getAlmanacCount());
+    }
+
+    // region I/NAV encoding
+
+    private static void setBits(byte[] data, int start, int length, long value) {
+        for (int k = 0; k < length; k++) {
+            int p = start + k;
+            int bit = (int) (value >>> (length - 1 - k)) & 1;
+            int mask = 1 << (7 - (p & 7));
+            data[p >>> 3] = (byte) (bit != 0 ? data[p >>> 3] | mask : data[p >>> 3] & ~mask);
+        }
+    }
+
+    /** Nominal even and odd page around a 128 bit word */
+    private static void encodePage(byte[] word, NavMessageData msg, int svid) {
+        msg.set(NavMessageData.TYPE_GAL_I, svid, 0, 0, NavMessageData.STATUS_PARITY_PASSED);
+        byte[] page = msg.ensureData(NavMessageDecoder.INAV_BYTES);
+        Arrays.fill(page, 0, NavMessageDecoder.INAV_BYTES, (byte) 0);
+        for (int i = 0; i < 112; i++) {
+            setBits(page, 2 + i, 1, NavMessageDecoder.getBits(word, i, 1));
+        }
+        setBits(page, 114, 1, 1);
+        setBits(page, 116, 16, NavMessageDecoder.getBits(word, 112, 16));
+        setBits(page, NavMessageDecoder.INAV_CRC_BITS, 24,
+                NavMessageDecoder.crc24q(page, NavMessageDecoder.INAV_CRC_BITS));
+    }
+
+    private static byte[][] inavWords(int iod) {
+        byte[][] w = new byte[5][NavMessageDecoder.INAV_WORD_BYTES];
+        for (int t = 0; t < 5; t++) {
+            setBits(w[t], 0, 6, t + 1);
+            if (t < 4) setBits(w[t], 6, 10, iod);
+        }
+        setBits(w[0], 16, 14, 120);
+        setBits(w[0], 30, 32, 0x40000000L);
+        setBits(w[0], 62, 32, 0x00200000L);
+        setBits(w[0], 94, 32, 0xB5000000L);
+        setBits(w[1], 16, 32, -0x20000000L);
+        setBits(w[1], 48, 32, 0x30000000L);
+        setBits(w[1], 80, 32, 0x10000000L);
+        setBits(w[1], 112, 14, -40);
+        setBits(w[2], 16, 24, -15000);
+        setBits(w[2], 40, 16, 9000);
+        setBits(w[2], 56, 16, -700);
+        setBits(w[2], 72, 16, 800);
+        setBits(w[2], 88, 16, 5000);
+        setBits(w[2], 104, 16, -90);
+        setBits(w[2], 120, 8, 107);
+        setBits(w[3], 16, 6, 11);
+        setBits(w[3], 22, 16, 20);
+        setBits(w[3], 38, 16, -30);
+        setBits(w[3], 54, 14, 120);
+        setBits(w[3], 68, 31, -1234567);
+        setBits(w[3], 99, 21, 4321);
+        setBits(w[3], 120, 6, -1);
+        setBits(w[4], 6, 11, 100);
+        setBits(w[4], 17, 11, -5);
+        setBits(w[4], 28, 14, 3);
+        setBits(w[4], 57, 10, -7);
+        setBits(w[4], 73, 12, WEEK - GnssTime.GALILEO_WEEK_OFFSET);
+        setBits(w[4], 85, 20, 7000);
+        return w;
+    }
+
+    // endregion
+
+    @Test
+    public void test_inavEphemeris() {
+        var cache = new EphemerisCache();
+        var decoder = newDecoder(cache);
+        var msg = new NavMessageData();
+        byte[][] words = inavWords(77);
+        for (int t = 0; t < 4; t++) {
+            encodePage(words[t], msg, 11);
+            assertFalse(decoder.decode(msg));
+        }
+        // Week from word 5 completes it
+        encodePage(words[4], msg, 11);
+        assertTrue(decoder.decode(msg));
+        assertEquals(0, decoder.getRejectedCount());
+
+        Ephemeris eph = cache.get(Constellation.GALILEO, 11);
+        assertNotNull(eph);
+        assertEquals(WEEK, eph.getWeek());
+        assertEquals(7200, eph.getToe(), 0);
+        assertEquals(7200, eph.getToc(), 0);
+        assertEquals(77, eph.getIode());
+        assertEquals(107, eph.getAccuracyIndex());
+        assertEquals(0.5 * Math.PI, eph.getM0(), 0);
+        assertEquals(0x00200000 * 0x1p-33, eph.getE(), 0);
+        assertEquals(0xB5000000L * 0x1p-19, eph.getSqrtA(), 0);
+        assertEquals(-0.25 * Math.PI, eph.getOmega0(), 0);
+        assertEquals(0.375 * Math.PI, eph.getI0(), 0);
+        assertEquals(0.125 * Math.PI, eph.getOmega(), 0);
+        assertEquals(-40 * 0x1p-43 * Math.PI, eph.getIdot(), 0);
+        assertEquals(-15000 * 0x1p-43 * Math.PI, eph.getOmegaDot(), 0);
+        assertEquals(9000 * 0x1p-43 * Math.PI, eph.getDeltaN(), 0);
+        assertEquals(-700 * 0x1p-29, eph.getCuc(), 0);
+        assertEquals(800 * 0x1p-29, eph.getCus(), 0);
+        assertEquals(5000 * 0x1p-5, eph.getCrc(), 0);
+        assertEquals(-90 * 0x1p-5, eph.getCrs(), 0);
+        assertEquals(20 * 0x1p-29, eph.getCic(), 0);
+        assertEquals(-30 * 0x1p-29, eph.getCis(), 0);
+        assertEquals(-1234567 * 0x1p-34, eph.getAf0(), 0);
+        assertEquals(4321 * 0x1p-46, eph.getAf1(), 0);
+        assertEquals(-1 * 0x1p-59, eph.getAf2(), 0);
+        assertEquals(-7 * 0x1p-32, eph.getTgd(), 0);
+
+        double[] ai = new double[3];
+        assertTrue(cache.getNeQuick(ai));
+        assertArrayEquals(new double[]{25, -5 * 0x1p-8, 3 * 0x1p-15}, ai, 0);
+
+        // A valid Galileo ephemeris holds 4 hours
+        assertEquals(1, cache.getValidCount(eph.getToeGpsSeconds() + 3 * 3600));
+
+        // Corrupted CRC
+        encodePage(words[0], msg, 11);
+        msg.getData()[5] ^= 1;
+        assertFalse(decoder.decode(msg));
+        assertEquals(1, decoder.getRejectedCount());
+    }
+
+    @Test
+    public void test_cachePersistence() throws IOException {
+        var cache = new EphemerisCache();
+        var decoder = newDecoder(cache);
+        decodeAll(decoder, ephemerisSubframes(IODE, TOE_RAW, 7000));
+        decodeAll(decoder, ephemerisSubframes(IODE + 1, TOE_RAW + 450, 14200));
+        var msg = new NavMessageData();
+        for (byte[] w : inavWords(3)) {
+            encodePage(w, msg, 2);
+            decoder.decode(msg);
+        }
+
+        var dir = Files.createTempDirectory(TAG);
+        var file = dir.resolve(EphemerisCache.FILE_NAME);
+        try {
+            cache.save(file);
+            var loaded = new EphemerisCache();
+            assertEquals(3, loaded.load(file));
+            assertEquals(2, loaded.getSvCount());
+            Ephemeris a = cache.get(Constellation.GPS, SVID);
+            Ephemeris b = loaded.get(Constellation.GPS, SVID);
+            assertNotNull(b);
+            assertTrue(a.isSameIssue(b));
+            assertEquals(a.getSqrtA(), b.getSqrtA(), 0);
+            assertEquals(a.getOmega(), b.getOmega(), 0);
+            assertNotNull(loaded.get(Constellation.GPS, SVID, IODE));
+            assertTrue(loaded.getNeQuick(new double[3]));
+            assertFalse(loaded.getKlobuchar(new double[8]));
+
+            // Loading again changes nothing
+            long version = loaded.getVersion();
+            loaded.load(file);
+            assertEquals(version, loaded.getVersion());
+
+            assertEquals(0, new EphemerisCache().load(dir.resolve("missing.bin")));
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+            assertThrows(IOException.class, () -> new EphemerisCache().load(file));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void test_decode_allocation() {
+        var cache = new EphemerisCache();
+        var decoder = newDecoder(cache);
+        int count = 32;
+        var messages = new NavMessageData[count * 3];
+        for (int sv = 0; sv < count; sv++) {
+            int[][] sfs = ephemerisSubframes(IODE, TOE_RAW, 7000);
+            for (int i = 0; i < 3; i++) {
+                messages[sv * 3 + i] = new NavMessageData();
+                encode(sfs[i], messages[sv * 3 + i], sv + 1);
+            }
+        }
+        for (var msg : messages) decoder.decode(msg);
+        assertEquals(count, cache.getSvCount());
+
+        // Repeated frames, the steady state once every SV is known
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        for (int r = 0; r < 200; r++) {
+            for (var msg : messages) assertFalse(decoder.decode(msg));
+        }
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        assertEquals(count, cache.getSvCount());
+        assertEquals(0, decoder.getRejectedCount());
+        assertTrue("allocated " + bytes, bytes < 16 * 1024);
+    }
+}
@@ -0,0 +1,193 @@
+package pos.modetest.core.gnss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import pos.modetest.core.data.Constellation;
+
+public class OrbitPropagatorTest {
+    private static final int WEEK = 2400;
+    private static final double TOE = 7200;
+    private static final double LAT = Math.toRadians(48.137);
+    private static final double LON = Math.toRadians(11.575);
+
+    private static double gps(double timeOfWeek) {
+        return WEEK * GnssTime.WEEK_SECONDS + timeOfWeek;
+    }
+
+    @Test
+    public void test_fitMatchesOrbit() {
+        var cache = PvtEngineTest.newCache();
+        var propagator = new OrbitPropagator(cache);
+        double[] expected = new double[4];
+        double[] actual = new double[4];
+        double maxPos = 0;
+        double maxClock = 0;
+        for (Ephemeris eph : cache.getValid(gps(TOE))) {
+            for (double tow = TOE - 3600; tow <= TOE + 3600; tow += 37.3) {
+                assertTrue(propagator.getPosition(eph.getConstellation(), eph.getSvid(),
+                        gps(tow), actual));
+                SatelliteOrbit.compute(eph, WEEK, tow, expected);
+                double dx = actual[0] - expected[0];
+                double dy = actual[1] - expected[1];
+                double dz = actual[2] - expected[2];
+                maxPos = Math.max(maxPos, Math.sqrt(dx * dx + dy * dy + dz * dz));
+                maxClock = Math.max(maxClock, Math.abs(actual[3] - expected[3]));
+            }
+        }
+        assertTrue(maxPos < 1e-3);
+        assertTrue(maxClock < 1e-12);
+        assertFalse(propagator.getPosition(Constellation.GPS, 33, gps(TOE), actual));
+        assertFalse(propagator.getPosition(Constellation.GPS, 1, gps(TOE + 5 * 3600), actual));
+    }
+
+    @Test
+    public void test_reuseAndRefit() {
+        var cache = PvtEngineTest.newCache();
+        var propagator = new OrbitPropagator(cache);
+        double[] out = new double[4];
+        for (int i = 0; i < 100; i++) {
+            propagator.getPosition(Constellation.GPS, 5, gps(TOE + i), out);
+        }
+        assertEquals(1, propagator.getFitCount());
+
+        // Newer issue of data closer to the window, refitted once
+        Ephemeris old = cache.get(Constellation.GPS, 5);
+        var eph = copy(old);
+        eph.setToe(TOE + 1200);
+        eph.setToc(TOE + 1200);
+        eph.setIode(old.getIode() + 1);
+        eph.setM0(old.getM0() + 1e-3);
+        assertTrue(cache.put(eph));
+        propagator.getPosition(Constellation.GPS, 5, gps(TOE + 100), out);
+        propagator.getPosition(Constellation.GPS, 5, gps(TOE + 101), out);
+        assertEquals(2, propagator.getFitCount());
+        double[] expected = new double[4];
+        SatelliteOrbit.compute(eph, WEEK, TOE + 101, expected);
+        assertEquals(expected[0], out[0], 1e-3);
+
+        // Unrelated change of the cache, same source
+        cache.setNeQuick(new double[]{60, 0.2, 0});
+        propagator.getPosition(Constellation.GPS, 5, gps(TOE + 102), out);
+        assertEquals(2, propagator.getFitCount());
+    }
+
+    @Test
+    public void test_almanacFallback() {
+        var cache = new EphemerisCache();
+        var alm = new Almanac();
+        alm.setSv(Constellation.GPS, 7);
+        alm.setWeek(WEEK);
+        alm.setToa(61440);
+        alm.setSqrtA(5153.6);
+        alm.setE(0.012);
+        alm.setI(Math.toRadians(55.3));
+        alm.setOmega0(1.2);
+        alm.setOmega(0.7);
+        alm.setM0(-2.1);
+        alm.setOmegaDot(-8.1e-9);
+        alm.setAf0(2e-5);
+        alm.setAf1(1e-12);
+        cache.putAlmanac(alm);
+        var propagator = new OrbitPropagator(cache);
+        double[] out = new double[4];
+        double[] expected = new double[4];
+        double tow = 61440 + 86400;
+        assertTrue(propagator.getPosition(Constellation.GPS, 7, gps(tow), out));
+        SatelliteOrbit.compute(Ephemeris.fromAlmanac(alm), WEEK, tow, expected);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(expected[i], out[i], i < 3 ? 1e-3 : 1e-12);
+        }
+        double r = Math.sqrt(out[0] * out[0] + out[1] * out[1] + out[2] * out[2]);
+        assertEquals(5153.6 * 5153.6, r, 0.02 * r);
+        assertFalse(propagator.getPosition(Constellation.GPS, 7, gps(tow + 7 * 86400), out));
+
+        alm.setHealth(63);
+        cache.clear();
+        cache.putAlmanac(alm);
+        assertFalse(propagator.getPosition(Constellation.GPS, 7, gps(tow), out));
+    }
+
+    @Test
+    public void test_propagate() {
+        var cache = PvtEngineTest.newCache();
+        var grid = new OrbitGrid();
+        grid.setReceiver(LAT, LON, 520);
+        var pool = new ForkJoinPool(4);
+        try {
+            var propagator = new OrbitPropagator(cache, pool);
+            propagator.propagate(gps(TOE - 600), 60, 61, grid);
+            assertEquals(62, grid.getSvCount());
+            assertEquals(61, grid.getStepCount());
+
+            var sequential = new OrbitPropagator(cache);
+            double[] out = new double[4];
+            for (int sv = 0; sv < grid.getSvCount(); sv++) {
+                for (int k = 0; k < grid.getStepCount(); k++) {
+                    assertTrue(sequential.getPosition(grid.getConstellation(sv),
+                            grid.getSvid(sv), grid.getGpsSeconds(k), out));
+                    assertEquals(out[0], grid.getX(sv, k), 0);
+                    assertEquals(out[1], grid.getY(sv, k), 0);
+                    assertEquals(out[2], grid.getZ(sv, k), 0);
+                    double el = grid.getElevationDegrees(sv, k);
+                    assertTrue(el >= -90 && el <= 90);
+                    double az = grid.getAzimuthDegrees(sv, k);
+                    assertTrue(az >= 0 && az < 360);
+                }
+            }
+            for (int k = 0; k < grid.getStepCount(); k++) {
+                int visible = grid.getVisibleCount(k, 10);
+                assertTrue(visible >= 8 && visible < grid.getSvCount());
+            }
+            assertEquals(Constellation.GPS, grid.getConstellation(0));
+            assertEquals(1, grid.getSvid(0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test_propagateReusesFits() {
+        var cache = PvtEngineTest.newCache();
+        var grid = new OrbitGrid();
+        grid.setReceiver(LAT, LON, 520);
+        var propagator = new OrbitPropagator(cache);
+        // Half an hour, two fit windows per SV
+        propagator.propagate(gps(TOE - 1800), 30, 61, grid);
+        int fits = propagator.getFitCount();
+        assertEquals(62 * 2, fits);
+        for (int i = 0; i < 3; i++) {
+            propagator.propagate(gps(TOE - 1800), 30, 61, grid);
+        }
+        assertEquals(fits, propagator.getFitCount());
+        assertEquals(62 * 61, grid.getSvCount() * grid.getStepCount());
+
+        propagator.clear();
+        propagator.propagate(gps(TOE - 1800), 30, 61, grid);
+        assertEquals(2 * fits, propagator.getFitCount());
+    }
+
+    private static Ephemeris copy(Ephemeris src) {
+        var eph = new Ephemeris();
+        eph.setSv(src.getConstellation(), src.getSvid());
+        eph.setWeek(src.getWeek());
+        eph.setToe(src.getToe());
+        eph.setToc(src.getToc());
+        eph.setIode(src.getIode());
+        eph.setSqrtA(src.getSqrtA());
+        eph.setE(src.getE());
+        eph.setI0(src.getI0());
+        eph.setOmega0(src.getOmega0());
+        eph.setOmega(src.getOmega());
+        eph.setM0(src.getM0());
+        eph.setDeltaN(src.getDeltaN());
+        eph.setOmegaDot(src.getOmegaDot());
+        eph.setIdot(src.getIdot());
+        eph.setAf0(src.getAf0());
+        eph.setAf1(src.getAf1());
+        return eph;
+    }
+}
@@ -0,0 +1,230 @@
+package pos.modetest.core.gnss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.recorder.SessionFormat;
+import pos.modetest.core.recorder.SessionReader;
+import pos.modetest.core.recorder.SessionWriter;
+
+public class PseudorangeEngineTest {
+    private static final String TAG = PseudorangeEngineTest.class.getSimpleName();
+    private static final long SECOND_NS = PseudorangeEngine.SECOND_NANOS;
+    private static final long WEEK_NS = PseudorangeEngine.WEEK_NANOS;
+    private static final long DAY_NS = PseudorangeEngine.DAY_NANOS;
+    private static final long TIME_NANOS = 5_000 * SECOND_NS;
+    private static final double BIAS_NANOS = 0.25;
+    private static final double TIME_OFFSET_NANOS = 0.75;
+    private static final double METERS_PER_NS = PseudorangeEngine.SPEED_OF_LIGHT_M_S * 1e-9;
+    private static final int TOW = MeasurementData.STATE_CODE_LOCK
+            | MeasurementData.STATE_TOW_DECODED;
+    private static final int GLO_TOD = MeasurementData.STATE_CODE_LOCK
+            | MeasurementData.STATE_GLO_TOD_DECODED;
+
+    /** Clock at the given GPS time */
+    private static MeasurementData newEpoch(long gpsNanos) {
+        var data = new MeasurementData();
+        data.setTimeNanos(TIME_NANOS);
+        data.setFullBiasNanos(TIME_NANOS - gpsNanos);
+        data.setBiasNanos(BIAS_NANOS);
+        return data;
+    }
+
+    /** Measurement with the given whole travel time, received time in the SV time scale */
+    private static int add(MeasurementData data, int constellation, int svid, int state,
+                           long travelNanos, long svTimeOffsetNanos, long rangeNanos) {
+        long gpsNanos = data.getTimeNanos() - data.getFullBiasNanos();
+        int i = data.add(constellation, svid);
+        data.setState(i, state);
+        data.setTimeOffsetNanos(i, TIME_OFFSET_NANOS);
+        data.setReceivedSvTimeNanos(i,
+                Math.floorMod(gpsNanos + svTimeOffsetNanos - travelNanos, rangeNanos));
+        data.setReceivedSvTimeUncertaintyNanos(i, 10);
+        data.setPseudorangeRateMetersPerSecond(i, -250.5);
+        return i;
+    }
+
+    private static double expectedRange(long travelNanos) {
+        return (travelNanos + TIME_OFFSET_NANOS - BIAS_NANOS) * METERS_PER_NS;
+    }
+
+    @Test
+    public void test_constellations() {
+        // 30 ms into GPS week 2400, transmitted in the previous week
+        var data = newEpoch(2400 * WEEK_NS + 30_000_000L);
+        add(data, Constellation.GPS, 5, TOW, 72_123_456L, 0, WEEK_NS);
+        add(data, Constellation.QZSS, 193, TOW, 110_000_001L, 0, WEEK_NS);
+        add(data, Constellation.GALILEO, 11, TOW, 86_000_000L, 0, WEEK_NS);
+        add(data, Constellation.BEIDOU, 3, TOW, 125_400_000L,
+                -PseudorangeEngine.BDS_OFFSET_NANOS, WEEK_NS);
+        data.setLeapSecond(18);
+        add(data, Constellation.GLONASS, 7, GLO_TOD, 68_900_000L,
+                PseudorangeEngine.GLONASS_OFFSET_NANOS - 18 * SECOND_NS, DAY_NS);
+
+        var engine = new PseudorangeEngine();
+        assertEquals(5, engine.compute(data));
+        assertEquals(2400, engine.getGpsWeek());
+        assertEquals(30_000_000L, engine.getReceiveTimeOfWeekNanos());
+        long[] travels = {72_123_456L, 110_000_001L, 86_000_000L, 125_400_000L, 68_900_000L};
+        for (int i = 0; i < travels.length; i++) {
+            assertTrue(engine.hasPseudorange(i));
+            assertEquals(expectedRange(travels[i]), engine.getPseudorangeMeters(i), 1e-6);
+            assertEquals(10 * METERS_PER_NS, engine.getPseudorangeUncertaintyMeters(i), 1e-9);
+            assertEquals(-250.5, engine.getPseudorangeRateMetersPerSecond(i), 0);
+        }
+        // Previous week
+        assertEquals((WEEK_NS - 42_123_456L) * 1e-9, engine.getTransmitTimeOfWeekSeconds(0),
+                1e-9);
+        assertEquals((WEEK_NS - 95_400_000L) * 1e-9, engine.getTransmitTimeOfWeekSeconds(3),
+                1e-9);
+    }
+
+    @Test
+    public void test_ambiguity() {
+        long gpsNanos = 2400 * WEEK_NS + 123 * SECOND_NS;
+        var data = newEpoch(gpsNanos);
+        // Received time known modulo 100 ms, 2 s and 6 s
+        add(data, Constellation.GALILEO, 1, MeasurementData.STATE_GAL_E1BC_CODE_LOCK
+                | MeasurementData.STATE_GAL_E1C_2ND_CODE_LOCK, 93_000_000L, 0, 100_000_000L);
+        add(data, Constellation.GLONASS, 2, MeasurementData.STATE_CODE_LOCK
+                | MeasurementData.STATE_GLO_STRING_SYNC, 70_000_000L,
+                PseudorangeEngine.GLONASS_OFFSET_NANOS - 18 * SECOND_NS, 2 * SECOND_NS);
+        add(data, Constellation.GPS, 3, MeasurementData.STATE_CODE_LOCK
+                | MeasurementData.STATE_SUBFRAME_SYNC, 80_000_000L, 0, 6 * SECOND_NS);
+        // Bit sync only, 20 ms
+        add(data, Constellation.GPS, 4, MeasurementData.STATE_CODE_LOCK
+                | MeasurementData.STATE_BIT_SYNC, 80_000_000L, 0, 20_000_000L);
+        add(data, Constellation.GPS, 5, TOW | MeasurementData.STATE_MSEC_AMBIGUOUS,
+                80_000_000L, 0, WEEK_NS);
+        // TOW decoded but received time off by a second
+        int i = add(data, Constellation.GPS, 6, TOW, 80_000_000L, 0, WEEK_NS);
+        data.setReceivedSvTimeNanos(i, data.getReceivedSvTimeNanos(i) - SECOND_NS);
+        // Not tracked
+        add(data, Constellation.GPS, 7, 0, 80_000_000L, 0, WEEK_NS);
+
+        var engine = new PseudorangeEngine();
+        // Default leap second without the clock value
+        assertEquals(3, engine.compute(data));
+        assertEquals(expectedRange(93_000_000L), engine.getPseudorangeMeters(0), 1e-6);
+        assertEquals(expectedRange(70_000_000L), engine.getPseudorangeMeters(1), 1e-6);
+        assertEquals(expectedRange(80_000_000L), engine.getPseudorangeMeters(2), 1e-6);
+        assertEquals(PseudorangeEngine.FLAG_AMBIGUOUS | PseudorangeEngine.FLAG_RATE,
+                engine.getFlags(3));
+        assertTrue(Double.isNaN(engine.getPseudorangeMeters(3)));
+        assertEquals(PseudorangeEngine.FLAG_AMBIGUOUS | PseudorangeEngine.FLAG_RATE,
+                engine.getFlags(4));
+        assertFalse(engine.hasPseudorange(5));
+        assertEquals(0, engine.getFlags(6));
+        assertTrue(Double.isNaN(engine.getPseudorangeRateMetersPerSecond(6)));
+
+        // No GNSS time
+        var noTime = new MeasurementData();
+        add(noTime, Constellation.GPS, 1, TOW, 80_000_000L, 0, WEEK_NS);
+        assertEquals(0, engine.compute(noTime));
+        assertEquals(-1, engine.getGpsWeek());
+        assertEquals(1, engine.getCount());
+    }
+
+    @Test
+    public void test_accumulatedDeltaRange() {
+        var data = newEpoch(2400 * WEEK_NS);
+        int a = add(data, Constellation.GPS, 1, TOW, 70_000_000L, 0, WEEK_NS);
+        int b = add(data, Constellation.GPS, 2, TOW, 70_000_000L, 0, WEEK_NS);
+        data.setAccumulatedDeltaRangeState(a, MeasurementData.ADR_STATE_VALID);
+        data.setAccumulatedDeltaRangeMeters(a, 12.5);
+        data.setAccumulatedDeltaRangeState(b, 0);
+
+        var engine = new PseudorangeEngine();
+        engine.compute(data);
+        // First epoch starts the arc
+        int adrFlags = PseudorangeEngine.FLAG_ADR | PseudorangeEngine.FLAG_ADR_RESET;
+        assertEquals(adrFlags, engine.getFlags(a) & adrFlags);
+        assertEquals(12.5, engine.getAccumulatedDeltaRangeMeters(a), 0);
+        assertTrue(Double.isNaN(engine.getAccumulatedDeltaRangeMeters(b)));
+
+        engine.compute(data);
+        assertEquals(0, engine.getFlags(a) & PseudorangeEngine.FLAG_ADR_RESET);
+        data.setAccumulatedDeltaRangeState(a, MeasurementData.ADR_STATE_VALID
+                | MeasurementData.ADR_STATE_CYCLE_SLIP);
+        engine.compute(data);
+        assertNotEquals(0, engine.getFlags(a) & PseudorangeEngine.FLAG_ADR_RESET);
+        data.setAccumulatedDeltaRangeState(a, MeasurementData.ADR_STATE_VALID);
+        data.setHardwareClockDiscontinuityCount(1);
+        engine.compute(data);
+        assertNotEquals(0, engine.getFlags(a) & PseudorangeEngine.FLAG_ADR_RESET);
+    }
+
+    @Test
+    public void test_recordedEpochs() throws IOException {
+        var file = Files.createTempFile(TAG, SessionFormat.FILE_EXTENSION);
+        try {
+            var data = newEpoch(2400 * WEEK_NS + 7 * SECOND_NS);
+            data.setLeapSecond(18);
+            for (int sv = 1; sv <= 24; sv++) {
+                add(data, Constellation.GPS, sv, TOW, 65_000_000L + sv * 1_000_017L, 0,
+                        WEEK_NS);
+                add(data, Constellation.GLONASS, sv, GLO_TOD, 65_000_000L + sv * 999_983L,
+                        PseudorangeEngine.GLONASS_OFFSET_NANOS - 18 * SECOND_NS, DAY_NS);
+            }
+            try (var writer = new SessionWriter(file, 0, 0)) {
+                writer.writeMeasurements(SECOND_NS, data);
+            }
+            var expected = new PseudorangeEngine();
+            expected.compute(data);
+
+            var read = new MeasurementData();
+            try (var reader = new SessionReader(file)) {
+                while (reader.next()) {
+                    if (reader.getType() == SessionFormat.TYPE_MEASUREMENTS) {
+                        reader.readMeasurements(read);
+                    }
+                }
+            }
+            var engine = new PseudorangeEngine();
+            assertEquals(48, engine.compute(read));
+            for (int i = 0; i < engine.getCount(); i++) {
+                assertEquals(expected.getPseudorangeMeters(i), engine.getPseudorangeMeters(i), 0);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test_compute_allocation() {
+        final int epochs = 100_000;
+        var data = newEpoch(2400 * WEEK_NS);
+        int[] types = {Constellation.GPS, Constellation.GLONASS, Constellation.BEIDOU,
+                Constellation.GALILEO};
+        long[] offsets = {0, PseudorangeEngine.GLONASS_OFFSET_NANOS - 18 * SECOND_NS,
+                -PseudorangeEngine.BDS_OFFSET_NANOS, 0};
+        for (int sv = 1; sv <= 32; sv++) {
+            for (int t = 0; t < types.length; t++) {
+                boolean glo = types[t] == Constellation.GLONASS;
+                add(data, types[t], sv, glo ? GLO_TOD : TOW, 66_000_000L + sv * 1_500_000L,
+                        offsets[t], glo ? DAY_NS : WEEK_NS);
+            }
+        }
+        var engine = new PseudorangeEngine();
+        double sum = 0;
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0;
+        for (int e = 0; e < epochs; e++) {
+            if (e == epochs / 10) bytes = threads.getCurrentThreadAllocatedBytes();
+            data.setTimeNanos(TIME_NANOS + e);
+            engine.compute(data);
+            sum += engine.getPseudorangeMeters(e & 127);
+        }
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        assertEquals(128, engine.getValidCount());
+        assertTrue(sum > 0);
+        assertTrue("allocated " + bytes, bytes < 16 * 1024);
+    }
+}
@@ -0,0 +1,361 @@
+package pos.modetest.core.gnss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.recorder.SessionFormat;
+import pos.modetest.core.recorder.SessionReader;
+import pos.modetest.core.recorder.SessionWriter;
+
+public class PvtEngineTest {
+    private static final String TAG = PvtEngineTest.class.getSimpleName();
+    private static final double C = PseudorangeEngine.SPEED_OF_LIGHT_M_S;
+    private static final long SECOND_NS = PseudorangeEngine.SECOND_NANOS;
+    private static final int WEEK = 2400;
+    private static final double TOE = 7200;
+    private static final double RX_TOW = 7300;
+    private static final long TIME_NANOS = 5_000 * SECOND_NS;
+    private static final double LAT = Math.toRadians(48.137);
+    private static final double LON = Math.toRadians(11.575);
+    private static final double ALT = 520;
+    /** Receiver clock per state: GPS L1, GPS L5, Galileo E1, Galileo E5a */
+    private static final double[] CLOCKS = {42.5, 45.25, 47.0, 51.5};
+    private static final double[] KLOBUCHAR = {1.1176e-8, 7.4506e-9, -5.9605e-8, -5.9605e-8,
+            90112, 0, -196608, -65536};
+    private static final int TOW_STATE = MeasurementData.STATE_CODE_LOCK
+            | MeasurementData.STATE_TOW_DECODED;
+
+    /** Synthetic constellation, 32 GPS SVs in 6 planes and 30 Galileo SVs in 3 */
+    static EphemerisCache newCache() {
+        var cache = new EphemerisCache();
+        for (int sv = 1; sv <= 32; sv++) {
+            int plane = (sv - 1) % 6;
+            cache.put(newEphemeris(Constellation.GPS, sv, 5153.7, Math.toRadians(55),
+                    plane * Math.PI / 3, ((sv - 1) / 6) * Math.PI / 3 + plane * 0.4));
+        }
+        for (int sv = 1; sv <= 30; sv++) {
+            int plane = (sv - 1) % 3;
+            cache.put(newEphemeris(Constellation.GALILEO, sv, 5440.588, Math.toRadians(56),
+                    plane * 2 * Math.PI / 3 + 0.3, ((sv - 1) / 3) * Math.PI / 5 + plane * 0.26));
+        }
+        cache.setKlobuchar(KLOBUCHAR);
+        return cache;
+    }
+
+    private static Ephemeris newEphemeris(int constellation, int svid, double sqrtA, double i0,
+                                          double omega0, double m0) {
+        var eph = new Ephemeris();
+        eph.setSv(constellation, svid);
+        eph.setWeek(WEEK);
+        eph.setToe(TOE);
+        eph.setToc(TOE);
+        eph.setIode(svid);
+        eph.setSqrtA(sqrtA);
+        eph.setE(0.004 + svid * 1e-4);
+        eph.setI0(i0);
+        eph.setOmega0(omega0);
+        eph.setOmega(0.5 + svid * 0.01);
+        eph.setM0(m0);
+        eph.setDeltaN(4.5e-9);
+        eph.setOmegaDot(-8e-9);
+        eph.setIdot(2e-10);
+        eph.setCuc(-1e-6);
+        eph.setCus(8e-6);
+        eph.setCrc(220);
+        eph.setCrs(-20);
+        eph.setCic(1e-7);
+        eph.setCis(-5e-8);
+        eph.setAf0(1e-5 * (svid % 7 - 3));
+        eph.setAf1(1e-12);
+        eph.setTgd(-4.5e-9);
+        return eph;
+    }
+
+    /** Signals of one epoch at the true position, above the elevation mask */
+    private static class Epoch {
+        final MeasurementData data = new MeasurementData();
+        final List<Double> truePseudoranges = new ArrayList<>();
+    }
+
+    private static Epoch newEpoch(EphemerisCache cache, boolean dualBand, double noise,
+                                  long seed) {
+        return newEpoch(cache, dualBand, noise, seed, 10.5);
+    }
+
+    private static Epoch newEpoch(EphemerisCache cache, boolean dualBand, double noise,
+                                  long seed, double maskDegrees) {
+        var epoch = new Epoch();
+        var data = epoch.data;
+        long gpsNanos = WEEK * 604_800L * SECOND_NS + (long) (RX_TOW * SECOND_NS);
+        data.setTimeNanos(TIME_NANOS);
+        data.setFullBiasNanos(TIME_NANOS - gpsNanos);
+        data.setBiasNanos(0);
+        data.setLeapSecond(18);
+
+        var random = new Random(seed);
+        double[] rx = new double[3];
+        Wgs84.toEcef(LAT, LON, ALT, rx);
+        double[] orbit = new double[4];
+        double gps = WEEK * GnssTime.WEEK_SECONDS + RX_TOW;
+        for (Ephemeris eph : cache.getValid(gps)) {
+            // Transmit time and Earth rotation, iterated on the travel time
+            double tau = 0.075;
+            double dx = 0;
+            double dy = 0;
+            double dz = 0;
+            double range = 0;
+            for (int it = 0; it < 5; it++) {
+                SatelliteOrbit.compute(eph, WEEK, RX_TOW - tau, orbit);
+                double theta = Wgs84.OMEGA_E * tau;
+                dx = orbit[0] + theta * orbit[1] - rx[0];
+                dy = orbit[1] - theta * orbit[0] - rx[1];
+                dz = orbit[2] - rx[2];
+                range = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                tau = range / C;
+            }
+            double ex = dx / range;
+            double ey = dy / range;
+            double ez = dz / range;
+            double up = Math.cos(LAT) * (Math.cos(LON) * ex + Math.sin(LON) * ey)
+                    + Math.sin(LAT) * ez;
+            double el = Math.asin(up);
+            if (el < Math.toRadians(maskDegrees)) continue;
+            double east = -Math.sin(LON) * ex + Math.cos(LON) * ey;
+            double north = -Math.sin(LAT) * (Math.cos(LON) * ex + Math.sin(LON) * ey)
+                    + Math.cos(LAT) * ez;
+            double iono = Atmosphere.klobucharMeters(KLOBUCHAR, LAT, LON,
+                    Math.atan2(east, north), el, RX_TOW);
+            double tropo = Atmosphere.troposphereMeters(LAT, ALT, el);
+            boolean gal = eph.getConstellation() == Constellation.GALILEO;
+            for (int band = 0; band < (dualBand ? 2 : 1); band++) {
+                double freq = band == 0 ? PvtEngine.L1_HZ : PvtEngine.L5_HZ;
+                double gamma = (PvtEngine.L1_HZ / freq) * (PvtEngine.L1_HZ / freq);
+                double cn0 = 30 + 20 * Math.sin(el) - 3 * band;
+                double sigma = noise * Math.pow(10, (PvtEngine.CN0_REFERENCE_DB_HZ - cn0) / 20)
+                        / Math.sin(el);
+                double pr = range + CLOCKS[(gal ? 2 : 0) + band]
+                        - (orbit[3] - gamma * eph.getTgd()) * C
+                        + tropo + gamma * iono + sigma * random.nextGaussian();
+                add(data, eph.getConstellation(), eph.getSvid(), freq, cn0, pr, gpsNanos);
+                epoch.truePseudoranges.add(pr);
+            }
+        }
+        return epoch;
+    }
+
+    private static int add(MeasurementData data, int constellation, int svid, double freq,
+                           double cn0, double pr, long gpsNanos) {
+        double travel = pr / C * 1e9;
+        long whole = (long) Math.floor(travel);
+        int i = data.add(constellation, svid);
+        data.setState(i, TOW_STATE);
+        data.setReceivedSvTimeNanos(i, Math.floorMod(gpsNanos - whole,
+                PseudorangeEngine.WEEK_NANOS));
+        data.setTimeOffsetNanos(i, travel - whole);
+        data.setReceivedSvTimeUncertaintyNanos(i, 10);
+        data.setCarrierFrequencyHz(i, (float) freq);
+        data.setCn0DbHz(i, cn0);
+        return i;
+    }
+
+    private static double distanceToTruth(PvtEngine pvt) {
+        double[] truth = new double[3];
+        Wgs84.toEcef(LAT, LON, ALT, truth);
+        return Math.sqrt(Math.pow(pvt.getX() - truth[0], 2) + Math.pow(pvt.getY() - truth[1], 2)
+                + Math.pow(pvt.getZ() - truth[2], 2));
+    }
+
+    @Test
+    public void test_wgs84() {
+        double[] ecef = new double[3];
+        double[] geo = new double[3];
+        for (double latDeg : new double[]{-89.9, -45, 0, 30, 48.137, 89.9}) {
+            Wgs84.toEcef(Math.toRadians(latDeg), Math.toRadians(-120), 1234.5, ecef);
+            Wgs84.toGeodetic(ecef[0], ecef[1], ecef[2], geo);
+            assertEquals(latDeg, Math.toDegrees(geo[0]), 1e-9);
+            assertEquals(-120, Math.toDegrees(geo[1]), 1e-9);
+            assertEquals(1234.5, geo[2], 1e-4);
+        }
+    }
+
+    @Test
+    public void test_truth() {
+        var cache = newCache();
+        var epoch = newEpoch(cache, true, 0, 1);
+        var pr = new PseudorangeEngine();
+        int count = pr.compute(epoch.data);
+        assertTrue("signals " + count, count >= 30);
+        for (int i = 0; i < count; i++) {
+            assertEquals(epoch.truePseudoranges.get(i), pr.getPseudorangeMeters(i), 1e-6);
+        }
+
+        var pvt = new PvtEngine();
+        assertTrue(pvt.solve(epoch.data, pr, cache));
+        assertEquals(PvtEngine.STATUS_OK, pvt.getStatus());
+        assertEquals(count, pvt.getUsedCount());
+        assertEquals(0, pvt.getExcludedCount());
+        assertEquals(0, distanceToTruth(pvt), 0.01);
+        assertEquals(Math.toDegrees(LAT), pvt.getLatitudeDegrees(), 1e-7);
+        assertEquals(Math.toDegrees(LON), pvt.getLongitudeDegrees(), 1e-7);
+        assertEquals(ALT, pvt.getAltitudeMeters(), 0.01);
+        assertEquals(11.12, pvt.getHorizontalDistanceMeters(Math.toDegrees(LAT) + 1e-4,
+                Math.toDegrees(LON)), 0.01);
+        for (int c = 0; c < CLOCKS.length; c++) {
+            assertEquals(CLOCKS[c], pvt.getClockBiasMeters(c), 0.01);
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(PvtEngine.FLAG_USED, pvt.getFlags(i));
+            assertEquals(0, pvt.getResidualMeters(i), 0.01);
+            assertTrue(pvt.getElevationDegrees(i) >= 10);
+        }
+        int firstIterations = pvt.getIterationCount();
+
+        // From the previous solution
+        assertTrue(pvt.solve(epoch.data, pr, cache));
+        assertTrue(pvt.getIterationCount() < firstIterations);
+        assertEquals(0, distanceToTruth(pvt), 0.01);
+    }
+
+    @Test
+    public void test_noiseAndOutlier() {
+        var cache = newCache();
+        var epoch = newEpoch(cache, true, 1, 7);
+        // One multipath signal 150 m long
+        int bad = 5;
+        var data = epoch.data;
+        data.setTimeOffsetNanos(bad, data.getTimeOffsetNanos(bad) + 150 / C * 1e9);
+        var pr = new PseudorangeEngine();
+        pr.compute(data);
+
+        var pvt = new PvtEngine();
+        assertTrue(pvt.solve(data, pr, cache));
+        assertEquals(PvtEngine.STATUS_OK, pvt.getStatus());
+        assertEquals(1, pvt.getExcludedCount());
+        assertEquals(PvtEngine.FLAG_EXCLUDED, pvt.getFlags(bad));
+        assertTrue(pvt.getResidualMeters(bad) > 100);
+        assertEquals(pr.getCount() - 1, pvt.getUsedCount());
+        assertTrue(pvt.getTestStatistic()
+                <= PvtEngine.getChiSquareThreshold(pvt.getDegreesOfFreedom()));
+        assertEquals(0, distanceToTruth(pvt), 10);
+
+        // Without the test the outlier pulls the solution
+        var plain = new PvtEngine();
+        plain.setRaimEnabled(false);
+        assertTrue(plain.solve(data, pr, cache));
+        assertEquals(0, plain.getExcludedCount());
+        assertTrue(distanceToTruth(plain) > distanceToTruth(pvt));
+    }
+
+    @Test
+    public void test_notEnough() {
+        var cache = newCache();
+        var full = newEpoch(cache, false, 0, 1).data;
+        var data = new MeasurementData();
+        data.setTimeNanos(full.getTimeNanos());
+        data.setFullBiasNanos(full.getFullBiasNanos());
+        data.setBiasNanos(0);
+        // 4 GPS L1 signals for x, y, z and the clock
+        for (int k = 0; data.getCount() < 4; k++) {
+            if (full.getConstellation(k) != Constellation.GPS) continue;
+            int i = data.add(full.getConstellation(k), full.getSvid(k));
+            data.setState(i, full.getState(k));
+            data.setReceivedSvTimeNanos(i, full.getReceivedSvTimeNanos(k));
+            data.setTimeOffsetNanos(i, full.getTimeOffsetNanos(k));
+            data.setCarrierFrequencyHz(i, full.getCarrierFrequencyHz(k));
+            data.setCn0DbHz(i, full.getCn0DbHz(k));
+        }
+        // Same signal of an SV without ephemeris
+        int noEph = data.add(Constellation.GALILEO, 36);
+        data.setState(noEph, TOW_STATE);
+        data.setReceivedSvTimeNanos(noEph, full.getReceivedSvTimeNanos(0));
+        data.setCn0DbHz(noEph, 40);
+        var pr = new PseudorangeEngine();
+        assertEquals(5, pr.compute(data));
+
+        // Exact, without redundancy for the residual test
+        var pvt = new PvtEngine();
+        assertTrue(pvt.solve(data, pr, cache));
+        assertEquals(PvtEngine.FLAG_NO_EPHEMERIS, pvt.getFlags(noEph));
+        assertEquals(4, pvt.getUsedCount());
+        assertEquals(0, pvt.getDegreesOfFreedom());
+        assertEquals(0, distanceToTruth(pvt), 0.01);
+
+        data.setCarrierFrequencyHz(3, (float) PvtEngine.L5_HZ);
+        pr.compute(data);
+        assertFalse(pvt.solve(data, pr, cache));
+        assertEquals(PvtEngine.STATUS_NOT_ENOUGH, pvt.getStatus());
+
+        data.clear();
+        pr.compute(data);
+        assertFalse(pvt.solve(data, pr, cache));
+        assertEquals(PvtEngine.STATUS_NOT_ENOUGH, pvt.getStatus());
+        assertFalse(pvt.hasSolution());
+    }
+
+    @Test
+    public void test_recordedEpoch() throws IOException {
+        var cache = newCache();
+        var epoch = newEpoch(cache, true, 1, 11);
+        var file = Files.createTempFile(TAG, SessionFormat.FILE_EXTENSION);
+        try {
+            try (var writer = new SessionWriter(file, 0, 0)) {
+                writer.writeMeasurements(SECOND_NS, epoch.data);
+            }
+            var read = new MeasurementData();
+            try (var reader = new SessionReader(file)) {
+                while (reader.next()) {
+                    if (reader.getType() == SessionFormat.TYPE_MEASUREMENTS) {
+                        reader.readMeasurements(read);
+                    }
+                }
+            }
+            var pr = new PseudorangeEngine();
+            pr.compute(read);
+            var pvt = new PvtEngine();
+            assertTrue(pvt.solve(read, pr, cache));
+            assertEquals(0, distanceToTruth(pvt), 5);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void test_solve_allocation() {
+        final int epochs = 2_000;
+        var cache = newCache();
+        // Down to the horizon, 22 SVs on two bands
+        var data = newEpoch(cache, true, 1, 3, 1).data;
+        var pr = new PseudorangeEngine();
+        pr.compute(data);
+        var pvt = new PvtEngine();
+        pvt.setElevationMaskDegrees(1);
+        for (int e = 0; e < epochs / 10; e++) {
+            pvt.clear();
+            pvt.solve(data, pr, cache);
+        }
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        // From scratch, then from the last fix
+        for (int e = 0; e < epochs; e++) {
+            pvt.clear();
+            pvt.solve(data, pr, cache);
+        }
+        for (int e = 0; e < epochs; e++) {
+            pvt.solve(data, pr, cache);
+        }
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        assertTrue(pvt.hasSolution());
+        assertTrue("used " + pvt.getUsedCount(), pvt.getUsedCount() >= 40);
+        assertTrue("allocated " + bytes, bytes < 64 * 1024);
+    }
+}
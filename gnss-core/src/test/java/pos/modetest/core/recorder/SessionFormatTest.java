@@ -0,0 +1,339 @@
+package pos.modetest.core.recorder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+
+public class SessionFormatTest {
+    private static final String TAG = SessionFormatTest.class.getSimpleName();
+    static final long START_WALL_MS = 1_760_000_000_000L;
+    static final long START_ELAPSED_NS = 123_456_789_000L;
+    static final long SECOND_NS = 1_000_000_000L;
+    private static final int SV_COUNT = 40;
+    static final int NAV_PER_EPOCH = 20;
+
+    private Path mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = Files.createTempFile(TAG, SessionFormat.FILE_EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(mFile);
+    }
+
+    @Test
+    public void test_varint() {
+        var buf = ByteBuffer.allocate(16);
+        long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, -1, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long v : values) {
+            buf.clear();
+            SessionFormat.putZigZag(buf, v);
+            buf.flip();
+            assertEquals(v, SessionFormat.getZigZag(buf));
+            buf.clear();
+            SessionFormat.putVarint(buf, v);
+            assertEquals(SessionFormat.varintSize(v), buf.position());
+            buf.flip();
+            assertEquals(v, SessionFormat.getVarint(buf));
+        }
+    }
+
+    @Test
+    public void test_roundTrip() throws IOException {
+        final int epochs = 50;
+        try (var writer = new SessionWriter(mFile, START_WALL_MS, START_ELAPSED_NS)) {
+            writer.writeGnssEvent(START_ELAPSED_NS, SessionFormat.GNSS_STARTED, 0);
+            for (int e = 0; e < epochs; e++) {
+                writeEpoch(writer, e);
+            }
+            writer.begin(SessionFormat.TYPE_PROVIDERS, START_ELAPSED_NS + epochs * SECOND_NS);
+            writer.putVarint(2);
+            writer.putString("gps");
+            writer.putString("fused");
+            writer.end();
+        }
+
+        var fix = new FixData();
+        var sats = new SatelliteData();
+        var meas = new MeasurementData();
+        var nav = new NavMessageData();
+        var expectedFix = new FixData();
+        var expectedSats = new SatelliteData();
+        var expectedMeas = new MeasurementData();
+        var expectedNav = new NavMessageData();
+        int epoch = -1;
+        int navCount = 0;
+        try (var reader = new SessionReader(mFile)) {
+            assertEquals(START_WALL_MS, reader.getStartWallTimeMillis());
+            assertEquals(START_ELAPSED_NS, reader.getStartElapsedRealtimeNanos());
+            assertTrue(reader.next());
+            assertEquals(SessionFormat.TYPE_GNSS_EVENT, reader.getType());
+            assertEquals(SessionFormat.GNSS_STARTED, reader.readVarint());
+            while (reader.next()) {
+                switch (reader.getType()) {
+                    case SessionFormat.TYPE_SATELLITES -> {
+                        epoch++;
+                        assertEquals(epochTime(epoch), reader.getElapsedRealtimeNanos());
+                        reader.readSatellites(sats);
+                        fillSatellites(expectedSats, epoch);
+                        assertSatellites(expectedSats, sats);
+                    }
+                    case SessionFormat.TYPE_MEASUREMENTS -> {
+                        reader.readMeasurements(meas);
+                        fillMeasurements(expectedMeas, epoch);
+                        assertMeasurements(expectedMeas, meas);
+                    }
+                    case SessionFormat.TYPE_NAV_MESSAGE -> {
+                        reader.readNavMessage(nav);
+                        fillNavMessage(expectedNav, epoch, navCount++ % NAV_PER_EPOCH);
+                        assertEquals(expectedNav.getSvid(), nav.getSvid());
+                        assertEquals(expectedNav.getSubmessageId(), nav.getSubmessageId());
+                        assertEquals(expectedNav.getDataLength(), nav.getDataLength());
+                        for (int i = 0; i < nav.getDataLength(); i++) {
+                            assertEquals(expectedNav.getData()[i], nav.getData()[i]);
+                        }
+                    }
+                    case SessionFormat.TYPE_FIX -> {
+                        reader.readFix(fix);
+                        fillFix(expectedFix, epoch);
+                        assertEquals(expectedFix.getProvider(), fix.getProvider());
+                        assertEquals(expectedFix.getTimeMillis(), fix.getTimeMillis());
+                        assertEquals(expectedFix.getElapsedRealtimeNanos(), fix.getElapsedRealtimeNanos());
+                        assertEquals(expectedFix.getLatitude(), fix.getLatitude(), 0);
+                        assertEquals(expectedFix.getLongitude(), fix.getLongitude(), 0);
+                        assertEquals(expectedFix.getAltitude(), fix.getAltitude(), 0);
+                        assertEquals(expectedFix.getAccuracy(), fix.getAccuracy(), 0);
+                        assertTrue(Float.isNaN(fix.getBearing()));
+                    }
+                    case SessionFormat.TYPE_PROVIDERS -> {
+                        assertEquals(2, reader.readVarint());
+                        assertEquals("gps", reader.readString());
+                        assertEquals("fused", reader.readString());
+                    }
+                    default -> fail("Unexpected record " + reader.getType());
+                }
+            }
+            assertFalse(reader.isTruncated());
+            assertEquals(epochs - 1, epoch);
+            assertEquals(epochs * NAV_PER_EPOCH, navCount);
+            assertEquals(2 + epochs * (3 + NAV_PER_EPOCH), reader.getRecordCount());
+        }
+    }
+
+    @Test
+    public void test_truncatedFile() throws IOException {
+        try (var writer = new SessionWriter(mFile, START_WALL_MS, START_ELAPSED_NS)) {
+            for (int e = 0; e < 3; e++) {
+                writeEpoch(writer, e);
+            }
+        }
+        long size = Files.size(mFile);
+        try (var channel = FileChannel.open(mFile, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+        int count = 0;
+        try (var reader = new SessionReader(mFile)) {
+            while (reader.next()) {
+                count++;
+            }
+            assertTrue(reader.isTruncated());
+        }
+        assertEquals(3 * (3 + NAV_PER_EPOCH) - 1, count);
+    }
+
+    @Test
+    public void test_abortedRecord() throws IOException {
+        try (var writer = new SessionWriter(mFile, START_WALL_MS, START_ELAPSED_NS)) {
+            writer.writeGnssEvent(START_ELAPSED_NS, SessionFormat.GNSS_STARTED, 0);
+            writer.begin(SessionFormat.TYPE_LOCATION_MODE, START_ELAPSED_NS + 5 * SECOND_NS);
+            writer.putByte(1);
+            writer.abort();
+            // Writer is usable again and the aborted time doesn't shift the next record
+            writer.writeGnssEvent(START_ELAPSED_NS + SECOND_NS, SessionFormat.GNSS_STOPPED, 0);
+            assertEquals(2, writer.getRecordCount());
+        }
+        try (var reader = new SessionReader(mFile)) {
+            assertTrue(reader.next());
+            assertEquals(SessionFormat.GNSS_STARTED, reader.readVarint());
+            assertTrue(reader.next());
+            assertEquals(SessionFormat.TYPE_GNSS_EVENT, reader.getType());
+            assertEquals(START_ELAPSED_NS + SECOND_NS, reader.getElapsedRealtimeNanos());
+            assertEquals(SessionFormat.GNSS_STOPPED, reader.readVarint());
+            assertFalse(reader.next());
+            assertFalse(reader.isTruncated());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void test_notASession() throws IOException {
+        Files.write(mFile, new byte[]{1, 2, 3});
+        new SessionReader(mFile).close();
+    }
+
+    @Test
+    public void test_hourSession() throws IOException {
+        // One hour of 1 Hz epochs
+        final int epochs = 3600;
+        long size;
+        try (var writer = new SessionWriter(mFile, START_WALL_MS, START_ELAPSED_NS)) {
+            for (int e = 0; e < epochs; e++) {
+                writeEpoch(writer, e);
+                if (e % 5 == 0) writer.sync();
+            }
+            size = writer.getSize();
+        }
+        assertEquals(size, Files.size(mFile));
+
+        var meas = new MeasurementData();
+        long records = 0;
+        try (var reader = new SessionReader(mFile)) {
+            while (reader.next()) {
+                if (reader.getType() == SessionFormat.TYPE_MEASUREMENTS) {
+                    reader.readMeasurements(meas);
+                }
+                records++;
+            }
+        }
+        assertEquals((long) epochs * (3 + NAV_PER_EPOCH), records);
+    }
+
+    static long epochTime(int epoch) {
+        return START_ELAPSED_NS + epoch * SECOND_NS + 7_000;
+    }
+
+    static void writeEpoch(SessionWriter writer, int epoch) throws IOException {
+        var sats = new SatelliteData();
+        var meas = new MeasurementData();
+        var nav = new NavMessageData();
+        var fix = new FixData();
+        long t = epochTime(epoch);
+        fillSatellites(sats, epoch);
+        writer.writeSatellites(t, sats);
+        fillMeasurements(meas, epoch);
+        writer.writeMeasurements(t + 1000, meas);
+        for (int n = 0; n < NAV_PER_EPOCH; n++) {
+            fillNavMessage(nav, epoch, n);
+            writer.writeNavMessage(t + 2000 + n * 1000L, nav);
+        }
+        fillFix(fix, epoch);
+        writer.writeFix(t + 50_000_000L, fix);
+    }
+
+    private static void fillSatellites(SatelliteData sats, int epoch) {
+        sats.clear();
+        for (int i = 0; i < SV_COUNT; i++) {
+            sats.add(1 + i % 6, 1 + i, i % 3 == 0 ? SatelliteData.FLAG_USED_IN_FIX : 0,
+                    20f + (i + epoch) % 30 + 0.25f, -5f + i * 2.25f, (i * 37 + epoch) % 360,
+                    i % 2 == 0 ? 1575.42e6f : Float.NaN, i % 4 == 0 ? 30.5f : Float.NaN);
+        }
+    }
+
+    private static void assertSatellites(SatelliteData expected, SatelliteData actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        for (int i = 0; i < actual.getCount(); i++) {
+            assertEquals(expected.getConstellation(i), actual.getConstellation(i));
+            assertEquals(expected.getSvid(i), actual.getSvid(i));
+            assertEquals(expected.getFlags(i), actual.getFlags(i));
+            assertEquals(expected.getCn0DbHz(i), actual.getCn0DbHz(i), 0.005);
+            assertEquals(expected.getElevationDegrees(i), actual.getElevationDegrees(i), 0.005);
+            assertEquals(expected.getAzimuthDegrees(i), actual.getAzimuthDegrees(i), 0.005);
+            assertEquals(expected.getCarrierFrequencyHz(i), actual.getCarrierFrequencyHz(i), 0);
+            assertEquals(expected.getBasebandCn0DbHz(i), actual.getBasebandCn0DbHz(i), 0.005);
+        }
+    }
+
+    private static void fillMeasurements(MeasurementData meas, int epoch) {
+        meas.clear();
+        meas.setTimeNanos(epoch * SECOND_NS + 42);
+        meas.setFullBiasNanos(-1_300_000_000_000_000_000L - epoch);
+        meas.setBiasNanos(0.25);
+        meas.setDriftNanosPerSecond(-12.5);
+        meas.setHardwareClockDiscontinuityCount(3);
+        meas.setElapsedRealtimeNanos(epochTime(epoch) - 100);
+        meas.setFullTracking(epoch % 2 == 0);
+        for (int n = 0; n < SV_COUNT; n++) {
+            int i = meas.add(1 + n % 6, 1 + n);
+            meas.setState(i, 0x3FFF);
+            meas.setReceivedSvTimeNanos(i, 345_600_000_000_000L + epoch * SECOND_NS + n);
+            meas.setReceivedSvTimeUncertaintyNanos(i, 12);
+            meas.setCn0DbHz(i, 35.5);
+            meas.setPseudorangeRateMetersPerSecond(i, -512.123456789 + n);
+            meas.setPseudorangeRateUncertaintyMetersPerSecond(i, 0.125);
+            meas.setAccumulatedDeltaRangeState(i, 1);
+            meas.setAccumulatedDeltaRangeMeters(i, 20_123_456.789 + epoch);
+            meas.setAccumulatedDeltaRangeUncertaintyMeters(i, 0.5);
+            meas.setMultipathIndicator(i, n % 3);
+            if (n % 2 == 0) meas.setCarrierFrequencyHz(i, 1176.45e6f);
+            if (n % 5 == 0) meas.setAutomaticGainControlLevelDb(i, 1.5);
+            if (n == 7) meas.setTimeOffsetNanos(i, 0.75);
+        }
+    }
+
+    private static void assertMeasurements(MeasurementData expected, MeasurementData actual) {
+        assertEquals(expected.getTimeNanos(), actual.getTimeNanos());
+        assertTrue(actual.hasFullBiasNanos());
+        assertEquals(expected.getFullBiasNanos(), actual.getFullBiasNanos());
+        assertFalse(actual.hasLeapSecond());
+        assertEquals(expected.getBiasNanos(), actual.getBiasNanos(), 0);
+        assertTrue(Double.isNaN(actual.getBiasUncertaintyNanos()));
+        assertEquals(expected.getDriftNanosPerSecond(), actual.getDriftNanosPerSecond(), 0);
+        assertEquals(expected.getHardwareClockDiscontinuityCount(),
+                actual.getHardwareClockDiscontinuityCount());
+        assertEquals(expected.getElapsedRealtimeNanos(), actual.getElapsedRealtimeNanos());
+        assertEquals(expected.isFullTracking(), actual.isFullTracking());
+        assertEquals(expected.getCount(), actual.getCount());
+        for (int i = 0; i < actual.getCount(); i++) {
+            assertEquals(expected.getSvid(i), actual.getSvid(i));
+            assertEquals(expected.getConstellation(i), actual.getConstellation(i));
+            assertEquals(expected.getState(i), actual.getState(i));
+            assertEquals(expected.getReceivedSvTimeNanos(i), actual.getReceivedSvTimeNanos(i));
+            assertEquals(expected.getCn0DbHz(i), actual.getCn0DbHz(i), 1e-5);
+            assertEquals(expected.getPseudorangeRateMetersPerSecond(i),
+                    actual.getPseudorangeRateMetersPerSecond(i), 0);
+            assertEquals(expected.getAccumulatedDeltaRangeMeters(i),
+                    actual.getAccumulatedDeltaRangeMeters(i), 0);
+            assertEquals(expected.getMultipathIndicator(i), actual.getMultipathIndicator(i));
+            assertEquals(expected.getTimeOffsetNanos(i), actual.getTimeOffsetNanos(i), 0);
+            assertEquals(expected.getCarrierFrequencyHz(i), actual.getCarrierFrequencyHz(i), 0);
+            assertEquals(expected.getAutomaticGainControlLevelDb(i),
+                    actual.getAutomaticGainControlLevelDb(i), 1e-6);
+            assertTrue(Double.isNaN(actual.getBasebandCn0DbHz(i)));
+        }
+    }
+
+    private static void fillNavMessage(NavMessageData nav, int epoch, int n) {
+        nav.set(0x0101, 1 + n, 1, 1 + (epoch + n) % 5, 1);
+        byte[] data = nav.ensureData(40);
+        for (int i = 0; i < 40; i++) {
+            data[i] = (byte) (epoch * 31 + n * 7 + i);
+        }
+    }
+
+    private static void fillFix(FixData fix, int epoch) {
+        fix.clear();
+        fix.setProvider("gps");
+        fix.setTimeMillis(START_WALL_MS + epoch * 1000L + 50);
+        fix.setElapsedRealtimeNanos(epochTime(epoch));
+        fix.setLatitude(37.422 + epoch * 1e-6);
+        fix.setLongitude(-122.084 - epoch * 1e-6);
+        fix.setAltitude(12.5);
+        fix.setAccuracy(3.5f);
+    }
+}
@@ -0,0 +1,267 @@
+package pos.modetest.core.recorder;
+
+import static pos.modetest.core.recorder.SessionFormatTest.NAV_PER_EPOCH;
+import static pos.modetest.core.recorder.SessionFormatTest.SECOND_NS;
+import static pos.modetest.core.recorder.SessionFormatTest.START_ELAPSED_NS;
+import static pos.modetest.core.recorder.SessionFormatTest.START_WALL_MS;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import pos.modetest.core.data.FixData;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.NavMessageData;
+import pos.modetest.core.data.SatelliteData;
+
+public class SessionPlayerTest {
+    private static final String TAG = SessionPlayerTest.class.getSimpleName();
+    private static final long CLOCK_START_NS = 5_000_000_000L;
+
+    private Path mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = Files.createTempFile(TAG, SessionFormat.FILE_EXTENSION);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(mFile);
+    }
+
+    @Test
+    public void test_originalTiming() throws Exception {
+        writeSession(10);
+        var clock = new FakeClock();
+        var listener = new TimingListener(clock);
+        var player = new SessionPlayer(mFile, listener);
+        player.setClock(clock);
+
+        assertEquals(2 + 10 * (3 + NAV_PER_EPOCH), player.play());
+        long first = listener.mRecordTimes.get(0);
+        assertEquals(START_ELAPSED_NS, first);
+        for (int i = 0; i < listener.mRecordTimes.size(); i++) {
+            assertEquals(CLOCK_START_NS + listener.mRecordTimes.get(i) - first,
+                    (long) listener.mDispatchTimes.get(i));
+        }
+        assertEquals(10, listener.mFixes);
+        assertEquals(10, listener.mSatellites);
+        assertEquals(10, listener.mMeasurements);
+        assertEquals(10 * NAV_PER_EPOCH, listener.mNavMessages);
+        assertEquals(List.of(SessionFormat.GNSS_STARTED, SessionFormat.GNSS_STOPPED),
+                listener.mEvents);
+    }
+
+    @Test
+    public void test_speed() throws Exception {
+        writeSession(10);
+        var clock = new FakeClock();
+        var listener = new TimingListener(clock);
+        var player = new SessionPlayer(mFile, listener);
+        player.setClock(clock);
+        player.setSpeed(4);
+
+        player.play();
+        long first = listener.mRecordTimes.get(0);
+        for (int i = 0; i < listener.mRecordTimes.size(); i++) {
+            assertEquals(CLOCK_START_NS + (listener.mRecordTimes.get(i) - first) / 4,
+                    (long) listener.mDispatchTimes.get(i));
+        }
+        long last = listener.mDispatchTimes.get(listener.mDispatchTimes.size() - 1);
+        assertTrue(last - CLOCK_START_NS < 10 * SECOND_NS / 4 + SECOND_NS);
+    }
+
+    @Test
+    public void test_asap() throws Exception {
+        writeSession(10);
+        var clock = new FakeClock();
+        var listener = new TimingListener(clock);
+        var player = new SessionPlayer(mFile, listener);
+        player.setClock(clock);
+        player.setSpeed(SessionPlayer.SPEED_ASAP);
+
+        assertEquals(2 + 10 * (3 + NAV_PER_EPOCH), player.play());
+        assertEquals(0, clock.mSleeps);
+        assertEquals(CLOCK_START_NS, clock.nanoTime());
+    }
+
+    @Test
+    public void test_cancel() throws Exception {
+        writeSession(10);
+        var clock = new FakeClock();
+        var player = new SessionPlayer[1];
+        var listener = new TimingListener(clock) {
+            @Override
+            public void onFix(long elapsedRealtimeNanos, @NonNull FixData fix) {
+                super.onFix(elapsedRealtimeNanos, fix);
+                if (mFixes == 3) player[0].cancel();
+            }
+        };
+        player[0] = new SessionPlayer(mFile, listener);
+        player[0].setClock(clock);
+
+        assertEquals(1 + 3 * (3 + NAV_PER_EPOCH), player[0].play());
+        assertEquals(3, listener.mFixes);
+    }
+
+    @Test
+    public void test_otherRecords() throws Exception {
+        try (var writer = new SessionWriter(mFile, START_WALL_MS, START_ELAPSED_NS)) {
+            writer.begin(SessionFormat.TYPE_PROVIDERS, START_ELAPSED_NS);
+            writer.putVarint(2);
+            writer.putString("gps");
+            writer.putString("network");
+            writer.end();
+            writer.begin(SessionFormat.TYPE_LOCATION_MODE, START_ELAPSED_NS + 1000);
+            writer.putByte(1);
+            writer.end();
+        }
+        var providers = new ArrayList<String>();
+        var modes = new ArrayList<Integer>();
+        var player = new SessionPlayer(mFile, new SessionPlayer.DefaultListener() {
+            @Override
+            public void onRecord(long elapsedRealtimeNanos, int type,
+                                 @NonNull SessionReader reader) {
+                if (type == SessionFormat.TYPE_PROVIDERS) {
+                    for (long n = reader.readVarint(); n > 0; n--) {
+                        providers.add(reader.readString());
+                    }
+                } else if (type == SessionFormat.TYPE_LOCATION_MODE) {
+                    modes.add(reader.readByte());
+                }
+            }
+        });
+        player.setSpeed(SessionPlayer.SPEED_ASAP);
+
+        assertEquals(2, player.play());
+        assertEquals(List.of("gps", "network"), providers);
+        assertEquals(List.of(1), modes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_invalidSpeed() {
+        new SessionPlayer(mFile, new SessionPlayer.DefaultListener() {
+        }).setSpeed(0);
+    }
+
+    @Test
+    public void test_asapHour() throws Exception {
+        // One hour of 1 Hz epochs
+        final int epochs = 3600;
+        writeSession(epochs);
+        var listener = new SessionPlayer.DefaultListener() {
+            double mCn0Sum;
+            long mRecords;
+
+            @Override
+            public void onSatellites(long elapsedRealtimeNanos,
+                                     @NonNull SatelliteData satellites) {
+                for (int i = 0; i < satellites.getCount(); i++) {
+                    mCn0Sum += satellites.getCn0DbHz(i);
+                }
+                mRecords++;
+            }
+
+            @Override
+            public void onMeasurements(long elapsedRealtimeNanos,
+                                       @NonNull MeasurementData measurements) {
+                mRecords++;
+            }
+        };
+        var player = new SessionPlayer(mFile, listener);
+        player.setSpeed(SessionPlayer.SPEED_ASAP);
+
+        long records = player.play();
+        assertEquals(2 + (long) epochs * (3 + NAV_PER_EPOCH), records);
+        assertEquals(2L * epochs, listener.mRecords);
+        assertTrue(listener.mCn0Sum > 0);
+    }
+
+    private void writeSession(int epochs) throws IOException {
+        try (var writer = new SessionWriter(mFile, START_WALL_MS, START_ELAPSED_NS)) {
+            writer.writeGnssEvent(START_ELAPSED_NS, SessionFormat.GNSS_STARTED, 0);
+            for (int e = 0; e < epochs; e++) {
+                SessionFormatTest.writeEpoch(writer, e);
+            }
+            writer.writeGnssEvent(SessionFormatTest.epochTime(epochs), SessionFormat.GNSS_STOPPED, 0);
+        }
+    }
+
+    private static class FakeClock implements SessionPlayer.Clock {
+        long mNanos = CLOCK_START_NS;
+        int mSleeps;
+
+        @Override
+        public long nanoTime() {
+            return mNanos;
+        }
+
+        @Override
+        public void sleepNanos(long nanos) {
+            mNanos += nanos;
+            mSleeps++;
+        }
+    }
+
+    private static class TimingListener extends SessionPlayer.DefaultListener {
+        private final SessionPlayer.Clock mClock;
+        final List<Long> mRecordTimes = new ArrayList<>();
+        final List<Long> mDispatchTimes = new ArrayList<>();
+        final List<Integer> mEvents = new ArrayList<>();
+        int mFixes;
+        int mSatellites;
+        int mMeasurements;
+        int mNavMessages;
+
+        TimingListener(SessionPlayer.Clock clock) {
+            mClock = clock;
+        }
+
+        private void record(long elapsedRealtimeNanos) {
+            mRecordTimes.add(elapsedRealtimeNanos);
+            mDispatchTimes.add(mClock.nanoTime());
+        }
+
+        @Override
+        public void onFix(long elapsedRealtimeNanos, @NonNull FixData fix) {
+            record(elapsedRealtimeNanos);
+            mFixes++;
+        }
+
+        @Override
+        public void onSatellites(long elapsedRealtimeNanos, @NonNull SatelliteData satellites) {
+            record(elapsedRealtimeNanos);
+            mSatellites++;
+        }
+
+        @Override
+        public void onMeasurements(long elapsedRealtimeNanos,
+                                   @NonNull MeasurementData measurements) {
+            record(elapsedRealtimeNanos);
+            mMeasurements++;
+        }
+
+        @Override
+        public void onNavMessage(long elapsedRealtimeNanos, @NonNull NavMessageData message) {
+            record(elapsedRealtimeNanos);
+            mNavMessages++;
+        }
+
+        @Override
+        public void onGnssEvent(long elapsedRealtimeNanos, int kind, long value) {
+            record(elapsedRealtimeNanos);
+            mEvents.add(kind);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package pos.modetest.core.series;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import pos.modetest.core.data.Constellation;
+import pos.modetest.core.data.GnssBand;
+import pos.modetest.core.data.MeasurementData;
+import pos.modetest.core.data.SatelliteData;
+
+public class TimeSeriesStoreTest {
+    private static final float L1_HZ = 1575.42e6f;
+    private static final long MINUTE_MS = 60_000;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+
+    @Test
+    public void test_deltaCodec() {
+        var random = new Random(1);
+        int[][] columns = {
+                {},
+                {42},
+                {5, 6, 7, 8, 9},
+                {Integer.MIN_VALUE, Integer.MAX_VALUE, 0, Integer.MIN_VALUE},
+                random.ints(128, 3000, 3100).toArray(),
+                random.ints(128).toArray(),
+        };
+        for (int[] column : columns) {
+            long[] words = DeltaCodec.encode(column, column.length);
+            int[] decoded = new int[column.length];
+            DeltaCodec.decode(words, column.length, decoded);
+            assertArrayEquals(column, decoded);
+        }
+        // Constant step packs to the header only
+        assertEquals(2, DeltaCodec.encode(columns[2], 5).length);
+        // 100 distinct deltas take 8 bits, 127 of them fit in 16 words
+        assertTrue(DeltaCodec.encode(columns[4], 128).length <= 2 + 16);
+    }
+
+    @Test
+    public void test_tiers() {
+        var store = new TimeSeriesStore();
+        long start = 10 * MINUTE_MS;
+        for (int s = 0; s < 600; s++) {
+            // 30.00, 30.01, ... per second, two samples per second
+            store.add(Constellation.GPS, 5, GnssBand.GPS_L1, TimeSeriesStore.FIELD_CN0,
+                    start + s * 1000L, 30f + s / 100f);
+            store.add(Constellation.GPS, 5, GnssBand.GPS_L1, TimeSeriesStore.FIELD_CN0,
+                    start + s * 1000L + 500, 30f + s / 100f + 1f);
+        }
+        int series = store.findSeries(Constellation.GPS, 5, GnssBand.GPS_L1,
+                TimeSeriesStore.FIELD_CN0);
+        assertEquals(0, series);
+        assertEquals(-1, store.findSeries(Constellation.GPS, 5, GnssBand.GPS_L1,
+                TimeSeriesStore.FIELD_AZIMUTH));
+        assertEquals(GnssBand.GPS_L1, store.getBand(series));
+        assertEquals(5, store.getSvid(series));
+
+        var points = new SeriesPoints();
+        store.query(series, start, start + 9_999, 100, points);
+        assertEquals(TimeSeriesStore.TIER_1S, points.getTier());
+        assertEquals(10, points.getCount());
+        assertEquals(start + 3000, points.getTimeMillis(3));
+        assertEquals(30.03f, points.getMin(3), 1e-4);
+        assertEquals(31.03f, points.getMax(3), 1e-4);
+        assertEquals(30.53f, points.getMean(3), 1e-4);
+
+        // 10 min at 100 points -> 10 s buckets
+        store.query(series, start, start + 10 * MINUTE_MS - 1, 100, points);
+        assertEquals(TimeSeriesStore.TIER_10S, points.getTier());
+        assertEquals(60, points.getCount());
+        assertEquals(30.10f, points.getMin(1), 1e-4);
+        assertEquals(31.19f, points.getMax(1), 1e-4);
+        // Stored at 0.01 resolution
+        assertEquals(30.645f, points.getMean(1), 0.006);
+
+        // 10 min at 5 points -> 1 min buckets merged by 2
+        store.query(series, start, start + 10 * MINUTE_MS - 1, 5, points);
+        assertEquals(TimeSeriesStore.TIER_1MIN, points.getTier());
+        assertEquals(5, points.getCount());
+        assertEquals(30f, points.getMin(0), 1e-4);
+        assertEquals(32.19f, points.getMax(0), 1e-4);
+
+        store.query(series, 0, start - 1, 10, points);
+        assertEquals(0, points.getCount());
+    }
+
+    @Test
+    public void test_azimuthAcrossNorth() {
+        var store = new TimeSeriesStore();
+        // 10 min alternating on both sides of north, one sample a second
+        for (int s = 0; s < 600; s++) {
+            store.add(Constellation.GPS, 7, GnssBand.GPS_L1, TimeSeriesStore.FIELD_AZIMUTH,
+                    s * 1000L, s % 2 == 0 ? 359f : 1f);
+        }
+        // Elevation stays an arithmetic mean
+        store.add(Constellation.GPS, 7, GnssBand.GPS_L1, TimeSeriesStore.FIELD_ELEVATION, 0, 359f);
+        store.add(Constellation.GPS, 7, GnssBand.GPS_L1, TimeSeriesStore.FIELD_ELEVATION, 500, 1f);
+        int series = store.findSeries(Constellation.GPS, 7, GnssBand.GPS_L1,
+                TimeSeriesStore.FIELD_AZIMUTH);
+        var points = new SeriesPoints();
+        for (int maxPoints : new int[]{100, 10, 2}) {
+            store.query(series, 0, 10 * MINUTE_MS - 1, maxPoints, points);
+            assertTrue(points.getCount() > 0);
+            for (int i = 0; i < points.getCount(); i++) {
+                float mean = points.getMean(i);
+                // 0 and 360 are both north
+                assertEquals(0f, Math.min(mean, 360f - mean), 0.01);
+            }
+        }
+        store.query(store.findSeries(Constellation.GPS, 7, GnssBand.GPS_L1,
+                TimeSeriesStore.FIELD_ELEVATION), 0, 999, 10, points);
+        assertEquals(180f, points.getMean(0), 1e-4);
+
+        assertEquals(350f, Series.circularMean(Math.sin(Math.toRadians(-10)),
+                Math.cos(Math.toRadians(-10))), 1e-4);
+        assertEquals(90f, Series.circularMean(1, 0), 1e-4);
+    }
+
+    @Test
+    public void test_feedFromStatusAndMeasurements() {
+        var store = new TimeSeriesStore();
+        var sats = new SatelliteData();
+        sats.add(Constellation.GALILEO, 11, 0, 33f, 45f, 180f, L1_HZ, Float.NaN);
+        store.addStatus(sats, 0);
+        var meas = new MeasurementData();
+        int i = meas.add(Constellation.GALILEO, 11);
+        meas.setCn0DbHz(i, 34.5);
+        meas.setCarrierFrequencyHz(i, L1_HZ);
+        meas.setMultipathIndicator(i, MeasurementData.MULTIPATH_INDICATOR_DETECTED);
+        i = meas.add(Constellation.GALILEO, 12);
+        meas.setCn0DbHz(i, 20);
+        store.addMeasurements(meas, 0);
+
+        // 3 status fields, measured C/N0 and multipath of E11, measured C/N0 of E12
+        assertEquals(6, store.getSeriesCount());
+        var points = new SeriesPoints();
+        store.query(store.findSeries(Constellation.GALILEO, 11, GnssBand.GALILEO_E1,
+                TimeSeriesStore.FIELD_ELEVATION), 0, 999, 10, points);
+        assertEquals(1, points.getCount());
+        assertEquals(45f, points.getMean(0), 0);
+        assertEquals(-1, store.findSeries(Constellation.GALILEO, 12, GnssBand.UNKNOWN,
+                TimeSeriesStore.FIELD_AGC));
+        assertEquals(-1, store.findSeries(Constellation.GALILEO, 12, GnssBand.UNKNOWN,
+                TimeSeriesStore.FIELD_MULTIPATH));
+        assertNotEquals(-1, store.findSeries(Constellation.GALILEO, 11, GnssBand.GALILEO_E1,
+                TimeSeriesStore.FIELD_MULTIPATH));
+    }
+
+    @Test
+    public void test_report() {
+        var store = new TimeSeriesStore();
+        var points = new SeriesPoints();
+        assertEquals("---\n", SignalHistoryFormat.formatReport(store, 0, points));
+
+        var sats = new SatelliteData();
+        var meas = new MeasurementData();
+        for (long t = 0; t < HOUR_MS; t += 1000) {
+            sats.clear();
+            // Last 10 min at 40 dB-Hz, 30 before
+            sats.add(Constellation.GPS, 3, 0, t < 50 * MINUTE_MS ? 30f : 40f, 45f,
+                    t % 2000 == 0 ? 359f : 1f, L1_HZ, Float.NaN);
+            sats.add(Constellation.GALILEO, 11, 0, 35f, 20f, 90f, L1_HZ, Float.NaN);
+            store.addStatus(sats, t);
+            meas.clear();
+            int i = meas.add(Constellation.GPS, 3);
+            meas.setCarrierFrequencyHz(i, L1_HZ);
+            meas.setMultipathIndicator(i, t % 4000 == 0
+                    ? MeasurementData.MULTIPATH_INDICATOR_DETECTED : 2);
+            store.addMeasurements(meas, t);
+        }
+        String[] lines = SignalHistoryFormat.formatReport(store, HOUR_MS - 1, points)
+                .split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("Signal"));
+        // Sorted by constellation, windows start on a bucket so 10 min holds one more at 30
+        assertTrue(lines[1], lines[1].matches(
+                "GPS +3 L1 +40\\.0 +39\\.\\d +31\\.\\d +30\\.0- 40\\.0 +45 +(0|360) +25"));
+        assertTrue(lines[2], lines[2].matches(
+                "GALILEO 11 E1 +35\\.0 +35\\.0 +35\\.0 +35\\.0- 35\\.0 +20 +90 +---"));
+    }
+
+    @Test
+    public void test_seriesIndex() {
+        // Enough series to grow the index a few times
+        var store = new TimeSeriesStore();
+        for (int c = 0; c < Constellation.COUNT; c++) {
+            for (int sv = 1; sv <= 40; sv++) {
+                for (int f = 0; f < TimeSeriesStore.FIELD_COUNT; f++) {
+                    store.add(c, sv, GnssBand.GPS_L5, f, 0, sv);
+                }
+            }
+        }
+        assertEquals(Constellation.COUNT * 40 * TimeSeriesStore.FIELD_COUNT,
+                store.getSeriesCount());
+        for (int series = 0; series < store.getSeriesCount(); series++) {
+            assertEquals(series, store.findSeries(store.getConstellation(series),
+                    store.getSvid(series), store.getBand(series), store.getField(series)));
+        }
+        assertEquals(-1, store.findSeries(Constellation.GPS, 41, GnssBand.GPS_L5,
+                TimeSeriesStore.FIELD_CN0));
+        assertEquals(-1, store.findSeries(Constellation.GPS, 1, GnssBand.GPS_L1,
+                TimeSeriesStore.FIELD_CN0));
+        store.clear();
+        assertEquals(-1, store.findSeries(Constellation.GPS, 1, GnssBand.GPS_L5,
+                TimeSeriesStore.FIELD_CN0));
+        store.add(Constellation.GPS, 1, GnssBand.GPS_L5, TimeSeriesStore.FIELD_CN0, 0, 1);
+        assertEquals(0, store.findSeries(Constellation.GPS, 1, GnssBand.GPS_L5,
+                TimeSeriesStore.FIELD_CN0));
+    }
+
+    @Test
+    public void test_daySession_budget() {
+        final int satCount = 40;
+        final long budget = 6L << 20;
+        var store = new TimeSeriesStore(budget);
+        var sats = new SatelliteData();
+        var random = new Random(5);
+        float[] cn0 = new float[satCount];
+        for (long t = 0; t < 24 * HOUR_MS; t += 1000) {
+            sats.clear();
+            for (int sv = 0; sv < satCount; sv++) {
+                cn0[sv] = Math.max(10f, Math.min(50f, cn0[sv] + (random.nextFloat() - 0.5f)));
+                float elevation = (float) (45 + 40 * Math.sin((t / (double) HOUR_MS + sv) / 2));
+                float azimuth = (float) ((t / 240_000d + sv * 9) % 360);
+                sats.add(Constellation.GPS, sv + 1, 0, cn0[sv], elevation, azimuth, L1_HZ,
+                        Float.NaN);
+            }
+            store.addStatus(sats, t);
+        }
+        assertTrue(store.getMemoryBytes() <= budget);
+        assertTrue(store.getSealedChunkCount(TimeSeriesStore.TIER_1MIN) > 0);
+
+        var points = new SeriesPoints();
+        int series = store.findSeries(Constellation.GPS, 1, GnssBand.GPS_L1,
+                TimeSeriesStore.FIELD_CN0);
+        // Raw seconds of the start are evicted, the whole day is still there at 1 min
+        store.query(series, 0, 10 * MINUTE_MS, 1000, points);
+        assertNotEquals(TimeSeriesStore.TIER_1S, points.getTier());
+        assertTrue(points.getCount() > 0);
+        assertEquals(0, points.getTimeMillis(0));
+        store.query(series, 23 * HOUR_MS, 23 * HOUR_MS + MINUTE_MS - 1, 1000, points);
+        assertEquals(TimeSeriesStore.TIER_1S, points.getTier());
+        assertEquals(60, points.getCount());
+        store.query(series, 0, 24 * HOUR_MS - 1, 2000, points);
+        assertEquals(TimeSeriesStore.TIER_1MIN, points.getTier());
+        assertEquals(24 * 60, points.getCount());
+    }
+}
@@ -0,0 +1,232 @@
+package pos.modetest.core.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import pos.modetest.core.data.FixData;
+
+public class FixKalmanFilterTest {
+    private static final double REF_LAT = 48.137;
+    private static final double REF_LON = 11.575;
+    private static final double REF_ALT = 520;
+    private static final long SECOND_NS = 1_000_000_000L;
+    private static final int DURATION_S = 300;
+    private static final float ACCURACY = 6f;
+    private static final int[] SPIKES = {150, 220};
+    private static final double SPIKE_NORTH_M = 120;
+    private static final int JUMP_START = 260;
+    private static final double JUMP_EAST_M = 400;
+
+    /** Drive at 15 m/s, north-east then a 90 degree turn, east, north, up truth per second */
+    private static double[][] newTrajectory() {
+        double[][] truth = new double[DURATION_S][4];
+        double east = 0;
+        double north = 0;
+        double bearing = 45;
+        double speed = 15;
+        for (int t = 0; t < DURATION_S; t++) {
+            truth[t][0] = east;
+            truth[t][1] = north;
+            truth[t][2] = 2 * Math.sin(t / 60.0);
+            truth[t][3] = bearing;
+            for (int i = 0; i < 100; i++) {
+                if (t >= 100 && t < 130) bearing += 0.03;
+                east += speed * Math.sin(Math.toRadians(bearing)) * 0.01;
+                north += speed * Math.cos(Math.toRadians(bearing)) * 0.01;
+            }
+        }
+        return truth;
+    }
+
+    private static void setFix(FixData fix, int t, double east, double north, double up,
+                               double speed, double bearing) {
+        double metersPerDegree = Math.toRadians(1) * FixStatistics.EARTH_RADIUS_M;
+        fix.setProvider("gps");
+        fix.setTimeMillis(1_760_000_000_000L + t * 1000L);
+        fix.setElapsedRealtimeNanos(100 * SECOND_NS + t * SECOND_NS);
+        fix.setLatitude(REF_LAT + north / metersPerDegree);
+        fix.setLongitude(REF_LON + east / metersPerDegree / Math.cos(Math.toRadians(REF_LAT)));
+        fix.setAltitude(REF_ALT + up);
+        fix.setAccuracy(ACCURACY);
+        fix.setVerticalAccuracy(8f);
+        fix.setSpeed((float) speed);
+        fix.setSpeedAccuracy(0.5f);
+        fix.setBearing((float) ((bearing + 360) % 360));
+        fix.setBearingAccuracy(3f);
+    }
+
+    private static double[] toEastNorth(FixData fix) {
+        double metersPerDegree = Math.toRadians(1) * FixStatistics.EARTH_RADIUS_M;
+        return new double[]{
+                (fix.getLongitude() - REF_LON) * metersPerDegree * Math.cos(Math.toRadians(REF_LAT)),
+                (fix.getLatitude() - REF_LAT) * metersPerDegree};
+    }
+
+    private static boolean isSpike(int t) {
+        for (int spike : SPIKES) {
+            if (spike == t) return true;
+        }
+        return false;
+    }
+
+    private static void drive(FixKalmanFilter filter, long seed) {
+        double[][] truth = newTrajectory();
+        var random = new Random(seed);
+        var fix = new FixData();
+        double sigma = ACCURACY / 1.5096;
+        double rawSquares = 0;
+        double filteredSquares = 0;
+        int count = 0;
+        for (int t = 0; t < DURATION_S; t++) {
+            double east = truth[t][0] + random.nextGaussian() * sigma;
+            double north = truth[t][1] + random.nextGaussian() * sigma;
+            double up = truth[t][2] + random.nextGaussian() * 8;
+            if (isSpike(t)) north += SPIKE_NORTH_M;
+            if (t >= JUMP_START) east += JUMP_EAST_M;
+            setFix(fix, t, east, north, up, 15 + random.nextGaussian() * 0.5,
+                    truth[t][3] + random.nextGaussian() * 3);
+            int status = filter.update(fix);
+
+            if (t == 0) {
+                assertEquals(FixKalmanFilter.STATUS_INITIALIZED, status);
+            } else if (isSpike(t)) {
+                assertEquals("t " + t, FixKalmanFilter.STATUS_OUTLIER, status);
+            } else if (t == JUMP_START || t == JUMP_START + 1) {
+                assertEquals("t " + t, FixKalmanFilter.STATUS_OUTLIER, status);
+            } else if (t == JUMP_START + 2) {
+                assertEquals(FixKalmanFilter.STATUS_RESET, status);
+            }
+            if (t >= 20 && t < JUMP_START && !isSpike(t)) {
+                double[] raw = toEastNorth(fix);
+                double[] filtered = toEastNorth(filter.getFiltered());
+                rawSquares += sq(raw[0] - truth[t][0]) + sq(raw[1] - truth[t][1]);
+                filteredSquares += sq(filtered[0] - truth[t][0])
+                        + sq(filtered[1] - truth[t][1]);
+                count++;
+            }
+        }
+        double rawRms = Math.sqrt(rawSquares / count);
+        double filteredRms = Math.sqrt(filteredSquares / count);
+        assertTrue(filteredRms < 0.7 * rawRms);
+        // Spikes and the jump, plus at most a false alarm of the gate over the drive
+        long outliers = SPIKES.length + 3;
+        assertTrue(filter.getOutlierCount() >= outliers
+                && filter.getOutlierCount() <= outliers + 1);
+        assertEquals(1, filter.getResetCount());
+        assertEquals(DURATION_S, filter.getUpdateCount());
+        // About 3 degrees of freedom when the noise model holds
+        assertTrue(filter.getMeanNis() > 1 && filter.getMeanNis() < 6);
+
+        // Settled again on the jumped track
+        double[] filtered = toEastNorth(filter.getFiltered());
+        int last = DURATION_S - 1;
+        assertEquals(truth[last][0] + JUMP_EAST_M, filtered[0], 10);
+        assertEquals(truth[last][1], filtered[1], 10);
+        assertEquals(15, filter.getSpeed(), 1);
+        assertEquals(135, filter.getBearing(), 5);
+    }
+
+    private static double sq(double v) {
+        return v * v;
+    }
+
+    @Test
+    public void test_constantVelocity() {
+        drive(new FixKalmanFilter(), 1);
+    }
+
+    @Test
+    public void test_constantAcceleration() {
+        var filter = new FixKalmanFilter(FixKalmanFilter.MODEL_CONSTANT_ACCELERATION);
+        filter.setProcessNoise(1, 0.1);
+        drive(filter, 2);
+    }
+
+    @Test
+    public void test_gapAndStreams() {
+        var filter = new FixKalmanFilter();
+        int[] counts = new int[FixKalmanFilter.STATUS_RESET + 1];
+        FixKalmanFilter.Listener listener = (raw, filtered, status) -> {
+            counts[status]++;
+            assertEquals(FixKalmanFilter.PROVIDER, filtered.getProvider());
+            assertEquals("gps", raw.getProvider());
+            assertEquals(raw.getElapsedRealtimeNanos(), filtered.getElapsedRealtimeNanos());
+        };
+        filter.addListener(listener);
+        var fix = new FixData();
+        for (int t = 0; t < 10; t++) {
+            setFix(fix, t, 0, 0, 0, 0, 0);
+            fix.setAltitude(Double.NaN);
+            fix.setSpeed(Float.NaN);
+            filter.update(fix);
+        }
+        assertTrue(Double.isNaN(filter.getFiltered().getAltitude()));
+        assertEquals(REF_LAT, filter.getLatitude(), 1e-6);
+        assertEquals(REF_LON, filter.getLongitude(), 1e-6);
+        assertTrue(filter.getFiltered().getAccuracy() < ACCURACY);
+
+        // Altitude appears, then a gap restarts the filter
+        setFix(fix, 10, 0, 0, 3, 0, 0);
+        filter.update(fix);
+        assertEquals(REF_ALT + 3, filter.getFiltered().getAltitude(), 1e-9);
+        setFix(fix, 100, 0, 0, 0, 0, 0);
+        assertEquals(FixKalmanFilter.STATUS_INITIALIZED, filter.update(fix));
+        assertArrayEquals(new int[]{0, 2, 10, 0, 0}, counts);
+
+        filter.removeListener(listener);
+        setFix(fix, 101, 0, 0, 0, 0, 0);
+        filter.update(fix);
+        assertEquals(2, counts[FixKalmanFilter.STATUS_INITIALIZED]);
+        assertEquals(10, counts[FixKalmanFilter.STATUS_UPDATED]);
+
+        filter.clear();
+        assertEquals(FixKalmanFilter.STATUS_NONE, filter.getStatus());
+        assertEquals(0, filter.getUpdateCount());
+        assertTrue(Double.isNaN(filter.getMeanNis()));
+    }
+
+    @Test
+    public void test_mahalanobis() {
+        // S = [[4, 2], [2, 3]], v = [1, 2]: v^T S^-1 v = (3 - 8 + 16) / 8
+        double[] s = {4, 2, 2, 3};
+        assertEquals(11 / 8.0, FixKalmanFilter.mahalanobis(s, new double[]{1, 2}, 2), 1e-12);
+        double[] s3 = {4, 0, 0, 0, 9, 0, 0, 0, 16};
+        assertEquals(1 + 1 + 1, FixKalmanFilter.mahalanobis(s3, new double[]{2, 3, 4}, 3),
+                1e-12);
+        assertTrue(Double.isNaN(FixKalmanFilter.mahalanobis(new double[]{1, 1, 1, 1},
+                new double[]{1, 1}, 2)));
+    }
+
+    @Test
+    public void test_update_allocation() {
+        final int rounds = 50;
+        double[][] truth = newTrajectory();
+        var random = new Random(5);
+        var fixes = new FixData[DURATION_S];
+        for (int t = 0; t < DURATION_S; t++) {
+            fixes[t] = new FixData();
+            setFix(fixes[t], t, truth[t][0] + random.nextGaussian() * 4,
+                    truth[t][1] + random.nextGaussian() * 4, truth[t][2], 15, truth[t][3]);
+        }
+        for (int model : new int[]{FixKalmanFilter.MODEL_CONSTANT_VELOCITY,
+                FixKalmanFilter.MODEL_CONSTANT_ACCELERATION}) {
+            var filter = new FixKalmanFilter(model);
+            for (int r = 0; r < rounds / 10; r++) {
+                filter.clear();
+                for (FixData fix : fixes) filter.update(fix);
+            }
+            var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            for (int r = 0; r < rounds; r++) {
+                filter.clear();
+                for (FixData fix : fixes) filter.update(fix);
+            }
+            bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+            assertTrue("allocated " + bytes, bytes < 16 * 1024);
+        }
+    }
+}
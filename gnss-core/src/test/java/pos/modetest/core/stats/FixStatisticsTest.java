@@ -0,0 +1,196 @@
+package pos.modetest.core.stats;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import pos.modetest.core.data.FixData;
+
+public class FixStatisticsTest {
+    private static final double REF_LAT = 35.6812;
+    private static final double REF_LON = 139.7671;
+    private static final double REF_ALT = 40;
+
+    private static void setFix(FixData fix, double east, double north, double up,
+                               float accuracy) {
+        double metersPerDegree = Math.toRadians(1) * FixStatistics.EARTH_RADIUS_M;
+        fix.setLatitude(REF_LAT + north / metersPerDegree);
+        fix.setLongitude(REF_LON + east / metersPerDegree / Math.cos(Math.toRadians(REF_LAT)));
+        fix.setAltitude(REF_ALT + up);
+        fix.setAccuracy(accuracy);
+        fix.setVerticalAccuracy(accuracy * 1.5f);
+    }
+
+    @Test
+    public void test_runningStats() {
+        var stats = new RunningStats();
+        assertTrue(Double.isNaN(stats.getMean()));
+        for (double v : new double[]{2, 4, 4, 4, 5, 5, 7, 9, Double.NaN}) {
+            stats.add(v);
+        }
+        assertEquals(8, stats.getCount());
+        assertEquals(5, stats.getMean(), 1e-12);
+        assertEquals(4, stats.getVariance(), 1e-12);
+        assertEquals(32 / 7d, stats.getSampleVariance(), 1e-12);
+        assertEquals(2, stats.getStdDev(), 1e-12);
+        assertEquals(2, stats.getMin(), 0);
+        assertEquals(9, stats.getMax(), 0);
+
+        // Large offset, naive sum of squares would lose the variance
+        stats.clear();
+        for (int i = 0; i < 1000; i++) {
+            stats.add(1e9 + (i % 2));
+        }
+        assertEquals(0.25, stats.getVariance(), 1e-9);
+    }
+
+    @Test
+    public void test_p2Quantile() {
+        var random = new Random(11);
+        final int n = 20_000;
+        double[] values = new double[n];
+        double[] quantiles = {0.5, 0.68, 0.95};
+        var estimators = new P2Quantile[quantiles.length];
+        for (int q = 0; q < quantiles.length; q++) {
+            estimators[q] = new P2Quantile(quantiles[q]);
+        }
+        for (int i = 0; i < n; i++) {
+            // Skewed like position errors
+            values[i] = -Math.log(1 - random.nextDouble()) * 5;
+            for (var estimator : estimators) estimator.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (int q = 0; q < quantiles.length; q++) {
+            double exact = values[(int) (quantiles[q] * (n - 1))];
+            assertEquals(exact, estimators[q].getValue(), exact * 0.02);
+        }
+
+        // Exact below 5 values
+        var median = new P2Quantile(0.5);
+        assertTrue(Double.isNaN(median.getValue()));
+        median.add(3);
+        median.add(1);
+        median.add(2);
+        assertEquals(2, median.getValue(), 0);
+        assertThrows(IllegalArgumentException.class, () -> new P2Quantile(1));
+    }
+
+    @Test
+    public void test_histogram() {
+        var histogram = new Histogram(0, 10, 5);
+        for (double v : new double[]{-1, 0, 1.99, 2, 9.99, 10, 25, Double.NaN}) {
+            histogram.add(v);
+        }
+        assertEquals(7, histogram.getTotalCount());
+        assertEquals(1, histogram.getUnderflowCount());
+        assertEquals(2, histogram.getOverflowCount());
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(1, histogram.getCount(1));
+        assertEquals(1, histogram.getCount(4));
+        assertEquals(8, histogram.getBinStart(4), 0);
+
+        String text = FixStatsFormat.formatHistogram(histogram);
+        assertEquals(5, text.split("\n").length);
+    }
+
+    @Test
+    public void test_cepAgainstReference() {
+        final double sigma = 3;
+        var random = new Random(7);
+        var stats = new FixStatistics();
+        stats.setReference(REF_LAT, REF_LON, REF_ALT);
+        var fix = new FixData();
+        for (int i = 0; i < 20_000; i++) {
+            setFix(fix, random.nextGaussian() * sigma, random.nextGaussian() * sigma,
+                    random.nextGaussian() * 2 * sigma, 5f + random.nextInt(10));
+            stats.addFix(fix);
+        }
+        assertEquals(20_000, stats.getFixCount());
+        // Circular normal: CEP50 = 1.1774 sigma, CEP95 = 2.4477 sigma, 2DRMS = 2.8284 sigma
+        assertEquals(1.1774 * sigma, stats.getCep50Meters(), 0.1);
+        assertEquals(2.4477 * sigma, stats.getCep95Meters(), 0.15);
+        assertEquals(2.8284 * sigma, stats.get2DrmsMeters(), 0.1);
+        assertEquals(0.6745 * 2 * sigma, stats.getVerticalError50Meters(), 0.15);
+        assertEquals(REF_LAT, stats.getMeanLatitude(), 1e-6);
+        assertEquals(REF_LON, stats.getMeanLongitude(), 1e-6);
+        assertEquals(REF_ALT, stats.getMeanAltitude(), 0.1);
+        assertEquals(9.5, stats.getAccuracy50Meters(), 0.6);
+        assertEquals(14, stats.getAccuracy95Meters(), 0.6);
+
+        // A 10 m bias adds to 2DRMS against the reference, not to the spread
+        stats.clearFixes();
+        assertEquals(0, stats.getFixCount());
+        for (int i = 0; i < 20_000; i++) {
+            setFix(fix, 10 + random.nextGaussian() * sigma, random.nextGaussian() * sigma,
+                    0, 5f);
+            stats.addFix(fix);
+        }
+        assertEquals(2 * Math.sqrt(2 * sigma * sigma + 100), stats.get2DrmsMeters(), 0.15);
+        assertEquals(Math.sqrt(2) * sigma, stats.getHorizontalStdDevMeters(), 0.05);
+        // Rice median, about bias + sigma^2 / (2 bias)
+        assertEquals(10.45, stats.getCep50Meters(), 0.2);
+    }
+
+    @Test
+    public void test_cepAgainstMean() {
+        final double sigma = 2;
+        var random = new Random(8);
+        var stats = new FixStatistics();
+        var fix = new FixData();
+        for (int i = 0; i < 20_000; i++) {
+            setFix(fix, 50 + random.nextGaussian() * sigma, -20 + random.nextGaussian() * sigma,
+                    random.nextGaussian(), Float.NaN);
+            stats.addFix(fix);
+        }
+        assertFalse(stats.hasReference());
+        // The bias is taken out by the mean
+        assertEquals(1.1774 * sigma, stats.getCep50Meters(), 0.1);
+        assertEquals(2.8284 * sigma, stats.get2DrmsMeters(), 0.1);
+        assertEquals(0.6745, stats.getVerticalError50Meters(), 0.05);
+        assertTrue(Double.isNaN(stats.getAccuracy50Meters()));
+        double metersPerDegree = Math.toRadians(1) * FixStatistics.EARTH_RADIUS_M;
+        assertEquals(REF_LAT - 20 / metersPerDegree, stats.getMeanLatitude(), 1e-6);
+    }
+
+    @Test
+    public void test_ttffRuns() {
+        var stats = new FixStatistics();
+        for (int run = 1; run <= 100; run++) {
+            stats.addTtff(run * 300L);
+        }
+        // TTFF survives the position reset
+        stats.clearFixes();
+        assertEquals(100, stats.getTtffCount());
+        assertEquals(15.15, stats.getTtffSeconds().getMean(), 1e-9);
+        assertEquals(15.15, stats.getTtff50Seconds(), 1);
+        assertEquals(28.5, stats.getTtff95Seconds(), 1);
+        assertEquals(16, stats.getTtffHistogram().getCount(0));
+
+        String report = FixStatsFormat.formatReport(stats);
+        assertTrue(report, report.contains("(100 runs)"));
+        stats.clear();
+        assertEquals(0, stats.getTtffCount());
+    }
+
+    @Test
+    public void test_update_allocation() {
+        final int fixes = 200_000;
+        var random = new Random(9);
+        var stats = new FixStatistics();
+        var fix = new FixData();
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0;
+        for (int i = 0; i < fixes; i++) {
+            if (i == fixes / 2) bytes = threads.getCurrentThreadAllocatedBytes();
+            setFix(fix, random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), 3f);
+            stats.addFix(fix);
+        }
+        bytes = threads.getCurrentThreadAllocatedBytes() - bytes;
+        assertEquals(fixes, stats.getFixCount());
+        assertTrue("allocated " + bytes, bytes < 16 * 1024);
+    }
+}
@@ -0,0 +1,91 @@
+package pos.modetest.core.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class LogClassifierTest {
+    private static final String CAPTURE = "/logcat/bluesky_capture.txt";
+
+    // Same filters as BlueskyLogObserver
+    private static final List<String> FILTERS = List.of(
+            ".*LocationManagerService:.*",
+            ".*hasEnvironmentBearing.*",
+            ".*(Bluesky(Manager|Registrant)|GCoreFlp):.*"
+    );
+
+    @Test
+    public void test_classify_priority() {
+        var classifier = new LogClassifier(FILTERS);
+        assertEquals(3, classifier.getCategoryCount());
+        assertEquals(0, classifier.classify("I LocationManagerService: gps enabled"));
+        assertEquals(1, classifier.classify("D LocSvc_ApiV02: hasEnvironmentBearing: true"));
+        assertEquals(2, classifier.classify("D BlueskyRegistrant: register"));
+        assertEquals(2, classifier.classify("D GCoreFlp: fused"));
+        assertEquals(LogClassifier.NO_MATCH, classifier.classify("D LocSvc_ApiV02: engineStatus"));
+        assertEquals(LogClassifier.NO_MATCH, classifier.classify(""));
+        // earlier filter wins even if a later one matches further left
+        assertEquals(0, classifier.classify("D BlueskyManager: x LocationManagerService: y"));
+        assertEquals(1, classifier.classify("D GCoreFlp: hasEnvironmentBearing=1"));
+        assertEquals(0, classifier.classify("hasEnvironmentBearing LocationManagerService:"));
+    }
+
+    @Test
+    public void test_classify_anchored() {
+        var classifier = new LogClassifier(List.of("abc", ".*def", "ghi.*", "a\\.*"));
+        assertEquals(0, classifier.classify("abc"));
+        assertEquals(LogClassifier.NO_MATCH, classifier.classify("abcd"));
+        assertEquals(1, classifier.classify("xxdef"));
+        assertEquals(LogClassifier.NO_MATCH, classifier.classify("defx"));
+        assertEquals(2, classifier.classify("ghixx"));
+        assertEquals(LogClassifier.NO_MATCH, classifier.classify("xghi"));
+        assertEquals(3, classifier.classify("a..."));
+        assertEquals(LogClassifier.NO_MATCH, classifier.classify("abcx"));
+    }
+
+    @Test
+    public void test_classify_matchesLegacy() throws IOException {
+        var classifier = new LogClassifier(FILTERS);
+        List<String> lines = readCapture();
+        int[] counts = new int[FILTERS.size()];
+        for (var line : lines) {
+            int category = classifier.classify(line);
+            assertEquals(line, legacyClassify(line), category);
+            if (category != LogClassifier.NO_MATCH) counts[category]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 0);
+        }
+    }
+
+    // LogObserver.readLogcat() filter followed by BlueskyLogObserver.onLogEvent() before the classifier
+    private static int legacyClassify(String line) {
+        if (FILTERS.stream().noneMatch(line::matches)) {
+            return LogClassifier.NO_MATCH;
+        }
+        for (int i = 0; i < FILTERS.size(); i++) {
+            if (line.matches(FILTERS.get(i))) return i;
+        }
+        return LogClassifier.NO_MATCH;
+    }
+
+    private static List<String> readCapture() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (var reader = new BufferedReader(new InputStreamReader(Objects.requireNonNull(
+                LogClassifierTest.class.getResourceAsStream(CAPTURE)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+}
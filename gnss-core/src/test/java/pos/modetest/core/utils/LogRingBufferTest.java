@@ -0,0 +1,139 @@
+package pos.modetest.core.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LogRingBufferTest {
+    private static final int CAT_A = 0;
+    private static final int CAT_B = 1;
+
+    @Test
+    public void test_readSince_beforeWrap() {
+        var buf = new LogRingBuffer(8, 2);
+        for (int i = 0; i < 5; i++) {
+            buf.append(i % 2 == 0 ? CAT_A : CAT_B, "l" + i);
+        }
+        List<String> out = new ArrayList<>();
+        assertEquals(5, buf.readSince(0, out));
+        assertEquals(List.of("l0", "l1", "l2", "l3", "l4"), out);
+
+        out.clear();
+        assertEquals(5, buf.readSince(3, out));
+        assertEquals(List.of("l3", "l4"), out);
+
+        out.clear();
+        assertEquals(5, buf.readSince(5, out));
+        assertTrue(out.isEmpty());
+
+        assertEquals(List.of("l0", "l2", "l4"), buf.snapshot(CAT_A));
+        assertEquals(List.of("l1", "l3"), buf.snapshot(CAT_B));
+        assertEquals(3, buf.getCount(CAT_A));
+        assertEquals(2, buf.getCount(CAT_B));
+    }
+
+    @Test
+    public void test_readSince_afterWrap() {
+        var buf = new LogRingBuffer(4, 2);
+        for (int i = 0; i < 10; i++) {
+            buf.append(i < 7 ? CAT_A : CAT_B, "l" + i);
+        }
+        assertEquals(10, buf.getCount());
+        assertEquals(List.of("l6", "l7", "l8", "l9"), buf.snapshot());
+
+        // lines older than the capacity are gone
+        List<String> out = new ArrayList<>();
+        assertEquals(10, buf.readSince(2, out));
+        assertEquals(List.of("l6", "l7", "l8", "l9"), out);
+
+        out.clear();
+        buf.readSince(8, out);
+        assertEquals(List.of("l8", "l9"), out);
+
+        // category index keeps pointers to lines already overwritten in the shared ring
+        assertEquals(List.of("l6"), buf.snapshot(CAT_A));
+        assertEquals(List.of("l7", "l8", "l9"), buf.snapshot(CAT_B));
+
+        out.clear();
+        buf.readSince(CAT_B, 8, out);
+        assertEquals(List.of("l8", "l9"), out);
+        assertEquals(7, buf.getCount(CAT_A));
+    }
+
+    @Test
+    public void test_readSince_incremental() {
+        var buf = new LogRingBuffer(16, 1);
+        List<String> out = new ArrayList<>();
+        long next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                buf.append(CAT_A, Integer.toString(round * 5 + i));
+            }
+            out.clear();
+            next = buf.readSince(next, out);
+            assertEquals(5, out.size());
+            assertEquals(Integer.toString(round * 5), out.get(0));
+        }
+        assertEquals(50, next);
+    }
+
+    @Test
+    public void test_concurrentReaders() throws Exception {
+        final int capacity = 256;
+        final int lines = 200_000;
+        var buf = new LogRingBuffer(capacity, 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < lines; i++) {
+                buf.append(i % 3 == 0 ? CAT_A : CAT_B, Integer.toString(i));
+            }
+        });
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            final int category = r - 1; // -1: all lines
+            readers.add(new Thread(() -> {
+                try {
+                    List<String> out = new ArrayList<>();
+                    long next = 0;
+                    int last = -1;
+                    while (next < lines) {
+                        out.clear();
+                        next = category < 0
+                                ? buf.readSince(next, out)
+                                : buf.readSince(category, next, out);
+                        for (var line : out) {
+                            int value = Integer.parseInt(line);
+                            assertTrue("not increasing " + last + " -> " + value, value > last);
+                            assertTrue("beyond head " + value, value < next);
+                            if (category == CAT_A) assertEquals(0, value % 3);
+                            if (category == CAT_B) assertNotEquals(0, value % 3);
+                            last = value;
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+        writer.start();
+        writer.join();
+        for (var reader : readers) {
+            reader.join(10_000);
+            assertFalse(reader.isAlive());
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        List<String> tail = buf.snapshot();
+        assertEquals(capacity, tail.size());
+        assertEquals(Integer.toString(lines - capacity), tail.get(0));
+        assertEquals(Integer.toString(lines - 1), tail.get(capacity - 1));
+    }
+}
@@ -0,0 +1,133 @@
+package pos.modetest.core.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ProcessRunnerTest {
+    private static final long TIMEOUT_MS = 10_000;
+
+    // Prints size bytes of dumpsys-like text lines
+    private static String[] dump(String stream, int size) {
+        return new String[]{"sh", "-c",
+                "yes 'mLastLocation[gps 35.681236,139.767125 hAcc=3.5]' | head -c " + size
+                        + (stream.equals("err") ? " 1>&2" : "")};
+    }
+
+    @Test
+    public void test_largeOutputNotTruncated() throws Exception {
+        int size = 4 * 1024 * 1024;
+        var result = ProcessRunner.getDefault().run(dump("out", size), TIMEOUT_MS)
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertFalse(result.isTimedOut());
+        assertTrue(result.isSuccess());
+        assertEquals(size, result.getStdoutSize());
+        assertEquals(size, result.getStdout().length());
+        assertTrue(result.getStdout().startsWith("mLastLocation[gps"));
+    }
+
+    @Test
+    public void test_stdoutAndStderrDrainedConcurrently() throws Exception {
+        // Both streams exceed the pipe buffer, reading them one after the other would deadlock
+        int size = 1024 * 1024;
+        String[] args = {"sh", "-c", "i=0; while [ $i -lt 64 ]; do"
+                + " head -c 16384 /dev/zero; head -c 16384 /dev/zero 1>&2; i=$((i+1)); done"};
+        var result = ProcessRunner.getDefault().run(args, TIMEOUT_MS)
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertFalse(result.isTimedOut());
+        assertEquals(0, result.getExitCode());
+        assertEquals(size, result.getStdoutSize());
+        assertEquals(size, result.getStderr().length());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    public void test_deadlineKillsProcess() throws Exception {
+        long start = System.nanoTime();
+        var result = ProcessRunner.getDefault().run(new String[]{"sleep", "30"}, 200)
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(result.isTimedOut());
+        assertFalse(result.isSuccess());
+        assertEquals(ProcessRunner.Result.EXIT_TIMEOUT, result.getExitCode());
+        assertTrue("elapsed " + elapsedMs, elapsedMs < 2000);
+        assertTrue(result.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void test_deadlineKeepsPartialOutput() throws Exception {
+        String[] args = {"sh", "-c", "echo first; exec sleep 30"};
+        var result = ProcessRunner.getDefault().run(args, 500)
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertTrue(result.isTimedOut());
+        assertEquals("first\n", result.getStdout());
+    }
+
+    @Test
+    public void test_deadlineRace() throws Exception {
+        // The kill ends the drains at once, the result must still be the timeout
+        var runner = new ProcessRunner();
+        List<CompletableFuture<ProcessRunner.Result>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(runner.run(new String[]{"sh", "-c", "echo first; exec sleep 30"}, 50));
+        }
+        for (var future : futures) {
+            var result = future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertTrue(result.isTimedOut());
+            assertEquals(ProcessRunner.Result.EXIT_TIMEOUT, result.getExitCode());
+        }
+    }
+
+    @Test
+    public void test_chunkConsumer() throws Exception {
+        int size = 300_000;
+        var streamed = new AtomicLong();
+        var result = ProcessRunner.getDefault()
+                .run(dump("out", size), TIMEOUT_MS, (chunk, length) -> streamed.addAndGet(length))
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(size, result.getStdoutSize());
+        assertEquals(size, streamed.get());
+    }
+
+    @Test
+    public void test_exitCode() throws Exception {
+        var result = ProcessRunner.getDefault().run(new String[]{"sh", "-c", "exit 3"}, TIMEOUT_MS)
+                .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertFalse(result.isTimedOut());
+        assertEquals(3, result.getExitCode());
+        assertFalse(result.isSuccess());
+        assertEquals("", result.getStdout());
+        assertEquals("sh -c exit 3", result.getCommand());
+    }
+
+    @Test
+    public void test_startFailure() throws Exception {
+        var future = ProcessRunner.getDefault()
+                .run(new String[]{"/nonexistent/dumpsys"}, TIMEOUT_MS);
+        try {
+            future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void test_dumpSizes() throws Exception {
+        var runner = new ProcessRunner();
+        for (int size : new int[]{0, 64 * 1024, 512 * 1024, 4 * 1024 * 1024}) {
+            var result = runner.run(dump("out", size), TIMEOUT_MS)
+                    .get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertTrue(result.isSuccess());
+            assertEquals(size, result.getStdoutSize());
+        }
+    }
+}
@@ -15,3 +15,5 @@ dependencyResolutionManagement {
 }
 rootProject.name = "PosModeTest"
 include(":app")
+include(":gnss-core")
+include(":gnss-bench")